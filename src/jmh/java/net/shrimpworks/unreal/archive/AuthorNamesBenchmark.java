@@ -0,0 +1,52 @@
+package net.shrimpworks.unreal.archive;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthorNamesBenchmark {
+
+	private static final List<String> NAMES = List.of(
+		"Eenocks/MH-Conversion by Barbie",
+		"Mike Bananas A.K.A. Mr. Banan",
+		"Mr. Banan",
+		"Mike \"Mr. Banan\" Bananas",
+		"Cliff Bleszinski",
+		"Modified by Someone",
+		"Joe Soap & Jane Soap",
+		"[DM]Clan Member <email@example.com>"
+	);
+
+	private AuthorNames names;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		names = new AuthorNames(new HashMap<>(), Set.of());
+		NAMES.forEach(names::maybeAutoAlias);
+	}
+
+	@Benchmark
+	public void cleanName(Blackhole bh) {
+		for (String name : NAMES) bh.consume(names.cleanName(name));
+	}
+}
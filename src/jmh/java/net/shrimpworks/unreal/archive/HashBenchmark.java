@@ -0,0 +1,64 @@
+package net.shrimpworks.unreal.archive;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashBenchmark {
+
+	@Param({ "65536", "16777216" })
+	public int fileSize;
+
+	private Path tmpRoot;
+	private Path file;
+	private HashCache cache;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		tmpRoot = Files.createTempDirectory("bench-hash");
+
+		byte[] data = new byte[fileSize];
+		new Random(fileSize).nextBytes(data);
+		file = Files.write(tmpRoot.resolve("file.bin"), data);
+
+		cache = HashCache.load(tmpRoot.resolve("hashes"));
+		cache.hash(file);
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() throws IOException {
+		ArchiveUtil.cleanPath(tmpRoot);
+	}
+
+	@Benchmark
+	public String uncached() throws IOException {
+		return HashCache.NONE.hash(file);
+	}
+
+	@Benchmark
+	public String cached() throws IOException {
+		return cache.hash(file);
+	}
+}
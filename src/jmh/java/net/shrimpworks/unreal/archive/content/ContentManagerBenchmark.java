@@ -0,0 +1,91 @@
+package net.shrimpworks.unreal.archive.content;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import net.shrimpworks.unreal.archive.ArchiveUtil;
+import net.shrimpworks.unreal.archive.content.maps.Map;
+import net.shrimpworks.unreal.archive.storage.DataStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentManagerBenchmark {
+
+	private static final String[] AUTHORS = { "Joe Soap", "Jane Soap", "Cliff B", "Someone Else", "Unknown" };
+	private static final String[] PREFIXES = { "DM", "CTF", "DOM", "AS", "BR" };
+
+	@Param({ "1000", "10000" })
+	public int contentCount;
+
+	private Path tmpRoot;
+	private Path contentPath;
+	private Path snapshotPath;
+	private ContentManager contentManager;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		tmpRoot = Files.createTempDirectory("bench-content");
+		contentPath = Files.createDirectories(tmpRoot.resolve("content"));
+		snapshotPath = tmpRoot.resolve(".content.snapshot");
+
+		for (int i = 0; i < contentCount; i++) {
+			Map m = ContentManagerTest.makeMap(String.format("%s-Map%d", PREFIXES[i % PREFIXES.length], i),
+											   AUTHORS[i % AUTHORS.length], String.format("%040x", i));
+			ContentManagerTest.writeContent(contentPath, m);
+		}
+
+		// produces the snapshot used by loadSnapshot
+		contentManager = new ContentManager(contentPath, snapshotPath, DataStore.NOP, DataStore.NOP, DataStore.NOP);
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() throws IOException {
+		ArchiveUtil.cleanPath(tmpRoot);
+	}
+
+	@Benchmark
+	public ContentManager loadYaml() throws IOException {
+		return new ContentManager(contentPath, null, DataStore.NOP, DataStore.NOP, DataStore.NOP);
+	}
+
+	@Benchmark
+	public ContentManager loadSnapshot() throws IOException {
+		return new ContentManager(contentPath, snapshotPath, DataStore.NOP, DataStore.NOP, DataStore.NOP);
+	}
+
+	@Benchmark
+	public Collection<Content> searchName() {
+		return contentManager.search(null, null, "map12", null);
+	}
+
+	@Benchmark
+	public Collection<Content> searchAll() {
+		return contentManager.search("Unreal Tournament", "MAP", "ctf", "soap");
+	}
+
+	@Benchmark
+	public Collection<Map> byType() {
+		return contentManager.get(Map.class);
+	}
+}
@@ -0,0 +1,87 @@
+package net.shrimpworks.unreal.archive.content;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+import net.shrimpworks.unreal.archive.ArchiveUtil;
+import net.shrimpworks.unreal.archive.content.maps.Map;
+import net.shrimpworks.unreal.archive.content.maps.MapIndexHandler;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks content classification and map indexing, using the sample
+ * content from the test resources.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IndexingBenchmark {
+
+	@Param({ "maps/dm-longestyard.zip", "maps/ctf-power.rar", "skins/ut2004skin.zip" })
+	public String sample;
+
+	private Path tmpRoot;
+	private Incoming incoming;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		tmpRoot = Files.createTempDirectory("bench-indexing");
+
+		Path file = tmpRoot.resolve(sample.substring(sample.indexOf('/') + 1));
+		try (InputStream is = IndexingBenchmark.class.getResourceAsStream(sample)) {
+			Files.copy(is, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		incoming = new Incoming(new Submission(file), new IndexLog()).prepare();
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() throws IOException {
+		incoming.close();
+		ArchiveUtil.cleanPath(tmpRoot);
+	}
+
+	@Benchmark
+	public ContentType classify() {
+		return ContentType.classify(incoming);
+	}
+
+	@Benchmark
+	public void mapIndex(Blackhole bh) {
+		if (ContentType.classify(incoming) != ContentType.MAP) return;
+
+		Map map = ContentType.MAP.newContent(incoming);
+		new MapIndexHandler().index(incoming, map, r -> {
+			bh.consume(r.content);
+			// remove any generated screenshot files, so they don't accumulate across invocations
+			for (IndexResult.NewAttachment f : r.files) {
+				try {
+					f.discard();
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		});
+	}
+}
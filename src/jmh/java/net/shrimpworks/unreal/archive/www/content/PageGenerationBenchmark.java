@@ -0,0 +1,82 @@
+package net.shrimpworks.unreal.archive.www.content;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import net.shrimpworks.unreal.archive.ArchiveUtil;
+import net.shrimpworks.unreal.archive.content.ContentManager;
+import net.shrimpworks.unreal.archive.content.ContentManagerTest;
+import net.shrimpworks.unreal.archive.content.maps.Map;
+import net.shrimpworks.unreal.archive.storage.DataStore;
+import net.shrimpworks.unreal.archive.www.BuildManifest;
+import net.shrimpworks.unreal.archive.www.SiteFeatures;
+import net.shrimpworks.unreal.archive.www.SiteMap;
+import net.shrimpworks.unreal.archive.www.Templates;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks map listing and map page output via {@link Templates.Tpl#write(Path)},
+ * optionally with an incremental {@link BuildManifest} in place.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PageGenerationBenchmark {
+
+	@Param({ "100", "1000" })
+	public int contentCount;
+
+	@Param({ "false", "true" })
+	public boolean incremental;
+
+	private Path tmpRoot;
+	private Path output;
+	private Maps maps;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		tmpRoot = Files.createTempDirectory("bench-www");
+		Path contentPath = Files.createDirectories(tmpRoot.resolve("content"));
+		output = Files.createDirectories(tmpRoot.resolve("www"));
+
+		for (int i = 0; i < contentCount; i++) {
+			Map m = ContentManagerTest.makeMap(String.format("DM-Map%d", i), "Joe Soap", String.format("%040x", i));
+			ContentManagerTest.writeContent(contentPath, m);
+		}
+
+		ContentManager cm = new ContentManager(contentPath, null, DataStore.NOP, DataStore.NOP, DataStore.NOP);
+		maps = new Maps(cm, output, output.resolve("static"), new SiteFeatures(false, false, false, false));
+
+		Templates.buildManifest(incremental ? BuildManifest.load(BuildManifest.defaultPath(output), output) : null);
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() throws IOException {
+		Templates.buildManifest(null);
+		ArchiveUtil.cleanPath(tmpRoot);
+	}
+
+	@Benchmark
+	public Set<SiteMap.Page> mapPages() {
+		return maps.generate();
+	}
+}
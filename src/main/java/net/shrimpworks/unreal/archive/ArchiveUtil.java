@@ -1,29 +1,50 @@
 package net.shrimpworks.unreal.archive;
 
+import java.io.BufferedInputStream;
 import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.time.Duration;
 import java.util.Arrays;
+import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Locale;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
 
 public class ArchiveUtil {
 
 	private static final Duration KILL_WAIT = Duration.ofSeconds(1);
 
 	private static final Set<String> ARCHIVES = new HashSet<>(Arrays.asList(
-			"zip", "z", "gz", "7z", "lzh", "lza", "exe", "rar"
+			"zip", "z", "gz", "tgz", "tar", "7z", "lzh", "lza", "exe", "rar"
 	));
 
+	// formats which may be read in-process, without needing an external tool
+	private static final Set<String> STREAMABLE = new HashSet<>(Arrays.asList(
+			"zip", "exe", "gz", "tgz", "tar"
+	));
+
+	// charset for zip entry names not flagged as UTF-8, as used by DOS and Windows-era archivers
+	private static final Charset ZIP_CHARSET = Charset.isSupported("IBM437") ? Charset.forName("IBM437") : StandardCharsets.UTF_8;
+
+	private static final int TAR_BLOCK = 512;
+
 	private static final boolean IS_WINDOWS = System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows");
 
 	private static final String NIX_SEVENZIP_CMD = "7z";
@@ -45,7 +66,71 @@ public class ArchiveUtil {
 
 	public static boolean isArchive(Path path) {
 		if (!Files.isRegularFile(path)) return false;
-		return ARCHIVES.contains(Util.extension(path.toString().toLowerCase()));
+		return isArchive(path.toString());
+	}
+
+	public static boolean isArchive(String name) {
+		return ARCHIVES.contains(Util.extension(name.toLowerCase()));
+	}
+
+	/**
+	 * Check whether the given file is an archive format which can be read
+	 * in-process via {@link #read(Path, EntryHandler)}.
+	 *
+	 * @param path archive to check
+	 * @return true if the archive can be read in-process
+	 */
+	public static boolean isStreamable(Path path) {
+		if (!Files.isRegularFile(path)) return false;
+		return STREAMABLE.contains(Util.extension(path.toString().toLowerCase()));
+	}
+
+	/**
+	 * Read the contents of an archive in-process, passing each file entry to
+	 * the provided handler as it is encountered.
+	 * <p>
+	 * Supports zip (including self-extracting exe zips), gz, tar and tgz.
+	 * Entry names are normalised to relative paths using forward slashes,
+	 * and entries which would escape the archive root are skipped.
+	 * <p>
+	 * Archives which cannot be read in-process, for example zip files using
+	 * legacy compression methods, result in a {@link BadArchiveException},
+	 * and may then be extracted via {@link #extract(Path, Path, Duration)},
+	 * which falls back to external tools.
+	 *
+	 * @param source  archive to read
+	 * @param handler handler for archive entries
+	 * @throws IOException failed to read the archive
+	 */
+	public static void read(Path source, EntryHandler handler) throws IOException {
+		String ext = Util.extension(source).toLowerCase();
+		try {
+			switch (ext) {
+				case "zip":
+				case "exe":
+					readZip(source, handler);
+					break;
+				case "gz":
+					try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(source)))) {
+						handler.entry(Util.plainName(source), -1, Files.getLastModifiedTime(source), in);
+					}
+					break;
+				case "tgz":
+					try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(source)))) {
+						readTar(in, handler);
+					}
+					break;
+				case "tar":
+					try (InputStream in = new BufferedInputStream(Files.newInputStream(source))) {
+						readTar(in, handler);
+					}
+					break;
+				default:
+					throw new UnsupportedArchiveException(String.format("Format %s not supported for archive %s", ext, source));
+			}
+		} catch (ZipException | IllegalArgumentException e) {
+			throw new BadArchiveException(String.format("File %s could not be read: %s", source, e.getMessage()));
+		}
 	}
 
 	public static Path extract(Path source, Path destination, Duration timeout)
@@ -63,24 +148,39 @@ public class ArchiveUtil {
 
 		if (!Files.isDirectory(destination)) Files.createDirectories(destination);
 
-		Path result;
+		Path result = null;
 
-		String ext = Util.extension(source).toLowerCase();
-		switch (ext) {
-			case "zip":
-			case "z":
-			case "gz":
-			case "7z":
-			case "lzh":
-			case "lza":
-			case "exe":
-				result = exec(sevenZipCmd(source, destination), source, destination, timeout, ALLOWED_EXT_SEVENZIP);
-				break;
-			case "rar":
-				result = exec(rarCmd(source, destination), source, destination, timeout, ALLOWED_EXT_UNRAR);
-				break;
-			default:
-				throw new UnsupportedArchiveException(String.format("Format %s not supported for archive %s", ext, source));
+		if (isStreamable(source)) {
+			try {
+				result = extractInProcess(source, destination, timeout);
+			} catch (IOException e) {
+				// fall back to external tools, which support more compression methods and formats, discarding anything
+				// partially extracted first
+				cleanPath(destination);
+				Files.createDirectories(destination);
+			}
+		}
+
+		if (result == null) {
+			String ext = Util.extension(source).toLowerCase();
+			switch (ext) {
+				case "zip":
+				case "z":
+				case "gz":
+				case "tgz":
+				case "tar":
+				case "7z":
+				case "lzh":
+				case "lza":
+				case "exe":
+					result = exec(sevenZipCmd(source, destination), source, destination, timeout, ALLOWED_EXT_SEVENZIP);
+					break;
+				case "rar":
+					result = exec(rarCmd(source, destination), source, destination, timeout, ALLOWED_EXT_UNRAR);
+					break;
+				default:
+					throw new UnsupportedArchiveException(String.format("Format %s not supported for archive %s", ext, source));
+			}
 		}
 
 		visited.add(source);
@@ -107,6 +207,144 @@ public class ArchiveUtil {
 		return result;
 	}
 
+	private static Path extractInProcess(Path source, Path destination, Duration timeout) throws IOException {
+		final long deadline = System.currentTimeMillis() + timeout.toMillis();
+		read(source, (name, size, modified, data) -> {
+			if (System.currentTimeMillis() >= deadline) {
+				throw new ExtractTimeoutException(String.format("Timed out unpacking file %s", source));
+			}
+			Path out = destination.resolve(name);
+			Files.createDirectories(out.getParent());
+			Files.copy(data, out, StandardCopyOption.REPLACE_EXISTING);
+			if (modified != null) Files.setLastModifiedTime(out, modified);
+		});
+		return destination;
+	}
+
+	private static void readZip(Path source, EntryHandler handler) throws IOException {
+		try (ZipFile zip = new ZipFile(source.toFile(), ZIP_CHARSET)) {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (entry.isDirectory()) continue;
+				String name = safeEntryName(entry.getName());
+				if (name == null) continue;
+				try (InputStream in = zip.getInputStream(entry)) {
+					handler.entry(name, entry.getSize(), entry.getLastModifiedTime(), in);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Minimal reader for POSIX ustar and GNU tar streams, supporting long
+	 * names via GNU 'L' and pax 'x' headers.
+	 */
+	private static void readTar(InputStream in, EntryHandler handler) throws IOException {
+		final byte[] header = new byte[TAR_BLOCK];
+		String longName = null;
+
+		while (in.readNBytes(header, 0, TAR_BLOCK) == TAR_BLOCK) {
+			if (header[0] == 0) break; // end of archive
+
+			String name = tarString(header, 0, 100);
+			String prefix = tarString(header, 345, 155);
+			if (!prefix.isEmpty()) name = prefix + "/" + name;
+			long size = tarNumber(header, 124, 12);
+			FileTime modified = FileTime.from(tarNumber(header, 136, 12), TimeUnit.SECONDS);
+			char type = (char)header[156];
+			long padding = (TAR_BLOCK - (size % TAR_BLOCK)) % TAR_BLOCK;
+
+			if (type == 'L' || type == 'x') {
+				byte[] data = in.readNBytes((int)size);
+				skipFully(in, padding);
+				if (type == 'L') {
+					longName = new String(data, StandardCharsets.UTF_8).replace("\0", "").trim();
+				} else {
+					longName = paxPath(new String(data, StandardCharsets.UTF_8));
+				}
+				continue;
+			}
+
+			if (longName != null) {
+				name = longName;
+				longName = null;
+			}
+
+			String safeName = safeEntryName(name);
+			if ((type == '0' || type == 0 || type == '7') && safeName != null) {
+				InputStream entry = new BoundedInputStream(in, size);
+				handler.entry(safeName, size, modified, entry);
+				skipFully(entry, Long.MAX_VALUE); // consume anything the handler did not read
+			} else {
+				skipFully(in, size);
+			}
+			skipFully(in, padding);
+		}
+	}
+
+	private static String paxPath(String records) {
+		for (String record : records.split("\n")) {
+			int space = record.indexOf(' ');
+			if (space > 0 && record.startsWith("path=", space + 1)) return record.substring(space + 6);
+		}
+		return null;
+	}
+
+	private static String tarString(byte[] header, int offset, int length) {
+		int end = offset;
+		while (end < offset + length && header[end] != 0) end++;
+		return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+	}
+
+	private static long tarNumber(byte[] header, int offset, int length) throws BadArchiveException {
+		if ((header[offset] & 0x80) != 0) {
+			// GNU base-256 encoding for large sizes
+			long value = header[offset] & 0x7f;
+			for (int i = offset + 1; i < offset + length; i++) value = (value << 8) | (header[i] & 0xff);
+			return value;
+		}
+
+		String octal = tarString(header, offset, length).trim();
+		if (octal.isEmpty()) return 0;
+		try {
+			return Long.parseLong(octal, 8);
+		} catch (NumberFormatException e) {
+			throw new BadArchiveException("Invalid tar header number " + octal);
+		}
+	}
+
+	private static void skipFully(InputStream in, long count) throws IOException {
+		long remaining = count;
+		while (remaining > 0) {
+			long skipped = in.skip(remaining);
+			if (skipped <= 0) {
+				if (in.read() < 0) {
+					if (count == Long.MAX_VALUE) return;
+					throw new BadArchiveException("Unexpected end of archive");
+				}
+				skipped = 1;
+			}
+			remaining -= skipped;
+		}
+	}
+
+	/**
+	 * Normalise an archive entry name to a safe relative path.
+	 *
+	 * @param name entry name as stored in the archive
+	 * @return normalised name, or null if the entry would escape the archive root
+	 */
+	static String safeEntryName(String name) {
+		String normalised = name.replaceAll("\\\\", "/").replaceAll("^/+", "").replaceAll("^[A-Za-z]:/", "");
+		if (normalised.isBlank()) return null;
+
+		Path path = Paths.get(normalised).normalize();
+		if (path.startsWith("..") || path.isAbsolute() || path.toString().isEmpty()) return null;
+
+		return path.toString().replaceAll("\\\\", "/");
+	}
+
 	public static void cleanPath(Path path) throws IOException {
 		if (!Files.exists(path)) return;
 
@@ -218,7 +456,9 @@ public class ArchiveUtil {
 		boolean b = process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS);
 		if (!b) {
 			process.destroyForcibly().waitFor(KILL_WAIT.toMillis(), TimeUnit.MILLISECONDS);
-			throw new IllegalStateException(String.format("Timed out unpacking file %s", source));
+			// cleanup
+			cleanPath(destination);
+			throw new ExtractTimeoutException(String.format("Timed out unpacking file %s", source));
 		}
 
 		if (!expectedResults.contains(process.exitValue())) {
@@ -258,6 +498,79 @@ public class ArchiveUtil {
 		return destination;
 	}
 
+	/**
+	 * Receives file entries read from an archive.
+	 */
+	@FunctionalInterface
+	public interface EntryHandler {
+
+		/**
+		 * Handle a single archive entry.
+		 * <p>
+		 * The provided stream is only valid for the duration of this call,
+		 * and should not be closed by the handler.
+		 *
+		 * @param name     relative path of the entry within the archive
+		 * @param size     uncompressed size, or -1 if unknown
+		 * @param modified last modified time of the entry, may be null
+		 * @param data     entry content
+		 * @throws IOException failed to process the entry
+		 */
+		public void entry(String name, long size, FileTime modified, InputStream data) throws IOException;
+	}
+
+	/**
+	 * Limits reads from an underlying stream to a fixed number of bytes,
+	 * without closing the underlying stream.
+	 */
+	private static class BoundedInputStream extends FilterInputStream {
+
+		private long remaining;
+
+		private BoundedInputStream(InputStream in, long size) {
+			super(in);
+			this.remaining = size;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0) return -1;
+			int b = super.read();
+			if (b >= 0) remaining--;
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining <= 0) return -1;
+			int read = super.read(b, off, (int)Math.min(len, remaining));
+			if (read > 0) remaining -= read;
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(Math.min(n, remaining));
+			if (skipped > 0) remaining -= skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int)Math.min(super.available(), remaining);
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		@Override
+		public void close() {
+			// does not close the underlying archive stream
+		}
+	}
+
 	public static class BadArchiveException extends IOException {
 
 		public BadArchiveException(String message) {
@@ -265,6 +578,16 @@ public class ArchiveUtil {
 		}
 	}
 
+	/**
+	 * An archive could not be unpacked within the time allowed.
+	 */
+	public static class ExtractTimeoutException extends IOException {
+
+		public ExtractTimeoutException(String message) {
+			super(message);
+		}
+	}
+
 	public static class UnsupportedArchiveException extends UnsupportedOperationException {
 
 		public UnsupportedArchiveException(String message) {
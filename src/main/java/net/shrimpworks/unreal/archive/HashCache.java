@@ -0,0 +1,174 @@
+package net.shrimpworks.unreal.archive;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent cache of file SHA-1 hashes.
+ * <p>
+ * Hashes are keyed on a file's absolute path, and are only considered
+ * valid while the file's size, modification time and file key (the
+ * device and inode on most platforms) remain unchanged.
+ * <p>
+ * The cache is stored as a single binary file, which is read in full on
+ * load and written out again by {@link #save()} if anything has changed.
+ * Entries for files which no longer exist are dropped when saving.
+ * <p>
+ * Only long-lived files should be hashed via the cache; temporary files
+ * should be hashed directly with {@link Util#hashFile(Path)}.
+ */
+public class HashCache {
+
+	/**
+	 * A cache which never stores anything, and always hashes files.
+	 */
+	public static final HashCache NONE = new HashCache(null, new ConcurrentHashMap<>()) {
+		@Override
+		public String hash(Path path) throws IOException {
+			return Util.hashFile(path);
+		}
+
+		@Override
+		public boolean save() {
+			return false;
+		}
+	};
+
+	private static final int MAGIC = 0x55414843; // "UAHC"
+	private static final int VERSION = 1;
+
+	private final Path cacheFile;
+	private final Map<String, Entry> entries;
+
+	private volatile boolean changed;
+
+	private HashCache(Path cacheFile, Map<String, Entry> entries) {
+		this.cacheFile = cacheFile;
+		this.entries = entries;
+		this.changed = false;
+	}
+
+	/**
+	 * Load a hash cache from the given file.
+	 * <p>
+	 * If the file does not exist or cannot be read, an empty cache is
+	 * returned, and will be written to the file when saved.
+	 *
+	 * @param cacheFile cache file location
+	 * @return a hash cache
+	 */
+	public static HashCache load(Path cacheFile) {
+		return new HashCache(cacheFile, readEntries(cacheFile));
+	}
+
+	/**
+	 * Get the SHA-1 hash of a file, either from the cache if the file has
+	 * not changed since it was last hashed, or by hashing the file.
+	 *
+	 * @param path file to hash
+	 * @return SHA-1 hash of the file
+	 * @throws IOException failed to read the file
+	 */
+	public String hash(Path path) throws IOException {
+		BasicFileAttributes attr = Files.readAttributes(path, BasicFileAttributes.class);
+		String key = path.toAbsolutePath().normalize().toString();
+		long size = attr.size();
+		long modified = attr.lastModifiedTime().toMillis();
+		String fileKey = attr.fileKey() == null ? "" : attr.fileKey().toString();
+
+		Entry entry = entries.get(key);
+		if (entry != null && entry.matches(size, modified, fileKey)) return entry.hash;
+
+		String hash = Util.hashFile(path);
+		entries.put(key, new Entry(size, modified, fileKey, hash));
+		changed = true;
+
+		return hash;
+	}
+
+	/**
+	 * Write the cache out to disk, if anything has changed since it was
+	 * loaded. Entries for files which no longer exist are not written.
+	 *
+	 * @return true if the cache was written
+	 * @throws IOException failed to write the cache
+	 */
+	public boolean save() throws IOException {
+		if (!changed) return false;
+
+		entries.keySet().removeIf(key -> !Files.exists(Paths.get(key)));
+
+		if (cacheFile.toAbsolutePath().getParent() != null) Files.createDirectories(cacheFile.toAbsolutePath().getParent());
+
+		Path tmp = Files.createTempFile(cacheFile.toAbsolutePath().getParent(), cacheFile.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(entries.size());
+				for (Map.Entry<String, Entry> e : entries.entrySet()) {
+					out.writeUTF(e.getKey());
+					out.writeLong(e.getValue().size);
+					out.writeLong(e.getValue().modified);
+					out.writeUTF(e.getValue().fileKey);
+					out.writeUTF(e.getValue().hash);
+				}
+			}
+			Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			changed = false;
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+
+		return true;
+	}
+
+	private static Map<String, Entry> readEntries(Path cacheFile) {
+		if (!Files.isRegularFile(cacheFile)) return new ConcurrentHashMap<>();
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) return new ConcurrentHashMap<>();
+
+			int count = in.readInt();
+			Map<String, Entry> entries = new ConcurrentHashMap<>(Math.max(16, count * 2));
+			for (int i = 0; i < count; i++) {
+				String key = in.readUTF();
+				entries.put(key, new Entry(in.readLong(), in.readLong(), in.readUTF(), in.readUTF()));
+			}
+			return entries;
+		} catch (IOException e) {
+			// cache is unreadable or truncated, it will be rebuilt
+			return new ConcurrentHashMap<>();
+		}
+	}
+
+	private static class Entry {
+
+		private final long size;
+		private final long modified;
+		private final String fileKey;
+		private final String hash;
+
+		private Entry(long size, long modified, String fileKey, String hash) {
+			this.size = size;
+			this.modified = modified;
+			this.fileKey = fileKey;
+			this.hash = hash;
+		}
+
+		private boolean matches(long size, long modified, String fileKey) {
+			return this.size == size && this.modified == modified && Objects.equals(this.fileKey, fileKey);
+		}
+	}
+}
@@ -3,6 +3,7 @@ package net.shrimpworks.unreal.archive;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
@@ -26,13 +27,17 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import net.shrimpworks.unreal.archive.content.Content;
 import net.shrimpworks.unreal.archive.content.ContentEditor;
 import net.shrimpworks.unreal.archive.content.ContentManager;
+import net.shrimpworks.unreal.archive.content.ContentSnapshot;
 import net.shrimpworks.unreal.archive.content.ContentType;
+import net.shrimpworks.unreal.archive.content.DownloadChecker;
+import net.shrimpworks.unreal.archive.content.DownloadHealth;
 import net.shrimpworks.unreal.archive.content.GameTypeManager;
 import net.shrimpworks.unreal.archive.content.Games;
 import net.shrimpworks.unreal.archive.content.Incoming;
@@ -40,12 +45,22 @@ import net.shrimpworks.unreal.archive.content.IndexLog;
 import net.shrimpworks.unreal.archive.content.Indexer;
 import net.shrimpworks.unreal.archive.content.Scanner;
 import net.shrimpworks.unreal.archive.content.Submission;
+import net.shrimpworks.unreal.archive.content.gametypes.GameType;
+import net.shrimpworks.unreal.archive.docs.Document;
 import net.shrimpworks.unreal.archive.docs.DocumentManager;
 import net.shrimpworks.unreal.archive.managed.Managed;
 import net.shrimpworks.unreal.archive.managed.ManagedContentManager;
 import net.shrimpworks.unreal.archive.mirror.LocalMirrorClient;
 import net.shrimpworks.unreal.archive.mirror.Mirror;
+import net.shrimpworks.unreal.archive.mirror.MirrorJournal;
+import net.shrimpworks.unreal.archive.mirror.Progress;
+import net.shrimpworks.unreal.archive.mirror.RangedDownload;
+import net.shrimpworks.unreal.archive.mirror.Throttle;
+import net.shrimpworks.unreal.archive.storage.ContentAddressedStore;
 import net.shrimpworks.unreal.archive.storage.DataStore;
+import net.shrimpworks.unreal.archive.storage.HttpTransport;
+import net.shrimpworks.unreal.archive.storage.IOExecutor;
+import net.shrimpworks.unreal.archive.www.BuildManifest;
 import net.shrimpworks.unreal.archive.www.Documents;
 import net.shrimpworks.unreal.archive.www.Index;
 import net.shrimpworks.unreal.archive.www.MESSubmitter;
@@ -77,7 +92,23 @@ public class Main {
 	private static final String MANAGED_DIR = "managed";
 	private static final String AUTHORS_DIR = "authors";
 
+	// metadata document types held within each directory of the content path
+	private static final Map<String, Class<?>> METADATA_TREES = Map.of(
+		CONTENT_DIR, Content.class,
+		DOCUMENTS_DIR, Document.class,
+		MANAGED_DIR, Managed.class,
+		GAMETYPES_DIR, GameType.class
+	);
+
+	private static final String HASH_CACHE = ".unreal-archive.hashes";
+	private static final String DOWNLOAD_HEALTH = "download-health.tsv";
+	private static final String MIRROR_JOURNALS = ".unreal-archive-mirror";
+	private static final String BLOB_INDEXES = ".unreal-archive-blobs";
+
 	private static final Path TMP = Paths.get(System.getProperty("java.io.tmpdir"));
+
+	// shared by all managers, since a packed metadata file may only be opened once
+	private static MetadataStore metadataStore;
 	private static final String CONTENT_URL = System.getenv().getOrDefault("UA_CONTENT_URL",
 																		   "https://github.com/unreal-archive/unreal-archive-data/archive/master.zip");
 
@@ -89,6 +120,11 @@ public class Main {
 			System.exit(1);
 		}
 
+		final HashCache hashCache = hashCache(cli);
+		Util.hashCache(hashCache);
+		HttpTransport.configure(HttpTransport.Options.fromCli(cli));
+		IOExecutor.threads(Integer.parseInt(cli.option("io-threads", Integer.toString(IOExecutor.DEFAULT_THREADS))));
+
 		switch (cli.commands()[0].toLowerCase()) {
 			case "index":
 				index(contentManager(cli), cli);
@@ -123,6 +159,15 @@ public class Main {
 			case "summary":
 				summary(contentManager(cli));
 				break;
+			case "db-import":
+				dbImport(cli);
+				break;
+			case "db-export":
+				dbExport(cli);
+				break;
+			case "check-downloads":
+				checkDownloads(contentManager(cli), cli);
+				break;
 			case "ls":
 				list(contentManager(cli), cli);
 				break;
@@ -139,9 +184,19 @@ public class Main {
 				usage();
 		}
 
+		hashCache.save();
+
 		System.exit(0);
 	}
 
+	private static HashCache hashCache(CLI cli) {
+		final String cacheFile = cli.option("hash-cache", Paths.get(System.getProperty("user.home"))
+																.resolve(HASH_CACHE).toString());
+		if (cacheFile.isBlank() || cacheFile.equalsIgnoreCase("none")) return HashCache.NONE;
+
+		return HashCache.load(Paths.get(cacheFile));
+	}
+
 	private static String userPrompt(String prompt, String defaultValue) {
 		System.out.println(prompt);
 		System.out.print("> ");
@@ -221,8 +276,12 @@ public class Main {
 		}));
 
 		final long start = System.currentTimeMillis();
-		final ContentManager contentManager = new ContentManager(contentPath.resolve(CONTENT_DIR), contentStore, imageStore,
-																 attachmentStore);
+		final Path contentDir = contentPath.resolve(CONTENT_DIR);
+		final Path snapshot = Boolean.parseBoolean(cli.option("snapshot", "true")) ? ContentSnapshot.defaultPath(contentDir) : null;
+		final ContentManager contentManager = new ContentManager(metadataStore(contentPath, cli), contentDir, snapshot,
+																 ContentManager.Options.fromCli(cli),
+																 contentStore, imageStore, attachmentStore);
+		DownloadHealth.use(downloadHealth(contentPath, cli));
 		final double gigs = (contentManager.fileSize() / 1024d / 1024d / 1024d);
 		System.err.printf("Loaded content index with %d items (%.2fGB) in %.2fs%n",
 						  contentManager.size(), gigs, (System.currentTimeMillis() - start) / 1000f);
@@ -230,11 +289,39 @@ public class Main {
 		return contentManager;
 	}
 
+	private static synchronized MetadataStore metadataStore(Path contentPath, CLI cli) throws IOException {
+		if (metadataStore != null) return metadataStore;
+
+		final String packFile = cli.option("content-db", "");
+		if (packFile.isBlank() || packFile.equalsIgnoreCase("none")) {
+			metadataStore = MetadataStore.YAML_FILES;
+		} else {
+			final MetadataStore packed = new PackedMetadataStore(contentPath, Paths.get(packFile));
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					packed.close();
+				} catch (IOException e) {
+					System.err.printf("Failed to close content database %s: %s%n", packFile, e);
+				}
+			}));
+			metadataStore = packed;
+		}
+
+		return metadataStore;
+	}
+
+	private static DownloadHealth downloadHealth(Path contentPath, CLI cli) throws IOException {
+		final String healthFile = cli.option("download-health", contentPath.resolve(DOWNLOAD_HEALTH).toString());
+		if (healthFile.isBlank() || healthFile.equalsIgnoreCase("none")) return DownloadHealth.NONE;
+
+		return DownloadHealth.load(Paths.get(healthFile));
+	}
+
 	private static DocumentManager documentManager(CLI cli) throws IOException {
 		Path contentPath = contentPath(cli);
 
 		final long start = System.currentTimeMillis();
-		final DocumentManager documentManager = new DocumentManager(contentPath.resolve(DOCUMENTS_DIR));
+		final DocumentManager documentManager = new DocumentManager(metadataStore(contentPath, cli), contentPath.resolve(DOCUMENTS_DIR));
 		System.err.printf("Loaded document index with %d items in %.2fs%n",
 						  documentManager.size(), (System.currentTimeMillis() - start) / 1000f);
 
@@ -245,7 +332,8 @@ public class Main {
 		Path contentPath = contentPath(cli);
 
 		final long start = System.currentTimeMillis();
-		ManagedContentManager managedContentManager = new ManagedContentManager(contentPath.resolve(MANAGED_DIR));
+		ManagedContentManager managedContentManager = new ManagedContentManager(metadataStore(contentPath, cli),
+																				contentPath.resolve(MANAGED_DIR));
 		System.err.printf("Loaded managed content index with %d items in %.2fs%n",
 						  managedContentManager.size(), (System.currentTimeMillis() - start) / 1000f);
 
@@ -256,7 +344,7 @@ public class Main {
 		Path contentPath = contentPath(cli);
 
 		final long start = System.currentTimeMillis();
-		final GameTypeManager gametypes = new GameTypeManager(contentPath.resolve(GAMETYPES_DIR));
+		final GameTypeManager gametypes = new GameTypeManager(metadataStore(contentPath, cli), contentPath.resolve(GAMETYPES_DIR));
 		System.err.printf("Loaded gametypes index with %d items in %.2fs%n",
 						  gametypes.size(), (System.currentTimeMillis() - start) / 1000f);
 
@@ -287,7 +375,20 @@ public class Main {
 
 		DataStore.StoreType storeType = DataStore.StoreType.valueOf(stringType.toUpperCase());
 
-		return storeType.newStore(contentType, cli);
+		final DataStore store = storeType.newStore(contentType, cli);
+		if (contentType != DataStore.StoreContent.CONTENT && storeType != DataStore.StoreType.NOP
+			&& Boolean.parseBoolean(cli.option("content-addressed", "false"))) {
+			final Path indexDir = Paths.get(cli.option("content-addressed-index", Paths.get(System.getProperty("user.home"))
+																					   .resolve(BLOB_INDEXES).toString()));
+			try {
+				return new ContentAddressedStore(store, ContentAddressedStore.DEFAULT_PREFIX,
+												 indexDir.resolve(ContentAddressedStore.fileName(contentType, store)));
+			} catch (IOException e) {
+				throw new UncheckedIOException("Failed to open content-addressed store index", e);
+			}
+		}
+
+		return store;
 	}
 
 	private static void index(ContentManager contentManager, CLI cli) throws IOException {
@@ -300,9 +401,12 @@ public class Main {
 		boolean force = Boolean.parseBoolean(cli.option("force", "false"));
 		boolean newOnly = Boolean.parseBoolean(cli.option("new-only", "false"));
 		int concurrency = Integer.parseInt(cli.option("concurrency", "1"));
+		int extractConcurrency = Integer.parseInt(cli.option("extract-concurrency", Integer.toString(concurrency)));
+		int uploadConcurrency = Integer.parseInt(cli.option("upload-concurrency", Integer.toString(concurrency)));
 		ContentType forceType = (!cli.option("type", "").isEmpty()) ? ContentType.valueOf(cli.option("type", "").toUpperCase()) : null;
 
-		Indexer indexer = new Indexer(contentManager, new Indexer.CLIEventPrinter(verbose));
+		Indexer indexer = new Indexer(contentManager, new Indexer.CLIEventPrinter(verbose), new Indexer.IndexerPostProcessor() {},
+									  Incoming.MemoryOptions.fromCli(cli));
 
 		Path[] paths;
 
@@ -325,7 +429,7 @@ public class Main {
 			paths = cliPaths(cli, 1, contentManager).toArray(Path[]::new);
 		}
 
-		indexer.index(force, newOnly, concurrency, forceType, paths);
+		indexer.index(force, newOnly, extractConcurrency, concurrency, uploadConcurrency, forceType, paths);
 	}
 
 	private static void scan(ContentManager contentManager, CLI cli) throws IOException {
@@ -474,7 +578,8 @@ public class Main {
 		}
 	}
 
-	private static void mirror(ContentManager contentManager, ManagedContentManager managed, GameTypeManager gameTypeManager, CLI cli) {
+	private static void mirror(ContentManager contentManager, ManagedContentManager managed, GameTypeManager gameTypeManager, CLI cli)
+		throws IOException {
 		final DataStore mirrorStore = store(DataStore.StoreContent.CONTENT, cli);
 
 		// default to mirror last 7 days of changes
@@ -487,23 +592,34 @@ public class Main {
 			System.exit(-1);
 		}
 
+		final String journalFile = cli.option("journal", Paths.get(System.getProperty("user.home"))
+															  .resolve(MIRROR_JOURNALS)
+															  .resolve(MirrorJournal.fileName(mirrorStore.toString())).toString());
+		final MirrorJournal journal = journalFile.isBlank() || journalFile.equalsIgnoreCase("none")
+			? MirrorJournal.NONE
+			: MirrorJournal.open(Paths.get(journalFile));
+
 		System.out.printf("Mirroring files added since %s to %s with concurrency of %s%n",
 						  since, mirrorStore, cli.option("concurrency", "3"));
-
-		Mirror mirror = new Mirror(
-			contentManager, gameTypeManager, managed,
-			mirrorStore,
-			Integer.parseInt(cli.option("concurrency", "3")),
-			since,
-			((total, remaining, last) -> System.out.printf("\r[ %-6s / %-6s ] Processed %-40s",
-														   total - remaining, total, last.name()))
-		);
-		mirror.mirror();
-
-		System.out.printf("%nMirror completed%n");
-
-		// cleanup executor
-		mirror.cancel();
+		if (journal != MirrorJournal.NONE) System.out.printf("Recording progress in %s%n", journalFile);
+
+		try (journal) {
+			Mirror mirror = new Mirror(
+				contentManager, gameTypeManager, managed,
+				mirrorStore,
+				journal,
+				Throttle.fromCli(cli),
+				Integer.parseInt(cli.option("concurrency", "3")),
+				since,
+				new MirrorProgress()
+			);
+			mirror.mirror();
+
+			System.out.printf("%nMirror completed%n");
+
+			// cleanup executor
+			mirror.cancel();
+		}
 	}
 
 	private static void localMirror(ContentManager contentManager, CLI cli) throws IOException {
@@ -520,9 +636,10 @@ public class Main {
 		LocalMirrorClient mirror = new LocalMirrorClient(
 			contentManager,
 			output,
+			Throttle.fromCli(cli),
+			RangedDownload.Options.fromCli(cli),
 			Integer.parseInt(cli.option("concurrency", "3")),
-			((total, remaining, last) -> System.out.printf("\r[ %-6s / %-6s ] Processed %-40s",
-														   total - remaining, total, last.name()))
+			new MirrorProgress()
 		);
 		mirror.mirror();
 
@@ -532,6 +649,32 @@ public class Main {
 		mirror.cancel();
 	}
 
+	/**
+	 * Console progress output for mirror operations, showing items
+	 * processed and the current transfer rate.
+	 */
+	private static class MirrorProgress implements Progress {
+
+		private volatile String processed = "";
+		private volatile String rate = "";
+
+		@Override
+		public void progress(long total, long remaining, ContentEntity<?> last) {
+			processed = String.format("[ %-6s / %-6s ] Processed %-40s", total - remaining, total, last.name());
+			print();
+		}
+
+		@Override
+		public void throughput(long bytesPerSecond, long transferred, long requests) {
+			rate = String.format(" %8.2f MB/s", bytesPerSecond / 1024d / 1024d);
+			print();
+		}
+
+		private synchronized void print() {
+			System.out.printf("\r%s%s", processed, rate);
+		}
+	}
+
 	private static void www(ContentManager contentManager, DocumentManager documentManager, ManagedContentManager managed,
 							GameTypeManager gameTypeManager, CLI cli)
 		throws IOException {
@@ -558,6 +701,8 @@ public class Main {
 
 		final SiteFeatures features = new SiteFeatures(localImages, withLatest, withSubmit, withSearch);
 
+		final boolean incremental = Boolean.parseBoolean(cli.option("incremental", "false"));
+
 		final Path staticOutput = outputPath.resolve("static");
 
 		final long start = System.currentTimeMillis();
@@ -571,6 +716,11 @@ public class Main {
 		contentManager.all().parallelStream().forEach(c -> names.maybeAutoAlias(c.author));
 		AuthorNames.instance = Optional.of(names);
 
+		final BuildManifest manifest = incremental
+			? BuildManifest.load(BuildManifest.defaultPath(outputPath), outputPath, BuildManifest.pathVersion(authorPath))
+			: null;
+		Templates.buildManifest(manifest);
+
 		final Set<SiteMap.Page> allPages = ConcurrentHashMap.newKeySet();
 
 		final Set<PageGenerator> generators = new HashSet<>();
@@ -612,7 +762,7 @@ public class Main {
 		}
 
 		if (features.submit) generators.add(new Submit(outputPath, staticOutput, features));
-		if (features.search) generators.add(new Search(outputPath, staticOutput, features));
+		if (features.search) generators.add(new Search(contentManager, outputPath, staticOutput, features));
 		if (features.latest) generators.add(new Latest(contentManager, gameTypeManager, managed, outputPath, staticOutput, features));
 
 		generators.parallelStream().forEach(g -> {
@@ -623,6 +773,11 @@ public class Main {
 		System.out.println("Generating sitemap");
 		allPages.addAll(SiteMap.siteMap(SiteMap.SITE_ROOT, outputPath, allPages, 50000, features).generate());
 
+		if (manifest != null) {
+			manifest.save();
+			System.out.printf("Skipped %d unchanged pages%n", manifest.skipped());
+		}
+
 		System.out.printf("Output %d pages in %.2fs%n", allPages.size(), (System.currentTimeMillis() - start) / 1000f);
 	}
 
@@ -647,6 +802,89 @@ public class Main {
 					done -> System.out.printf("%nSearch submission complete in %.2fs%n", (System.currentTimeMillis() - start) / 1000f));
 	}
 
+	private static void dbImport(CLI cli) throws IOException {
+		if (cli.commands().length < 2) {
+			System.err.println("A content database file should be provided!");
+			System.exit(2);
+		}
+
+		final Path contentPath = contentPath(cli);
+		final Path packFile = Paths.get(cli.commands()[1]).toAbsolutePath();
+		final Path indexFile = packFile.resolveSibling(packFile.getFileName().toString() + ".idx");
+
+		// build a new file alongside the existing one, and replace it once complete
+		final Path tmp = packFile.resolveSibling(packFile.getFileName().toString() + ".tmp");
+		final Path tmpIndex = tmp.resolveSibling(tmp.getFileName().toString() + ".idx");
+		Files.deleteIfExists(tmp);
+		Files.deleteIfExists(tmpIndex);
+
+		final long start = System.currentTimeMillis();
+		int count = 0;
+		try (PackedMetadataStore packed = new PackedMetadataStore(contentPath, tmp)) {
+			for (Map.Entry<String, Class<?>> tree : METADATA_TREES.entrySet()) {
+				count += MetadataStore.copy(MetadataStore.YAML_FILES, packed, contentPath.resolve(tree.getKey()), tree.getValue());
+			}
+		} catch (IOException e) {
+			Files.deleteIfExists(tmp);
+			Files.deleteIfExists(tmpIndex);
+			throw e;
+		}
+
+		Files.move(tmp, packFile, StandardCopyOption.REPLACE_EXISTING);
+		Files.move(tmpIndex, indexFile, StandardCopyOption.REPLACE_EXISTING);
+
+		System.out.printf("Imported %d documents from %s into %s in %.2fs%n",
+						  count, contentPath, packFile, (System.currentTimeMillis() - start) / 1000f);
+	}
+
+	private static void dbExport(CLI cli) throws IOException {
+		if (cli.commands().length < 2) {
+			System.err.println("A content database file should be provided!");
+			System.exit(2);
+		}
+
+		final Path contentPath = contentPath(cli);
+		final Path packFile = Paths.get(cli.commands()[1]);
+		if (!Files.isRegularFile(packFile)) {
+			System.err.printf("Content database %s does not exist!%n", packFile);
+			System.exit(3);
+		}
+
+		final long start = System.currentTimeMillis();
+		int count = 0;
+		try (PackedMetadataStore packed = new PackedMetadataStore(contentPath, packFile)) {
+			for (Map.Entry<String, Class<?>> tree : METADATA_TREES.entrySet()) {
+				count += MetadataStore.copy(packed, MetadataStore.YAML_FILES, contentPath.resolve(tree.getKey()), tree.getValue());
+			}
+		}
+
+		System.out.printf("Exported %d documents from %s to %s in %.2fs%n",
+						  count, packFile, contentPath, (System.currentTimeMillis() - start) / 1000f);
+	}
+
+	private static void checkDownloads(ContentManager contentManager, CLI cli) throws IOException {
+		final DownloadHealth health = DownloadHealth.current();
+		if (health == DownloadHealth.NONE) {
+			System.err.println("A download health file is required to record results");
+			System.exit(2);
+		}
+
+		final DownloadChecker.Options options = DownloadChecker.Options.fromCli(cli);
+		System.out.printf("Checking downloads with concurrency of %d, and %d per host%n",
+						  options.concurrency, options.hostConcurrency);
+
+		final AtomicInteger failed = new AtomicInteger();
+		final int changed = new DownloadChecker(contentManager, health, options).check((checked, total, url, result) -> {
+			if (!result.ok()) {
+				failed.incrementAndGet();
+				System.out.printf("\r%-120s%n", String.format("%s %s", result.status == 0 ? "FAIL" : result.status, url));
+			}
+			System.out.printf("\r[ %-6s / %-6s ] Checked %d downloads, %d failed", checked, total, checked, failed.get());
+		});
+
+		System.out.printf("%nDownload check completed, %d failed, %d content items updated%n", failed.get(), changed);
+	}
+
 	private static void summary(ContentManager contentManager) {
 		Map<Class<? extends Content>, Long> byType = contentManager.countByType();
 		if (byType.size() > 0) {
@@ -906,6 +1144,10 @@ public class Main {
 		System.out.println("  index <file ...> --content-path=<path> [--force=<true|false>]");
 		System.out.println("    Index the contents of files or paths, writing the results to <content-path>.");
 		System.out.println("    Optionally force re-indexing of existing content, rather than skipping it.");
+		System.out.println("    Extraction, parsing and upload stages run with --extract-concurrency, --concurrency and");
+		System.out.println("    --upload-concurrency threads respectively, all defaulting to --concurrency.");
+		System.out.println("    Files up to --memory-file-size=<bytes> may be unpacked in memory rather than to disk.");
+		System.out.println("    File hashes are cached in --hash-cache=<file>, or ~/.unreal-archive.hashes by default.");
 		System.out.println("  sync <kind> --content-path=<path>");
 		System.out.println("    Sync managed files' local files to remote storage.");
 		System.out.println("  scan <file ...> --content-path=<path>");
@@ -916,11 +1158,32 @@ public class Main {
 		System.out.println("    Set <attribute> to value <new-value> within the metadata of the <hash> provided.");
 		System.out.println("  gametype <...>");
 		System.out.println("    Utilities for managing gametype content. Run `gametype` with no arguments for help.");
+		System.out.println("  mirror --content-path=<path> [--since=<yyyy-mm-dd>] [--concurrency=<count>]");
+		System.out.println("    Copy content added since <since> to the content store. Progress is journaled to");
+		System.out.println("    --journal=<file>, so a restarted mirror skips completed items and retries failures.");
 		System.out.println("  local-mirror <output-path> --content-path=<path> [--concurrency=<count>]");
 		System.out.println("    Create a local mirror of the content in <content-path> in local directory <output-path>.");
+		System.out.println("    Files larger than --segment-threshold=<bytes> (32MB) are downloaded in up to --segments=<count>");
+		System.out.println("    parallel ranges (4). Partial downloads are resumed, and completed files are verified by hash.");
+		System.out.println("    Both mirror commands accept --max-bandwidth=<bytes/sec> and --max-requests=<count/sec>");
+		System.out.println("    limits for all transfers, and --dest-max-bandwidth and --dest-max-requests limits for each");
+		System.out.println("    host or store. Limits in --throttle-file=<properties> are re-read while running.");
 		System.out.println("    Optionally specify the number of concurrent downloads via <count>, defaults to 3.");
 		System.out.println("  www <output-path> [docs|content] --content-path=<path>");
 		System.out.println("    Generate the HTML website for browsing content.");
+		System.out.println("    With --incremental=true, pages whose inputs have not changed since the last build are skipped.");
+		System.out.println("  check-downloads --content-path=<path> [--concurrency=<count>] [--host-concurrency=<count>]");
+		System.out.println("    Check all content download links, recording status and latency in --download-health=<file>");
+		System.out.println("    (default <content-path>/download-health.tsv), which is used to rank download mirrors.");
+		System.out.println("    Missing downloads are marked as such. --check-timeout=<seconds> limits each check, and");
+		System.out.println("    --sample-bytes=<bytes> measures transfer rate with a ranged download rather than HEAD.");
+		System.out.println("  db-import <db-file> --content-path=<path>");
+		System.out.println("    Build a packed content database in <db-file> from the YAML metadata within <content-path>.");
+		System.out.println("    Once built, passing --content-db=<db-file> to other commands reads and writes metadata from");
+		System.out.println("    the database rather than individual YAML files, which is much faster to load.");
+		System.out.println("  db-export <db-file> --content-path=<path>");
+		System.out.println("    Write all metadata held in the packed content database <db-file> out as YAML files within");
+		System.out.println("    <content-path>, for review or committing to version control.");
 		System.out.println("  summary --content-path=<path>");
 		System.out.println("    Show stats and counters for the content index in <content-path>");
 		System.out.println("  ls [--game=<game>] [--type=<type>] [--author=<author>] --content-path=<path>");
@@ -934,5 +1197,28 @@ public class Main {
 		System.out.println("    provided. Files will be placed into appropriate sub-directories by file type,");
 		System.out.println("    eg. Maps, System, Textures, etc. If <hash> is provided, content will be downloaded");
 		System.out.println("    first and then installed. Supports unpacking of UMOD files");
+		System.out.println();
+		System.out.println("HTTP options, for commands which download or upload files:");
+		System.out.println("  --http-connect-timeout=<seconds> --http-timeout=<seconds> --http-idle-timeout=<seconds>");
+		System.out.println("    Connection and request timeouts, defaulting to 30 and 300 seconds. Uploads and downloads");
+		System.out.println("    have no overall timeout, but fail if no data is transferred for the idle timeout (60 seconds).");
+		System.out.println("  --http-host-concurrency=<count> --http-idle-connections=<count>");
+		System.out.println("    Concurrent requests per host, and pooled connections kept open, defaulting to 8 and 32.");
+		System.out.println();
+		System.out.println("Storage options, for commands which upload files (index, sync, gametype and mirror):");
+		System.out.println("  --io-threads=<count>");
+		System.out.println("    Maximum concurrent background storage operations, such as attachment uploads, defaulting to 16.");
+		System.out.println("  --multipart-threshold=<bytes> --multipart-part-size=<bytes> --multipart-concurrency=<count>");
+		System.out.println("    S3 and B2 uploads larger than the threshold (64MB) are sent as parallel parts of part-size (16MB).");
+		System.out.println();
+		System.out.println("Attachment options, for commands which upload images and attachments (index and gametype):");
+		System.out.println("  --content-addressed=true [--content-addressed-index=<path>]");
+		System.out.println("    Store images and attachments once, named by the SHA-1 hash of their content. A local index");
+		System.out.println("    of stored files in <path> allows identical files to be skipped without any transfer.");
+		System.out.println();
+		System.out.println("Content index options, for commands which load the content index from --content-path:");
+		System.out.println("  --lazy-content=true [--content-cache=<bytes>]");
+		System.out.println("    Load only a summary of each content item at startup, reading full content as it's needed,");
+		System.out.println("    and caching up to <bytes> (32MB) of it. Reduces memory use for commands such as show and ls.");
 	}
 }
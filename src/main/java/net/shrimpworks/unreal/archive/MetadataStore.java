@@ -0,0 +1,132 @@
+package net.shrimpworks.unreal.archive;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Storage of the metadata documents managed by the various content
+ * managers, such as content, documents and game type definitions.
+ * <p>
+ * Documents are addressed by the path of the YAML file they would be
+ * stored in within a content tree, regardless of how they're actually
+ * stored.
+ * <p>
+ * {@link #YAML_FILES} stores each document as an individual YAML file,
+ * which is convenient for review and version control, while
+ * {@link PackedMetadataStore} keeps all documents in a single file, which
+ * is much faster to load.
+ */
+public interface MetadataStore extends Closeable {
+
+	public static final MetadataStore YAML_FILES = new YamlFiles();
+
+	/**
+	 * Read all documents stored at or below a root path.
+	 *
+	 * @param root     root path to read documents from
+	 * @param maxDepth the maximum number of directory levels below the root to include
+	 * @param type     type of documents
+	 * @param <T>      type of documents
+	 * @return documents, keyed by path
+	 * @throws IOException failed to read documents
+	 */
+	public <T> Map<Path, T> readAll(Path root, int maxDepth, Class<T> type) throws IOException;
+
+	public default <T> Map<Path, T> readAll(Path root, Class<T> type) throws IOException {
+		return readAll(root, Integer.MAX_VALUE, type);
+	}
+
+	/**
+	 * Read a single document.
+	 *
+	 * @param file document path
+	 * @param type type of document
+	 * @param <T>  type of document
+	 * @return the document
+	 * @throws IOException the document does not exist or could not be read
+	 */
+	public <T> T read(Path file, Class<T> type) throws IOException;
+
+	public boolean exists(Path file);
+
+	/**
+	 * Write a document, replacing any existing document at the same path.
+	 *
+	 * @param file  document path
+	 * @param value document to write
+	 * @throws IOException failed to write the document
+	 */
+	public void write(Path file, Object value) throws IOException;
+
+	public void delete(Path file) throws IOException;
+
+	@Override
+	public default void close() throws IOException {
+		// no-op by default
+	}
+
+	/**
+	 * Copy all documents below a root path from one store to another.
+	 *
+	 * @param from source store
+	 * @param to   destination store
+	 * @param root root path of documents to copy
+	 * @param type type of documents
+	 * @return number of documents copied
+	 * @throws IOException failed to read or write documents
+	 */
+	public static int copy(MetadataStore from, MetadataStore to, Path root, Class<?> type) throws IOException {
+		final Map<Path, ?> all = from.readAll(root, type);
+		for (Map.Entry<Path, ?> e : all.entrySet()) {
+			to.write(e.getKey(), e.getValue());
+		}
+		return all.size();
+	}
+
+	static class YamlFiles implements MetadataStore {
+
+		@Override
+		public <T> Map<Path, T> readAll(Path root, int maxDepth, Class<T> type) throws IOException {
+			if (!Files.isDirectory(root)) return Collections.emptyMap();
+
+			try (Stream<Path> files = Files.find(root, maxDepth,
+												 (file, attr) -> attr.isRegularFile() && Util.extension(file).equalsIgnoreCase("yml"))) {
+				return YAML.readAll(files, type);
+			}
+		}
+
+		@Override
+		public <T> T read(Path file, Class<T> type) throws IOException {
+			return YAML.fromFile(file, type);
+		}
+
+		@Override
+		public boolean exists(Path file) {
+			return Files.exists(file);
+		}
+
+		@Override
+		public void write(Path file, Object value) throws IOException {
+			if (file.getParent() != null) Files.createDirectories(file.getParent());
+			Files.write(file, YAML.toString(value).getBytes(StandardCharsets.UTF_8),
+						StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+		}
+
+		@Override
+		public void delete(Path file) throws IOException {
+			Files.deleteIfExists(file);
+		}
+
+		@Override
+		public String toString() {
+			return "YamlFiles";
+		}
+	}
+}
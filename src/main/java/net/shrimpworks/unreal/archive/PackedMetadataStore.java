@@ -0,0 +1,379 @@
+package net.shrimpworks.unreal.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+/**
+ * A metadata store which keeps all documents in a single, append-only
+ * packed file.
+ * <p>
+ * Each document is appended to the file as a record holding its path,
+ * relative to the store's root, and the document in Smile binary encoding.
+ * Replacing a document appends a new record, and deleting one appends an
+ * empty record, so a document's latest record is always the current one.
+ * <p>
+ * The file is memory-mapped, and an index of the location of each
+ * document's current record is kept in a separate <code>.idx</code> file,
+ * written when the store is closed. When opened, the index is read, and
+ * only records appended after it was written need to be scanned. If the
+ * index is missing or belongs to a different file, the whole file is
+ * scanned instead.
+ * <p>
+ * Since the file is never rewritten, replaced and deleted documents
+ * continue to take up space. Importing the documents into a new store
+ * will produce a compact file.
+ * <p>
+ * The file is locked exclusively while the store is open, so it may not be
+ * shared by multiple processes at the same time.
+ */
+public class PackedMetadataStore implements MetadataStore {
+
+	private static final int MAGIC = 0x55415044; // "UAPD"
+	private static final int INDEX_MAGIC = 0x55415049; // "UAPI"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+
+	private static final int DELETED = -1;
+
+	private static final ObjectMapper MAPPER = JsonMapper.builder(new SmileFactory())
+														 .addModule(new JavaTimeModule())
+														 .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+														 .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
+														 .serializationInclusion(JsonInclude.Include.NON_NULL)
+														 .build();
+
+	private final Path root;
+	private final Path packFile;
+	private final Path indexFile;
+
+	private final FileChannel channel;
+	private final FileLock lock;
+	private final long generation;
+	private final Map<String, Entry> entries;
+
+	private volatile MappedByteBuffer mapped;
+	private long end;
+	private boolean changed;
+	// an append failed part-way through, leaving a partial record after the end
+	private boolean incomplete;
+
+	/**
+	 * Open a packed metadata store, creating the file if it does not exist.
+	 *
+	 * @param root     root path documents are stored relative to
+	 * @param packFile packed file location
+	 * @throws IOException failed to open or read the file, or the file is in use
+	 *                     by another store
+	 */
+	public PackedMetadataStore(Path root, Path packFile) throws IOException {
+		this.root = root.toAbsolutePath().normalize();
+		this.packFile = packFile;
+		this.indexFile = packFile.resolveSibling(packFile.getFileName().toString() + ".idx");
+		this.entries = new ConcurrentHashMap<>();
+
+		if (packFile.toAbsolutePath().getParent() != null) Files.createDirectories(packFile.toAbsolutePath().getParent());
+		this.channel = FileChannel.open(packFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			this.lock = lock(channel, packFile);
+
+			if (channel.size() == 0) {
+				// a new file, any index left behind belongs to a previous file
+				Files.deleteIfExists(indexFile);
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).putInt(VERSION).putLong(ThreadLocalRandom.current().nextLong()).flip();
+				while (header.hasRemaining()) channel.write(header, header.position());
+			}
+
+			if (channel.size() > Integer.MAX_VALUE) throw new IOException("Packed metadata file is too large: " + packFile);
+			this.mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (mapped.limit() < HEADER_SIZE || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+				throw new IOException("Not a packed metadata file, or unsupported version: " + packFile);
+			}
+			this.generation = mapped.getLong(8);
+
+			long indexed = readIndex();
+			this.end = scan(indexed);
+			this.changed = indexed != end;
+
+			// the file is locked, so anything following the last complete record was left by an interrupted write
+			if (channel.size() > end) channel.truncate(end);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public <T> Map<Path, T> readAll(Path root, int maxDepth, Class<T> type) throws IOException {
+		final String prefix = key(root);
+		try {
+			return entries.entrySet().parallelStream()
+						  .filter(e -> within(prefix, e.getKey(), maxDepth))
+						  .collect(Collectors.toConcurrentMap(e -> this.root.resolve(e.getKey()), e -> {
+							  try {
+								  return MAPPER.readValue(new ByteBufferBackedInputStream(data(e.getValue())), type);
+							  } catch (IOException ex) {
+								  throw new UncheckedIOException(String.format("Failed to read %s from %s", e.getKey(), packFile), ex);
+							  }
+						  }));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	@Override
+	public <T> T read(Path file, Class<T> type) throws IOException {
+		final Entry entry = entries.get(key(file));
+		if (entry == null) throw new NoSuchFileException(file.toString(), null, "Not found in " + packFile);
+
+		return MAPPER.readValue(new ByteBufferBackedInputStream(data(entry)), type);
+	}
+
+	@Override
+	public boolean exists(Path file) {
+		return entries.containsKey(key(file));
+	}
+
+	@Override
+	public void write(Path file, Object value) throws IOException {
+		append(key(file), MAPPER.writeValueAsBytes(value));
+	}
+
+	@Override
+	public void delete(Path file) throws IOException {
+		final String key = key(file);
+		if (entries.containsKey(key)) append(key, null);
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Close the store, writing out the index if anything has changed.
+	 *
+	 * @throws IOException failed to write the index
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (!channel.isOpen()) return;
+		try {
+			if (changed) writeIndex();
+		} finally {
+			try {
+				lock.release();
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("PackedMetadataStore [root=%s, packFile=%s]", root, packFile);
+	}
+
+	private String key(Path file) {
+		final Path relative = root.relativize(file.toAbsolutePath().normalize());
+		if (relative.startsWith("..")) {
+			throw new IllegalArgumentException(String.format("Path %s is outside of store root %s", file, root));
+		}
+
+		final StringBuilder sb = new StringBuilder();
+		for (Path part : relative) {
+			if (part.toString().isEmpty()) continue;
+			if (sb.length() > 0) sb.append('/');
+			sb.append(part);
+		}
+		return sb.toString();
+	}
+
+	private static boolean within(String prefix, String key, int maxDepth) {
+		final String rest;
+		if (prefix.isEmpty()) rest = key;
+		else if (key.startsWith(prefix) && key.length() > prefix.length() && key.charAt(prefix.length()) == '/') {
+			rest = key.substring(prefix.length() + 1);
+		} else return false;
+
+		int depth = 1;
+		for (int i = 0; i < rest.length() && depth <= maxDepth; i++) {
+			if (rest.charAt(i) == '/') depth++;
+		}
+		return depth <= maxDepth;
+	}
+
+	private ByteBuffer data(Entry entry) throws IOException {
+		MappedByteBuffer buffer = mapped;
+		if (entry.offset + entry.length > buffer.limit()) buffer = remap();
+
+		final ByteBuffer data = buffer.duplicate();
+		data.position((int)entry.offset).limit((int)entry.offset + entry.length);
+		return data;
+	}
+
+	private synchronized MappedByteBuffer remap() throws IOException {
+		if (mapped.limit() < end) {
+			if (end > Integer.MAX_VALUE) throw new IOException("Packed metadata file is too large: " + packFile);
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+		}
+		return mapped;
+	}
+
+	private synchronized void append(String key, byte[] data) throws IOException {
+		final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		final ByteBuffer record = ByteBuffer.allocate(Integer.BYTES * 2 + keyBytes.length + (data == null ? 0 : data.length));
+		record.putInt(keyBytes.length).put(keyBytes).putInt(data == null ? DELETED : data.length);
+		if (data != null) record.put(data);
+		record.flip();
+
+		// discard the partially written record left behind by an earlier failure
+		if (incomplete) {
+			channel.truncate(end);
+			incomplete = false;
+		}
+
+		final long start = end;
+		incomplete = true;
+		while (record.hasRemaining()) channel.write(record, start + record.position());
+		incomplete = false;
+		end = start + record.limit();
+
+		if (data == null) entries.remove(key);
+		else entries.put(key, new Entry(end - data.length, data.length));
+		changed = true;
+	}
+
+	private static FileLock lock(FileChannel channel, Path packFile) throws IOException {
+		final FileLock lock;
+		try {
+			lock = channel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			throw new IOException("Packed metadata file is already open: " + packFile, e);
+		}
+		if (lock == null) throw new IOException("Packed metadata file is in use by another process: " + packFile);
+		return lock;
+	}
+
+	/**
+	 * Scan records from the given position to the end of the file, updating
+	 * the index with each one.
+	 *
+	 * @return the position following the last complete record
+	 */
+	private long scan(long position) {
+		final ByteBuffer buffer = mapped.duplicate();
+		long pos = position;
+		while (pos + Integer.BYTES <= buffer.limit()) {
+			final int keyLength = buffer.getInt((int)pos);
+			if (keyLength < 0 || pos + Integer.BYTES * 2 + keyLength > buffer.limit()) break;
+
+			final byte[] key = new byte[keyLength];
+			buffer.position((int)pos + Integer.BYTES);
+			buffer.get(key);
+
+			final int length = buffer.getInt((int)pos + Integer.BYTES + keyLength);
+			final long data = pos + Integer.BYTES * 2 + keyLength;
+			if (length != DELETED && (length < 0 || data + length > buffer.limit())) break;
+
+			if (length == DELETED) entries.remove(new String(key, StandardCharsets.UTF_8));
+			else entries.put(new String(key, StandardCharsets.UTF_8), new Entry(data, length));
+
+			pos = data + Math.max(0, length);
+		}
+		return pos;
+	}
+
+	/**
+	 * Read the index file, if it's valid for the current pack file.
+	 *
+	 * @return the position in the pack file up to which the index is complete
+	 */
+	private long readIndex() {
+		if (!Files.isRegularFile(indexFile)) return HEADER_SIZE;
+
+		final Map<String, Entry> index = new ConcurrentHashMap<>();
+		try (FileChannel indexChannel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+			final MappedByteBuffer buffer = indexChannel.map(FileChannel.MapMode.READ_ONLY, 0, indexChannel.size());
+			if (buffer.getInt() != INDEX_MAGIC || buffer.getInt() != VERSION || buffer.getLong() != generation) return HEADER_SIZE;
+
+			final long indexed = buffer.getLong();
+			if (indexed < HEADER_SIZE || indexed > mapped.limit()) return HEADER_SIZE;
+
+			final int count = buffer.getInt();
+			for (int i = 0; i < count; i++) {
+				final byte[] key = new byte[buffer.getInt()];
+				buffer.get(key);
+				final Entry entry = new Entry(buffer.getLong(), buffer.getInt());
+				if (entry.offset + entry.length > indexed) return HEADER_SIZE;
+				index.put(new String(key, StandardCharsets.UTF_8), entry);
+			}
+
+			entries.putAll(index);
+			return indexed;
+		} catch (Exception e) {
+			// index is unreadable or truncated, the pack file will be scanned instead
+			return HEADER_SIZE;
+		}
+	}
+
+	private void writeIndex() throws IOException {
+		final Path tmp = Files.createTempFile(indexFile.toAbsolutePath().getParent(), indexFile.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				final Map<String, Entry> snapshot = Map.copyOf(entries);
+				out.writeInt(INDEX_MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(generation);
+				out.writeLong(end);
+				out.writeInt(snapshot.size());
+				for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+					byte[] key = e.getKey().getBytes(StandardCharsets.UTF_8);
+					out.writeInt(key.length);
+					out.write(key);
+					out.writeLong(e.getValue().offset);
+					out.writeInt(e.getValue().length);
+				}
+			}
+			Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	private static class Entry {
+
+		private final long offset;
+		private final int length;
+
+		private Entry(long offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+}
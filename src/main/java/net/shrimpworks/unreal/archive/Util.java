@@ -4,12 +4,13 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.FileVisitOption;
@@ -25,10 +26,13 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.imageio.ImageIO;
 
+import net.shrimpworks.unreal.archive.storage.HttpTransport;
+
 public final class Util {
 
 	private static final char[] HEX_ARRAY = "0123456789ABCDEF".toCharArray();
@@ -74,7 +78,15 @@ public final class Util {
 
 	private static final Pattern UC_WORDS = Pattern.compile("\\b(.)(.*?)\\b");
 
-	private static final int HASH_BUFFER_SIZE = 1024 * 50; // 50kb read buffer
+	private static final int HASH_BUFFER_SIZE = 1024 * 64; // 64kb read buffer
+	private static final long HASH_MAP_THRESHOLD = 1024 * 1024 * 4; // files larger than 4mb are memory-mapped for hashing
+	private static final long HASH_MAP_WINDOW = 1024 * 1024 * 256;
+
+	private static final ThreadLocal<ByteBuffer> HASH_BUFFER = ThreadLocal.withInitial(
+		() -> ByteBuffer.allocateDirect(HASH_BUFFER_SIZE)
+	);
+
+	private static volatile HashCache hashCache = HashCache.NONE;
 
 	private Util() { }
 
@@ -139,21 +151,54 @@ public final class Util {
 		return IMGS.contains(extension(path).toLowerCase());
 	}
 
+	/**
+	 * Set the cache used to look up file hashes, rather than re-reading
+	 * files which have already been hashed.
+	 *
+	 * @param cache hash cache
+	 */
+	public static void hashCache(HashCache cache) {
+		hashCache = cache;
+	}
+
 	public static String hash(Path path) throws IOException {
 		Path hashPath = path.resolveSibling(path.getFileName().toString() + ".sha1");
 		if (Files.exists(hashPath)) {
 			return Files.readString(hashPath).trim();
 		}
 
+		return hashCache.hash(path);
+	}
+
+	/**
+	 * Hash a file directly, without consulting or updating the hash cache.
+	 * <p>
+	 * Used for temporary files, such as extracted or partially downloaded
+	 * files, which should not be remembered by the cache.
+	 *
+	 * @param path file to hash
+	 * @return SHA-1 hash of the file
+	 * @throws IOException failed to read the file
+	 */
+	public static String hashFile(Path path) throws IOException {
 		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
 			MessageDigest md = MessageDigest.getInstance("SHA-1");
 
-			ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
-
-			while (channel.read(buffer) > 0) {
-				buffer.flip();
-				md.update(buffer);
+			final long size = channel.size();
+			if (size > HASH_MAP_THRESHOLD) {
+				// large files are mapped in windows, avoiding copying through an intermediate buffer
+				for (long pos = 0; pos < size; pos += HASH_MAP_WINDOW) {
+					md.update(channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(HASH_MAP_WINDOW, size - pos)));
+				}
+			} else {
+				ByteBuffer buffer = HASH_BUFFER.get();
 				buffer.clear();
+
+				while (channel.read(buffer) > 0) {
+					buffer.flip();
+					md.update(buffer);
+					buffer.clear();
+				}
 			}
 
 			return bytesToHex(md.digest()).toLowerCase();
@@ -162,6 +207,16 @@ public final class Util {
 		}
 	}
 
+	public static String hash(ByteBuffer data) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			md.update(data.duplicate());
+			return bytesToHex(md.digest()).toLowerCase();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
 	public static String mimeType(String ext) {
 		return MIME_TYPES.getOrDefault(ext, "application/octet-stream");
 	}
@@ -193,19 +248,50 @@ public final class Util {
 					   .replaceAll("&", "%26");
 	}
 
+	/**
+	 * Convert a URL to a URI suitable for making a request, encoding it
+	 * if it has not been already.
+	 *
+	 * @param url url to convert
+	 * @return request URI
+	 */
+	public static URI requestUri(String url) {
+		try {
+			return URI.create(url);
+		} catch (IllegalArgumentException e) {
+			// not already encoded, eg. contains spaces
+			return toUri(url);
+		}
+	}
+
 	public static Path downloadTo(String url, Path output) throws IOException {
-		URL urlConnection = new URL(url);
-		HttpURLConnection httpConn = (HttpURLConnection)urlConnection.openConnection();
-		int responseCode = httpConn.getResponseCode();
+		return downloadTo(url, output, UnaryOperator.identity());
+	}
 
-		Path saveTo = output;
+	/**
+	 * Download a URL to a local file, reading the response through the
+	 * provided stream wrapper, which may be used to measure or limit the
+	 * transfer.
+	 *
+	 * @param url    url to download
+	 * @param output file or directory to write to
+	 * @param body   wraps the response body stream
+	 * @return path of the downloaded file
+	 * @throws IOException download failed
+	 */
+	public static Path downloadTo(String url, Path output, UnaryOperator<InputStream> body) throws IOException {
+		HttpTransport transport = HttpTransport.shared();
+		return transport.stream(transport.transfer(requestUri(url)).GET().build(), response -> {
+			// always check HTTP response code first
+			if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+				throw new IOException(response.statusCode() + " Failed to download url " + url);
+			}
 
-		// always check HTTP response code first
-		if (responseCode == HttpURLConnection.HTTP_OK) {
+			Path saveTo = output;
 
 			// if we're saving to a directory and not a specific file, try to determine the filename to save to
 			if (Files.isDirectory(saveTo)) {
-				String disposition = httpConn.getHeaderField("Content-Disposition");
+				String disposition = response.headers().firstValue("Content-Disposition").orElse(null);
 				if (disposition != null && !disposition.trim().isEmpty()) {
 					Matcher matcher = DISPOSITION_FILENAME.matcher(disposition);
 					if (matcher.find()) {
@@ -214,58 +300,53 @@ public final class Util {
 				}
 
 				// fallback, just use the filename from the url
-				if (Files.isDirectory(saveTo)) saveTo = saveTo.resolve(fileName(httpConn.getURL().getPath()));
+				if (Files.isDirectory(saveTo)) saveTo = saveTo.resolve(fileName(response.uri().getPath()));
 			}
 
 			// opens input stream from the HTTP connection
-			Files.copy(httpConn.getInputStream(), saveTo);
-		} else {
-			throw new IOException(responseCode + " Failed to download url " + url);
-		}
-		httpConn.disconnect();
+			Files.copy(body.apply(response.body()), saveTo);
 
-		return saveTo;
+			return saveTo;
+		});
 	}
 
-	public static void urlRequest(String url, Consumer<HttpURLConnection> onOK) throws IOException {
-		URL urlConnection = new URL(url);
-		HttpURLConnection httpConn = (HttpURLConnection)urlConnection.openConnection();
-		int responseCode = httpConn.getResponseCode();
-
-		if (responseCode == HttpURLConnection.HTTP_OK) {
-			onOK.accept(httpConn);
-		}
-
-		httpConn.disconnect();
+	public static void urlRequest(String url, Consumer<HttpResponse<InputStream>> onOK) throws IOException {
+		HttpTransport transport = HttpTransport.shared();
+		transport.stream(transport.transfer(requestUri(url)).GET().build(), response -> {
+			if (response.statusCode() == HttpURLConnection.HTTP_OK) {
+				onOK.accept(response);
+			}
+			return null;
+		});
 	}
 
 	public static boolean uploadTo(Path localFile, String url) throws IOException {
-		URL urlConnection = new URL(url);
-		HttpURLConnection httpConn = (HttpURLConnection)urlConnection.openConnection();
-		httpConn.setDoOutput(true);
-		httpConn.setRequestMethod("PUT");
-		httpConn.setRequestProperty("Content-Length", Long.toString(Files.size(localFile)));
-		httpConn.connect();
-
-		try (OutputStream output = httpConn.getOutputStream();
-			 InputStream input = Files.newInputStream(localFile, StandardOpenOption.READ)) {
-			byte[] buffer = new byte[4096];
-			int length;
-			while ((length = input.read(buffer)) > 0) {
-				output.write(buffer, 0, length);
-			}
-			output.flush();
+		HttpTransport transport = HttpTransport.shared();
+		HttpResponse<Void> response = transport.send(
+			transport.transfer(requestUri(url)).PUT(HttpRequest.BodyPublishers.ofFile(localFile)).build(),
+			HttpResponse.BodyHandlers.discarding()
+		);
+		return response.statusCode() < 400;
+	}
 
-			return httpConn.getResponseCode() < 400;
-		}
+	public static boolean uploadTo(InputStream stream, long length, String url) throws IOException {
+		HttpTransport transport = HttpTransport.shared();
+		HttpResponse<Void> response = transport.send(
+			transport.transfer(requestUri(url))
+					 .PUT(HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofInputStream(() -> stream), length))
+					 .build(),
+			HttpResponse.BodyHandlers.discarding()
+		);
+		return response.statusCode() < 400;
 	}
 
 	public static boolean deleteRemote(String url) throws IOException {
-		URL urlConnection = new URL(url);
-		HttpURLConnection httpConn = (HttpURLConnection)urlConnection.openConnection();
-		httpConn.setRequestMethod("DELETE");
-		httpConn.connect();
-		return httpConn.getResponseCode() < 400;
+		HttpTransport transport = HttpTransport.shared();
+		HttpResponse<Void> response = transport.send(
+			transport.request(requestUri(url)).DELETE().build(),
+			HttpResponse.BodyHandlers.discarding()
+		);
+		return response.statusCode() < 400;
 	}
 
 	public static void copyTree(Path source, Path dest) throws IOException {
@@ -1,12 +1,19 @@
 package net.shrimpworks.unreal.archive;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonGenerator;
@@ -17,6 +24,7 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.json.JsonMapper;
@@ -31,6 +39,13 @@ public class YAML {
 
 	private static final ObjectMapper MAPPER;
 
+	// readers are immutable and thread-safe, so one is shared per type
+	private static final Map<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+	private static final int INITIAL_BUFFER = 16 * 1024;
+	private static final int MAX_POOLED_BUFFER = 1024 * 1024;
+	private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[INITIAL_BUFFER]);
+
 	static {
 		MAPPER = JsonMapper.builder(new YAMLFactory())
 						   .addModule(new JavaTimeModule())
@@ -53,23 +68,70 @@ public class YAML {
 	}
 
 	public static <T> T fromFile(Path path, Class<T> type) throws IOException {
-		try {
-			return MAPPER.readValue(Files.newInputStream(path), type);
-		} catch (Exception e) {
-			throw new IOException("Failed to read YAML file " + path.toString(), e);
-		}
+		return read(path, reader(type));
 	}
 
 	public static <T> T fromFile(Path path, TypeReference<T> type) throws IOException {
+		return read(path, MAPPER.readerFor(type));
+	}
+
+	/**
+	 * Read many YAML files of the same type, in parallel.
+	 * <p>
+	 * Intended for loading entire directories of content, where each file
+	 * is read fully through a reused per-thread buffer, and closed
+	 * immediately, before being parsed.
+	 *
+	 * @param paths files to read
+	 * @param type  type of all files
+	 * @param <T>   type of all files
+	 * @return each file and its parsed content
+	 * @throws IOException failed to read or parse any of the files
+	 */
+	public static <T> Map<Path, T> readAll(Stream<Path> paths, Class<T> type) throws IOException {
+		final ObjectReader reader = reader(type);
 		try {
-			return MAPPER.readValue(Files.newInputStream(path), type);
-		} catch (Exception e) {
-			throw new IOException("Failed to read YAML file " + path.toString(), e);
+			return paths.parallel().collect(Collectors.toConcurrentMap(p -> p, p -> {
+				try {
+					return read(p, reader);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
 		}
 	}
 
 	public static <T> T fromString(String yaml, Class<T> type) throws IOException {
-		return MAPPER.readValue(yaml, type);
+		return reader(type).readValue(yaml);
+	}
+
+	private static ObjectReader reader(Class<?> type) {
+		return READERS.computeIfAbsent(type, MAPPER::readerFor);
+	}
+
+	private static <T> T read(Path path, ObjectReader reader) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			if (size > Integer.MAX_VALUE - 8) throw new IOException("File too large");
+
+			// most files fit in the shared buffer, larger ones get a buffer of their own
+			byte[] buf = size <= MAX_POOLED_BUFFER ? BUFFER.get() : new byte[(int)size];
+			if (buf.length < size) {
+				buf = new byte[(int)Math.min(MAX_POOLED_BUFFER, Math.max(size, buf.length * 2L))];
+				BUFFER.set(buf);
+			}
+
+			final ByteBuffer buffer = ByteBuffer.wrap(buf, 0, (int)size);
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+				// pass, keep reading until the file is read or ends early
+			}
+
+			return reader.readValue(buf, 0, buffer.position());
+		} catch (Exception e) {
+			throw new IOException("Failed to read YAML file " + path.toString(), e);
+		}
 	}
 
 	private static class DateTimeSerializer extends JsonSerializer<LocalDateTime> {
@@ -35,7 +35,7 @@ import net.shrimpworks.unreal.archive.content.voices.Voice;
 		@JsonSubTypes.Type(value = Mutator.class, name = "MUTATOR"),
 		@JsonSubTypes.Type(value = UnknownContent.class, name = "UNKNOWN")
 })
-public abstract class Content implements ContentEntity<Content> {
+public abstract class Content implements ContentEntity<Content>, Cloneable {
 
 	public static final DateTimeFormatter RELEASE_DATE_FMT = DateTimeFormatter.ofPattern("yyyy-MM").withZone(ZoneId.systemDefault());
 
@@ -227,6 +227,57 @@ public abstract class Content implements ContentEntity<Content> {
 		return downloads.stream().filter(d -> d.main).findFirst().orElse(null);
 	}
 
+	/**
+	 * The downloads of this content which are copies of the original file,
+	 * ranked by the current {@link DownloadHealth}, best first.
+	 * <p>
+	 * Without download health results, the main download is first, and
+	 * others follow in their original order.
+	 *
+	 * @return ranked downloads, excluding repacks
+	 * @see DownloadHealth#ranked(List)
+	 */
+	public List<Download> rankedDownloads() {
+		return DownloadHealth.current().ranked(downloads);
+	}
+
+	/**
+	 * Create a deep copy of this content.
+	 * <p>
+	 * Collections and mutable elements are copied, while immutable
+	 * elements such as attachments and dependencies are shared with the
+	 * original. Subclasses with their own mutable fields should extend
+	 * this to copy those as well.
+	 *
+	 * @return a copy of this content
+	 */
+	public Content copy() {
+		try {
+			Content copy = (Content)super.clone();
+			copy.attachments = copyList(attachments);
+			if (files != null) {
+				copy.files = new ArrayList<>(files.size());
+				for (ContentFile f : files) copy.files.add(new ContentFile(f.name, f.fileSize, f.hash));
+			}
+			if (dependencies != null) {
+				copy.dependencies = new HashMap<>(dependencies.size());
+				dependencies.forEach((k, v) -> copy.dependencies.put(k, copyList(v)));
+			}
+			if (downloads != null) {
+				copy.downloads = new ArrayList<>(downloads.size());
+				for (Download d : downloads) copy.downloads.add(new Download(d.url, d.main, d.repack, d.state));
+			}
+			if (links != null) copy.links = new HashMap<>(links);
+			return copy;
+		} catch (CloneNotSupportedException e) {
+			throw new IllegalStateException("Cannot copy content " + this, e);
+		}
+	}
+
+	protected static <T> List<T> copyList(List<T> list) {
+		return list == null ? null : new ArrayList<>(list);
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
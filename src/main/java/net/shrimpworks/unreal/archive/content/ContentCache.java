@@ -0,0 +1,97 @@
+package net.shrimpworks.unreal.archive.content;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of content, bounded by the approximate
+ * memory used by the content held, rather than the number of items.
+ * <p>
+ * Used by the {@link ContentManager} in lazy mode, where only summary
+ * information is kept in memory for all content, and full content is
+ * loaded as needed.
+ */
+class ContentCache {
+
+	private final long maxSize;
+	private final Map<String, Entry> entries;
+
+	private long size;
+	private long hits;
+	private long misses;
+
+	/**
+	 * Create a new cache.
+	 *
+	 * @param maxSize approximate maximum memory used by cached content, in bytes
+	 */
+	ContentCache(long maxSize) {
+		this.maxSize = maxSize;
+		this.entries = new LinkedHashMap<>(64, 0.75f, true);
+		this.size = 0;
+	}
+
+	synchronized Content get(String hash) {
+		final Entry entry = entries.get(hash);
+		if (entry != null) hits++;
+		else misses++;
+		return entry != null ? entry.content : null;
+	}
+
+	synchronized void put(String hash, Content content) {
+		// weight is recorded when cached, in case the content is modified afterwards
+		final Entry entry = new Entry(content, weight(content));
+		final Entry previous = entries.put(hash, entry);
+		if (previous != null) size -= previous.weight;
+		size += entry.weight;
+
+		// always keep the most recent item, even if it's larger than the cache
+		final Iterator<Entry> it = entries.values().iterator();
+		while (size > maxSize && entries.size() > 1 && it.hasNext()) {
+			size -= it.next().weight;
+			it.remove();
+		}
+	}
+
+	synchronized void remove(String hash) {
+		final Entry previous = entries.remove(hash);
+		if (previous != null) size -= previous.weight;
+	}
+
+	synchronized long size() {
+		return size;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("ContentCache [items=%d, size=%d, maxSize=%d, hits=%d, misses=%d]",
+							 entries.size(), size, maxSize, hits, misses);
+	}
+
+	/**
+	 * Rough estimate of the memory used by content, proportional to its
+	 * actual size.
+	 */
+	static long weight(Content content) {
+		long weight = 1024;
+		weight += 160L * content.files.size();
+		weight += 256L * (content.attachments.size() + content.downloads.size());
+		for (List<Content.Dependency> deps : content.dependencies.values()) {
+			weight += 64 + 128L * deps.size();
+		}
+		return weight;
+	}
+
+	private static class Entry {
+
+		private final Content content;
+		private final long weight;
+
+		private Entry(Content content, long weight) {
+			this.content = content;
+			this.weight = weight;
+		}
+	}
+}
@@ -1,72 +1,218 @@
 package net.shrimpworks.unreal.archive.content;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import net.shrimpworks.unreal.archive.CLI;
+import net.shrimpworks.unreal.archive.MetadataStore;
 import net.shrimpworks.unreal.archive.Util;
-import net.shrimpworks.unreal.archive.YAML;
 import net.shrimpworks.unreal.archive.storage.DataStore;
 
 public class ContentManager {
 
+	/**
+	 * Options controlling how content is held in memory.
+	 * <p>
+	 * In lazy mode, only a summary of each content item needed to maintain
+	 * indexes is kept in memory. Full content is read from the metadata
+	 * store as it's needed, and held in a cache limited to approximately
+	 * <code>cacheSize</code> bytes.
+	 */
+	public static class Options {
+
+		public static final Options DEFAULT = new Options(false, 32 * 1024 * 1024);
+
+		public final boolean lazy;
+		public final long cacheSize;
+
+		public Options(boolean lazy, long cacheSize) {
+			this.lazy = lazy;
+			this.cacheSize = cacheSize;
+		}
+
+		/**
+		 * Read content manager options from the command line.
+		 * <p>
+		 * Supports <code>--lazy-content</code> and <code>--content-cache</code>
+		 * in bytes.
+		 *
+		 * @param cli command line
+		 * @return content manager options
+		 */
+		public static Options fromCli(CLI cli) {
+			return new Options(
+				Boolean.parseBoolean(cli.option("lazy-content", Boolean.toString(DEFAULT.lazy))),
+				Long.parseLong(cli.option("content-cache", Long.toString(DEFAULT.cacheSize)))
+			);
+		}
+	}
+
 	private static final int CONTENT_INITIAL_SIZE = 50000;
 	private static final int FILES_INITIAL_SIZE = CONTENT_INITIAL_SIZE * 5;
 	private static final int VARIATION_INITIAL_SIZE = CONTENT_INITIAL_SIZE / 4;
 
+	private static final int CHECKIN_LOCK_STRIPES = 256;
+
 	private final Path path;
+	private final MetadataStore metadata;
 	private final Map<String, ContentHolder> content;
 
-	private final Map<String, Collection<Content>> contentFileMap;
-	private final Map<String, Collection<Content>> variationsMap;
+	// file hashes and variations to content, as compact references to content hashes
+	private final HashRefIndex contentFileMap;
+	private final HashRefIndex variationsMap;
+	private final Map<String, Integer> refs;
+	private final List<String> refHashes;
+
+	// full content loaded on demand in lazy mode, otherwise null
+	private final ContentCache cache;
 
 	private final DataStore contentStore;
 	private final DataStore imageStore;
 	private final DataStore attachmentStore;
 
+	// secondary indexes of normalised (lower-case) values to content hashes, maintained on load and checkin
+	private final Map<String, Set<String>> nameIndex;
+	private final Map<String, Set<String>> authorIndex;
+	private final Map<String, Set<String>> gameIndex;
+	private final Map<String, Set<String>> typeIndex;
+	private final Map<Class<? extends Content>, Set<String>> classIndex;
+	// trigrams of normalised names, for substring name searches
+	private final Map<String, Set<String>> nameTrigrams;
+
 	private final Set<String> changes;
 
+	// checkins of the same content are serialised on a lock stripe, while different content may be checked in concurrently
+	private final Object[] checkinLocks;
+	// serialises prepared checkins, always taken before a checkin lock stripe
+	private final Object prepareLock = new Object();
+
 	public ContentManager(Path path, DataStore contentStore, DataStore imageStore, DataStore attachmentStore) throws IOException {
+		this(path, null, contentStore, imageStore, attachmentStore);
+	}
+
+	/**
+	 * Create a new content manager, loading all content from the provided path.
+	 * <p>
+	 * If a <code>snapshotFile</code> is provided, content which has not
+	 * changed since the last load is read from the binary snapshot rather
+	 * than parsed from YAML, and the snapshot is refreshed afterwards.
+	 *
+	 * @param path            content root path
+	 * @param snapshotFile    binary snapshot file, or null to disable snapshots
+	 * @param contentStore    content file storage
+	 * @param imageStore      image storage
+	 * @param attachmentStore attachment storage
+	 * @throws IOException failed to load content
+	 */
+	public ContentManager(Path path, Path snapshotFile, DataStore contentStore, DataStore imageStore, DataStore attachmentStore)
+		throws IOException {
+		this(MetadataStore.YAML_FILES, path, snapshotFile, Options.DEFAULT, contentStore, imageStore, attachmentStore);
+	}
+
+	/**
+	 * Create a new content manager, loading all content from the provided
+	 * metadata store.
+	 *
+	 * @param metadata        metadata store content is read from and written to
+	 * @param path            content root path
+	 * @param contentStore    content file storage
+	 * @param imageStore      image storage
+	 * @param attachmentStore attachment storage
+	 * @throws IOException failed to load content
+	 */
+	public ContentManager(MetadataStore metadata, Path path, DataStore contentStore, DataStore imageStore, DataStore attachmentStore)
+		throws IOException {
+		this(metadata, path, null, Options.DEFAULT, contentStore, imageStore, attachmentStore);
+	}
+
+	/**
+	 * Create a new content manager, loading all content from the provided
+	 * metadata store.
+	 * <p>
+	 * The binary snapshot is only used when content is fully loaded from
+	 * individual YAML files.
+	 *
+	 * @param metadata        metadata store content is read from and written to
+	 * @param path            content root path
+	 * @param snapshotFile    binary snapshot file, or null to disable snapshots
+	 * @param options         content loading options
+	 * @param contentStore    content file storage
+	 * @param imageStore      image storage
+	 * @param attachmentStore attachment storage
+	 * @throws IOException failed to load content
+	 */
+	public ContentManager(MetadataStore metadata, Path path, Path snapshotFile, Options options,
+						  DataStore contentStore, DataStore imageStore, DataStore attachmentStore) throws IOException {
 		this.path = path;
+		this.metadata = metadata;
+		this.cache = options.lazy ? new ContentCache(options.cacheSize) : null;
 		this.contentStore = contentStore;
 		this.imageStore = imageStore;
 		this.attachmentStore = attachmentStore;
 		this.content = new ConcurrentHashMap<>(CONTENT_INITIAL_SIZE);
-		this.contentFileMap = new ConcurrentHashMap<>(500000);
-		this.variationsMap = new ConcurrentHashMap<>(50000);
-
-		this.changes = new HashSet<>();
-
-		try (Stream<Path> files = Files.find(path, 20, (file, attr) -> file.toString().endsWith(".yml")).parallel()) {
-			files.forEach(file -> {
-				try {
-					Content c = YAML.fromFile(file, Content.class);
-					content.put(c.hash, new ContentHolder(file, c));
-
-					// while reading this content, also index its individual files for later quick lookup
-					for (Content.ContentFile contentFile : c.files) {
-						Collection<Content> fileSet = contentFileMap.computeIfAbsent(contentFile.hash, h -> ConcurrentHashMap.newKeySet());
-						fileSet.add(c);
-					}
-
-					if (c.variationOf != null) {
-						Collection<Content> variations = variationsMap.computeIfAbsent(c.variationOf, h -> ConcurrentHashMap.newKeySet());
-						variations.add(c);
-					}
-				} catch (Exception e) {
-					throw new RuntimeException(e);
-				}
-			});
+		this.contentFileMap = new HashRefIndex(FILES_INITIAL_SIZE);
+		this.variationsMap = new HashRefIndex(VARIATION_INITIAL_SIZE);
+		this.refs = new ConcurrentHashMap<>(CONTENT_INITIAL_SIZE);
+		this.refHashes = new ArrayList<>(CONTENT_INITIAL_SIZE);
+
+		this.nameIndex = new ConcurrentHashMap<>(CONTENT_INITIAL_SIZE);
+		this.authorIndex = new ConcurrentHashMap<>();
+		this.gameIndex = new ConcurrentHashMap<>();
+		this.typeIndex = new ConcurrentHashMap<>();
+		this.classIndex = new ConcurrentHashMap<>();
+		this.nameTrigrams = new ConcurrentHashMap<>();
+
+		this.changes = ConcurrentHashMap.newKeySet();
+
+		this.checkinLocks = new Object[CHECKIN_LOCK_STRIPES];
+		for (int i = 0; i < checkinLocks.length; i++) checkinLocks[i] = new Object();
+
+		// snapshots only apply to content read in full from individual YAML files
+		final ContentSnapshot snapshot = snapshotFile != null && metadata == MetadataStore.YAML_FILES && !options.lazy
+				? ContentSnapshot.load(snapshotFile, path)
+				: null;
+
+		if (snapshot != null) {
+			try (Stream<Path> files = Files.find(path, 20, (file, attr) -> file.toString().endsWith(".yml"))) {
+				snapshot.readAll(files).entrySet().parallelStream()
+						.forEach(e -> add(new ContentHolder(e.getKey(), new Summary(e.getValue()), e.getValue())));
+			}
+		} else if (options.lazy) {
+			// only the summary fields are read, the remainder of each document is skipped
+			metadata.readAll(path, 20, Summary.class).entrySet().parallelStream()
+					.forEach(e -> add(new ContentHolder(e.getKey(), e.getValue(), null)));
+		} else {
+			metadata.readAll(path, 20, Content.class).entrySet().parallelStream()
+					.forEach(e -> add(new ContentHolder(e.getKey(), new Summary(e.getValue()), e.getValue())));
+		}
+
+		if (snapshot != null) {
+			try {
+				snapshot.save();
+			} catch (IOException e) {
+				// the snapshot is only a cache, failing to write it is not fatal
+				System.err.printf("Failed to write content snapshot %s: %s%n", snapshotFile, e);
+			}
 		}
 	}
 
@@ -75,7 +221,7 @@ public class ContentManager {
 	}
 
 	public long fileSize() {
-		return content.values().parallelStream().mapToLong(c -> c.content.fileSize).sum();
+		return content.values().parallelStream().mapToLong(c -> c.summary.fileSize).sum();
 	}
 
 	public Map<Class<? extends Content>, Long> countByType() {
@@ -83,59 +229,83 @@ public class ContentManager {
 	}
 
 	public Map<Class<? extends Content>, Long> countByType(String game) {
-		return content.values().parallelStream()
-					  .filter(c -> c.content.variationOf == null && !c.content.deleted())
-					  .filter(c -> game == null || c.content.game.equals(game))
-					  .collect(Collectors.groupingBy(v -> v.content.getClass(), Collectors.counting()));
+		final Set<String> inGame = game == null ? null : gameIndex.getOrDefault(game.toLowerCase(), Collections.emptySet());
+		final Map<Class<? extends Content>, Long> counts = new HashMap<>();
+		classIndex.forEach((type, hashes) -> {
+			long count = hashes.parallelStream()
+							   .filter(h -> inGame == null || inGame.contains(h))
+							   .map(content::get)
+							   .filter(c -> c != null && c.summary.variationOf == null && !c.summary.deleted)
+							   .filter(c -> game == null || c.summary.game.equals(game))
+							   .count();
+			if (count > 0) counts.put(type, count);
+		});
+		return counts;
 	}
 
 	public Map<String, Long> countByGame() {
 		return content.values().parallelStream()
-					  .filter(c -> c.content.variationOf == null && !c.content.deleted())
-					  .collect(Collectors.groupingBy(v -> v.content.game, Collectors.counting()));
+					  .filter(c -> c.summary.variationOf == null && !c.summary.deleted)
+					  .collect(Collectors.groupingBy(v -> v.summary.game, Collectors.counting()));
 	}
 
 	public Collection<Content> search(String game, String type, String name, String author) {
-		return content.values().parallelStream()
-					  .map(c -> c.content)
-					  .filter(c -> {
-						  boolean match = (game == null || c.game.equalsIgnoreCase(game));
-						  match = match && (type == null || c.contentType.equalsIgnoreCase(type));
-						  match = match && (author == null || c.author.toLowerCase().contains(author.toLowerCase()));
-						  match = match && (name == null || c.name.toLowerCase().contains(name.toLowerCase()));
-						  return match;
-					  })
-					  .collect(Collectors.toSet());
+		// find the smallest set of candidates via the secondary indexes, then filter those
+		Set<String> candidates = null;
+		if (game != null) candidates = smallest(candidates, gameIndex.getOrDefault(game.toLowerCase(), Collections.emptySet()));
+		if (type != null) candidates = smallest(candidates, typeIndex.getOrDefault(type.toLowerCase(), Collections.emptySet()));
+		if (name != null) candidates = smallest(candidates, nameContaining(name.toLowerCase()));
+		if (author != null && (candidates == null || !candidates.isEmpty())) {
+			candidates = smallest(candidates, containing(authorIndex, authorIndex.keySet(), author.toLowerCase()));
+		}
+
+		final Stream<ContentHolder> source = candidates == null
+				? content.values().parallelStream()
+				: candidates.stream().map(content::get).filter(Objects::nonNull);
+
+		return source.filter(h -> {
+						 Summary c = h.summary;
+						 boolean match = (game == null || c.game.equalsIgnoreCase(game));
+						 match = match && (type == null || c.contentType.equalsIgnoreCase(type));
+						 match = match && (author == null || c.author.toLowerCase().contains(author.toLowerCase()));
+						 match = match && (name == null || c.name.toLowerCase().contains(name.toLowerCase()));
+						 return match;
+					 })
+					 .map(this::content)
+					 .collect(Collectors.toSet());
 	}
 
 	public Collection<Content> all() {
 		return content.values().parallelStream()
-					  .map(c -> c.content)
-					  .filter(c -> !c.deleted())
+					  .filter(c -> !c.summary.deleted)
+					  .map(this::content)
 					  .collect(Collectors.toSet());
 	}
 
 	public Collection<Content> forName(String name) {
-		return content.values().parallelStream()
-					  .filter(c -> c.content.name.equalsIgnoreCase(name))
-					  .map(c -> c.content)
-					  .collect(Collectors.toSet());
+		return nameIndex.getOrDefault(name.toLowerCase(), Collections.emptySet()).stream()
+						.map(content::get)
+						.filter(c -> c != null && c.summary.name.equalsIgnoreCase(name))
+						.map(this::content)
+						.collect(Collectors.toSet());
 	}
 
 	public Content forHash(String hash) {
 		ContentHolder contentHolder = content.get(hash);
-		if (contentHolder != null) return contentHolder.content;
+		if (contentHolder != null) return content(contentHolder);
 
 		return null;
 	}
 
 	@SuppressWarnings("unchecked")
 	public <T extends Content> Collection<T> get(Class<T> type) {
-		return content.values().parallelStream()
-					  .map(c -> c.content)
-					  .filter(c -> type.isAssignableFrom(c.getClass()))
-					  .map(c -> (T)c)
-					  .collect(Collectors.toSet());
+		return classIndex.entrySet().stream()
+						 .filter(e -> type.isAssignableFrom(e.getKey()))
+						 .flatMap(e -> e.getValue().stream())
+						 .map(this::forHash)
+						 .filter(Objects::nonNull)
+						 .map(c -> (T)c)
+						 .collect(Collectors.toSet());
 	}
 
 	/**
@@ -145,7 +315,7 @@ public class ContentManager {
 	 * @return content containing the hash
 	 */
 	public Collection<Content> containingFile(String hash) {
-		return contentFileMap.getOrDefault(hash, Collections.emptySet());
+		return resolve(contentFileMap.get(hash));
 	}
 
 	/**
@@ -156,7 +326,7 @@ public class ContentManager {
 	 * @return content variations for the content specified by the hash
 	 */
 	public Collection<Content> variationsOf(String hash) {
-		return variationsMap.getOrDefault(hash, Collections.emptySet());
+		return resolve(variationsMap.get(hash));
 	}
 
 	// intent: when some content is going to be worked on, a clone is checked out.
@@ -166,49 +336,183 @@ public class ContentManager {
 	// if something changed, the content will be written out, within a new directory structure if needed
 	// and the old file will be removed
 
-	@SuppressWarnings("unchecked")
+	// content returned by forHash and other queries is the shared instance, and should be treated as read-only; callers
+	// should inspect that first and only check out a copy once they know they need to change something.
+
 	public Content checkout(String hash) {
 		ContentHolder out = this.content.get(hash);
-		if (out != null) {
+		if (out != null) return content(out).copy();
+		return null;
+	}
+
+	/**
+	 * Check in new or modified content.
+	 * <p>
+	 * Content may be checked in from multiple threads concurrently. Checkins
+	 * of the same content (by hash) are serialised, so concurrent changes to
+	 * a single item are applied one after the other rather than interleaved.
+	 * <p>
+	 * Since the content is replaced as a whole, changes made to another copy
+	 * since this one was checked out will be lost. Use
+	 * {@link #update(String, Consumer)} to make changes to existing content
+	 * which may also be changing elsewhere.
+	 *
+	 * @param indexed    content and new attachments to store
+	 * @param submission submission the content was indexed from, or null
+	 * @return true if the content changed and was stored
+	 * @throws IOException failed to store content or attachments
+	 */
+	public boolean checkin(IndexResult<? extends Content> indexed, Submission submission) throws IOException {
+		// files are uploaded before taking the lock, so a slow upload doesn't hold up checkins of unrelated content
+		if (!changed(indexed)) return false;
+		upload(indexed, submission);
+
+		synchronized (checkinLock(indexed.content.hash)) {
+			return store(indexed.content, !indexed.files.isEmpty());
+		}
+	}
+
+	/**
+	 * Check in new or modified content, as per
+	 * {@link #checkin(IndexResult, Submission)}, preparing it immediately
+	 * before it's stored.
+	 * <p>
+	 * Preparation happens once the content's files have been uploaded, and
+	 * is serialised with the storing of the content across all checkins made
+	 * via this method. This allows <code>prepare</code> to inspect and
+	 * {@link #update(String, Consumer)} other content, knowing no other
+	 * prepared content can be stored in the meantime.
+	 *
+	 * @param indexed    content and new attachments to store
+	 * @param submission submission the content was indexed from, or null
+	 * @param prepare    called with the content immediately before it's stored
+	 * @return true if the content changed and was stored
+	 * @throws IOException failed to store content or attachments
+	 */
+	public boolean checkin(IndexResult<? extends Content> indexed, Submission submission, Consumer<Content> prepare)
+		throws IOException {
+		if (!changed(indexed)) return false;
+		upload(indexed, submission);
+
+		synchronized (prepareLock) {
+			prepare.accept(indexed.content);
+			synchronized (checkinLock(indexed.content.hash)) {
+				return store(indexed.content, !indexed.files.isEmpty());
+			}
+		}
+	}
+
+	/**
+	 * Atomically apply a change to existing content.
+	 * <p>
+	 * The change is applied to a copy of the current content while holding
+	 * its checkin lock, so concurrent updates to the same item each see the
+	 * result of the last, rather than overwriting one another.
+	 * <p>
+	 * The change may be called while other content is waiting to be checked
+	 * in, so should be quick, and must not itself check in content.
+	 *
+	 * @param hash   hash of the content to change
+	 * @param change change to apply to a copy of the content
+	 * @return true if the content changed and was stored, false if it was
+	 * unchanged or does not exist
+	 * @throws IOException failed to store content
+	 */
+	public boolean update(String hash, Consumer<Content> change) throws IOException {
+		synchronized (checkinLock(hash)) {
+			final Content updated = checkout(hash);
+			if (updated == null) return false;
+
+			change.accept(updated);
+			return store(updated, false);
+		}
+	}
+
+	private CompletableFuture<Content.Attachment> storeAttachment(Path contentPath, IndexResult.NewAttachment file) throws IOException {
+		// use same path structure as per contentPath
+		final String uploadPath = path.relativize(contentPath.resolve(file.name)).toString();
+		final DataStore store = file.type == Content.AttachmentType.IMAGE ? imageStore : attachmentStore;
+
+		final CompletableFuture<String> stored;
+		final InputStream data;
+		if (file.data != null) {
+			// in-memory attachments are streamed directly to the store
+			data = file.open();
+			stored = store.storeAsync(data, file.size(), uploadPath);
+		} else {
+			data = null;
+			stored = store.storeAsync(file.path, uploadPath);
+		}
+
+		return stored.whenComplete((url, ex) -> {
+			// cleanup file once uploaded
 			try {
-				return YAML.fromString(YAML.toString(out.content), Content.class);
+				if (data != null) data.close();
+				file.discard();
 			} catch (IOException e) {
-				throw new IllegalStateException("Cannot clone content " + out.content);
+				// pass, failing to remove a temporary file should not fail the upload
+			}
+		}).thenApply(url -> new Content.Attachment(file.type, file.name, url));
+	}
+
+	private Object checkinLock(String hash) {
+		return checkinLocks[Math.floorMod(hash.hashCode(), checkinLocks.length)];
+	}
+
+	private boolean changed(IndexResult<? extends Content> indexed) {
+		final ContentHolder current = this.content.get(indexed.content.hash);
+		return current == null || !indexed.files.isEmpty() || !indexed.content.equals(content(current));
+	}
+
+	/**
+	 * Upload new attachments, and the submitted file if the content does
+	 * not yet have a main download, recording them on the content.
+	 */
+	private void upload(IndexResult<? extends Content> indexed, Submission submission) throws IOException {
+		final Path next = indexed.content.contentPath(path);
+
+		// upload all new attachments concurrently, then record them in their original order
+		List<CompletableFuture<Content.Attachment>> uploads = new ArrayList<>(indexed.files.size());
+		for (IndexResult.NewAttachment file : indexed.files) {
+			uploads.add(storeAttachment(next, file));
+		}
+		try {
+			for (CompletableFuture<Content.Attachment> upload : uploads) {
+				indexed.content.attachments.add(upload.join());
+			}
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+			throw new IOException("Failed to store attachment for " + indexed.content.name, e.getCause());
+		}
+
+		if (submission != null && indexed.content.downloads.stream().noneMatch(d -> d.main)) {
+			String uploadPath = path.relativize(next.resolve(submission.filePath.getFileName())).toString();
+			try {
+				String fileUrl = contentStore.storeAsync(submission.filePath, uploadPath).join();
+				indexed.content.downloads.add(new Content.Download(fileUrl, true, false, Content.DownloadState.OK));
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+				throw new IOException("Failed to store content file for " + indexed.content.name, e.getCause());
 			}
 		}
-		return null;
 	}
 
-	public boolean checkin(IndexResult<? extends Content> indexed, Submission submission) throws IOException {
-		ContentHolder current = this.content.get(indexed.content.hash);
+	/**
+	 * Write content metadata and update indexes. Must be called while
+	 * holding the content's checkin lock.
+	 */
+	private boolean store(Content updated, boolean force) throws IOException {
+		ContentHolder current = this.content.get(updated.hash);
 
-		if (current == null || (!indexed.content.equals(current.content) || !indexed.files.isEmpty())) {
+		if (current == null || force || !updated.equals(content(current))) {
 			// lets store the content \o/
-			Path next = indexed.content.contentPath(path);
-			Files.createDirectories(next);
-
-			for (IndexResult.NewAttachment file : indexed.files) {
-				// use same path structure as per contentPath
-				try {
-					String uploadPath = path.relativize(next.resolve(file.name)).toString();
-					if (file.type == Content.AttachmentType.IMAGE) {
-						imageStore.store(file.path, uploadPath, (fileUrl, ex) ->
-							indexed.content.attachments.add(new Content.Attachment(file.type, file.name, fileUrl)));
-					} else {
-						attachmentStore.store(file.path, uploadPath, (fileUrl, ex) ->
-							indexed.content.attachments.add(new Content.Attachment(file.type, file.name, fileUrl)));
-					}
-				} finally {
-					// cleanup file once uploaded
-					Files.deleteIfExists(file.path);
-				}
-			}
+			Path next = updated.contentPath(path);
 
 			// TODO KW 20181015 - don't do this - any updates not involving a re-index will wipe attachments out
 			// delete removed attachments from remote
 //			if (current != null) {
 //				for (Content.Attachment had : current.content.attachments) {
-//					if (!indexed.content.attachments.contains(had)) {
+//					if (!updated.attachments.contains(had)) {
 //						switch (had.type) {
 //							case IMAGE:
 //								imageStore.delete(had.url, d -> {
@@ -222,38 +526,254 @@ public class ContentManager {
 //				}
 //			}
 
-			if (submission != null && indexed.content.downloads.stream().noneMatch(d -> d.main)) {
-				String uploadPath = path.relativize(next.resolve(submission.filePath.getFileName())).toString();
-				contentStore.store(submission.filePath, uploadPath, (fileUrl, ex) ->
-					indexed.content.downloads.add(new Content.Download(fileUrl, true, false, Content.DownloadState.OK))
-				);
-			}
-
-			Path newYml = next.resolve(String.format("%s_[%s].yml", Util.slug(indexed.content.name), indexed.content.hash.substring(0, 8)));
-			Files.write(Util.safeFileName(newYml), YAML.toString(indexed.content).getBytes(StandardCharsets.UTF_8),
-						StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+			Path newYml = Util.safeFileName(
+				next.resolve(String.format("%s_[%s].yml", Util.slug(updated.name), updated.hash.substring(0, 8)))
+			);
+			metadata.write(newYml, updated);
 
 			if (current != null && !current.path.equals(newYml)) {
 				// remove old yml file if new file changed
-				Files.deleteIfExists(current.path);
+				metadata.delete(current.path);
 			}
 
-			this.content.put(indexed.content.hash, new ContentHolder(newYml, indexed.content));
-			this.changes.add(indexed.content.hash);
+			if (current != null) unindex(current.summary);
+			if (cache != null) {
+				cache.put(updated.hash, updated);
+				add(new ContentHolder(newYml, new Summary(updated), null));
+			} else {
+				add(new ContentHolder(newYml, new Summary(updated), updated));
+			}
+			this.changes.add(updated.hash);
 
 			return true;
 		}
 		return false;
 	}
 
+	/**
+	 * Get the full content held by a holder, loading it if necessary.
+	 */
+	private Content content(ContentHolder holder) {
+		if (holder.content != null) return holder.content;
+
+		Content c = cache.get(holder.summary.hash);
+		if (c != null) return c;
+
+		try {
+			c = metadata.read(holder.path, Content.class);
+		} catch (IOException e) {
+			throw new UncheckedIOException(String.format("Failed to load content %s from %s", holder.summary.hash, holder.path), e);
+		}
+		cache.put(holder.summary.hash, c);
+		return c;
+	}
+
+	private void add(ContentHolder holder) {
+		content.put(holder.summary.hash, holder);
+		index(holder.summary);
+	}
+
+	private void index(Summary c) {
+		if (c.name != null) {
+			String name = c.name.toLowerCase();
+			// trigrams are maintained while holding the name's entry, so they can't be lost to a concurrent unindex of the same name
+			nameIndex.compute(name, (k, v) -> {
+				Set<String> hashes = v != null ? v : ConcurrentHashMap.newKeySet();
+				if (hashes.isEmpty()) {
+					for (String trigram : trigrams(name)) addToIndex(nameTrigrams, trigram, name);
+				}
+				hashes.add(c.hash);
+				return hashes;
+			});
+		}
+		if (c.author != null) addToIndex(authorIndex, c.author.toLowerCase(), c.hash);
+		if (c.game != null) addToIndex(gameIndex, c.game.toLowerCase(), c.hash);
+		if (c.contentType != null) addToIndex(typeIndex, c.contentType.toLowerCase(), c.hash);
+		addToIndex(classIndex, c.type, c.hash);
+
+		// also index individual files and variations for later quick lookup
+		final int ref = ref(c.hash);
+		for (String fileHash : c.files) contentFileMap.add(fileHash, ref);
+		if (c.variationOf != null) variationsMap.add(c.variationOf, ref);
+	}
+
+	private void unindex(Summary c) {
+		if (c.name != null) {
+			String name = c.name.toLowerCase();
+			nameIndex.computeIfPresent(name, (k, v) -> {
+				v.remove(c.hash);
+				if (!v.isEmpty()) return v;
+
+				// only drop the name's trigrams once no other content shares the name
+				for (String trigram : trigrams(name)) removeFromIndex(nameTrigrams, trigram, name);
+				return null;
+			});
+		}
+		if (c.author != null) removeFromIndex(authorIndex, c.author.toLowerCase(), c.hash);
+		if (c.game != null) removeFromIndex(gameIndex, c.game.toLowerCase(), c.hash);
+		if (c.contentType != null) removeFromIndex(typeIndex, c.contentType.toLowerCase(), c.hash);
+		removeFromIndex(classIndex, c.type, c.hash);
+
+		final int ref = ref(c.hash);
+		for (String fileHash : c.files) contentFileMap.remove(fileHash, ref);
+		if (c.variationOf != null) variationsMap.remove(c.variationOf, ref);
+	}
+
+	/**
+	 * Get the compact reference for a content hash, assigning one if needed.
+	 * References are never reused, so remain valid after content is removed.
+	 */
+	private int ref(String hash) {
+		return refs.computeIfAbsent(hash, h -> {
+			synchronized (refHashes) {
+				refHashes.add(h);
+				return refHashes.size() - 1;
+			}
+		});
+	}
+
+	private Collection<Content> resolve(int[] contentRefs) {
+		if (contentRefs.length == 0) return Collections.emptySet();
+
+		final Set<Content> result = new HashSet<>();
+		for (int ref : contentRefs) {
+			final String hash;
+			synchronized (refHashes) {
+				hash = refHashes.get(ref);
+			}
+			Content c = forHash(hash);
+			if (c != null) result.add(c);
+		}
+		return Collections.unmodifiableSet(result);
+	}
+
+	/**
+	 * Find hashes of all content with names containing the normalised search term.
+	 * <p>
+	 * For terms of three or more characters, candidate names are found via
+	 * the intersection of the term's trigrams, otherwise all names are scanned.
+	 */
+	private Set<String> nameContaining(String term) {
+		if (term.length() < 3) return containing(nameIndex, nameIndex.keySet(), term);
+
+		Set<String> names = null;
+		for (String trigram : trigrams(term)) {
+			Set<String> withTrigram = nameTrigrams.getOrDefault(trigram, Collections.emptySet());
+			if (names == null) {
+				names = new HashSet<>(withTrigram);
+			} else {
+				names.retainAll(withTrigram);
+			}
+			if (names.isEmpty()) break;
+		}
+
+		return containing(nameIndex, names == null ? Collections.emptySet() : names, term);
+	}
+
+	private static Set<String> containing(Map<String, Set<String>> index, Collection<String> keys, String term) {
+		Set<String> result = new HashSet<>();
+		for (String key : keys) {
+			if (!key.contains(term)) continue;
+			Set<String> hashes = index.get(key);
+			if (hashes != null) result.addAll(hashes);
+		}
+		return result;
+	}
+
+	private static Set<String> smallest(Set<String> current, Set<String> candidates) {
+		if (current == null || candidates.size() < current.size()) return candidates;
+		return current;
+	}
+
+	private static Set<String> trigrams(String value) {
+		Set<String> trigrams = new HashSet<>();
+		for (int i = 0; i + 3 <= value.length(); i++) {
+			trigrams.add(value.substring(i, i + 3));
+		}
+		return trigrams;
+	}
+
+	private static <K, V> void addToIndex(Map<K, Set<V>> index, K key, V value) {
+		index.compute(key, (k, v) -> {
+			Set<V> values = v != null ? v : ConcurrentHashMap.newKeySet();
+			values.add(value);
+			return values;
+		});
+	}
+
+	private static <K, V> void removeFromIndex(Map<K, Set<V>> index, K key, V value) {
+		index.computeIfPresent(key, (k, v) -> {
+			v.remove(value);
+			return v.isEmpty() ? null : v;
+		});
+	}
+
 	private static class ContentHolder {
 
 		private final Path path;
+		private final Summary summary;
+		// null in lazy mode
 		private final Content content;
 
-		public ContentHolder(Path path, Content content) {
+		public ContentHolder(Path path, Summary summary, Content content) {
 			this.path = path;
+			this.summary = summary;
 			this.content = content;
 		}
 	}
+
+	/**
+	 * The subset of content fields needed to maintain indexes and answer
+	 * simple queries, which may be read directly from content metadata.
+	 */
+	static class Summary {
+
+		public String contentType;
+		public String hash;
+		public String name;
+		public String author = "Unknown";
+		public String game = "Unknown";
+		public String variationOf;
+		public boolean deleted;
+		public int fileSize;
+
+		private String[] files = new String[0];
+		private Class<? extends Content> type = UnknownContent.class;
+
+		public Summary() {
+		}
+
+		public Summary(Content content) {
+			this.contentType = content.contentType;
+			this.hash = content.hash;
+			this.name = content.name;
+			this.author = content.author;
+			this.game = content.game;
+			this.variationOf = content.variationOf;
+			this.deleted = content.deleted();
+			this.fileSize = content.fileSize;
+			this.files = content.files.stream().map(f -> f.hash).toArray(String[]::new);
+			this.type = content.getClass();
+		}
+
+		@JsonProperty("files")
+		public void setFiles(List<FileHash> files) {
+			this.files = files.stream().map(f -> f.hash).toArray(String[]::new);
+		}
+
+		@JsonProperty("contentType")
+		public void setContentType(String contentType) {
+			this.contentType = contentType;
+			try {
+				this.type = ContentType.valueOf(contentType).contentClass;
+			} catch (IllegalArgumentException | NullPointerException e) {
+				this.type = UnknownContent.class;
+			}
+		}
+
+		static class FileHash {
+
+			public String hash;
+		}
+	}
 }
@@ -0,0 +1,247 @@
+package net.shrimpworks.unreal.archive.content;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import net.shrimpworks.unreal.archive.YAML;
+
+/**
+ * A compact binary snapshot of all content within a content tree.
+ * <p>
+ * Each entry records the size and modification time of the YAML file it
+ * was read from, along with the content itself in Smile binary encoding.
+ * On load, the snapshot is memory-mapped and entries whose source files
+ * have not changed are decoded directly, while changed or new files are
+ * parsed from YAML in bulk.
+ * <p>
+ * The snapshot is purely a cache - if it's missing, unreadable or from a
+ * different version, all content is simply read from YAML, and a new
+ * snapshot is written.
+ */
+public class ContentSnapshot {
+
+	private static final int MAGIC = 0x55414353; // "UACS"
+	private static final int VERSION = 1;
+
+	private static final ObjectMapper MAPPER = JsonMapper.builder(new SmileFactory())
+														 .addModule(new JavaTimeModule())
+														 .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+														 .configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false)
+														 .serializationInclusion(JsonInclude.Include.NON_NULL)
+														 .build();
+
+	private final Path snapshotFile;
+	private final Path root;
+
+	private final Map<String, Entry> previous;
+	private final Map<String, Entry> current;
+
+	private volatile boolean changed;
+
+	private ContentSnapshot(Path snapshotFile, Path root, Map<String, Entry> previous) {
+		this.snapshotFile = snapshotFile;
+		this.root = root;
+		this.previous = previous;
+		this.current = new ConcurrentHashMap<>(Math.max(16, previous.size()));
+		this.changed = false;
+	}
+
+	/**
+	 * Load a snapshot for the content tree at <code>root</code>.
+	 * <p>
+	 * If the snapshot file does not exist or cannot be read, an empty
+	 * snapshot is returned.
+	 *
+	 * @param snapshotFile snapshot file location
+	 * @param root         root of the content tree the snapshot describes
+	 * @return a snapshot
+	 */
+	public static ContentSnapshot load(Path snapshotFile, Path root) {
+		return new ContentSnapshot(snapshotFile, root, readEntries(snapshotFile));
+	}
+
+	/**
+	 * Default snapshot location for a content tree, which is a hidden file
+	 * alongside the content directory.
+	 *
+	 * @param root content root path
+	 * @return snapshot file path
+	 */
+	public static Path defaultPath(Path root) {
+		return root.toAbsolutePath().resolveSibling("." + root.getFileName().toString() + ".snapshot");
+	}
+
+	/**
+	 * Read content for all the given YAML files.
+	 * <p>
+	 * Where the snapshot holds an entry for a file with a matching size and
+	 * modification time, content is decoded from the snapshot. The remaining
+	 * files are parsed together via {@link YAML#readAll(Stream, Class)}.
+	 *
+	 * @param files content YAML files
+	 * @return each file and its content
+	 * @throws IOException failed to read content
+	 */
+	public Map<Path, Content> readAll(Stream<Path> files) throws IOException {
+		final Map<Path, Content> all = new ConcurrentHashMap<>();
+		final Map<Path, BasicFileAttributes> stale = new ConcurrentHashMap<>();
+		try {
+			files.parallel().forEach(file -> {
+				try {
+					BasicFileAttributes attr = Files.readAttributes(file, BasicFileAttributes.class);
+					Content content = cached(file, attr);
+					if (content != null) all.put(file, content);
+					else stale.put(file, attr);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+
+			YAML.readAll(stale.keySet().stream(), Content.class).entrySet().parallelStream().forEach(e -> {
+				try {
+					BasicFileAttributes attr = stale.get(e.getKey());
+					current.put(root.relativize(e.getKey()).toString(),
+								new Entry(attr.size(), attr.lastModifiedTime().toMillis(),
+										  ByteBuffer.wrap(MAPPER.writeValueAsBytes(e.getValue()))));
+					all.put(e.getKey(), e.getValue());
+				} catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		if (!stale.isEmpty()) changed = true;
+
+		return all;
+	}
+
+	/**
+	 * @return content decoded from the snapshot, or null if the snapshot does
+	 * not hold the current version of the file
+	 */
+	private Content cached(Path file, BasicFileAttributes attr) {
+		String key = root.relativize(file).toString();
+		Entry entry = previous.get(key);
+		if (entry == null || entry.size != attr.size() || entry.modified != attr.lastModifiedTime().toMillis()) return null;
+
+		try {
+			Content content = MAPPER.readValue(new ByteBufferBackedInputStream(entry.data.duplicate()), Content.class);
+			current.put(key, entry);
+			return content;
+		} catch (IOException e) {
+			// re-read from YAML
+			return null;
+		}
+	}
+
+	/**
+	 * Write the snapshot out to disk, if anything has changed since it was
+	 * loaded.
+	 *
+	 * @return true if a new snapshot was written
+	 * @throws IOException failed to write the snapshot
+	 */
+	public boolean save() throws IOException {
+		if (!changed && current.size() == previous.size()) return false;
+
+		Path tmp = Files.createTempFile(snapshotFile.getParent(), snapshotFile.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(current.size());
+				for (Map.Entry<String, Entry> e : current.entrySet()) {
+					byte[] key = e.getKey().getBytes(StandardCharsets.UTF_8);
+					ByteBuffer data = e.getValue().data.duplicate();
+					out.writeInt(key.length);
+					out.write(key);
+					out.writeLong(e.getValue().size);
+					out.writeLong(e.getValue().modified);
+					out.writeInt(data.remaining());
+					if (data.hasArray()) {
+						out.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+					} else {
+						byte[] bytes = new byte[data.remaining()];
+						data.get(bytes);
+						out.write(bytes);
+					}
+				}
+			}
+			Files.move(tmp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+
+		return true;
+	}
+
+	private static Map<String, Entry> readEntries(Path snapshotFile) {
+		if (!Files.isRegularFile(snapshotFile)) return new HashMap<>();
+
+		try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) return new HashMap<>();
+
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return new HashMap<>();
+
+			int count = buffer.getInt();
+			Map<String, Entry> entries = new HashMap<>(count * 2);
+			for (int i = 0; i < count; i++) {
+				byte[] key = new byte[buffer.getInt()];
+				buffer.get(key);
+				long size = buffer.getLong();
+				long modified = buffer.getLong();
+				int length = buffer.getInt();
+
+				ByteBuffer data = buffer.slice();
+				data.limit(length);
+				buffer.position(buffer.position() + length);
+
+				entries.put(new String(key, StandardCharsets.UTF_8), new Entry(size, modified, data));
+			}
+			return entries;
+		} catch (Exception e) {
+			// snapshot is unreadable or truncated, it will be rebuilt
+			return new HashMap<>();
+		}
+	}
+
+	private static class Entry {
+
+		private final long size;
+		private final long modified;
+		private final ByteBuffer data;
+
+		private Entry(long size, long modified, ByteBuffer data) {
+			this.size = size;
+			this.modified = modified;
+			this.data = data;
+		}
+	}
+}
@@ -0,0 +1,264 @@
+package net.shrimpworks.unreal.archive.content;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.shrimpworks.unreal.archive.CLI;
+import net.shrimpworks.unreal.archive.Util;
+import net.shrimpworks.unreal.archive.storage.HttpTransport;
+
+/**
+ * Checks the download mirrors of content, recording whether they work,
+ * and how quickly they respond, in {@link DownloadHealth}.
+ * <p>
+ * Downloads are checked concurrently, with a separate limit on the number
+ * of concurrent checks made to each host. By default, a <code>HEAD</code>
+ * request measures response latency. If a number of bytes to sample is
+ * set, a ranged <code>GET</code> is made instead, also measuring transfer
+ * rate.
+ * <p>
+ * Downloads which are found to no longer exist are marked as
+ * {@link Content.DownloadState#MISSING}, and missing downloads which are
+ * found to work again are restored to {@link Content.DownloadState#OK}.
+ * Other failures, such as timeouts or server errors, are recorded but do
+ * not change a download's state, since they may be temporary.
+ */
+public class DownloadChecker {
+
+	public static class Options {
+
+		public static final Options DEFAULT = new Options(16, 4, Duration.ofSeconds(30), 0);
+
+		public final int concurrency;
+		public final int hostConcurrency;
+		public final Duration timeout;
+		// if greater than zero, this many bytes are downloaded to measure transfer rate
+		public final long sampleBytes;
+
+		public Options(int concurrency, int hostConcurrency, Duration timeout, long sampleBytes) {
+			this.concurrency = Math.max(1, concurrency);
+			this.hostConcurrency = Math.max(1, hostConcurrency);
+			this.timeout = timeout;
+			this.sampleBytes = sampleBytes;
+		}
+
+		/**
+		 * Read checker options from the command line.
+		 * <p>
+		 * Supports <code>--concurrency</code>, <code>--host-concurrency</code>,
+		 * <code>--check-timeout</code> in seconds, and <code>--sample-bytes</code>.
+		 *
+		 * @param cli command line
+		 * @return checker options
+		 */
+		public static Options fromCli(CLI cli) {
+			return new Options(
+				Integer.parseInt(cli.option("concurrency", Integer.toString(DEFAULT.concurrency))),
+				Integer.parseInt(cli.option("host-concurrency", Integer.toString(DEFAULT.hostConcurrency))),
+				Duration.ofSeconds(Long.parseLong(cli.option("check-timeout", Long.toString(DEFAULT.timeout.toSeconds())))),
+				Long.parseLong(cli.option("sample-bytes", Long.toString(DEFAULT.sampleBytes)))
+			);
+		}
+	}
+
+	private final ContentManager cm;
+	private final DownloadHealth health;
+	private final Options options;
+
+	private final Map<String, Semaphore> hosts;
+
+	public DownloadChecker(ContentManager cm, DownloadHealth health, Options options) {
+		this.cm = cm;
+		this.health = health;
+		this.options = options;
+		this.hosts = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Check all downloads of all content.
+	 *
+	 * @param progress progress callback, invoked as each download is checked
+	 * @return the number of content items with changed download states
+	 * @throws IOException failed to update content
+	 */
+	public int check(Progress progress) throws IOException {
+		final List<Content.Download> downloads = new ArrayList<>();
+		final Map<Content.Download, Content> owners = new IdentityHashMap<>();
+		for (Content c : cm.all()) {
+			if (c.deleted) continue;
+			for (Content.Download d : c.downloads) {
+				if (d.state == Content.DownloadState.DELETED) continue;
+				downloads.add(d);
+				owners.put(d, c);
+			}
+		}
+
+		// interleave hosts, so that checks are spread across hosts rather than queuing on one at a time
+		Collections.shuffle(downloads);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(options.concurrency);
+		final AtomicInteger done = new AtomicInteger();
+		final Map<String, Content.DownloadState> changed = new ConcurrentHashMap<>();
+		try {
+			final List<Future<?>> checks = new ArrayList<>(downloads.size());
+			for (Content.Download d : downloads) {
+				checks.add(executor.submit(() -> {
+					DownloadHealth.Result result = check(d.url);
+					health.record(d.url, result);
+
+					Content.DownloadState state = d.state;
+					if (result.missing()) state = Content.DownloadState.MISSING;
+					else if (result.ok()) state = Content.DownloadState.OK;
+					if (state != d.state) changed.put(d.url, state);
+
+					progress.progress(done.incrementAndGet(), downloads.size(), d.url, result);
+				}));
+			}
+
+			for (Future<?> f : checks) f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while checking downloads", e);
+		} catch (ExecutionException e) {
+			// keep the results gathered so far
+			health.save();
+			throw new IOException("Failed to check downloads", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// apply state changes to affected content, to its current state rather than the copy checked
+		final Set<String> affected = new HashSet<>();
+		for (Content.Download d : downloads) {
+			if (changed.containsKey(d.url)) affected.add(owners.get(d).hash);
+		}
+		int updated = 0;
+		for (String hash : affected) {
+			boolean stored = cm.update(hash, c -> {
+				for (Content.Download cd : c.downloads) {
+					if (changed.containsKey(cd.url)) cd.state = changed.get(cd.url);
+				}
+			});
+			if (stored) updated++;
+		}
+
+		health.save();
+
+		return updated;
+	}
+
+	/**
+	 * Check a single URL.
+	 * <p>
+	 * Any failure, including invalid or unsupported URLs, is recorded as a
+	 * failed check rather than thrown, so one bad URL can't abort a run.
+	 *
+	 * @param url url to check
+	 * @return result of the check
+	 */
+	public DownloadHealth.Result check(String url) {
+		final URI uri;
+		try {
+			uri = Util.requestUri(url);
+		} catch (RuntimeException e) {
+			return new DownloadHealth.Result(0, 0, 0, Instant.now().getEpochSecond());
+		}
+
+		final Semaphore permits = hosts.computeIfAbsent(host(uri), h -> new Semaphore(options.hostConcurrency));
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new DownloadHealth.Result(0, 0, 0, Instant.now().getEpochSecond());
+		}
+
+		final long start = System.nanoTime();
+		try {
+			return options.sampleBytes > 0 ? sample(uri) : head(uri);
+		} catch (IOException e) {
+			// record how long the failure took, which is only the full timeout if the request actually timed out
+			final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			return new DownloadHealth.Result(0, elapsed, 0, Instant.now().getEpochSecond());
+		} catch (RuntimeException e) {
+			return new DownloadHealth.Result(0, 0, 0, Instant.now().getEpochSecond());
+		} finally {
+			permits.release();
+		}
+	}
+
+	private DownloadHealth.Result head(URI uri) throws IOException {
+		final HttpTransport transport = HttpTransport.shared();
+		final long start = System.nanoTime();
+		HttpResponse<Void> response = transport.send(
+			transport.request(uri).timeout(options.timeout).method("HEAD", HttpRequest.BodyPublishers.noBody()).build(),
+			HttpResponse.BodyHandlers.discarding()
+		);
+		final long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// some servers do not allow HEAD requests, so try again with a ranged request
+		if (response.statusCode() == HttpURLConnection.HTTP_BAD_METHOD
+			|| response.statusCode() == HttpURLConnection.HTTP_NOT_IMPLEMENTED) {
+			return sample(uri);
+		}
+
+		return new DownloadHealth.Result(response.statusCode(), latency, 0, Instant.now().getEpochSecond());
+	}
+
+	private DownloadHealth.Result sample(URI uri) throws IOException {
+		final HttpTransport transport = HttpTransport.shared();
+		final long bytes = Math.max(1, options.sampleBytes);
+		final long start = System.nanoTime();
+		return transport.stream(
+			transport.request(uri).timeout(options.timeout).header("Range", String.format("bytes=0-%d", bytes - 1)).GET().build(),
+			response -> {
+				final long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				long rate = 0;
+				if (response.statusCode() < 400 && options.sampleBytes > 0) {
+					// servers ignoring the range will send the whole file, so stop after the sample
+					final InputStream body = response.body();
+					final byte[] buffer = new byte[8192];
+					long read = 0;
+					int n;
+					while (read < bytes && (n = body.read(buffer, 0, (int)Math.min(buffer.length, bytes - read))) > 0) {
+						read += n;
+					}
+					final long elapsed = Math.max(1, System.nanoTime() - start);
+					rate = read * TimeUnit.SECONDS.toNanos(1) / elapsed;
+				}
+				return new DownloadHealth.Result(response.statusCode(), latency, rate, Instant.now().getEpochSecond());
+			}
+		);
+	}
+
+	private static String host(URI uri) {
+		return uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+	}
+
+	@FunctionalInterface
+	public interface Progress {
+
+		public void progress(int checked, int total, String url, DownloadHealth.Result result);
+	}
+}
@@ -0,0 +1,215 @@
+package net.shrimpworks.unreal.archive.content;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Measured health of download URLs, as recorded by the {@link DownloadChecker}.
+ * <p>
+ * Used to rank the download mirrors of content, so that the fastest
+ * working mirror may be preferred over the others, and broken mirrors
+ * are listed last.
+ * <p>
+ * Results are stored as a tab-separated text file, with one
+ * <code>url, status, latency, bytes per second, checked</code> line per
+ * download URL.
+ */
+public class DownloadHealth {
+
+	/**
+	 * Health with no measurements, under which downloads are ranked with
+	 * the main download first, and otherwise in their original order.
+	 */
+	public static final DownloadHealth NONE = new DownloadHealth(null, new ConcurrentHashMap<>());
+
+	private static volatile DownloadHealth current = NONE;
+
+	private final Path healthFile;
+	private final Map<String, Result> results;
+
+	private DownloadHealth(Path healthFile, Map<String, Result> results) {
+		this.healthFile = healthFile;
+		this.results = results;
+	}
+
+	/**
+	 * Load health results from a file. If the file does not exist, an
+	 * empty set of results is returned, and will be written to the file
+	 * when saved.
+	 *
+	 * @param healthFile results file location
+	 * @return download health
+	 * @throws IOException failed to read the file
+	 */
+	public static DownloadHealth load(Path healthFile) throws IOException {
+		final Map<String, Result> results = new ConcurrentHashMap<>();
+		if (Files.isRegularFile(healthFile)) {
+			for (String line : Files.readAllLines(healthFile, StandardCharsets.UTF_8)) {
+				String[] parts = line.split("\t");
+				if (parts.length < 5) continue;
+				try {
+					results.put(parts[0], new Result(Integer.parseInt(parts[1]), Long.parseLong(parts[2]),
+													 Long.parseLong(parts[3]), Long.parseLong(parts[4])));
+				} catch (NumberFormatException e) {
+					// pass, invalid lines are ignored
+				}
+			}
+		}
+		return new DownloadHealth(healthFile, results);
+	}
+
+	/**
+	 * @return the health results used to rank downloads
+	 */
+	public static DownloadHealth current() {
+		return current;
+	}
+
+	/**
+	 * Set the health results used to rank downloads.
+	 *
+	 * @param health download health
+	 */
+	public static void use(DownloadHealth health) {
+		current = health;
+	}
+
+	/**
+	 * Write results out to the file they were loaded from.
+	 *
+	 * @throws IOException failed to write the file
+	 */
+	public void save() throws IOException {
+		if (healthFile == null) return;
+
+		if (healthFile.toAbsolutePath().getParent() != null) Files.createDirectories(healthFile.toAbsolutePath().getParent());
+		Path tmp = Files.createTempFile(healthFile.toAbsolutePath().getParent(), healthFile.getFileName().toString(), ".tmp");
+		try {
+			try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+				for (Map.Entry<String, Result> e : new TreeMap<>(results).entrySet()) {
+					Result r = e.getValue();
+					out.write(String.format("%s\t%d\t%d\t%d\t%d%n", e.getKey(), r.status, r.latency, r.bytesPerSecond, r.checked));
+				}
+			}
+			Files.move(tmp, healthFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	public Result get(String url) {
+		return results.get(url);
+	}
+
+	public void record(String url, Result result) {
+		results.put(url, result);
+	}
+
+	public int size() {
+		return results.size();
+	}
+
+	/**
+	 * Ranks downloads, with those in the {@link Content.DownloadState#OK}
+	 * state first. Of those, downloads measured as working come first,
+	 * fastest first, followed by those not yet measured, with the main
+	 * download first, and finally downloads which failed their checks.
+	 *
+	 * @return download comparator
+	 */
+	public Comparator<Content.Download> ranking() {
+		return Comparator.<Content.Download>comparingInt(d -> d.state == Content.DownloadState.OK ? 0 : 1)
+						 .thenComparingInt(d -> tier(results.get(d.url)))
+						 .thenComparing(d -> results.get(d.url), Comparator.nullsLast(Result.FASTEST))
+						 .thenComparingInt(d -> d.main ? 0 : 1);
+	}
+
+	/**
+	 * Rank a set of downloads, as per {@link #ranking()}.
+	 * <p>
+	 * Repacks are not copies of the original file, so are excluded.
+	 *
+	 * @param downloads downloads to rank
+	 * @return a new list of downloads, best first
+	 */
+	public List<Content.Download> ranked(List<Content.Download> downloads) {
+		return downloads.stream()
+						.filter(d -> !d.repack)
+						.sorted(ranking())
+						.collect(Collectors.toList());
+	}
+
+	/**
+	 * Choose the best download of a set of downloads.
+	 * <p>
+	 * Without any measurements, this is the main download. Otherwise,
+	 * it's the highest ranked download which is not a repack, falling
+	 * back to the main download if no such downloads are in the
+	 * {@link Content.DownloadState#OK} state.
+	 *
+	 * @param downloads downloads to choose from
+	 * @return the best download, or null if there are no suitable downloads
+	 */
+	public Content.Download best(List<Content.Download> downloads) {
+		final Content.Download main = downloads.stream().filter(d -> d.main).findFirst().orElse(null);
+		if (results.isEmpty()) return main;
+
+		return ranked(downloads).stream()
+								.filter(d -> d.state == Content.DownloadState.OK)
+								.findFirst()
+								.orElse(main);
+	}
+
+	private static int tier(Result result) {
+		if (result == null) return 1;
+		return result.ok() ? 0 : 2;
+	}
+
+	public static class Result {
+
+		static final Comparator<Result> FASTEST = Comparator.<Result>comparingLong(r -> -r.bytesPerSecond)
+															.thenComparingLong(r -> r.latency);
+
+		// HTTP status, or 0 if the request failed
+		public final int status;
+		// time to first response, in milliseconds
+		public final long latency;
+		// measured transfer rate, or 0 if not measured
+		public final long bytesPerSecond;
+		// time of the check, in epoch seconds
+		public final long checked;
+
+		public Result(int status, long latency, long bytesPerSecond, long checked) {
+			this.status = status;
+			this.latency = latency;
+			this.bytesPerSecond = bytesPerSecond;
+			this.checked = checked;
+		}
+
+		public boolean ok() {
+			return status >= 200 && status < 400;
+		}
+
+		/**
+		 * @return true if the resource is definitely gone
+		 */
+		public boolean missing() {
+			return status == 404 || status == 410;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Result [status=%d, latency=%dms, bytesPerSecond=%d]", status, latency, bytesPerSecond);
+		}
+	}
+}
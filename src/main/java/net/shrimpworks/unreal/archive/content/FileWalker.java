@@ -0,0 +1,266 @@
+package net.shrimpworks.unreal.archive.content;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Walks a directory tree in parallel, using fork/join tasks.
+ * <p>
+ * Each directory is listed by its own task, which forks further tasks for
+ * its sub-directories and for the files within it, so idle threads may
+ * steal work from deep or very large directories. This makes it suitable
+ * for walks where visiting a file is expensive, such as when it's hashed.
+ * <p>
+ * While files are visited in no particular order, and visitors must be
+ * safe for concurrent use, the results of visiting them are passed on in a
+ * consistent order: depth-first, with the files in each directory sorted
+ * by name, followed by its sub-directories, also sorted by name. Results
+ * are passed on as soon as everything before them has been, so they may
+ * be processed while the walk is still in progress.
+ * <p>
+ * As with {@link Files#walkFileTree(Path, java.nio.file.FileVisitor)},
+ * symbolic links are not followed.
+ */
+class FileWalker {
+
+	// number of files visited by a single task, before it's split further
+	private static final int BATCH_SIZE = 8;
+
+	private static final Comparator<Path> BY_NAME = Comparator.comparing(p -> p.getFileName().toString());
+
+	/**
+	 * Walk a directory tree, blocking until all files have been visited, and
+	 * their results received.
+	 *
+	 * @param pool     pool used to walk the tree and visit files
+	 * @param root     root directory
+	 * @param visitor  visitor called for each directory and file
+	 * @param receiver receives the results of visiting files, in walk order
+	 * @param <T>      result type
+	 * @throws IOException failed to read a directory, or a visitor or the
+	 *                     receiver failed
+	 */
+	static <T> void walk(ForkJoinPool pool, Path root, DirectoryVisitor<T> visitor, Receiver<T> receiver) throws IOException {
+		final Sequencer<T> sequencer = new Sequencer<>(receiver);
+		try {
+			pool.invoke(new DirectoryTask<>(root, visitor, sequencer, sequencer.root));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	@FunctionalInterface
+	interface DirectoryVisitor<T> {
+
+		/**
+		 * Called as a directory is entered, before any of its files are visited.
+		 *
+		 * @param dir directory being entered
+		 * @return visitor for the files directly within the directory, or null
+		 * to skip them
+		 * @throws IOException failed to process the directory
+		 */
+		Visitor<T> enter(Path dir) throws IOException;
+	}
+
+	@FunctionalInterface
+	interface Visitor<T> {
+
+		/**
+		 * Visit a file.
+		 *
+		 * @param file  file being visited
+		 * @param attrs attributes of the file
+		 * @return result to be received, or null if there's nothing to receive
+		 * @throws IOException failed to process the file
+		 */
+		T visitFile(Path file, BasicFileAttributes attrs) throws IOException;
+	}
+
+	@FunctionalInterface
+	interface Receiver<T> {
+
+		/**
+		 * Receive the result of visiting a file. Never called concurrently.
+		 *
+		 * @param result result of visiting a file
+		 * @throws IOException failed to process the result
+		 */
+		void accept(T result) throws IOException;
+	}
+
+	/**
+	 * A directory's position in the walk, holding the results of visiting
+	 * its files until they can be received.
+	 */
+	private static class Node<T> {
+
+		private boolean ready;
+		private List<Node<T>> children;
+		private T[] results;
+		private int next;
+	}
+
+	/**
+	 * Passes results to the receiver in walk order, as directories become
+	 * ready.
+	 */
+	private static class Sequencer<T> {
+
+		private final Receiver<T> receiver;
+		private final Node<T> root = new Node<>();
+		private final Deque<Node<T>> position = new ArrayDeque<>();
+		private boolean failed;
+
+		private Sequencer(Receiver<T> receiver) {
+			this.receiver = receiver;
+			this.position.push(root);
+		}
+
+		/**
+		 * Mark a directory as ready, once its sub-directories are known and its
+		 * files have been visited, and receive any results which are now due.
+		 */
+		private synchronized void ready(Node<T> node, List<Node<T>> children, T[] results) throws IOException {
+			node.children = children;
+			node.results = results;
+			node.ready = true;
+
+			if (failed) return;
+			try {
+				while (!position.isEmpty()) {
+					final Node<T> current = position.peek();
+					if (!current.ready) return;
+
+					if (current.results != null) {
+						for (T result : current.results) {
+							if (result != null) receiver.accept(result);
+						}
+						current.results = null;
+					}
+
+					if (current.next < current.children.size()) {
+						position.push(current.children.get(current.next++));
+					} else {
+						current.children = null;
+						position.pop();
+					}
+				}
+			} catch (IOException | RuntimeException e) {
+				failed = true;
+				throw e;
+			}
+		}
+	}
+
+	private static class DirectoryTask<T> extends RecursiveAction {
+
+		private final Path dir;
+		private final DirectoryVisitor<T> visitor;
+		private final Sequencer<T> sequencer;
+		private final Node<T> node;
+
+		private DirectoryTask(Path dir, DirectoryVisitor<T> visitor, Sequencer<T> sequencer, Node<T> node) {
+			this.dir = dir;
+			this.visitor = visitor;
+			this.sequencer = sequencer;
+			this.node = node;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		protected void compute() {
+			try {
+				final Visitor<T> files = visitor.enter(dir);
+
+				final List<Path> dirs = new ArrayList<>();
+				final List<Path> paths = new ArrayList<>();
+				final Map<Path, BasicFileAttributes> attrs = new HashMap<>();
+				try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+					for (Path entry : entries) {
+						BasicFileAttributes a = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+						if (a.isDirectory()) {
+							dirs.add(entry);
+						} else if (files != null) {
+							paths.add(entry);
+							attrs.put(entry, a);
+						}
+					}
+				}
+
+				// sub-directories are walked while this directory's files are visited
+				dirs.sort(BY_NAME);
+				final List<Node<T>> children = new ArrayList<>(dirs.size());
+				final List<ForkJoinTask<?>> tasks = new ArrayList<>(dirs.size());
+				for (Path d : dirs) {
+					Node<T> child = new Node<>();
+					children.add(child);
+					tasks.add(new DirectoryTask<>(d, visitor, sequencer, child).fork());
+				}
+
+				paths.sort(BY_NAME);
+				final T[] results = (T[])new Object[paths.size()];
+				if (!paths.isEmpty()) new FilesTask<>(files, paths, attrs, results, 0, paths.size()).invoke();
+
+				sequencer.ready(node, Collections.unmodifiableList(children), results);
+
+				for (ForkJoinTask<?> task : tasks) task.join();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private static class FilesTask<T> extends RecursiveAction {
+
+		private final Visitor<T> visitor;
+		private final List<Path> paths;
+		private final Map<Path, BasicFileAttributes> attrs;
+		private final T[] results;
+		private final int from;
+		private final int to;
+
+		private FilesTask(Visitor<T> visitor, List<Path> paths, Map<Path, BasicFileAttributes> attrs, T[] results, int from, int to) {
+			this.visitor = visitor;
+			this.paths = paths;
+			this.attrs = attrs;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > BATCH_SIZE) {
+				final int mid = (from + to) >>> 1;
+				invokeAll(new FilesTask<>(visitor, paths, attrs, results, from, mid),
+						  new FilesTask<>(visitor, paths, attrs, results, mid, to));
+				return;
+			}
+
+			for (int i = from; i < to; i++) {
+				try {
+					results[i] = visitor.visitFile(paths.get(i), attrs.get(paths.get(i)));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+	}
+}
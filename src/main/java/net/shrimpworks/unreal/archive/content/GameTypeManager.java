@@ -3,7 +3,6 @@ package net.shrimpworks.unreal.archive.content;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.nio.channels.ReadableByteChannel;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -18,12 +17,13 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import javax.imageio.ImageIO;
 
 import net.shrimpworks.unreal.archive.CLI;
+import net.shrimpworks.unreal.archive.MetadataStore;
 import net.shrimpworks.unreal.archive.Platform;
 import net.shrimpworks.unreal.archive.Util;
 import net.shrimpworks.unreal.archive.YAML;
@@ -44,12 +44,18 @@ public class GameTypeManager {
 	private static final String DOCUMENT_FILE = "gametype.md";
 
 	private final Path path;
+	private final MetadataStore metadata;
 
 	private final Set<GameTypeHolder> gameTypes;
 	private final Map<String, Collection<GameType>> contentFileMap;
 
 	public GameTypeManager(Path path) throws IOException {
+		this(MetadataStore.YAML_FILES, path);
+	}
+
+	public GameTypeManager(MetadataStore metadata, Path path) throws IOException {
 		this.path = path;
+		this.metadata = metadata;
 		this.gameTypes = new HashSet<>();
 		this.contentFileMap = new HashMap<>();
 
@@ -57,27 +63,22 @@ public class GameTypeManager {
 	}
 
 	private void scanPath(Path root, GameTypeHolder parent) throws IOException {
-		try (Stream<Path> files = Files.find(root, 3, (file, attr) -> file.toString().endsWith(".yml")).parallel()) {
-			files.forEach(file -> {
-				try {
-					GameType g = YAML.fromFile(file, GameType.class);
-					GameTypeHolder holder = new GameTypeHolder(file, g, parent);
-					gameTypes.add(holder);
-
-					// while reading this content, also index its individual files for later quick lookup
-					g.releases.stream().flatMap(r -> r.files.stream()).flatMap(f -> f.files.stream()).forEach(f -> {
-						Collection<GameType> fileSet = contentFileMap.computeIfAbsent(f.hash, h -> ConcurrentHashMap.newKeySet());
-						fileSet.add(g);
-					});
-
-					Path variations = file.resolveSibling("variations");
-					if (Files.isDirectory(variations)) {
-						scanPath(variations, holder);
-					}
-				} catch (Exception e) {
-					throw new RuntimeException(e);
-				}
+		final Map<Path, GameType> loaded = metadata.readAll(root, 3, GameType.class);
+
+		// files are read in parallel, but indexed one at a time, since the indexes are not thread-safe
+		for (Map.Entry<Path, GameType> e : loaded.entrySet()) {
+			final Path file = e.getKey();
+			final GameType g = e.getValue();
+			GameTypeHolder holder = new GameTypeHolder(file, g, parent);
+			gameTypes.add(holder);
+
+			// while reading this content, also index its individual files for later quick lookup
+			g.releases.stream().flatMap(r -> r.files.stream()).flatMap(f -> f.files.stream()).forEach(f -> {
+				Collection<GameType> fileSet = contentFileMap.computeIfAbsent(f.hash, h -> ConcurrentHashMap.newKeySet());
+				fileSet.add(g);
 			});
+
+			scanPath(file.resolveSibling("variations"), holder);
 		}
 	}
 
@@ -162,8 +163,8 @@ public class GameTypeManager {
 		Path yml = Util.safeFileName(path.resolve("gametype.yml"));
 		Path md = Util.safeFileName(path.resolve(DOCUMENT_FILE));
 
-		if (!Files.exists(yml)) {
-			Files.write(yml, YAML.toString(gt).getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE);
+		if (!metadata.exists(yml)) {
+			metadata.write(yml, gt);
 		}
 
 		if (!Files.exists(md)) {
@@ -227,8 +228,7 @@ public class GameTypeManager {
 		rel.files.add(file);
 
 		// update with the release
-		Files.write(gt.path, YAML.toString(gt.gametype).getBytes(StandardCharsets.UTF_8),
-					StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+		metadata.write(gt.path, gt.gametype);
 
 		if (cli.option("index", "false").equalsIgnoreCase("true")) {
 			// trigger an index
@@ -332,32 +332,37 @@ public class GameTypeManager {
 	private void storeReleaseFile(
 		DataStore contentStore, GameType gameType, GameType.ReleaseFile releaseFile, Path localFile, boolean[] success
 	) throws IOException {
-		contentStore.store(localFile, String.join("/", remotePath(gameType), localFile.getFileName().toString()), (url, ex) -> {
-			System.out.println(" - stored as " + url);
-
-			try {
-				// record download
-				if (releaseFile.downloads.stream().noneMatch(dl -> dl.url.equals(url))) {
-					releaseFile.downloads.add(new Content.Download(url, !releaseFile.synced, false, Content.DownloadState.OK));
-				}
+		final String url;
+		try {
+			url = contentStore.storeAsync(localFile, String.join("/", remotePath(gameType), localFile.getFileName().toString())).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+			throw new IOException("Failed to store release file " + localFile, e.getCause());
+		}
 
-				// other file stats
-				if (!releaseFile.synced) {
-					releaseFile.fileSize = Files.size(localFile);
-					releaseFile.hash = Util.hash(localFile);
-					releaseFile.originalFilename = Util.fileName(localFile);
-					releaseFile.synced = true;
-				}
+		System.out.println(" - stored as " + url);
 
-				// replace existing with updated
-				Files.write(path(gameType), YAML.toString(gameType).getBytes(StandardCharsets.UTF_8),
-							StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			// record download
+			if (releaseFile.downloads.stream().noneMatch(dl -> dl.url.equals(url))) {
+				releaseFile.downloads.add(new Content.Download(url, !releaseFile.synced, false, Content.DownloadState.OK));
+			}
 
-				success[0] = true;
-			} catch (IOException e) {
-				throw new RuntimeException(String.format("Failed to update gametype definition %s: %s%n", path(gameType), e));
+			// other file stats
+			if (!releaseFile.synced) {
+				releaseFile.fileSize = Files.size(localFile);
+				releaseFile.hash = Util.hash(localFile);
+				releaseFile.originalFilename = Util.fileName(localFile);
+				releaseFile.synced = true;
 			}
-		});
+
+			// replace existing with updated
+			metadata.write(path(gameType), gameType);
+
+			success[0] = true;
+		} catch (IOException e) {
+			throw new RuntimeException(String.format("Failed to update gametype definition %s: %s%n", path(gameType), e));
+		}
 	}
 
 	private void indexReleases(Games game, String gameType, String releaseFile, DataStore imagesStore) {
@@ -403,8 +408,7 @@ public class GameTypeManager {
 								  clone.maps = findMaps(incoming, clone, imagesStore);
 
 								  // replace existing with updated
-								  Files.write(g.path, YAML.toString(clone).getBytes(StandardCharsets.UTF_8),
-											  StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+								  metadata.write(g.path, clone);
 							  } catch (IOException e) {
 								  System.err.printf("Could not read files and dependencies for release file %s%n", f[0]);
 								  e.printStackTrace();
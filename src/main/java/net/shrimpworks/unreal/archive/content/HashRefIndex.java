@@ -0,0 +1,268 @@
+package net.shrimpworks.unreal.archive.content;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A compact multimap of SHA-1 hashes to integer references.
+ * <p>
+ * Hashes are stored as 20 binary bytes within a single array, in an
+ * open-addressing table with linear probing, rather than as individual
+ * strings and sets. A hash with a single reference, by far the most common
+ * case, costs no objects at all.
+ * <p>
+ * Keys which are not lower-case hexadecimal SHA-1 hashes are accepted, but
+ * kept in a conventional map.
+ * <p>
+ * Safe for concurrent use; reads may proceed concurrently, while writes
+ * are exclusive.
+ */
+class HashRefIndex {
+
+	private static final int KEY_BYTES = 20;
+	private static final int EMPTY = -1;
+	private static final float LOAD_FACTOR = 0.7f;
+	private static final int[] NONE = new int[0];
+
+	private final ReadWriteLock lock;
+	// keys which are not SHA-1 hashes
+	private final Map<String, int[]> other;
+
+	private byte[] keys;
+	// first reference for each slot, or EMPTY for unused slots
+	private int[] first;
+	// additional references for each slot, null if there's only one
+	private int[][] more;
+	private int mask;
+	private int size;
+
+	HashRefIndex(int expectedSize) {
+		this.lock = new ReentrantReadWriteLock();
+		this.other = new HashMap<>();
+		allocate(capacityFor(expectedSize));
+	}
+
+	void add(String hash, int ref) {
+		final byte[] key = key(hash);
+		lock.writeLock().lock();
+		try {
+			if (key == null) {
+				other.compute(hash, (k, refs) -> refs == null ? new int[] { ref } : with(refs, ref));
+				return;
+			}
+
+			int slot = find(key);
+			if (slot >= 0) {
+				if (first[slot] == ref) return;
+				if (more[slot] == null) more[slot] = new int[] { ref };
+				else more[slot] = with(more[slot], ref);
+				return;
+			}
+
+			if (size + 1 > (mask + 1) * LOAD_FACTOR) {
+				rehash((mask + 1) * 2);
+				slot = find(key);
+			}
+			slot = -(slot + 1);
+			System.arraycopy(key, 0, keys, slot * KEY_BYTES, KEY_BYTES);
+			first[slot] = ref;
+			size++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	void remove(String hash, int ref) {
+		final byte[] key = key(hash);
+		lock.writeLock().lock();
+		try {
+			if (key == null) {
+				other.computeIfPresent(hash, (k, refs) -> {
+					int[] remaining = without(refs, ref);
+					return remaining.length == 0 ? null : remaining;
+				});
+				return;
+			}
+
+			final int slot = find(key);
+			if (slot < 0) return;
+
+			if (first[slot] == ref) {
+				if (more[slot] == null) {
+					delete(slot);
+				} else {
+					first[slot] = more[slot][0];
+					more[slot] = more[slot].length == 1 ? null : Arrays.copyOfRange(more[slot], 1, more[slot].length);
+				}
+			} else if (more[slot] != null) {
+				int[] remaining = without(more[slot], ref);
+				more[slot] = remaining.length == 0 ? null : remaining;
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Get all references held for a hash.
+	 *
+	 * @param hash hash to look up
+	 * @return references, or an empty array if there are none
+	 */
+	int[] get(String hash) {
+		final byte[] key = key(hash);
+		lock.readLock().lock();
+		try {
+			if (key == null) {
+				int[] refs = other.get(hash);
+				return refs == null ? NONE : refs.clone();
+			}
+
+			final int slot = find(key);
+			if (slot < 0) return NONE;
+			if (more[slot] == null) return new int[] { first[slot] };
+
+			final int[] refs = new int[more[slot].length + 1];
+			refs[0] = first[slot];
+			System.arraycopy(more[slot], 0, refs, 1, more[slot].length);
+			return refs;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return number of distinct hashes held
+	 */
+	int size() {
+		lock.readLock().lock();
+		try {
+			return size + other.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Find the slot holding a key.
+	 *
+	 * @return the slot, or if not found, <code>-(slot + 1)</code>
+	 * where <code>slot</code> is the free slot the key may be inserted into
+	 */
+	private int find(byte[] key) {
+		int slot = home(key, 0);
+		while (first[slot] != EMPTY) {
+			if (Arrays.equals(keys, slot * KEY_BYTES, (slot + 1) * KEY_BYTES, key, 0, KEY_BYTES)) return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -(slot + 1);
+	}
+
+	/**
+	 * Remove the key in a slot, shifting any following keys of the same
+	 * probe sequence back into the gap, so no tombstones are needed.
+	 */
+	private void delete(int slot) {
+		int hole = slot;
+		int i = (hole + 1) & mask;
+		while (first[i] != EMPTY) {
+			final int home = home(keys, i * KEY_BYTES);
+			final boolean reachable = hole < i ? (home > hole && home <= i) : (home > hole || home <= i);
+			if (!reachable) {
+				System.arraycopy(keys, i * KEY_BYTES, keys, hole * KEY_BYTES, KEY_BYTES);
+				first[hole] = first[i];
+				more[hole] = more[i];
+				hole = i;
+			}
+			i = (i + 1) & mask;
+		}
+
+		first[hole] = EMPTY;
+		more[hole] = null;
+		size--;
+	}
+
+	private void rehash(int capacity) {
+		final byte[] oldKeys = keys;
+		final int[] oldFirst = first;
+		final int[][] oldMore = more;
+
+		allocate(capacity);
+		for (int i = 0; i < oldFirst.length; i++) {
+			if (oldFirst[i] == EMPTY) continue;
+			int slot = home(oldKeys, i * KEY_BYTES);
+			while (first[slot] != EMPTY) slot = (slot + 1) & mask;
+			System.arraycopy(oldKeys, i * KEY_BYTES, keys, slot * KEY_BYTES, KEY_BYTES);
+			first[slot] = oldFirst[i];
+			more[slot] = oldMore[i];
+		}
+	}
+
+	private void allocate(int capacity) {
+		this.keys = new byte[capacity * KEY_BYTES];
+		this.first = new int[capacity];
+		this.more = new int[capacity][];
+		this.mask = capacity - 1;
+		Arrays.fill(first, EMPTY);
+	}
+
+	private int home(byte[] key, int offset) {
+		// SHA-1 hashes are already uniformly distributed, so the leading bytes are used directly
+		final int h = ((key[offset] & 0xff) << 24) | ((key[offset + 1] & 0xff) << 16)
+					  | ((key[offset + 2] & 0xff) << 8) | (key[offset + 3] & 0xff);
+		return h & mask;
+	}
+
+	private static int capacityFor(int expectedSize) {
+		int capacity = 16;
+		while (capacity * LOAD_FACTOR < expectedSize) capacity <<= 1;
+		return capacity;
+	}
+
+	/**
+	 * Convert a lower-case hexadecimal SHA-1 hash to its binary form.
+	 *
+	 * @return binary hash, or null if the input is not a SHA-1 hash
+	 */
+	static byte[] key(String hash) {
+		if (hash == null || hash.length() != KEY_BYTES * 2) return null;
+
+		final byte[] key = new byte[KEY_BYTES];
+		for (int i = 0; i < KEY_BYTES; i++) {
+			final int hi = hex(hash.charAt(i * 2));
+			final int lo = hex(hash.charAt(i * 2 + 1));
+			if (hi < 0 || lo < 0) return null;
+			key[i] = (byte)((hi << 4) | lo);
+		}
+		return key;
+	}
+
+	private static int hex(char c) {
+		if (c >= '0' && c <= '9') return c - '0';
+		if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+		return -1;
+	}
+
+	private static int[] with(int[] refs, int ref) {
+		for (int r : refs) {
+			if (r == ref) return refs;
+		}
+		final int[] added = Arrays.copyOf(refs, refs.length + 1);
+		added[refs.length] = ref;
+		return added;
+	}
+
+	private static int[] without(int[] refs, int ref) {
+		for (int i = 0; i < refs.length; i++) {
+			if (refs[i] != ref) continue;
+			final int[] removed = new int[refs.length - 1];
+			System.arraycopy(refs, 0, removed, 0, i);
+			System.arraycopy(refs, i + 1, removed, i, refs.length - i - 1);
+			return removed;
+		}
+		return refs;
+	}
+}
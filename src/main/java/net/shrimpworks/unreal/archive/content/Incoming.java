@@ -2,14 +2,23 @@ package net.shrimpworks.unreal.archive.content;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
@@ -24,6 +33,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import net.shrimpworks.unreal.archive.ArchiveUtil;
+import net.shrimpworks.unreal.archive.CLI;
 import net.shrimpworks.unreal.archive.Util;
 import net.shrimpworks.unreal.packages.Umod;
 
@@ -93,10 +103,12 @@ public class Incoming implements Closeable {
 	public final IndexLog log;
 
 	private final Set<Umod> umods;
+	private final MemoryOptions memory;
 
-	public Path contentRoot;
+	private Path contentRoot;
 	public Map<String, Object> files;
 
+	private long memoryUsed;
 	private Path repackPath;
 
 	public Incoming(Submission submission) throws IOException, UnsupportedOperationException {
@@ -104,20 +116,72 @@ public class Incoming implements Closeable {
 	}
 
 	public Incoming(Submission submission, IndexLog log) throws IOException, UnsupportedOperationException {
+		this(submission, log, MemoryOptions.DISABLED);
+	}
+
+	public Incoming(Submission submission, IndexLog log, MemoryOptions memory) throws IOException, UnsupportedOperationException {
 		this.submission = submission;
 		this.hash = Util.hash(submission.filePath);
 		this.fileSize = (int)Files.size(submission.filePath);
 		this.umods = new HashSet<>();
 		this.log = log;
+		this.memory = memory;
 	}
 
 	public Incoming prepare() throws IOException {
 		this.contentRoot = Files.createTempDirectory("archive-incoming-");
+		this.files = new HashMap<>();
+		this.memoryUsed = 0;
 		unpackFiles(submission.filePath, this.contentRoot);
-		this.files = listFiles(this.contentRoot);
 		return this;
 	}
 
+	/**
+	 * Get the directory the incoming content has been unpacked to.
+	 * <p>
+	 * Any files currently held in memory are written out first, so the
+	 * returned directory reflects the complete content for use by tools
+	 * which need to work on the file system.
+	 *
+	 * @return content root directory
+	 * @throws IOException failed to write in-memory files to disk
+	 */
+	public Path contentRoot() throws IOException {
+		return contentRoot(FileType.ALL);
+	}
+
+	/**
+	 * Get the directory the incoming content has been unpacked to, making
+	 * sure all files of the given types are present within it.
+	 * <p>
+	 * Only files of those types which are currently held in memory are
+	 * written out, other files may remain in memory.
+	 *
+	 * @param types types of file needed on disk
+	 * @return content root directory
+	 * @throws IOException failed to write in-memory files to disk
+	 */
+	public Path contentRoot(FileType... types) throws IOException {
+		if (files != null && memory.maxFileSize >= 0) {
+			for (Map.Entry<String, Object> e : files.entrySet()) {
+				if (!(e.getValue() instanceof InMemoryFile) || !matches(e.getKey(), types)) continue;
+
+				InMemoryFile mem = (InMemoryFile)e.getValue();
+				Path out = Paths.get(e.getKey());
+				Files.createDirectories(out.getParent());
+				try (FileChannel channel = FileChannel.open(out, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+															StandardOpenOption.TRUNCATE_EXISTING)) {
+					ByteBuffer data = mem.data.duplicate();
+					while (data.hasRemaining()) channel.write(data);
+				}
+				if (mem.modified != null) Files.setLastModifiedTime(out, mem.modified);
+				e.setValue(out);
+				memoryUsed -= mem.data.remaining();
+			}
+		}
+		return contentRoot;
+	}
+
 	@Override
 	public void close() {
 		for (Umod v : umods) {
@@ -158,7 +222,7 @@ public class Incoming implements Closeable {
 		Path dest = repackPath.resolve(repackName + ".zip");
 
 		if (contentRoot != null) {
-			return ArchiveUtil.createZip(contentRoot, dest, Duration.ofSeconds(60));
+			return ArchiveUtil.createZip(contentRoot(), dest, Duration.ofSeconds(60));
 		}
 
 		return null;
@@ -175,23 +239,27 @@ public class Incoming implements Closeable {
 		return Collections.unmodifiableSet(res);
 	}
 
-	private Map<String, Object> listFiles(Path contentRoot) throws IOException {
-		Map<String, Object> files = new HashMap<>();
-		if (contentRoot != null && Files.exists(contentRoot)) {
-			Files.walkFileTree(contentRoot, new SimpleFileVisitor<>() {
+	private void listFiles(Path root) throws IOException {
+		if (root != null && Files.exists(root)) {
+			Files.walkFileTree(root, new SimpleFileVisitor<>() {
 				@Override
 				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-					if (file.toString().toLowerCase().endsWith(".umod")
-						|| file.toString().toLowerCase().endsWith(".ut2mod")
-						|| file.toString().toLowerCase().endsWith(".ut4mod")) {
-						files.putAll(umodFiles(file));
-					}
-					files.put(file.toString(), file);
+					addFile(file);
 					return FileVisitResult.CONTINUE;
 				}
 			});
 		}
-		return files;
+	}
+
+	private void addFile(Path file) throws IOException {
+		if (files.containsKey(file.toString())) return;
+
+		if (file.toString().toLowerCase().endsWith(".umod")
+			|| file.toString().toLowerCase().endsWith(".ut2mod")
+			|| file.toString().toLowerCase().endsWith(".ut4mod")) {
+			files.putAll(umodFiles(file));
+		}
+		files.put(file.toString(), file);
 	}
 
 	private Map<String, Umod.UmodFile> umodFiles(Path path) throws IOException {
@@ -214,13 +282,30 @@ public class Incoming implements Closeable {
 			extract(incoming, destination);
 		} else if (FileType.important(incoming)) {
 			// it's simply a loose file of a type we're interested in
-			Files.copy(incoming, destination.resolve(incoming.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+			addFile(Files.copy(incoming, destination.resolve(incoming.getFileName()), StandardCopyOption.REPLACE_EXISTING));
 		} else {
 			throw new UnsupportedFileTypeException("Can't unpack file " + incoming);
 		}
 	}
 
 	private void extract(Path archive, Path destination) throws IOException, UnsupportedOperationException {
+		if (ArchiveUtil.isStreamable(archive)) {
+			try {
+				extractInProcess(archive, destination);
+				return;
+			} catch (IOException e) {
+				log.log(IndexLog.EntryType.INFO, "In-process extraction failed for " + archive.getFileName() + ", using external tools", e);
+				// discard anything partially extracted, and try again externally
+				files.entrySet().removeIf(f -> {
+					if (!f.getKey().startsWith(destination.toString())) return false;
+					if (f.getValue() instanceof InMemoryFile) memoryUsed -= ((InMemoryFile)f.getValue()).data.remaining();
+					return true;
+				});
+				ArchiveUtil.cleanPath(destination);
+				Files.createDirectories(destination);
+			}
+		}
+
 		try {
 			Path rootExtracted = ArchiveUtil.extract(archive, destination, EXTRACT_TIMEOUT, true);
 			Files.walkFileTree(rootExtracted, new SimpleFileVisitor<>() {
@@ -234,11 +319,71 @@ public class Incoming implements Closeable {
 					return FileVisitResult.CONTINUE;
 				}
 			});
+			listFiles(destination);
 		} catch (InterruptedException e) {
 			throw new IOException("Extract took too long", e);
 		}
 	}
 
+	/**
+	 * Read an archive's entries directly into the incoming file set, without
+	 * forking external extraction tools.
+	 * <p>
+	 * Nested archives are unpacked in turn, alongside their parent.
+	 */
+	private void extractInProcess(Path archive, Path destination) throws IOException {
+		final long deadline = System.currentTimeMillis() + EXTRACT_TIMEOUT.toMillis();
+		final Set<Path> nested = new HashSet<>();
+
+		ArchiveUtil.read(archive, (name, size, modified, data) -> {
+			if (System.currentTimeMillis() > deadline) throw new ArchiveUtil.ExtractTimeoutException("Timed out unpacking file " + archive);
+
+			Path out = destination.resolve(name);
+
+			// small files may be kept in memory, but archives and umods must be on disk to be read further, and packages
+			// would only be written out again for dependency resolution, which needs them on disk
+			if (size >= 0 && size <= memory.maxFileSize && memoryUsed + size <= memory.maxTotalSize
+				&& !ArchiveUtil.isArchive(name) && !FileType.UMOD.matches(name) && !matches(name, FileType.PACKAGES)) {
+				files.put(out.toString(), new InMemoryFile(readBuffer(data, (int)size), modified));
+				memoryUsed += size;
+				return;
+			}
+
+			Files.createDirectories(out.getParent());
+			Files.copy(data, out, StandardCopyOption.REPLACE_EXISTING);
+			if (modified != null) Files.setLastModifiedTime(out, modified);
+
+			if (ArchiveUtil.isArchive(out)) nested.add(out);
+			addFile(out);
+		});
+
+		for (Path file : nested) {
+			try {
+				extract(file, destination.resolve(file.getFileName().toString() + ".ex"));
+			} catch (IOException | UnsupportedOperationException ex) {
+				// pass - don't fail on internal file extractions
+			}
+		}
+	}
+
+	private static boolean matches(String name, FileType... types) {
+		for (FileType t : types) {
+			if (t.matches(name)) return true;
+		}
+		return false;
+	}
+
+	private ByteBuffer readBuffer(InputStream data, int size) throws IOException {
+		if (!memory.direct) return ByteBuffer.wrap(data.readNBytes(size));
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+		ReadableByteChannel channel = Channels.newChannel(data);
+		while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+			// keep reading until full or the entry is exhausted
+		}
+		return buffer.flip();
+	}
+
 	@Override
 	public String toString() {
 		return String.format("Incoming [submission=%s, contentRoot=%s, hash=%s]",
@@ -257,6 +402,8 @@ public class Incoming implements Closeable {
 			try {
 				if (files.get(file) instanceof Path) {
 					return FileChannel.open((Path)files.get(file));
+				} else if (files.get(file) instanceof InMemoryFile) {
+					return new BufferChannel(((InMemoryFile)files.get(file)).data.duplicate());
 				} else if (files.get(file) instanceof Umod.UmodFile) {
 					return ((Umod.UmodFile)files.get(file)).read();
 				}
@@ -275,6 +422,8 @@ public class Incoming implements Closeable {
 			try {
 				if (files.get(file) instanceof Path) {
 					return (int)Files.size((Path)files.get(file));
+				} else if (files.get(file) instanceof InMemoryFile) {
+					return ((InMemoryFile)files.get(file)).data.remaining();
 				} else if (files.get(file) instanceof Umod.UmodFile) {
 					return ((Umod.UmodFile)files.get(file)).size;
 				}
@@ -288,6 +437,9 @@ public class Incoming implements Closeable {
 			try {
 				if (files.get(file) instanceof Path) {
 					return Files.getLastModifiedTime((Path)files.get(file)).toInstant().atOffset(ZoneOffset.UTC).toLocalDateTime(); // hmm?
+				} else if (files.get(file) instanceof InMemoryFile) {
+					FileTime modified = ((InMemoryFile)files.get(file)).modified;
+					if (modified != null) return modified.toInstant().atOffset(ZoneOffset.UTC).toLocalDateTime();
 				} else if (files.get(file) instanceof Umod.UmodFile) {
 					Set<IncomingFile> umodMaybe = files(FileType.UMOD);
 					if (!umodMaybe.isEmpty()) return umodMaybe.iterator().next().fileDate();
@@ -305,7 +457,10 @@ public class Incoming implements Closeable {
 		public String hash() {
 			try {
 				if (files.get(file) instanceof Path) {
-					return Util.hash((Path)files.get(file));
+					// extracted files are temporary, so are not kept in the hash cache
+					return Util.hashFile((Path)files.get(file));
+				} else if (files.get(file) instanceof InMemoryFile) {
+					return Util.hash(((InMemoryFile)files.get(file)).data);
 				} else if (files.get(file) instanceof Umod.UmodFile) {
 					return ((Umod.UmodFile)files.get(file)).sha1();
 				}
@@ -334,6 +489,131 @@ public class Incoming implements Closeable {
 		}
 	}
 
+	/**
+	 * Options for holding extracted files in memory rather than on disk.
+	 * <p>
+	 * Files no larger than <code>maxFileSize</code> are held in memory, as
+	 * long as the total held for a single submission does not exceed
+	 * <code>maxTotalSize</code>. Anything else is written to disk as usual,
+	 * as are Unreal packages, which are always needed on disk to resolve
+	 * their dependencies.
+	 */
+	public static class MemoryOptions {
+
+		public static final MemoryOptions DISABLED = new MemoryOptions(-1, 0, false);
+
+		private static final long DEFAULT_MAX_TOTAL = 256 * 1024 * 1024;
+
+		public final long maxFileSize;
+		public final long maxTotalSize;
+		public final boolean direct;
+
+		/**
+		 * @param maxFileSize  largest individual file to hold in memory
+		 * @param maxTotalSize most memory to use per submission
+		 * @param direct       if true, allocate off-heap buffers
+		 */
+		public MemoryOptions(long maxFileSize, long maxTotalSize, boolean direct) {
+			this.maxFileSize = Math.min(maxFileSize, Integer.MAX_VALUE);
+			this.maxTotalSize = maxTotalSize;
+			this.direct = direct;
+		}
+
+		/**
+		 * Read memory options from command line options <code>--memory-file-size</code>,
+		 * <code>--memory-total-size</code> and <code>--memory-direct</code>.
+		 * <p>
+		 * In-memory files are disabled unless a file size is specified.
+		 *
+		 * @param cli command line
+		 * @return memory options
+		 */
+		public static MemoryOptions fromCli(CLI cli) {
+			long maxFileSize = Long.parseLong(cli.option("memory-file-size", "-1"));
+			if (maxFileSize < 0) return DISABLED;
+
+			return new MemoryOptions(maxFileSize,
+									 Long.parseLong(cli.option("memory-total-size", Long.toString(DEFAULT_MAX_TOTAL))),
+									 Boolean.parseBoolean(cli.option("memory-direct", "false")));
+		}
+	}
+
+	private static class InMemoryFile {
+
+		private final ByteBuffer data;
+		private final FileTime modified;
+
+		private InMemoryFile(ByteBuffer data, FileTime modified) {
+			this.data = data;
+			this.modified = modified;
+		}
+	}
+
+	/**
+	 * A read-only seekable channel over an in-memory buffer.
+	 */
+	private static class BufferChannel implements SeekableByteChannel {
+
+		private final ByteBuffer buffer;
+		private boolean open = true;
+
+		private BufferChannel(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			if (!open) throw new ClosedChannelException();
+			if (!buffer.hasRemaining()) return -1;
+
+			int count = Math.min(dst.remaining(), buffer.remaining());
+			ByteBuffer slice = buffer.slice();
+			slice.limit(count);
+			dst.put(slice);
+			buffer.position(buffer.position() + count);
+			return count;
+		}
+
+		@Override
+		public int write(ByteBuffer src) {
+			throw new NonWritableChannelException();
+		}
+
+		@Override
+		public long position() throws IOException {
+			if (!open) throw new ClosedChannelException();
+			return buffer.position();
+		}
+
+		@Override
+		public SeekableByteChannel position(long newPosition) throws IOException {
+			if (!open) throw new ClosedChannelException();
+			buffer.position((int)Math.min(newPosition, buffer.limit()));
+			return this;
+		}
+
+		@Override
+		public long size() throws IOException {
+			if (!open) throw new ClosedChannelException();
+			return buffer.limit();
+		}
+
+		@Override
+		public SeekableByteChannel truncate(long size) {
+			throw new NonWritableChannelException();
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
+	}
+
 	public static class UnsupportedFileTypeException extends UnsupportedOperationException {
 
 		public UnsupportedFileTypeException(String message) {
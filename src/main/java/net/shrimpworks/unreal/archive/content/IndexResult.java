@@ -1,5 +1,9 @@
 package net.shrimpworks.unreal.archive.content;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Set;
 
@@ -13,21 +17,61 @@ public class IndexResult<T extends Content> {
 		this.files = attachments;
 	}
 
+	/**
+	 * A new attachment to be stored along with content, either held in
+	 * memory, or as a local file which is deleted once stored.
+	 */
 	public static class NewAttachment {
 
 		public final Content.AttachmentType type;
 		public final String name;
 		public final Path path;
+		public final byte[] data;
 
 		public NewAttachment(Content.AttachmentType type, String name, Path path) {
 			this.type = type;
 			this.name = name;
 			this.path = path;
+			this.data = null;
+		}
+
+		public NewAttachment(Content.AttachmentType type, String name, byte[] data) {
+			this.type = type;
+			this.name = name;
+			this.path = null;
+			this.data = data;
+		}
+
+		/**
+		 * @return size of the attachment in bytes
+		 * @throws IOException failed to read the attachment file size
+		 */
+		public long size() throws IOException {
+			return data != null ? data.length : Files.size(path);
+		}
+
+		/**
+		 * @return a new stream of the attachment's content
+		 * @throws IOException failed to open the attachment file
+		 */
+		public InputStream open() throws IOException {
+			return data != null ? new ByteArrayInputStream(data) : Files.newInputStream(path);
+		}
+
+		/**
+		 * Release the attachment, deleting its local file if it has one.
+		 *
+		 * @throws IOException failed to delete the attachment file
+		 */
+		public void discard() throws IOException {
+			if (path != null) Files.deleteIfExists(path);
 		}
 
 		@Override
 		public String toString() {
-			return String.format("NewAttachment [type=%s, name=%s, path=%s]", type, name, path);
+			return data != null
+				? String.format("NewAttachment [type=%s, name=%s, size=%d]", type, name, data.length)
+				: String.format("NewAttachment [type=%s, name=%s, path=%s]", type, name, path);
 		}
 	}
 }
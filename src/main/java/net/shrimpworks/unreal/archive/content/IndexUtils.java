@@ -2,12 +2,11 @@ package net.shrimpworks.unreal.archive.content;
 
 import java.awt.image.BufferedImage;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -249,23 +248,26 @@ public class IndexUtils {
 	}
 
 	/**
-	 * Write out a collection of {@link BufferedImage}s as files and collect
+	 * Encode a collection of {@link BufferedImage}s as PNG images and collect
 	 * them as content attachments.
+	 * <p>
+	 * Images are held in memory until they are stored, rather than written
+	 * to local files.
 	 *
 	 * @param shotTemplate template for filenames, should contain %s and %d
 	 * @param content      the content
 	 * @param screenshots  images to save
 	 * @param attachments  attachment collection to populate
-	 * @throws IOException failed to write files
+	 * @throws IOException failed to encode images
 	 */
 	public static void saveImages(
 		String shotTemplate, Content content, List<BufferedImage> screenshots, Set<IndexResult.NewAttachment> attachments
 	) throws IOException {
 		for (BufferedImage screenshot : screenshots) {
 			String shotName = String.format(shotTemplate, Util.slug(content.name), content.hash.substring(0, 8), attachments.size() + 1);
-			Path out = Paths.get(shotName);
-			ImageIO.write(screenshot, "png", out.toFile());
-			attachments.add(new IndexResult.NewAttachment(Content.AttachmentType.IMAGE, shotName, out));
+			ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+			ImageIO.write(screenshot, "png", out);
+			attachments.add(new IndexResult.NewAttachment(Content.AttachmentType.IMAGE, shotName, out.toByteArray()));
 		}
 	}
 
@@ -445,7 +447,7 @@ public class IndexUtils {
 
 		Map<String, List<Content.Dependency>> dependencies = new HashMap<>();
 		try {
-			DependencyResolver resolver = new DependencyResolver(incoming.contentRoot, NativePackages.DEFAULT, e -> {
+			DependencyResolver resolver = new DependencyResolver(incoming.contentRoot(Incoming.FileType.PACKAGES), NativePackages.DEFAULT, e -> {
 				incoming.log.log(IndexLog.EntryType.CONTINUE, "Dependency resolution error for " + e.file.toString(), e);
 			});
 
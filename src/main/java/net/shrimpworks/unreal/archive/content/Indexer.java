@@ -1,25 +1,27 @@
 package net.shrimpworks.unreal.archive.content;
 
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import net.shrimpworks.unreal.archive.Util;
 import net.shrimpworks.unreal.archive.YAML;
@@ -33,15 +35,22 @@ public class Indexer {
 	private final ContentManager contentManager;
 	private final IndexerEvents events;
 	private final IndexerPostProcessor postProcessor;
+	private final Incoming.MemoryOptions memoryOptions;
 
 	public Indexer(ContentManager contentManager, IndexerEvents events) {
 		this(contentManager, events, new IndexerPostProcessor() {});
 	}
 
 	public Indexer(ContentManager contentManager, IndexerEvents events, IndexerPostProcessor postProcessor) {
+		this(contentManager, events, postProcessor, Incoming.MemoryOptions.DISABLED);
+	}
+
+	public Indexer(ContentManager contentManager, IndexerEvents events, IndexerPostProcessor postProcessor,
+				   Incoming.MemoryOptions memoryOptions) {
 		this.contentManager = contentManager;
 		this.events = events;
 		this.postProcessor = postProcessor;
+		this.memoryOptions = memoryOptions;
 	}
 
 	/**
@@ -54,8 +63,9 @@ public class Indexer {
 	 * handlers may choose to reference to allow overriding specific pieces of data.
 	 * This file's structure is defined as per {@link SubmissionOverride}.
 	 * <p>
-	 * Then, each file found within a directory is added to a collection to be
-	 * classified and then indexed. Additionally, if a file with the same name of the
+	 * Then, each file found within a directory is passed on to be classified and
+	 * then indexed as soon as it's found; directories are walked in parallel, and
+	 * indexing begins while the walk is still in progress. Additionally, if a file with the same name of the
 	 * file to be indexed with a <code>.yml</code> extension is found, this file is
 	 * also loaded, and may contain additional file-specific information.
 	 * This file's structure is defined as per {@link Submission}.
@@ -70,37 +80,131 @@ public class Indexer {
 	 * implementation, which further enriches it, and finally returns it via a
 	 * {@link Consumer}.
 	 *
-	 * @param force     if content has already been indexed, index it again
-	 * @param forceType if not null, use the specified content type, rather than
-	 *                  attempting to discover it automatically
-	 * @param inputPath directories or file paths to index
+	 * @param force       if content has already been indexed, index it again
+	 * @param newOnly     only index files whose hashes are not already known
+	 * @param concurrency number of threads used for each indexing stage
+	 * @param forceType   if not null, use the specified content type, rather than
+	 *                    attempting to discover it automatically
+	 * @param inputPath   directories or file paths to index
 	 * @throws IOException file access failure
 	 */
 	public void index(boolean force, boolean newOnly, int concurrency, ContentType forceType, Path... inputPath) throws IOException {
-		final List<IndexLog> indexLogs = new ArrayList<>();
+		index(force, newOnly, concurrency, concurrency, concurrency, forceType, inputPath);
+	}
 
-		// go through all the files in the input path and index them if new
-		List<Submission> all = new ArrayList<>();
-		for (Path p : inputPath) {
-			all.addAll(findFiles(p, newOnly));
-		}
+	/**
+	 * Indexes a path or individual file, as per
+	 * {@link #index(boolean, boolean, int, ContentType, Path...)}.
+	 * <p>
+	 * Indexing is split into three stages, each with its own pool of threads:
+	 * <ul>
+	 *   <li>extraction, which hashes and unpacks files and classifies their content</li>
+	 *   <li>parsing, which runs content {@link IndexHandler}s and resolves dependencies</li>
+	 *   <li>upload, which checks content in to the {@link ContentManager}, storing files
+	 *   and attachments, and flagging variations of existing content</li>
+	 * </ul>
+	 * Stages are connected by bounded queues, so a slower stage will cause the
+	 * stages before it to wait, rather than accumulate unpacked content.
+	 *
+	 * @param force              if content has already been indexed, index it again
+	 * @param newOnly            only index files whose hashes are not already known
+	 * @param extractConcurrency number of threads used to extract and classify files
+	 * @param concurrency        number of threads used to parse and index content
+	 * @param uploadConcurrency  number of threads used to store indexed content
+	 * @param forceType          if not null, use the specified content type, rather than
+	 *                           attempting to discover it automatically
+	 * @param inputPath          directories or file paths to index
+	 * @throws IOException file access failure
+	 */
+	public void index(boolean force, boolean newOnly, int extractConcurrency, int concurrency, int uploadConcurrency,
+					  ContentType forceType, Path... inputPath) throws IOException {
+		final Queue<IndexLog> indexLogs = new ConcurrentLinkedQueue<>();
+
+		final AtomicInteger found = new AtomicInteger();
+		final AtomicInteger done = new AtomicInteger();
+		// one count is held by discovery itself, so indexing can't appear complete while files are still being found
+		final AtomicInteger pending = new AtomicInteger(1);
+		final CountDownLatch finished = new CountDownLatch(1);
+		final Runnable complete = () -> {
+			if (pending.decrementAndGet() == 0) finished.countDown();
+		};
+
+		try (Stage extract = new Stage("extract", extractConcurrency);
+			 Stage parse = new Stage("parse", concurrency);
+			 Stage upload = new Stage("upload", uploadConcurrency)) {
+
+			// set if discovery fails, so no further submissions are made while waiting for those in progress
+			final AtomicBoolean stopped = new AtomicBoolean();
+
+			// submissions are passed to extraction as they're found, rather than waiting for the full set
+			final SubmissionSink sink = new SubmissionSink() {
+				@Override
+				public void accept(Submission sub) throws IOException {
+					if (stopped.get()) return;
+
+					found.incrementAndGet();
+					pending.incrementAndGet();
+
+					IndexLog log = new IndexLog();
+					indexLogs.add(log);
+
+					Pipeline pipeline = new Pipeline(sub, log, parse, upload, complete, result -> {
+						// the submission is always counted as complete, even if event handling fails
+						try {
+							events.indexed(sub, result, log);
+
+							events.progress(done.incrementAndGet(), found.get(), sub.filePath);
+						} finally {
+							complete.run();
+						}
+					});
+
+					try {
+						extract.submit(() -> extractFile(pipeline, force, forceType));
+					} catch (InterruptedException e) {
+						complete.run();
+						Thread.currentThread().interrupt();
+						throw new IOException("Interrupted while indexing", e);
+					}
+				}
+
+				@Override
+				public void failed(Path file, Throwable error) {
+					IndexLog log = new IndexLog();
+					log.log(IndexLog.EntryType.FATAL, "Failed to read file " + file, error);
+					indexLogs.add(log);
 
-		events.starting(all.size());
+					events.indexed(new Submission(file), Optional.empty(), log);
+				}
+			};
 
-		AtomicInteger done = new AtomicInteger();
+			events.discovering();
 
-		ForkJoinPool fjPool = new ForkJoinPool(concurrency);
-		fjPool.submit(() -> all.parallelStream().sorted().forEach(sub -> {
-						  IndexLog log = new IndexLog();
-						  indexLogs.add(log);
+			IOException failure = null;
+			final ForkJoinPool discovery = new ForkJoinPool(extractConcurrency);
+			try {
+				for (Path p : inputPath) {
+					findFiles(discovery, p, newOnly, sink);
+				}
+			} catch (IOException e) {
+				failure = e;
+				stopped.set(true);
+			} finally {
+				discovery.shutdown();
+				// walking tasks may still be running after a failure
+				discovery.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			}
 
-						  indexFile(sub, log, force, forceType, result -> {
-							  events.indexed(sub, result, log);
+			if (failure == null) events.starting(found.get());
 
-							  events.progress(done.incrementAndGet(), all.size(), sub.filePath);
-						  });
-					  })
-		).join();
+			// allow any work already submitted to finish before returning, even when discovery failed
+			complete.run();
+			finished.await();
+
+			if (failure != null) throw failure;
+		} catch (InterruptedException e) {
+			throw new IOException("Interrupted while indexing", e);
+		}
 
 		int errorCount = 0;
 
@@ -111,136 +215,188 @@ public class Indexer {
 		events.completed(indexLogs.size(), errorCount);
 	}
 
-	private List<Submission> findFiles(Path inputPath, boolean newOnly) throws IOException {
-		List<Submission> all = new ArrayList<>();
+	/**
+	 * Find files to be indexed, passing each to the sink as it's found.
+	 * <p>
+	 * Directories are walked in parallel, and the potentially expensive work
+	 * for each file - hashing it if only new files are wanted, and reading
+	 * its submission file - is performed by the walking threads. Files are
+	 * still passed to the sink in a consistent order, as per
+	 * {@link FileWalker}, so runs over the same files index them in the same
+	 * order.
+	 * <p>
+	 * Files which can't be read, or whose submission or directory override
+	 * files can't be read, are reported to the sink as failed, and the walk
+	 * continues.
+	 */
+	private void findFiles(ForkJoinPool pool, Path inputPath, boolean newOnly, SubmissionSink sink) throws IOException {
 		if (Files.isDirectory(inputPath)) {
-			Files.walkFileTree(inputPath, new SimpleFileVisitor<>() {
+			FileWalker.<Found>walk(pool, inputPath, dir -> {
+				// check if there's an override for this directory
+				final SubmissionOverride override;
+				try {
+					override = Files.exists(dir.resolve("_override.yml"))
+							? YAML.fromFile(dir.resolve("_override.yml"), SubmissionOverride.class)
+							: null;
+				} catch (Throwable t) {
+					// without its overrides, files in this directory would be indexed incorrectly, so skip them
+					return (file, attrs) -> file.getFileName().toString().equals("_override.yml") ? s -> s.failed(file, t) : null;
+				}
 
-				final Map<Path, SubmissionOverride> override = new HashMap<>();
+				return (file, attrs) -> {
+					if (!INCLUDE_TYPES.contains(Util.extension(file).toLowerCase())) return null;
 
-				@Override
-				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					final Submission sub;
 					try {
-						if (INCLUDE_TYPES.contains(Util.extension(file).toLowerCase())) {
-							if (newOnly && contentManager.forHash(Util.hash(file)) != null) return FileVisitResult.CONTINUE;
-
-							Submission sub;
-							// if there's a submission file
-							if (Files.exists(Paths.get(file.toString() + ".yml"))) {
-								sub = YAML.fromFile(Paths.get(file.toString() + ".yml"), Submission.class);
-								sub.filePath = file;
-							} else {
-								sub = new Submission(file);
-							}
-
-							SubmissionOverride override = this.override.get(file.getParent());
-							if (override != null) sub.override = override;
-							all.add(sub);
-						}
-					} catch (Throwable t) {
-						throw new IOException("Failed to read file " + file, t);
-					}
-					return FileVisitResult.CONTINUE;
-				}
+						if (newOnly && contentManager.forHash(Util.hash(file)) != null) return null;
 
-				@Override
-				public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-					// check if there's an override for this directory
-					if (Files.exists(dir.resolve("_override.yml"))) {
-						override.put(dir, YAML.fromFile(dir.resolve("_override.yml"), SubmissionOverride.class));
+						sub = submission(file);
+						if (override != null) sub.override = override;
+					} catch (Throwable t) {
+						return s -> s.failed(file, t);
 					}
-					return super.preVisitDirectory(dir, attrs);
-				}
 
-			});
+					return s -> s.accept(sub);
+				};
+			}, found -> found.to(sink));
 		} else {
-			Submission sub;
-			// if there's a submission file
-			if (Files.exists(Paths.get(inputPath.toString() + ".yml"))) {
-				sub = YAML.fromFile(Paths.get(inputPath.toString() + ".yml"), Submission.class);
-				sub.filePath = inputPath;
-			} else {
-				sub = new Submission(inputPath);
-			}
+			Submission sub = submission(inputPath);
 
 			// even a single file should respect directory overrides
 			if (Files.exists(inputPath.getParent().resolve("_override.yml"))) {
 				sub.override = YAML.fromFile(inputPath.getParent().resolve("_override.yml"), SubmissionOverride.class);
 			}
 
-			all.add(sub);
+			sink.accept(sub);
 		}
+	}
 
-		return all;
+	private Submission submission(Path file) throws IOException {
+		// if there's a submission file
+		if (Files.exists(Paths.get(file.toString() + ".yml"))) {
+			Submission sub = YAML.fromFile(Paths.get(file.toString() + ".yml"), Submission.class);
+			sub.filePath = file;
+			return sub;
+		} else {
+			return new Submission(file);
+		}
 	}
 
-	private void indexFile(
-			Submission sub, IndexLog log, boolean force, ContentType forceType, Consumer<Optional<IndexResult<? extends Content>>> done) {
-		try (Incoming incoming = new Incoming(sub, log)) {
+	private void extractFile(Pipeline pipeline, boolean force, ContentType forceType) {
+		Incoming incoming = null;
+		try {
+			incoming = new Incoming(pipeline.sub, pipeline.log, memoryOptions);
 			Content content = prepContent(incoming, force, forceType);
 
-			ContentType type;
-			if (content == null || (type = ContentType.valueOf(content.contentType)) == ContentType.UNKNOWN) return;
+			if (content == null || ContentType.valueOf(content.contentType) == ContentType.UNKNOWN) {
+				incoming.close();
+				pipeline.skipped.run();
+				return;
+			}
 
-			type.indexer.get().index(incoming, content, result -> {
+			final Incoming prepared = incoming;
+			pipeline.parse.submit(() -> parseFile(pipeline, prepared, content));
+		} catch (Throwable e) {
+			pipeline.log.log(IndexLog.EntryType.FATAL, e.getMessage(), e);
+			if (incoming != null) {
 				try {
-					Content current = contentManager.forHash(incoming.hash);
-
-					// check if the item is a variation of existing content
-					if (current == null) {
-						Optional<Content> maybeNewest = contentManager.search(result.content.game, result.content.contentType,
-																			  result.content.name, result.content.author)
-																	  .stream().max(Comparator.comparing(a -> a.releaseDate));
-						Content existing = maybeNewest.orElse(null);
-						if (existing != null) {
-							if (existing.variationOf == null && existing.releaseDate.compareTo(result.content.releaseDate) < 0) {
-								Content variation = contentManager.checkout(existing.hash);
-								variation.variationOf = result.content.hash;
-								contentManager.checkin(new IndexResult<>(variation, Collections.emptySet()), null);
-								log.log(IndexLog.EntryType.CONTINUE,
-										String.format("Flagging original content %s variation", existing.originalFilename));
-							} else {
-								result.content.variationOf = existing.hash;
-								log.log(IndexLog.EntryType.CONTINUE,
-										String.format("Flagging as variation of %s", existing.originalFilename));
-							}
-						}
-					}
+					incoming.close();
+				} catch (IOException ex) {
+					pipeline.log.log(IndexLog.EntryType.CONTINUE, "Failed to clean up " + pipeline.sub.filePath, ex);
+				}
+			}
+			pipeline.done.accept(Optional.empty());
+		}
+	}
 
-					// add dependencies
-					result.content.dependencies = IndexUtils.dependencies(result.content, incoming);
+	private void parseFile(Pipeline pipeline, Incoming incoming, Content content) {
+		final Submission sub = pipeline.sub;
+		final IndexLog log = pipeline.log;
 
-					postProcessor.indexed(sub, current, result);
+		try (incoming) {
+			AtomicReference<IndexResult<? extends Content>> indexed = new AtomicReference<>();
+			ContentType.valueOf(content.contentType).indexer.get().index(incoming, content, indexed::set);
 
-					if (result.content.name.isEmpty()) {
-						throw new IllegalStateException("Name cannot be blank for " + incoming.submission.filePath);
-					}
+			IndexResult<? extends Content> result = indexed.get();
+			if (result == null) {
+				pipeline.skipped.run();
+				return;
+			}
 
-					// before checkin, remove any "new" attachments which already exist... this is a bit of a hack
-					if (current != null) {
-						result.files.removeIf(f -> {
-							if (current.attachments.stream().anyMatch(a -> a.name.equals(f.name))) {
-								try {
-									Files.deleteIfExists(f.path);
-								} catch (IOException e) {
-									log.log(IndexLog.EntryType.CONTINUE, "Failed to delete duplicate attachment" + f, e);
-								}
-								return true;
-							}
-							return false;
-						});
-					}
+			Content current = contentManager.forHash(incoming.hash);
 
-					contentManager.checkin(result, incoming.submission);
-				} catch (IOException e) {
-					log.log(IndexLog.EntryType.FATAL, "Failed to store content file data for " + sub.filePath.toString(), e);
-				}
+			// add dependencies
+			result.content.dependencies = IndexUtils.dependencies(result.content, incoming);
 
-				done.accept(Optional.of(result));
-			});
+			postProcessor.indexed(sub, current, result);
+
+			if (result.content.name.isEmpty()) {
+				throw new IllegalStateException("Name cannot be blank for " + incoming.submission.filePath);
+			}
+
+			// before checkin, remove any "new" attachments which already exist... this is a bit of a hack
+			if (current != null) {
+				result.files.removeIf(f -> {
+					if (current.attachments.stream().anyMatch(a -> a.name.equals(f.name))) {
+						try {
+							f.discard();
+						} catch (IOException e) {
+							log.log(IndexLog.EntryType.CONTINUE, "Failed to delete duplicate attachment" + f, e);
+						}
+						return true;
+					}
+					return false;
+				});
+			}
+
+			pipeline.upload.submit(() -> uploadFile(pipeline, result));
 		} catch (Throwable e) {
 			log.log(IndexLog.EntryType.FATAL, e.getMessage(), e);
-			done.accept(Optional.empty());
+			pipeline.done.accept(Optional.empty());
+		}
+	}
+
+	private void uploadFile(Pipeline pipeline, IndexResult<? extends Content> result) {
+		try {
+			// variations are found as content is stored, so content still making its way through the pipeline is not missed
+			contentManager.checkin(result, pipeline.sub, content -> flagVariation(content, pipeline.log));
+		} catch (IOException e) {
+			pipeline.log.log(IndexLog.EntryType.FATAL, "Failed to store content file data for " + pipeline.sub.filePath.toString(), e);
+		} catch (Throwable e) {
+			pipeline.log.log(IndexLog.EntryType.FATAL, e.getMessage(), e);
+			pipeline.done.accept(Optional.empty());
+			return;
+		}
+
+		pipeline.done.accept(Optional.of(result));
+	}
+
+	/**
+	 * Check if new content is a variation of existing content, flagging
+	 * whichever of the two is older as a variation of the newer.
+	 * <p>
+	 * Content which is already known, or which has already been flagged as
+	 * a variation, for example by an {@link IndexerPostProcessor}, is left
+	 * as-is.
+	 */
+	private void flagVariation(Content content, IndexLog log) {
+		if (content.variationOf != null || contentManager.forHash(content.hash) != null) return;
+
+		Optional<Content> maybeNewest = contentManager.search(content.game, content.contentType, content.name, content.author)
+													  .stream().max(Comparator.comparing(a -> a.releaseDate));
+		Content existing = maybeNewest.orElse(null);
+		if (existing == null) return;
+
+		if (existing.variationOf == null && existing.releaseDate.compareTo(content.releaseDate) < 0) {
+			try {
+				contentManager.update(existing.hash, variation -> variation.variationOf = content.hash);
+				log.log(IndexLog.EntryType.CONTINUE, String.format("Flagging original content %s variation", existing.originalFilename));
+			} catch (IOException e) {
+				log.log(IndexLog.EntryType.CONTINUE, String.format("Failed to flag %s as a variation", existing.originalFilename), e);
+			}
+		} else {
+			content.variationOf = existing.hash;
+			log.log(IndexLog.EntryType.CONTINUE, String.format("Flagging as variation of %s", existing.originalFilename));
 		}
 	}
 
@@ -254,21 +410,29 @@ public class Indexer {
 	 * @throws IOException failed to read content files
 	 */
 	private Content prepContent(Incoming incoming, boolean force, ContentType forceType) throws IOException {
-		Content content = contentManager.checkout(incoming.hash);
+		// inspect the shared instance, and only check out a copy once we know we'll be changing it
+		Content current = contentManager.forHash(incoming.hash);
 
-		if ((content != null && !force)) {
+		if ((current != null && !force)) {
 			// even when not forcing a full re-index of something, we can still update download sources
-			if (!content.deleted && incoming.submission.sourceUrls != null) {
-				for (String url : incoming.submission.sourceUrls) {
-					if (url != null && !url.isEmpty() && !content.hasDownload(url)) {
-						content.downloads.add(new Content.Download(url, false));
-					}
+			if (!current.deleted && incoming.submission.sourceUrls != null) {
+				List<String> newUrls = Arrays.stream(incoming.submission.sourceUrls)
+											 .filter(url -> url != null && !url.isEmpty() && !current.hasDownload(url))
+											 .distinct()
+											 .collect(Collectors.toList());
+				if (!newUrls.isEmpty()) {
+					contentManager.update(incoming.hash, content -> {
+						for (String url : newUrls) {
+							if (!content.hasDownload(url)) content.downloads.add(new Content.Download(url, false));
+						}
+					});
 				}
-				contentManager.checkin(new IndexResult<>(content, Collections.emptySet()), incoming.submission);
 			}
 			return null;
 		}
 
+		Content content = current != null ? contentManager.checkout(incoming.hash) : null;
+
 		incoming.prepare();
 
 		ContentType type = forceType == null ? ContentType.classify(incoming) : forceType;
@@ -281,6 +445,88 @@ public class Indexer {
 		return content;
 	}
 
+	/**
+	 * State of a single submission as it moves through the indexing stages.
+	 * <p>
+	 * Exactly one of <code>done</code> or <code>skipped</code> is called
+	 * once the submission leaves the pipeline.
+	 */
+	private static class Pipeline {
+
+		private final Submission sub;
+		private final IndexLog log;
+		private final Stage parse;
+		private final Stage upload;
+		private final Runnable skipped;
+		private final Consumer<Optional<IndexResult<? extends Content>>> done;
+
+		private Pipeline(Submission sub, IndexLog log, Stage parse, Stage upload, Runnable skipped,
+						 Consumer<Optional<IndexResult<? extends Content>>> done) {
+			this.sub = sub;
+			this.log = log;
+			this.parse = parse;
+			this.upload = upload;
+			this.skipped = skipped;
+			this.done = done;
+		}
+	}
+
+	/**
+	 * A fixed pool of worker threads for one stage of indexing.
+	 * <p>
+	 * Submitting work blocks while the stage's queue is full, so a slow stage
+	 * applies backpressure to the stages which feed it.
+	 */
+	private static class Stage implements AutoCloseable {
+
+		private final ThreadPoolExecutor executor;
+
+		private Stage(String name, int threads) {
+			final AtomicInteger count = new AtomicInteger();
+			this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+												   new ArrayBlockingQueue<>(threads * 2),
+												   r -> {
+													   Thread t = new Thread(r, String.format("indexer-%s-%d", name,
+																							  count.incrementAndGet()));
+													   t.setDaemon(true);
+													   return t;
+												   });
+			this.executor.prestartAllCoreThreads();
+		}
+
+		private void submit(Runnable task) throws InterruptedException {
+			// all threads are started up-front, so work can be queued directly, waiting for space if necessary
+			executor.getQueue().put(task);
+		}
+
+		@Override
+		public void close() {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Receives files found for indexing, one at a time.
+	 */
+	private interface SubmissionSink {
+
+		void accept(Submission sub) throws IOException;
+
+		/**
+		 * A file could not be prepared for indexing, and will be skipped.
+		 */
+		void failed(Path file, Throwable error);
+	}
+
+	/**
+	 * The outcome of finding a file, passed to a sink in walk order.
+	 */
+	@FunctionalInterface
+	private interface Found {
+
+		void to(SubmissionSink sink) throws IOException;
+	}
+
 	public interface IndexerPostProcessor {
 
 		public default void indexed(Submission sub, Content before, IndexResult<? extends Content> result) {
@@ -296,6 +542,22 @@ public class Indexer {
 
 	public interface IndexerEvents {
 
+		/**
+		 * Called before searching for files to index.
+		 */
+		public default void discovering() {
+			// no-op by default
+		}
+
+		/**
+		 * Called once all files to be indexed have been found.
+		 * <p>
+		 * Since indexing begins as files are found, this may be preceded by
+		 * progress and indexing events, where the total is the number of files
+		 * found so far.
+		 *
+		 * @param foundFiles number of files found
+		 */
 		public void starting(int foundFiles);
 
 		public void progress(int indexed, int total, Path currentFile);
@@ -313,9 +575,15 @@ public class Indexer {
 			this.verbose = verbose;
 		}
 
+		@Override
+		public void discovering() {
+			System.out.println("Finding files to index");
+		}
+
 		@Override
 		public void starting(int foundFiles) {
-			System.out.printf("Found %d file(s) to index%n", foundFiles);
+			// replaces the current progress line, which may already be showing
+			System.out.printf("\r%-40s%n", String.format("Found %d file(s) to index", foundFiles));
 		}
 
 		@Override
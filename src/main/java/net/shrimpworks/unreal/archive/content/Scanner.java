@@ -1,12 +1,10 @@
 package net.shrimpworks.unreal.archive.content;
 
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -25,6 +23,7 @@ public class Scanner {
 	private final Pattern nameExclude;
 	private final long maxFileSize;
 	private final int concurrency;
+	private final Incoming.MemoryOptions memoryOptions;
 
 	public Scanner(ContentManager contentManager, CLI cli) {
 		this.contentManager = contentManager;
@@ -32,6 +31,7 @@ public class Scanner {
 		this.newOnly = cli.option("new-only", "").equalsIgnoreCase("true") || cli.option("new-only", "").equalsIgnoreCase("1");
 		this.maxFileSize = Long.parseLong(cli.option("max-size", "0"));
 		this.concurrency = Integer.parseInt(cli.option("concurrency", "1"));
+		this.memoryOptions = Incoming.MemoryOptions.fromCli(cli);
 
 		if (cli.option("match", "").isEmpty()) {
 			this.nameMatch = null;
@@ -47,59 +47,48 @@ public class Scanner {
 	}
 
 	public void scan(ScannerEvents events, Path... inputPath) throws IOException {
-		// find all files within the scan path
-		List<Path> all = new ArrayList<>();
-		for (Path p : inputPath) {
-			all.addAll(findFiles(p));
-		}
+		ForkJoinPool fjPool = new ForkJoinPool(concurrency);
+		try {
+			// find all files within the scan path
+			List<Path> all = new ArrayList<>();
+			for (Path p : inputPath) {
+				all.addAll(findFiles(fjPool, p));
+			}
 
-		events.starting(all.size(), nameMatch, nameExclude);
+			events.starting(all.size(), nameMatch, nameExclude);
 
-		AtomicInteger done = new AtomicInteger();
+			AtomicInteger done = new AtomicInteger();
 
-		ForkJoinPool fjPool = new ForkJoinPool(concurrency);
-		fjPool.submit(() -> all.parallelStream().sorted().forEach(path -> {
-						  events.progress(done.incrementAndGet(), all.size(), path);
+			fjPool.submit(() -> all.parallelStream().sorted().forEach(path -> {
+							  events.progress(done.incrementAndGet(), all.size(), path);
 
-						  Submission sub = new Submission(path);
-						  IndexLog log = new IndexLog();
+							  Submission sub = new Submission(path);
+							  IndexLog log = new IndexLog();
 
-						  scanFile(sub, log, events::scanned);
-					  })
-		).join();
+							  scanFile(sub, log, events::scanned);
+						  })
+			).join();
 
-		events.completed(done.get());
+			events.completed(done.get());
+		} finally {
+			fjPool.shutdown();
+		}
 	}
 
-	private List<Path> findFiles(Path inputPath) throws IOException {
+	private Collection<Path> findFiles(ForkJoinPool pool, Path inputPath) throws IOException {
 		List<Path> all = new ArrayList<>();
 		if (Files.isDirectory(inputPath)) {
-			Files.walkFileTree(inputPath, new SimpleFileVisitor<>() {
-				@Override
-				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-					if (Indexer.INCLUDE_TYPES.contains(Util.extension(file).toLowerCase())) {
-
-						try {
-							if (maxFileSize > 0 && Files.size(file) > maxFileSize) {
-								return FileVisitResult.CONTINUE;
-							}
-						} catch (Exception ignored) {
-							//
-						}
-
-						if (nameMatch != null && !nameMatch.matcher(file.getFileName().toString()).matches()) {
-							return FileVisitResult.CONTINUE;
-						}
-
-						if (nameExclude != null && nameExclude.matcher(file.getFileName().toString()).matches()) {
-							return FileVisitResult.CONTINUE;
-						}
-
-						all.add(file);
-					}
-					return FileVisitResult.CONTINUE;
-				}
-			});
+			FileWalker.walk(pool, inputPath, dir -> (file, attrs) -> {
+				if (!Indexer.INCLUDE_TYPES.contains(Util.extension(file).toLowerCase())) return null;
+
+				if (maxFileSize > 0 && attrs.size() > maxFileSize) return null;
+
+				if (nameMatch != null && !nameMatch.matcher(file.getFileName().toString()).matches()) return null;
+
+				if (nameExclude != null && nameExclude.matcher(file.getFileName().toString()).matches()) return null;
+
+				return file;
+			}, all::add);
 		} else if (Files.exists(inputPath) && Files.isRegularFile(inputPath)) {
 			all.add(inputPath);
 		}
@@ -112,7 +101,7 @@ public class Scanner {
 		Content content = null;
 		ContentType classifiedType = ContentType.UNKNOWN;
 
-		try (Incoming incoming = new Incoming(sub, log)) {
+		try (Incoming incoming = new Incoming(sub, log, memoryOptions)) {
 			content = contentManager.forHash(incoming.hash);
 
 			if (newOnly && content != null) return;
@@ -59,6 +59,23 @@ public class MapPack extends Content {
 		return tags;
 	}
 
+	@Override
+	public MapPack copy() {
+		MapPack copy = (MapPack)super.copy();
+		if (maps != null) {
+			copy.maps = new ArrayList<>(maps.size());
+			for (PackMap m : maps) {
+				PackMap p = new PackMap();
+				p.name = m.name;
+				p.title = m.title;
+				p.author = m.author;
+				copy.maps.add(p);
+			}
+		}
+		if (themes != null) copy.themes = new HashMap<>(themes);
+		return copy;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
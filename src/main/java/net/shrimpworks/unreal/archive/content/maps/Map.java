@@ -80,6 +80,13 @@ public class Map extends Content {
 		return tags;
 	}
 
+	@Override
+	public Map copy() {
+		Map copy = (Map)super.copy();
+		if (themes != null) copy.themes = new HashMap<>(themes);
+		return copy;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
@@ -56,6 +56,14 @@ public class Model extends Content {
 		return tags;
 	}
 
+	@Override
+	public Model copy() {
+		Model copy = (Model)super.copy();
+		copy.models = copyList(models);
+		copy.skins = copyList(skins);
+		return copy;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
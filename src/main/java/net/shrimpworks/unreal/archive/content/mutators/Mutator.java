@@ -69,6 +69,15 @@ public class Mutator extends Content {
 		return tags;
 	}
 
+	@Override
+	public Mutator copy() {
+		Mutator copy = (Mutator)super.copy();
+		copy.mutators = copyList(mutators);
+		copy.weapons = copyList(weapons);
+		copy.vehicles = copyList(vehicles);
+		return copy;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
@@ -59,6 +59,14 @@ public class Skin extends Content {
 		return tags;
 	}
 
+	@Override
+	public Skin copy() {
+		Skin copy = (Skin)super.copy();
+		copy.skins = copyList(skins);
+		copy.faces = copyList(faces);
+		return copy;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
@@ -49,6 +49,13 @@ public class Voice extends Content {
 		return tags;
 	}
 
+	@Override
+	public Voice copy() {
+		Voice copy = (Voice)super.copy();
+		copy.voices = copyList(voices);
+		return copy;
+	}
+
 	@Override
 	public boolean equals(Object o) {
 		if (this == o) return true;
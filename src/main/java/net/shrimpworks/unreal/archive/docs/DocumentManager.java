@@ -2,38 +2,29 @@ package net.shrimpworks.unreal.archive.docs;
 
 import java.io.IOException;
 import java.nio.channels.ReadableByteChannel;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardOpenOption;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
-import net.shrimpworks.unreal.archive.Util;
-import net.shrimpworks.unreal.archive.YAML;
+import net.shrimpworks.unreal.archive.MetadataStore;
 
 public class DocumentManager {
 
 	private final Map<Document, DocumentHolder> documents;
 
 	public DocumentManager(Path path) throws IOException {
+		this(MetadataStore.YAML_FILES, path);
+	}
+
+	public DocumentManager(MetadataStore metadata, Path path) throws IOException {
 		this.documents = new HashMap<>();
 
 		// load contents from path into content
-		Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-			@Override
-			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-				if (Util.extension(file).equalsIgnoreCase("yml")) {
-					Document c = YAML.fromFile(file, Document.class);
-					documents.put(c, new DocumentHolder(file, c));
-				}
-				return FileVisitResult.CONTINUE;
-			}
-		});
+		metadata.readAll(path, Document.class).forEach((file, c) -> documents.put(c, new DocumentHolder(file, c)));
 	}
 
 	/**
@@ -2,21 +2,19 @@ package net.shrimpworks.unreal.archive.managed;
 
 import java.io.IOException;
 import java.nio.channels.ReadableByteChannel;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
 import java.nio.file.StandardOpenOption;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
+import net.shrimpworks.unreal.archive.MetadataStore;
 import net.shrimpworks.unreal.archive.Util;
 import net.shrimpworks.unreal.archive.YAML;
 import net.shrimpworks.unreal.archive.content.Content;
@@ -24,22 +22,19 @@ import net.shrimpworks.unreal.archive.storage.DataStore;
 
 public class ManagedContentManager {
 
+	private final MetadataStore metadata;
 	private final Map<Managed, ManagedContentHolder> content;
 
 	public ManagedContentManager(Path path) throws IOException {
+		this(MetadataStore.YAML_FILES, path);
+	}
+
+	public ManagedContentManager(MetadataStore metadata, Path path) throws IOException {
+		this.metadata = metadata;
 		this.content = new HashMap<>();
 
 		// load contents from path into content
-		Files.walkFileTree(path, new SimpleFileVisitor<>() {
-			@Override
-			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-				if (Util.extension(file).equalsIgnoreCase("yml")) {
-					Managed c = YAML.fromFile(file, Managed.class);
-					content.put(c, new ManagedContentHolder(file, c));
-				}
-				return FileVisitResult.CONTINUE;
-			}
-		});
+		metadata.readAll(path, Managed.class).forEach((file, c) -> content.put(c, new ManagedContentHolder(file, c)));
 	}
 
 	/**
@@ -142,30 +137,35 @@ public class ManagedContentManager {
 
 	public void storeDownloadFile(DataStore contentStore, Managed managed, Managed.ManagedFile file, Path localFile, boolean[] success)
 			throws IOException {
-		contentStore.store(localFile, String.join("/", remotePath(managed), localFile.getFileName().toString()), (url, ex) -> {
-			try {
-				// record download
-				if (file.downloads.stream().noneMatch(dl -> dl.url.equals(url))) {
-					file.downloads.add(new Content.Download(url, !file.synced, false, Content.DownloadState.OK));
-				}
-
-				// other file stats (the null checks are added to populate fields added post initial implementation)
-				if (!file.synced || file.hash == null || file.originalFilename == null) {
-					file.fileSize = Files.size(localFile);
-					file.hash = Util.hash(localFile);
-					file.originalFilename = Util.fileName(localFile);
-					file.synced = true;
-				}
+		final String url;
+		try {
+			url = contentStore.storeAsync(localFile, String.join("/", remotePath(managed), localFile.getFileName().toString())).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+			throw new IOException("Failed to store managed file " + localFile, e.getCause());
+		}
 
-				// replace existing with updated
-				Files.write(path(managed), YAML.toString(managed).getBytes(StandardCharsets.UTF_8),
-							StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+		try {
+			// record download
+			if (file.downloads.stream().noneMatch(dl -> dl.url.equals(url))) {
+				file.downloads.add(new Content.Download(url, !file.synced, false, Content.DownloadState.OK));
+			}
 
-				success[0] = true;
-			} catch (IOException e) {
-				throw new RuntimeException(String.format("Failed to update managed content definition %s: %s%n", path(managed), e));
+			// other file stats (the null checks are added to populate fields added post initial implementation)
+			if (!file.synced || file.hash == null || file.originalFilename == null) {
+				file.fileSize = Files.size(localFile);
+				file.hash = Util.hash(localFile);
+				file.originalFilename = Util.fileName(localFile);
+				file.synced = true;
 			}
-		});
+
+			// replace existing with updated
+			metadata.write(path(managed), managed);
+
+			success[0] = true;
+		} catch (IOException e) {
+			throw new RuntimeException(String.format("Failed to update managed content definition %s: %s%n", path(managed), e));
+		}
 	}
 
 	private String remotePath(Managed managed) {
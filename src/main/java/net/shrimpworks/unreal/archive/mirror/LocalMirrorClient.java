@@ -8,9 +8,9 @@ import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
-import net.shrimpworks.unreal.archive.Util;
 import net.shrimpworks.unreal.archive.content.Content;
 import net.shrimpworks.unreal.archive.content.ContentManager;
 
@@ -18,17 +18,21 @@ import net.shrimpworks.unreal.archive.content.ContentManager;
  * Simple multi-threaded mirror/downloader implementation.
  * <p>
  * Logging currently implemented via stderr, with a simple callback
- * to monitor progress (overall file counts, not individual file
- * progress).
+ * to monitor progress (overall file counts and transfer rates, not
+ * individual file progress).
  */
 public class LocalMirrorClient implements Consumer<LocalMirrorClient.Downloader> {
 
 	private static final int RETRY_LIMIT = 4;
+	private static final long REPORT_INTERVAL = 1000;
+
 	private Deque<Content> content;
 	private Deque<Content> retryQueue;
 	private final Path output;
 	private final int concurrency;
 	private final ExecutorService executor;
+	private final Throttle throttle;
+	private final RangedDownload.Options downloadOptions;
 
 	private final Progress progress;
 
@@ -38,10 +42,26 @@ public class LocalMirrorClient implements Consumer<LocalMirrorClient.Downloader>
 	private volatile Thread mirrorThread;
 
 	public LocalMirrorClient(ContentManager content, Path output, int concurrency, Progress progress) {
+		this(content, output, Throttle.unlimited(), RangedDownload.Options.DEFAULT, concurrency, progress);
+	}
+
+	/**
+	 * Create a new local mirror, with download requests and bandwidth
+	 * limited by the <code>throttle</code>, per source host. Current
+	 * throughput is reported to <code>progress</code> while the mirror
+	 * runs.
+	 * <p>
+	 * Large files are downloaded in parallel segments according to
+	 * <code>downloadOptions</code>, and partial downloads are resumed.
+	 */
+	public LocalMirrorClient(ContentManager content, Path output, Throttle throttle, RangedDownload.Options downloadOptions,
+							 int concurrency, Progress progress) {
 		this.content = new ConcurrentLinkedDeque<>(content.all());
 		this.retryQueue = new ConcurrentLinkedDeque<>();
 		this.output = output;
 		this.concurrency = concurrency;
+		this.throttle = throttle;
+		this.downloadOptions = downloadOptions;
 
 		this.progress = progress;
 
@@ -66,8 +86,11 @@ public class LocalMirrorClient implements Consumer<LocalMirrorClient.Downloader>
 				// kick off the initial tasks, subsequent tasks will schedule as they complete
 				for (int i = 0; i < concurrency; i++) next();
 
-				// wait for all downloads to complete
-				counter.await();
+				// wait for all downloads to complete, reporting throughput and picking up throttle changes meanwhile
+				while (!counter.await(REPORT_INTERVAL, TimeUnit.MILLISECONDS)) {
+					throttle.reload();
+					progress.throughput(throttle.throughput(), throttle.transferred(), throttle.requested());
+				}
 
 				if (!retryQueue.isEmpty()) {
 					content = retryQueue;
@@ -109,7 +132,7 @@ public class LocalMirrorClient implements Consumer<LocalMirrorClient.Downloader>
 
 	private void next() {
 		final Content c = this.content.poll();
-		if (c != null) executor.submit(new Downloader(c, output, this, this.retryQueue));
+		if (c != null) executor.submit(new Downloader(c, output, this, this.retryQueue, throttle, downloadOptions));
 	}
 
 	public static class Downloader implements Runnable {
@@ -119,13 +142,22 @@ public class LocalMirrorClient implements Consumer<LocalMirrorClient.Downloader>
 		private final Path output;
 		private final Consumer<Downloader> done;
 		private final Deque<Content> retryQueue;
+		private final Throttle throttle;
+		private final RangedDownload.Options downloadOptions;
 
 		public Downloader(Content c, Path output, Consumer<Downloader> done) {
 			this(c, output, done, null);
 		}
 
 		public Downloader(Content c, Path output, Consumer<Downloader> done, Deque<Content> retryQueue) {
+			this(c, output, done, retryQueue, Throttle.unlimited(), RangedDownload.Options.DEFAULT);
+		}
+
+		public Downloader(Content c, Path output, Consumer<Downloader> done, Deque<Content> retryQueue, Throttle throttle,
+						  RangedDownload.Options downloadOptions) {
 			this.retryQueue = retryQueue;
+			this.throttle = throttle;
+			this.downloadOptions = downloadOptions;
 			this.content = c;
 			this.output = output;
 			this.done = done;
@@ -148,8 +180,8 @@ public class LocalMirrorClient implements Consumer<LocalMirrorClient.Downloader>
 				// file already downloaded
 				if (Files.exists(destination) && Files.size(destination) == content.fileSize) return;
 
-				// download the stuff, hopefully
-				Util.downloadTo(dl.url, destination);
+				// download the stuff, hopefully, resuming any previous partial download
+				new RangedDownload(dl.url, destination, content.hash, content.fileSize, downloadOptions, throttle).download();
 			} catch (Throwable t) {
 				System.err.printf("%nFailed to download content %s: %s (queued for retry)%n", content.contentPath(output), t.toString());
 				if (retryQueue != null) {
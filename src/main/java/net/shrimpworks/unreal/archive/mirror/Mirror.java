@@ -5,14 +5,14 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDate;
-import java.util.Collections;
 import java.util.Deque;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import net.shrimpworks.unreal.archive.ContentEntity;
@@ -20,7 +20,6 @@ import net.shrimpworks.unreal.archive.Util;
 import net.shrimpworks.unreal.archive.content.Content;
 import net.shrimpworks.unreal.archive.content.ContentManager;
 import net.shrimpworks.unreal.archive.content.GameTypeManager;
-import net.shrimpworks.unreal.archive.content.IndexResult;
 import net.shrimpworks.unreal.archive.content.gametypes.GameType;
 import net.shrimpworks.unreal.archive.managed.Managed;
 import net.shrimpworks.unreal.archive.managed.ManagedContentManager;
@@ -29,11 +28,14 @@ import net.shrimpworks.unreal.archive.storage.DataStore;
 public class Mirror implements Consumer<Mirror.Transfer> {
 
 	private static final int RETRY_LIMIT = 4;
+	private static final long REPORT_INTERVAL = 1000;
 
 	private final ContentManager cm;
 	private final GameTypeManager gm;
 	private final ManagedContentManager mm;
 	private final DataStore mirrorStore;
+	private final MirrorJournal journal;
+	private final Throttle throttle;
 
 	private Deque<ContentEntity<?>> content;
 	private Deque<ContentEntity<?>> retryQueue;
@@ -49,23 +51,46 @@ public class Mirror implements Consumer<Mirror.Transfer> {
 
 	public Mirror(ContentManager cm, GameTypeManager gm, ManagedContentManager mm,
 				  DataStore mirrorStore, int concurrency, LocalDate since, Progress progress) {
+		this(cm, gm, mm, mirrorStore, MirrorJournal.NONE, Throttle.unlimited(), concurrency, since, progress);
+	}
+
+	/**
+	 * Create a new mirror process.
+	 * <p>
+	 * Content recorded as completed in the <code>journal</code> is skipped,
+	 * and content which previously failed is mirrored first, regardless of
+	 * the <code>since</code> date.
+	 * <p>
+	 * Requests to download sources and to <code>mirrorStore</code> are
+	 * rate limited by the <code>throttle</code>, as is the bandwidth used
+	 * writing to <code>mirrorStore</code>. Current throughput is reported
+	 * to <code>progress</code> while the mirror runs.
+	 */
+	public Mirror(ContentManager cm, GameTypeManager gm, ManagedContentManager mm,
+				  DataStore mirrorStore, MirrorJournal journal, Throttle throttle, int concurrency, LocalDate since,
+				  Progress progress) {
 		this.cm = cm;
 		this.gm = gm;
 		this.mm = mm;
-		this.mirrorStore = mirrorStore;
+		this.mirrorStore = throttle.store(mirrorStore);
+		this.journal = journal;
+		this.throttle = throttle;
 
 		final LocalDate sinceFilter = since.minusDays(1);
 
-		this.content = Stream.concat(
-									 cm.all().stream(),
-									 Stream.concat(
-											 gm.all().stream(),
-											 mm.all().stream()
-									 )
-							 )
-							 .filter(c -> !c.deleted())
-							 .filter(c -> c.addedDate().toLocalDate().isAfter(sinceFilter))
-							 .collect(Collectors.toCollection(ConcurrentLinkedDeque::new));
+		this.content = new ConcurrentLinkedDeque<>();
+		Stream.concat(
+				  cm.all().stream(),
+				  Stream.concat(
+						  gm.all().stream(),
+						  mm.all().stream()
+				  )
+			  )
+			  .filter(c -> !c.deleted())
+			  .forEach(c -> {
+				  if (journal.failed(c)) content.addFirst(c);
+				  else if (c.addedDate().toLocalDate().isAfter(sinceFilter) && !journal.completed(c)) content.addLast(c);
+			  });
 
 		this.retryQueue = new ConcurrentLinkedDeque<>();
 		this.concurrency = concurrency;
@@ -102,8 +127,11 @@ public class Mirror implements Consumer<Mirror.Transfer> {
 				// kick off the initial tasks, subsequent tasks will schedule as they complete
 				for (int i = 0; i < concurrency; i++) next();
 
-				// wait for all transfers to complete
-				counter.await();
+				// wait for all transfers to complete, reporting throughput and picking up throttle changes meanwhile
+				while (!counter.await(REPORT_INTERVAL, TimeUnit.MILLISECONDS)) {
+					throttle.reload();
+					progress.throughput(throttle.throughput(), throttle.transferred(), throttle.requested());
+				}
 
 				// after everything is done, try to redo any failures
 				if (!retryQueue.isEmpty()) {
@@ -127,6 +155,9 @@ public class Mirror implements Consumer<Mirror.Transfer> {
 
 	@Override
 	public void accept(Mirror.Transfer transfer) {
+		if (transfer.failed) journal.fail(transfer.content);
+		else journal.complete(transfer.content);
+
 		progress.progress(totalCount, this.content.size(), transfer.content);
 
 		// finally, countdown
@@ -159,6 +190,8 @@ public class Mirror implements Consumer<Mirror.Transfer> {
 		private final DataStore mirrorStore;
 		private final Consumer<Transfer> done;
 
+		private volatile boolean failed;
+
 		public Transfer(ContentEntity<?> c, DataStore mirrorStore, Consumer<Transfer> done) {
 			this.content = c;
 			this.mirrorStore = mirrorStore;
@@ -175,7 +208,7 @@ public class Mirror implements Consumer<Mirror.Transfer> {
 									   content.getClass().getSimpleName(), content.name());
 			} catch (MirrorFailedException t) {
 				System.err.printf("%nFailed to transfer content %s: %s (queued for retry)%n", t.filename, t);
-				retryQueue.add(t.content);
+				retry(t.content);
 			} finally {
 				done.accept(this);
 			}
@@ -185,6 +218,7 @@ public class Mirror implements Consumer<Mirror.Transfer> {
 			for (Managed.ManagedFile download : managed.downloads) {
 				try {
 					Content.Download dl = download.downloads.stream().filter(d -> d.main).findFirst().get();
+					throttle.request(Throttle.destination(dl.url));
 					Path localFile = Util.downloadTo(
 							dl.url.replaceAll(" ", "%20"),
 							Files.createTempDirectory("ua-mirror").resolve(Util.fileName(download.localFile))
@@ -210,6 +244,7 @@ public class Mirror implements Consumer<Mirror.Transfer> {
 				for (GameType.ReleaseFile releaseFile : release.files) {
 					try {
 						Content.Download dl = releaseFile.downloads.stream().filter(d -> d.main).findFirst().get();
+						throttle.request(Throttle.destination(dl.url));
 						Path localFile = Util.downloadTo(
 								dl.url,
 								Files.createTempDirectory("ua-mirror").resolve(releaseFile.originalFilename)
@@ -237,39 +272,53 @@ public class Mirror implements Consumer<Mirror.Transfer> {
 				Content.Download dl = content.mainDownload();
 				if (dl == null) return;
 
+				boolean[] requested = { false };
+				throttle.request(Throttle.destination(dl.url));
 				Util.urlRequest(dl.url, (httpConn) -> {
+					requested[0] = true;
+					Path base = Paths.get("");
+					Path uploadPath = content.contentPath(base);
+					String uploadName = base.relativize(uploadPath.resolve(Util.fileName(dl.url))).toString();
+					long length = httpConn.headers().firstValueAsLong("Content-Length").orElse(content.fileSize);
+
+					// the response body is only readable until this callback returns, so wait for the upload
+					final String newUrl;
 					try {
-						Path base = Paths.get("");
-						Path uploadPath = content.contentPath(base);
-						String uploadName = base.relativize(uploadPath.resolve(Util.fileName(dl.url))).toString();
-						long length = httpConn.getContentLength() > -1 ? httpConn.getContentLength() : content.fileSize;
-						mirrorStore.store(httpConn.getInputStream(), length, uploadName, (newUrl, ex) -> {
-							if (ex != null) {
-								System.err.printf("%nFailed to transfer content %s: %s (queued for retry)%n",
-												  content.originalFilename, ex);
-								retryQueue.add(content);
-							}
-							if (newUrl != null && content.downloads.stream().noneMatch(d -> d.url.equalsIgnoreCase(newUrl))) {
-								Content updated = cm.checkout(content.hash);
-								updated.downloads.add(new Content.Download(newUrl, false));
-								try {
-									cm.checkin(new IndexResult<>(updated, Collections.emptySet()), null);
-								} catch (IOException e) {
-									System.err.printf("%nFailed to record new download for %s: %s (queued for retry)%n",
-													  content.originalFilename, e);
-									retryQueue.add(content);
-								}
-							}
-						});
-					} catch (IOException e) {
+						newUrl = mirrorStore.storeAsync(httpConn.body(), length, uploadName).join();
+					} catch (CompletionException e) {
 						System.err.printf("%nFailed to transfer content %s: %s (queued for retry)%n",
-										  content.originalFilename, e);
-						retryQueue.add(content);
+										  content.originalFilename, e.getCause());
+						retry(content);
+						return;
+					}
+
+					if (content.downloads.stream().noneMatch(d -> d.url.equalsIgnoreCase(newUrl))) {
+						try {
+							cm.update(content.hash, updated -> {
+								if (updated.downloads.stream().noneMatch(d -> d.url.equalsIgnoreCase(newUrl))) {
+									updated.downloads.add(new Content.Download(newUrl, false));
+								}
+							});
+						} catch (IOException e) {
+							System.err.printf("%nFailed to record new download for %s: %s (queued for retry)%n",
+											  content.originalFilename, e);
+							retry(content);
+						}
 					}
 				});
+				if (!requested[0]) {
+					throw new MirrorFailedException("Download failed", null, content.originalFilename, content);
+				}
+			} catch (MirrorFailedException e) {
+				throw e;
 			} catch (Throwable t) {
 				throw new MirrorFailedException(t.getMessage(), t, content.originalFilename, content);
 			}
 		}
+
+		private void retry(ContentEntity<?> content) {
+			this.failed = true;
+			retryQueue.add(content);
+		}
 	}
 }
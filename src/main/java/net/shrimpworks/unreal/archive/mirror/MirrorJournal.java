@@ -0,0 +1,210 @@
+package net.shrimpworks.unreal.archive.mirror;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import net.shrimpworks.unreal.archive.ContentEntity;
+import net.shrimpworks.unreal.archive.Util;
+import net.shrimpworks.unreal.archive.content.Content;
+import net.shrimpworks.unreal.archive.content.gametypes.GameType;
+import net.shrimpworks.unreal.archive.managed.Managed;
+
+/**
+ * A durable record of mirror progress for a single target store.
+ * <p>
+ * Each completed or failed transfer is appended to the journal file as it
+ * happens, so that a mirror process which is stopped or fails can be
+ * restarted, skipping content already mirrored and resuming previous
+ * failures.
+ * <p>
+ * The journal is a plain text file, with one <code>&lt;state&gt; &lt;key&gt;</code>
+ * record per line, where the most recent record for a key wins. Partially
+ * written lines are ignored. The journal is compacted when loaded.
+ */
+public class MirrorJournal implements AutoCloseable {
+
+	/**
+	 * A journal which records nothing.
+	 */
+	public static final MirrorJournal NONE = new MirrorJournal(null, new LinkedHashMap<>(), null);
+
+	private static final char COMPLETED = 'C';
+	private static final char FAILED = 'F';
+
+	private final Path journalFile;
+	private final Map<String, Character> states;
+	private final BufferedWriter writer;
+
+	private MirrorJournal(Path journalFile, Map<String, Character> states, BufferedWriter writer) {
+		this.journalFile = journalFile;
+		this.states = states;
+		this.writer = writer;
+	}
+
+	/**
+	 * Open a journal file, creating it if it does not exist.
+	 *
+	 * @param journalFile journal file location
+	 * @return a journal
+	 * @throws IOException failed to read or write the journal
+	 */
+	public static MirrorJournal open(Path journalFile) throws IOException {
+		final Map<String, Character> states = readStates(journalFile);
+
+		// compact the journal, keeping only the latest state of each key
+		if (journalFile.getParent() != null) Files.createDirectories(journalFile.getParent());
+		Path tmp = Files.createTempFile(journalFile.toAbsolutePath().getParent(), journalFile.getFileName().toString(), ".tmp");
+		try {
+			try (BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+				for (Map.Entry<String, Character> e : states.entrySet()) {
+					out.write(record(e.getValue(), e.getKey()));
+				}
+			}
+			Files.move(tmp, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+
+		return new MirrorJournal(journalFile, states, Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+																			  StandardOpenOption.APPEND));
+	}
+
+	/**
+	 * Journal file name for a given target store, allowing several mirror
+	 * targets to be journaled in the same directory.
+	 *
+	 * @param target description of the mirror target
+	 * @return file name
+	 */
+	public static String fileName(String target) {
+		return "mirror-" + Util.hash(ByteBuffer.wrap(target.getBytes(StandardCharsets.UTF_8))).substring(0, 12) + ".journal";
+	}
+
+	/**
+	 * Generate a journal key for content.
+	 * <p>
+	 * For content, this is its hash. For game types and managed content,
+	 * it is derived from the hashes of all their files, so that adding a
+	 * new file will cause the item to be mirrored again.
+	 *
+	 * @param content content to identify
+	 * @return journal key
+	 */
+	public static String key(ContentEntity<?> content) {
+		if (content instanceof Content) return ((Content)content).hash;
+
+		final Set<String> files = new TreeSet<>();
+		if (content instanceof GameType) {
+			for (GameType.Release release : ((GameType)content).releases) {
+				for (GameType.ReleaseFile f : release.files) files.add(fileKey(f.hash, f.originalFilename, f.fileSize));
+			}
+		} else if (content instanceof Managed) {
+			for (Managed.ManagedFile f : ((Managed)content).downloads) {
+				files.add(fileKey(f.hash, f.originalFilename, f.fileSize));
+			}
+		}
+
+		final String identity = content.contentType() + "\n" + content.contentPath(Paths.get("")) + "\n"
+								+ String.join("\n", files);
+		return Util.hash(ByteBuffer.wrap(identity.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	/**
+	 * @param content content to check
+	 * @return true if the content was previously mirrored successfully
+	 */
+	public synchronized boolean completed(ContentEntity<?> content) {
+		Character state = states.get(key(content));
+		return state != null && state == COMPLETED;
+	}
+
+	/**
+	 * @param content content to check
+	 * @return true if the content's most recent mirror attempt failed
+	 */
+	public synchronized boolean failed(ContentEntity<?> content) {
+		Character state = states.get(key(content));
+		return state != null && state == FAILED;
+	}
+
+	/**
+	 * Record that content has been mirrored successfully.
+	 *
+	 * @param content mirrored content
+	 */
+	public void complete(ContentEntity<?> content) {
+		append(COMPLETED, key(content));
+	}
+
+	/**
+	 * Record that mirroring content has failed.
+	 *
+	 * @param content content which failed to mirror
+	 */
+	public void fail(ContentEntity<?> content) {
+		append(FAILED, key(content));
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (writer != null) writer.close();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("MirrorJournal [journalFile=%s]", journalFile);
+	}
+
+	private synchronized void append(char state, String key) {
+		if (writer == null) return;
+		states.remove(key);
+		states.put(key, state);
+
+		try {
+			// flushed on every record, so progress survives the process being killed
+			writer.write(record(state, key));
+			writer.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to write mirror journal " + journalFile, e);
+		}
+	}
+
+	private static String record(char state, String key) {
+		return state + " " + key + "\n";
+	}
+
+	private static Map<String, Character> readStates(Path journalFile) throws IOException {
+		final Map<String, Character> states = new LinkedHashMap<>();
+		if (!Files.isRegularFile(journalFile)) return states;
+
+		// only complete records are terminated by a newline, anything following the last one was never fully written
+		final String journal = Files.readString(journalFile, StandardCharsets.UTF_8);
+		for (String line : journal.substring(0, journal.lastIndexOf('\n') + 1).split("\n")) {
+			if (line.length() < 3 || line.charAt(1) != ' ') continue;
+			char state = line.charAt(0);
+			if (state != COMPLETED && state != FAILED) continue;
+			String key = line.substring(2).trim();
+			if (key.isEmpty()) continue;
+			states.remove(key);
+			states.put(key, state);
+		}
+
+		return states;
+	}
+
+	private static String fileKey(String hash, String filename, long size) {
+		return hash != null ? hash : filename + ":" + size;
+	}
+}
@@ -6,4 +6,16 @@ import net.shrimpworks.unreal.archive.ContentEntity;
 public interface Progress {
 
 	public void progress(long total, long remaining, ContentEntity<?> last);
+
+	/**
+	 * Periodically called while transfers are running, reporting the
+	 * current transfer rate.
+	 *
+	 * @param bytesPerSecond average transfer rate since the previous report
+	 * @param transferred    total bytes transferred so far
+	 * @param requests       total requests made so far
+	 */
+	public default void throughput(long bytesPerSecond, long transferred, long requests) {
+		// no-op by default
+	}
 }
@@ -0,0 +1,405 @@
+package net.shrimpworks.unreal.archive.mirror;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.shrimpworks.unreal.archive.CLI;
+import net.shrimpworks.unreal.archive.Util;
+import net.shrimpworks.unreal.archive.storage.HttpTransport;
+
+/**
+ * Downloads files using HTTP range requests, where the server supports
+ * them.
+ * <p>
+ * Large files are split into several segments which are downloaded in
+ * parallel. Progress is recorded alongside the partially downloaded file,
+ * so an interrupted or failed download can be resumed rather than
+ * restarted. Once complete, the partial file's SHA-1 hash is verified, and
+ * only then is it moved into place.
+ * <p>
+ * Servers which do not support range requests are downloaded from as a
+ * single sequential stream.
+ */
+public class RangedDownload {
+
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory());
+
+	private static final String PART_SUFFIX = ".part";
+	private static final String STATE_SUFFIX = ".part.state";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	// segment progress is recorded after at least this much data has been written
+	private static final long SAVE_INTERVAL = 8L * 1024 * 1024;
+
+	public static class Options {
+
+		public static final Options DEFAULT = new Options(32L * 1024 * 1024, 4);
+
+		// files larger than this will be split into segments
+		public final long threshold;
+		public final int segments;
+
+		public Options(long threshold, int segments) {
+			this.threshold = threshold;
+			this.segments = Math.max(1, segments);
+		}
+
+		/**
+		 * Read ranged download options from the command line.
+		 * <p>
+		 * Supports <code>--segment-threshold</code> in bytes, and
+		 * <code>--segments</code>, the maximum number of parallel segments
+		 * per file.
+		 *
+		 * @param cli command line
+		 * @return download options
+		 */
+		public static Options fromCli(CLI cli) {
+			return new Options(
+				Long.parseLong(cli.option("segment-threshold", Long.toString(DEFAULT.threshold))),
+				Integer.parseInt(cli.option("segments", Integer.toString(DEFAULT.segments)))
+			);
+		}
+
+		int segments(long size) {
+			if (size <= threshold) return 1;
+			return (int)Math.max(1, Math.min(segments, size / Math.max(1, threshold / 2)));
+		}
+	}
+
+	private final String url;
+	private final Path destination;
+	private final String hash;
+	private final long size;
+	private final Options options;
+	private final Throttle throttle;
+	private final String host;
+
+	private final Path partFile;
+	private final Path stateFile;
+
+	/**
+	 * Create a download.
+	 *
+	 * @param url         url to download
+	 * @param destination file to write to
+	 * @param hash        expected SHA-1 hash of the file, or null to skip verification
+	 * @param size        expected size of the file, or 0 if not known
+	 * @param options     segmentation options
+	 * @param throttle    request and bandwidth limits
+	 */
+	public RangedDownload(String url, Path destination, String hash, long size, Options options, Throttle throttle) {
+		this.url = url;
+		this.destination = destination;
+		this.hash = hash;
+		this.size = size;
+		this.options = options;
+		this.throttle = throttle;
+		this.host = Throttle.destination(url);
+
+		this.partFile = destination.resolveSibling(destination.getFileName().toString() + PART_SUFFIX);
+		this.stateFile = destination.resolveSibling(destination.getFileName().toString() + STATE_SUFFIX);
+	}
+
+	/**
+	 * Download the file, resuming a previous attempt if possible.
+	 *
+	 * @return the downloaded file
+	 * @throws IOException download or verification failed
+	 */
+	public Path download() throws IOException {
+		Segments segments = Segments.read(stateFile, size);
+		if (segments == null || !Files.exists(partFile) || Files.size(partFile) != segments.size) {
+			// small files are not worth an extra request to discover range support
+			segments = size > 0 && size <= options.threshold ? Segments.WHOLE : probe();
+		}
+
+		try {
+			if (segments == Segments.WHOLE) downloadWhole();
+			else if (segments != null) downloadSegments(segments);
+		} catch (RangeNotSatisfiedException e) {
+			// the server no longer honours ranges, start over
+			Files.deleteIfExists(stateFile);
+			downloadWhole();
+		}
+
+		// only a verified file is moved into place, so an existing destination file is always complete
+		verify();
+
+		Files.move(partFile, destination, StandardCopyOption.REPLACE_EXISTING);
+		Files.deleteIfExists(stateFile);
+
+		return destination;
+	}
+
+	/**
+	 * Request the first byte of the file to determine whether ranges are
+	 * supported, and the file's size.
+	 * <p>
+	 * If ranges are not supported, the server will send the whole file
+	 * in response, which is written out immediately.
+	 *
+	 * @return segments to download, null if the whole file was downloaded,
+	 * 	   or {@link Segments#WHOLE} if the file should be downloaded without ranges
+	 */
+	private Segments probe() throws IOException {
+		HttpTransport transport = HttpTransport.shared();
+		HttpRequest request = transport.transfer(Util.requestUri(url)).header("Range", "bytes=0-0").GET().build();
+
+		throttle.request(host);
+		return transport.stream(request, response -> {
+			if (response.statusCode() == HttpURLConnection.HTTP_PARTIAL) {
+				long size = contentRangeSize(response);
+				if (size > 0) {
+					Segments segments = Segments.split(size, options.segments(size));
+					try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+																StandardOpenOption.TRUNCATE_EXISTING)) {
+						// allocate the full file up-front, so segments may be written at any position
+						channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+					}
+					segments.write(stateFile);
+					return segments;
+				}
+				// size unknown, fall back to a plain download
+				return Segments.WHOLE;
+			} else if (response.statusCode() == HttpURLConnection.HTTP_OK) {
+				Files.copy(throttle.stream(host, response.body()), partFile, StandardCopyOption.REPLACE_EXISTING);
+				return null;
+			}
+
+			throw new IOException(response.statusCode() + " Failed to download url " + url);
+		});
+	}
+
+	private void downloadWhole() throws IOException {
+		HttpTransport transport = HttpTransport.shared();
+		throttle.request(host);
+		transport.stream(transport.transfer(Util.requestUri(url)).GET().build(), response -> {
+			if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+				throw new IOException(response.statusCode() + " Failed to download url " + url);
+			}
+			Files.copy(throttle.stream(host, response.body()), partFile, StandardCopyOption.REPLACE_EXISTING);
+			return null;
+		});
+	}
+
+	private void downloadSegments(Segments segments) throws IOException {
+		try (FileChannel channel = FileChannel.open(partFile, StandardOpenOption.WRITE)) {
+			final List<Future<Void>> running = new ArrayList<>();
+			for (Segment segment : segments.segments) {
+				if (segment.complete()) continue;
+				running.add(EXECUTOR.submit(() -> {
+					downloadSegment(channel, segments, segment);
+					return null;
+				}));
+			}
+
+			try {
+				for (Future<Void> f : running) f.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while downloading " + url);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+				throw new IOException("Failed to download " + url, e.getCause());
+			} finally {
+				for (Future<Void> f : running) f.cancel(true);
+				// record how far we got, so a later attempt can resume
+				segments.write(stateFile);
+			}
+		}
+	}
+
+	private void downloadSegment(FileChannel channel, Segments segments, Segment segment) throws IOException {
+		HttpTransport transport = HttpTransport.shared();
+		HttpRequest request = transport.transfer(Util.requestUri(url))
+									   .header("Range", String.format("bytes=%d-%d", segment.next, segment.end - 1))
+									   .GET().build();
+
+		throttle.request(host);
+		transport.stream(request, response -> {
+			if (response.statusCode() == HttpURLConnection.HTTP_OK) throw new RangeNotSatisfiedException(url);
+			if (response.statusCode() != HttpURLConnection.HTTP_PARTIAL) {
+				throw new IOException(response.statusCode() + " Failed to download url " + url);
+			}
+
+			long unsaved = 0;
+			final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			try (InputStream in = throttle.stream(host, response.body())) {
+				int read;
+				while (segment.next < segment.end
+					   && (read = in.read(buffer.array(), 0, (int)Math.min(BUFFER_SIZE, segment.end - segment.next))) > 0) {
+					buffer.clear().limit(read);
+					while (buffer.hasRemaining()) {
+						channel.write(buffer, segment.next + buffer.position());
+					}
+					segment.next += read;
+
+					unsaved += read;
+					if (unsaved >= SAVE_INTERVAL) {
+						segments.write(stateFile);
+						unsaved = 0;
+					}
+				}
+			}
+
+			if (!segment.complete()) throw new IOException("Download of segment ended early for url " + url);
+			return null;
+		});
+	}
+
+	private void verify() throws IOException {
+		if (hash == null) return;
+
+		final String actual = Util.hashFile(partFile);
+		if (!hash.equalsIgnoreCase(actual)) {
+			// the partial download is unusable, the next attempt will start over
+			Files.deleteIfExists(partFile);
+			Files.deleteIfExists(stateFile);
+			throw new IOException(String.format("Hash mismatch for %s, expected %s but got %s", destination, hash, actual));
+		}
+	}
+
+	private static long contentRangeSize(HttpResponse<?> response) {
+		// Content-Range: bytes 0-0/12345
+		String range = response.headers().firstValue("Content-Range").orElse("");
+		int slash = range.lastIndexOf('/');
+		if (slash < 0) return -1;
+		try {
+			return Long.parseLong(range.substring(slash + 1).trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * A contiguous range of a file, from <code>start</code> inclusive to
+	 * <code>end</code> exclusive, with <code>next</code> being the next
+	 * byte still to be downloaded.
+	 */
+	static class Segment {
+
+		final long start;
+		final long end;
+		volatile long next;
+
+		Segment(long start, long end, long next) {
+			this.start = start;
+			this.end = end;
+			this.next = next;
+		}
+
+		boolean complete() {
+			return next >= end;
+		}
+	}
+
+	/**
+	 * The set of segments making up a file.
+	 * <p>
+	 * Stored as a plain text file, with a <code>size &lt;bytes&gt;</code>
+	 * line, followed by one <code>&lt;start&gt; &lt;end&gt; &lt;next&gt;</code>
+	 * line per segment.
+	 */
+	static class Segments {
+
+		// marker for a file which must be downloaded in one piece
+		static final Segments WHOLE = new Segments(-1, List.of());
+
+		final long size;
+		final List<Segment> segments;
+
+		Segments(long size, List<Segment> segments) {
+			this.size = size;
+			this.segments = segments;
+		}
+
+		static Segments split(long size, int count) {
+			final List<Segment> segments = new ArrayList<>(count);
+			final long length = (size + count - 1) / count;
+			for (long start = 0; start < size; start += length) {
+				segments.add(new Segment(start, Math.min(size, start + length), start));
+			}
+			return new Segments(size, segments);
+		}
+
+		/**
+		 * Read previously recorded segments.
+		 *
+		 * @param stateFile    state file
+		 * @param expectedSize expected size of the file, or 0 if not known
+		 * @return segments, or null if there are none, or they're for a file
+		 * of a different size
+		 */
+		static Segments read(Path stateFile, long expectedSize) {
+			if (!Files.isRegularFile(stateFile)) return null;
+			try {
+				final List<String> lines = Files.readAllLines(stateFile, StandardCharsets.UTF_8);
+				if (lines.isEmpty() || !lines.get(0).startsWith("size ")) return null;
+
+				final long size = Long.parseLong(lines.get(0).substring(5).trim());
+				if (expectedSize > 0 && size != expectedSize) return null;
+
+				final List<Segment> segments = new ArrayList<>();
+				for (String line : lines.subList(1, lines.size())) {
+					if (line.isBlank()) continue;
+					String[] parts = line.trim().split(" ");
+					segments.add(new Segment(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+				}
+				return segments.isEmpty() ? null : new Segments(size, segments);
+			} catch (IOException | RuntimeException e) {
+				// unreadable state, the download will be restarted
+				return null;
+			}
+		}
+
+		synchronized void write(Path stateFile) throws IOException {
+			final StringBuilder sb = new StringBuilder("size ").append(size).append("\n");
+			for (Segment s : segments) {
+				sb.append(s.start).append(" ").append(s.end).append(" ").append(s.next).append("\n");
+			}
+
+			Path tmp = stateFile.resolveSibling(stateFile.getFileName().toString() + ".tmp");
+			Files.writeString(tmp, sb.toString(), StandardCharsets.UTF_8);
+			Files.move(tmp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+	}
+
+	private static class RangeNotSatisfiedException extends IOException {
+
+		public RangeNotSatisfiedException(String url) {
+			super("Range request not honoured for url " + url);
+		}
+	}
+
+	private static class ThreadFactory implements java.util.concurrent.ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "ranged-download-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
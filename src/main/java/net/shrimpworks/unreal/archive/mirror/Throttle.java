@@ -0,0 +1,528 @@
+package net.shrimpworks.unreal.archive.mirror;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import net.shrimpworks.unreal.archive.CLI;
+import net.shrimpworks.unreal.archive.storage.DataStore;
+
+/**
+ * Token-bucket bandwidth and request rate limits for mirror transfers.
+ * <p>
+ * Limits are applied globally, across all transfers, and separately to
+ * each destination, such as a remote host or a target store, so that a
+ * mirror may run alongside other work without saturating a network link
+ * or a remote service.
+ * <p>
+ * A limit of zero or less means unlimited. Limits may be changed while
+ * transfers are in progress, either directly, or by providing a
+ * properties file which is re-read when it changes.
+ */
+public class Throttle {
+
+	// reads are broken into chunks of at most this size, to keep throttled transfer rates smooth
+	private static final int MAX_CHUNK = 64 * 1024;
+
+	public static class Options {
+
+		public static final Options UNLIMITED = new Options(0, 0, 0, 0);
+
+		public final long bytesPerSecond;
+		public final double requestsPerSecond;
+		public final long destinationBytesPerSecond;
+		public final double destinationRequestsPerSecond;
+
+		public Options(long bytesPerSecond, double requestsPerSecond, long destinationBytesPerSecond,
+					   double destinationRequestsPerSecond) {
+			this.bytesPerSecond = bytesPerSecond;
+			this.requestsPerSecond = requestsPerSecond;
+			this.destinationBytesPerSecond = destinationBytesPerSecond;
+			this.destinationRequestsPerSecond = destinationRequestsPerSecond;
+		}
+
+		/**
+		 * Read throttle options from the command line.
+		 * <p>
+		 * Supports <code>--max-bandwidth</code> and <code>--dest-max-bandwidth</code>
+		 * in bytes per second, and <code>--max-requests</code> and
+		 * <code>--dest-max-requests</code> in requests per second.
+		 *
+		 * @param cli command line
+		 * @return throttle options
+		 */
+		public static Options fromCli(CLI cli) {
+			return new Options(
+				Long.parseLong(cli.option("max-bandwidth", "0")),
+				Double.parseDouble(cli.option("max-requests", "0")),
+				Long.parseLong(cli.option("dest-max-bandwidth", "0")),
+				Double.parseDouble(cli.option("dest-max-requests", "0"))
+			);
+		}
+
+		/**
+		 * Read throttle options from a properties file, using the same
+		 * keys as the command line options. Limits not present in the file
+		 * are unlimited.
+		 *
+		 * @param file properties file
+		 * @return throttle options
+		 * @throws IOException failed to read the file
+		 */
+		public static Options fromFile(Path file) throws IOException {
+			final Properties props = new Properties();
+			try (InputStream in = Files.newInputStream(file)) {
+				props.load(in);
+			}
+			final Map<String, String> options = new HashMap<>();
+			props.stringPropertyNames().forEach(p -> options.put(p, props.getProperty(p).trim()));
+			return fromCli(new CLI(new String[0], options));
+		}
+	}
+
+	private final Clock clock;
+	private final Bucket bytes;
+	private final Bucket requests;
+	private final Map<String, Bucket> destinationBytes;
+	private final Map<String, Bucket> destinationRequests;
+	private final Set<String> overridden;
+
+	private final AtomicLong transferred;
+	private final AtomicLong requested;
+
+	private volatile Options options;
+
+	private final Path optionsFile;
+	private volatile FileTime optionsModified;
+
+	private long lastTransferred;
+	private long lastMeasured;
+
+	public Throttle(Options options) {
+		this(options, null);
+	}
+
+	/**
+	 * Create a throttle, which will re-read its options from
+	 * <code>optionsFile</code> whenever it is modified.
+	 *
+	 * @param options     initial options
+	 * @param optionsFile options file, or null to use only the initial options
+	 */
+	public Throttle(Options options, Path optionsFile) {
+		this(options, optionsFile, Clock.SYSTEM);
+	}
+
+	Throttle(Options options, Path optionsFile, Clock clock) {
+		this.options = options;
+		this.optionsFile = optionsFile;
+		this.clock = clock;
+
+		this.bytes = new Bucket(options.bytesPerSecond, clock);
+		this.requests = new Bucket(options.requestsPerSecond, clock);
+		this.destinationBytes = new ConcurrentHashMap<>();
+		this.destinationRequests = new ConcurrentHashMap<>();
+		this.overridden = ConcurrentHashMap.newKeySet();
+
+		this.transferred = new AtomicLong();
+		this.requested = new AtomicLong();
+		this.lastMeasured = clock.nanoTime();
+
+		reload();
+	}
+
+	/**
+	 * Create a throttle from command line options. If a
+	 * <code>--throttle-file</code> is provided, its options take
+	 * precedence, and are re-read while transfers are running.
+	 *
+	 * @param cli command line
+	 * @return a new throttle
+	 */
+	public static Throttle fromCli(CLI cli) {
+		final String file = cli.option("throttle-file", "");
+		return new Throttle(Options.fromCli(cli), file.isBlank() ? null : Paths.get(file));
+	}
+
+	/**
+	 * @return a throttle which imposes no limits, but still measures throughput
+	 */
+	public static Throttle unlimited() {
+		return new Throttle(Options.UNLIMITED);
+	}
+
+	/**
+	 * The destination key of a URL, being its host name.
+	 *
+	 * @param url remote URL
+	 * @return destination key
+	 */
+	public static String destination(String url) {
+		try {
+			String host = URI.create(url.replaceAll(" ", "%20")).getHost();
+			return host == null ? "" : host.toLowerCase(Locale.ROOT);
+		} catch (IllegalArgumentException e) {
+			return "";
+		}
+	}
+
+	/**
+	 * @return current options
+	 */
+	public Options options() {
+		return options;
+	}
+
+	/**
+	 * Change global and default per-destination limits.
+	 * <p>
+	 * Destinations with their own limits set via
+	 * {@link #limit(String, long, double)} are not affected.
+	 *
+	 * @param options new options
+	 */
+	public void limit(Options options) {
+		this.options = options;
+		bytes.rate(options.bytesPerSecond);
+		requests.rate(options.requestsPerSecond);
+		destinationBytes.forEach((k, b) -> {
+			if (!overridden.contains(k)) b.rate(options.destinationBytesPerSecond);
+		});
+		destinationRequests.forEach((k, b) -> {
+			if (!overridden.contains(k)) b.rate(options.destinationRequestsPerSecond);
+		});
+	}
+
+	/**
+	 * Set the limits of a single destination, overriding the defaults.
+	 *
+	 * @param destination       destination key
+	 * @param bytesPerSecond    bandwidth limit
+	 * @param requestsPerSecond request rate limit
+	 */
+	public void limit(String destination, long bytesPerSecond, double requestsPerSecond) {
+		overridden.add(destination);
+		destinationBytes.computeIfAbsent(destination, k -> new Bucket(bytesPerSecond, clock)).rate(bytesPerSecond);
+		destinationRequests.computeIfAbsent(destination, k -> new Bucket(requestsPerSecond, clock)).rate(requestsPerSecond);
+	}
+
+	/**
+	 * Re-read options from the options file, if one was provided and it
+	 * has changed since it was last read.
+	 */
+	public void reload() {
+		if (optionsFile == null || !Files.isRegularFile(optionsFile)) return;
+		try {
+			FileTime modified = Files.getLastModifiedTime(optionsFile);
+			if (modified.equals(optionsModified)) return;
+			optionsModified = modified;
+			limit(Options.fromFile(optionsFile));
+		} catch (IOException | IllegalArgumentException e) {
+			System.err.printf("%nFailed to read throttle options from %s: %s%n", optionsFile, e);
+		}
+	}
+
+	/**
+	 * Wait until a request to the destination is permitted.
+	 *
+	 * @param destination destination key
+	 * @throws InterruptedIOException interrupted while waiting
+	 */
+	public void request(String destination) throws InterruptedIOException {
+		requested.incrementAndGet();
+		pause(Math.max(requests.reserve(1),
+					   destinationBucket(destinationRequests, destination, options.destinationRequestsPerSecond).reserve(1)));
+	}
+
+	/**
+	 * Check whether transfers to a destination are currently limited by
+	 * bandwidth, either globally or for the destination itself.
+	 *
+	 * @param destination destination key
+	 * @return true if transfers to the destination are bandwidth limited
+	 */
+	public boolean limited(String destination) {
+		return bytes.limited()
+			   || destinationBucket(destinationBytes, destination, options.destinationBytesPerSecond).limited();
+	}
+
+	/**
+	 * Wrap a stream, so that reading from it is limited to the bandwidth
+	 * permitted for the destination.
+	 *
+	 * @param destination destination key
+	 * @param stream      stream to throttle
+	 * @return throttled stream
+	 */
+	public InputStream stream(String destination, InputStream stream) {
+		return new ThrottledInputStream(stream, destination);
+	}
+
+	/**
+	 * Wrap a store, so that each operation counts as a request and stored
+	 * content is limited to the bandwidth permitted for the store.
+	 *
+	 * @param store store to throttle
+	 * @return throttled store
+	 */
+	public DataStore store(DataStore store) {
+		return new ThrottledStore(store, this);
+	}
+
+	/**
+	 * @return total bytes transferred through this throttle
+	 */
+	public long transferred() {
+		return transferred.get();
+	}
+
+	/**
+	 * @return total requests made through this throttle
+	 */
+	public long requested() {
+		return requested.get();
+	}
+
+	/**
+	 * Average transfer rate since the previous call to this method.
+	 *
+	 * @return bytes per second
+	 */
+	public synchronized long throughput() {
+		final long now = clock.nanoTime();
+		final long total = transferred.get();
+		final long elapsed = Math.max(1, now - lastMeasured);
+		final long rate = (total - lastTransferred) * TimeUnit.SECONDS.toNanos(1) / elapsed;
+		lastTransferred = total;
+		lastMeasured = now;
+		return rate;
+	}
+
+	private void consume(String destination, int count) throws InterruptedIOException {
+		transferred.addAndGet(count);
+		pause(Math.max(bytes.reserve(count),
+					   destinationBucket(destinationBytes, destination, options.destinationBytesPerSecond).reserve(count)));
+	}
+
+	private Bucket destinationBucket(Map<String, Bucket> buckets, String destination, double rate) {
+		return buckets.computeIfAbsent(destination, k -> new Bucket(rate, clock));
+	}
+
+	private void pause(long nanos) throws InterruptedIOException {
+		if (nanos <= 0) return;
+		try {
+			clock.sleep(nanos);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while throttled");
+		}
+	}
+
+	/**
+	 * A token bucket, refilled continuously at its rate, holding at most
+	 * one second's worth of tokens.
+	 * <p>
+	 * Tokens may be reserved beyond those available, in which case the
+	 * caller should wait until the debt would have been repaid, which
+	 * allows reservations larger than the bucket itself.
+	 */
+	static class Bucket {
+
+		private final Clock clock;
+
+		private double rate;
+		private double tokens;
+		private long updated;
+
+		Bucket(double rate, Clock clock) {
+			this.clock = clock;
+			this.rate = rate;
+			this.tokens = Math.max(0, rate);
+			this.updated = clock.nanoTime();
+		}
+
+		synchronized boolean limited() {
+			return rate > 0;
+		}
+
+		synchronized void rate(double rate) {
+			refill();
+			this.rate = rate;
+			this.tokens = rate > 0 ? Math.min(tokens, rate) : 0;
+		}
+
+		/**
+		 * Take tokens from the bucket.
+		 *
+		 * @param count number of tokens
+		 * @return nanoseconds to wait before proceeding
+		 */
+		synchronized long reserve(long count) {
+			if (rate <= 0) return 0;
+			refill();
+			tokens -= count;
+			return tokens >= 0 ? 0 : (long)(-tokens / rate * TimeUnit.SECONDS.toNanos(1));
+		}
+
+		private void refill() {
+			final long now = clock.nanoTime();
+			if (rate > 0) tokens = Math.min(rate, tokens + (now - updated) * rate / TimeUnit.SECONDS.toNanos(1));
+			updated = now;
+		}
+	}
+
+	/**
+	 * Source of time for throttles, and means of waiting for it to pass.
+	 */
+	interface Clock {
+
+		Clock SYSTEM = new Clock() {
+			@Override
+			public long nanoTime() {
+				return System.nanoTime();
+			}
+
+			@Override
+			public void sleep(long nanos) throws InterruptedException {
+				TimeUnit.NANOSECONDS.sleep(nanos);
+			}
+		};
+
+		long nanoTime();
+
+		void sleep(long nanos) throws InterruptedException;
+	}
+
+	private class ThrottledInputStream extends FilterInputStream {
+
+		private final String destination;
+
+		private ThrottledInputStream(InputStream in, String destination) {
+			super(in);
+			this.destination = destination;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0) consume(destination, 1);
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, Math.min(len, MAX_CHUNK));
+			if (read > 0) consume(destination, read);
+			return read;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = super.skip(n);
+			if (skipped > 0) consume(destination, (int)Math.min(Integer.MAX_VALUE, skipped));
+			return skipped;
+		}
+	}
+
+	private static class ThrottledStore implements DataStore {
+
+		private final DataStore store;
+		private final Throttle throttle;
+		private final String destination;
+
+		private ThrottledStore(DataStore store, Throttle throttle) {
+			this.store = store;
+			this.throttle = throttle;
+			this.destination = store.toString();
+		}
+
+		@Override
+		public void store(Path path, String name, BiConsumer<String, IOException> stored) throws IOException {
+			// without a bandwidth limit, the store may upload the file itself, without it being read through a stream
+			if (!throttle.limited(destination)) {
+				throttle.request(destination);
+				throttle.request(destination);
+				throttle.transferred.addAndGet(Files.size(path));
+				store.store(path, name, stored);
+				return;
+			}
+
+			// files already in the store are not transferred, so need not be read, buffered or throttled
+			if (exists(name)) {
+				// the store checks again for itself, and returns the existing file
+				throttle.request(destination);
+				store.store(path, name, stored);
+				return;
+			}
+
+			// stream the file, so the upload itself is throttled, rather than just the request
+			try (InputStream in = Files.newInputStream(path)) {
+				store(in, Files.size(path), name, stored);
+			}
+		}
+
+		@Override
+		public void store(InputStream stream, long dataSize, String name, BiConsumer<String, IOException> stored)
+			throws IOException {
+			// stores check for an existing file before uploading, so each store is two requests
+			throttle.request(destination);
+			throttle.request(destination);
+			store.store(throttle.stream(destination, stream), dataSize, name, stored);
+		}
+
+		@Override
+		public void delete(String url, Consumer<Boolean> deleted) throws IOException {
+			throttle.request(destination);
+			store.delete(url, deleted);
+		}
+
+		@Override
+		public void download(String url, Consumer<Path> downloaded) throws IOException {
+			throttle.request(destination);
+			store.download(url, downloaded);
+		}
+
+		@Override
+		public void exists(String name, Consumer<Object> result) throws IOException {
+			throttle.request(destination);
+			store.exists(name, result);
+		}
+
+		@Override
+		public void close() throws IOException {
+			store.close();
+		}
+
+		/**
+		 * Stores report a missing file as either <code>null</code> or
+		 * <code>false</code>, and an existing one as some other value.
+		 */
+		private boolean exists(String name) throws IOException {
+			final AtomicReference<Object> result = new AtomicReference<>();
+			exists(name, result::set);
+			return result.get() != null && !Boolean.FALSE.equals(result.get());
+		}
+
+		@Override
+		public String toString() {
+			return store.toString();
+		}
+	}
+}
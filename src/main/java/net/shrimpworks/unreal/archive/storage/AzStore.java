@@ -2,14 +2,15 @@ package net.shrimpworks.unreal.archive.storage;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.lang.StringBuilder;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
-import java.net.ProtocolException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -21,7 +22,6 @@ import java.util.Calendar;
 import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
-import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -140,12 +140,9 @@ public class AzStore implements DataStore {
 		int returnCode = 0;
 
 		try {
-			HttpURLConnection httpCon = setupBasicConnection(new URL(url), "DELETE");
-			httpCon.connect();
-
-			returnCode = httpCon.getResponseCode();
+			returnCode = send(setupBasicRequest(new URL(url)).DELETE());
 		} catch (Exception e) {
-			throw new IOException("Error deleting blob");
+			throw new IOException("Error deleting blob", e);
 		}
 
 		if (returnCode == 202) {
@@ -173,12 +170,9 @@ public class AzStore implements DataStore {
 		int returnCode = 0;
 
 		try {
-			HttpURLConnection httpCon = setupBasicConnection(url, "HEAD");
-			httpCon.connect();
-
-			returnCode = httpCon.getResponseCode();
+			returnCode = send(setupBasicRequest(url).method("HEAD", HttpRequest.BodyPublishers.noBody()));
 		} catch (Exception e) {
-			throw new IOException("Error checking blob");
+			throw new IOException("Error checking blob", e);
 		}
 
 		if (returnCode == 200) {
@@ -262,15 +256,8 @@ public class AzStore implements DataStore {
 			// this succeeds, it will save bandwidth versus attempting the entire blob
 			// again. If we reach all attempts, we will throw a hard error to do a full retry.
 			do {
-				HttpURLConnection httpCon = setupPutConnection(chunkUrl, bytesRead, true);
-				httpCon.connect();
-
-				try (OutputStream output = httpCon.getOutputStream()) {
-					output.write(buffer, 0, bytesRead);
-					output.flush();
-				}
-
-				int code = httpCon.getResponseCode();
+				int code = send(setupPutRequest(chunkUrl, true)
+									.PUT(HttpRequest.BodyPublishers.ofByteArray(buffer, 0, bytesRead)));
 
 				// We should retry again if we don't get HTTP 201
 				shouldRetry = code != 201;
@@ -300,18 +287,10 @@ public class AzStore implements DataStore {
 		URL manifestSendUrl = getBlobUrl(name, true, "blocklist", null);
 		byte[] blockManifest = generateBlockIdManifest(sentBlockIds);
 
-		HttpURLConnection httpCon = setupPutConnection(manifestSendUrl, blockManifest.length, false);
-		httpCon.connect();
-
-		try (OutputStream output = httpCon.getOutputStream()) {
-			output.write(blockManifest);
-			output.flush();
-		}
-
-		int code = httpCon.getResponseCode();
+		int code = send(setupPutRequest(manifestSendUrl, false).PUT(HttpRequest.BodyPublishers.ofByteArray(blockManifest)));
 
 		if (code != 201) {
-			throw new IOException(String.format("Failed to commit blocks - Unexpected response: %d"));
+			throw new IOException(String.format("Failed to commit blocks - Unexpected response: %d", code));
 		}
 	}
 
@@ -329,32 +308,40 @@ public class AzStore implements DataStore {
 	}
 
 	// Setup a request with the basic headers for Azure storage
-	private HttpURLConnection setupBasicConnection(URL url, String method) throws IOException, ProtocolException {
-		HttpURLConnection httpCon = (HttpURLConnection) url.openConnection();
-		httpCon.setRequestMethod(method);
-		httpCon.setRequestProperty("x-ms-version", "2020-04-08");
-		httpCon.setRequestProperty("x-ms-date", this.getCurrentTime());
-		httpCon.setConnectTimeout((int) TimeUnit.SECONDS.toMillis(120));
-		httpCon.setReadTimeout((int) TimeUnit.SECONDS.toMillis(300));
-		return httpCon;
+	private HttpRequest.Builder setupBasicRequest(URL url) throws IOException {
+		return setupBasicRequest(url, false);
 	}
 
-	// Setup an HTTP connection for a PUT request with a known length
-	private HttpURLConnection setupPutConnection(URL url, long bytesToSend, Boolean sendingContent)
-			throws IOException, ProtocolException {
-		HttpURLConnection httpCon = setupBasicConnection(url, "PUT");
-		httpCon.setDoOutput(true);
+	// Content uploads are transfers, which may take longer than the request timeout
+	private HttpRequest.Builder setupBasicRequest(URL url, boolean transfer) throws IOException {
+		try {
+			URI uri = url.toURI();
+			HttpRequest.Builder request = transfer ? HttpTransport.shared().transfer(uri) : HttpTransport.shared().request(uri);
+			return request.header("x-ms-version", "2020-04-08")
+						  .header("x-ms-date", this.getCurrentTime());
+		} catch (URISyntaxException e) {
+			throw new IOException("Invalid blob URL " + url, e);
+		}
+	}
+
+	// Setup a PUT request, the content length is provided by the request body
+	private HttpRequest.Builder setupPutRequest(URL url, Boolean sendingContent) throws IOException {
+		HttpRequest.Builder request = setupBasicRequest(url, sendingContent);
 
 		if (sendingContent) {
 			// When sending binary content, use the BlockBlob method for
 			// chunking large files
-			httpCon.setRequestProperty("x-ms-blob-type", "BlockBlob");
+			request.header("x-ms-blob-type", "BlockBlob");
 		} else {
 			// When sending the manifest and other metadata, we use XML
-			httpCon.setRequestProperty("Content-Type", "application/xml");
+			request.header("Content-Type", "application/xml");
 		}
 
-		httpCon.setRequestProperty("Content-Length", Long.toString(bytesToSend));
-		return httpCon;
+		return request;
+	}
+
+	// Send a request via the shared transport, returning the response code
+	private int send(HttpRequest.Builder request) throws IOException {
+		return HttpTransport.shared().send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
 	}
 }
@@ -5,12 +5,14 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import com.backblaze.b2.client.B2StorageClient;
+import com.backblaze.b2.client.contentSources.B2ByteArrayContentSource;
 import com.backblaze.b2.client.contentSources.B2FileContentSource;
 import com.backblaze.b2.client.exceptions.B2Exception;
 import com.backblaze.b2.client.structures.B2AccountAuthorization;
@@ -18,7 +20,10 @@ import com.backblaze.b2.client.structures.B2Bucket;
 import com.backblaze.b2.client.structures.B2FileVersion;
 import com.backblaze.b2.client.structures.B2ListBucketsRequest;
 import com.backblaze.b2.client.structures.B2UploadFileRequest;
+import com.backblaze.b2.client.webApiClients.B2WebApiClient;
 import com.backblaze.b2.client.webApiHttpClient.B2StorageHttpClientBuilder;
+import com.backblaze.b2.client.webApiHttpClient.B2WebApiHttpClientImpl;
+import com.backblaze.b2.client.webApiHttpClient.HttpClientFactoryImpl;
 
 import net.shrimpworks.unreal.archive.CLI;
 import net.shrimpworks.unreal.archive.Util;
@@ -26,7 +31,9 @@ import net.shrimpworks.unreal.archive.Util;
 /**
  * Backblaze B2 Cloud storage implementation.
  * <p>
- * This implementation only supports "small" files of up to 5GB.
+ * Files larger than the configured multipart threshold are uploaded as
+ * B2 "large files", with parts uploaded in parallel. Smaller files are
+ * uploaded in a single request, and are limited to 5GB.
  */
 public class B2Store implements DataStore {
 
@@ -45,7 +52,7 @@ public class B2Store implements DataStore {
 			String key = optionOrEnvVar("b2-key", "B2_KEY", type, cli);
 			String bucket = optionOrEnvVar("b2-bucket", "B2_BUCKET", type, cli);
 
-			return new B2Store(accId, key, bucket);
+			return new B2Store(accId, key, bucket, MultipartUpload.Options.fromCli(cli));
 		}
 
 		private String optionOrEnvVar(String option, String envVar, StoreContent type, CLI cli) {
@@ -60,23 +67,49 @@ public class B2Store implements DataStore {
 
 	private final B2StorageClient client;
 	private final String bucket;
+	private final MultipartUpload.Options multipart;
+	private final ExecutorService partExecutor;
 
 	private volatile B2AccountAuthorization account;
 	private volatile B2Bucket bucketInfo;
 
 	B2Store(String keyId, String appKey, String bucket) {
-		this.client = B2StorageHttpClientBuilder.builder(keyId, appKey, USER_AGENT).build();
+		this(keyId, appKey, bucket, MultipartUpload.Options.DEFAULT);
+	}
+
+	B2Store(String keyId, String appKey, String bucket, MultipartUpload.Options multipart) {
+		this.client = B2StorageHttpClientBuilder.builder(keyId, appKey, USER_AGENT)
+												.setWebApiClient(webApiClient(HttpTransport.shared().options))
+												.build();
 		this.bucket = bucket;
+		this.multipart = multipart;
+		this.partExecutor = MultipartUpload.executor(multipart);
 	}
 
 	@Override
 	public void close() {
+		this.partExecutor.shutdown();
 		this.client.close();
 	}
 
+	// the B2 client maintains its own connection pool, which is sized and configured to match the shared transport
+	private static B2WebApiClient webApiClient(HttpTransport.Options options) {
+		return B2WebApiHttpClientImpl.builder()
+									 .setHttpClientFactory(
+										 HttpClientFactoryImpl.builder()
+															  .setMaxConnectionsPerRoute(options.hostConcurrency)
+															  .setMaxTotalConnectionsInPool(options.idleConnections)
+															  .setConnectTimeoutSeconds((int)options.connectTimeout.toSeconds())
+															  .setConnectionRequestTimeoutSeconds((int)options.requestTimeout.toSeconds())
+															  .setSocketTimeoutSeconds((int)options.idleTimeout.toSeconds())
+															  .build()
+									 )
+									 .build();
+	}
+
 	@Override
 	public void store(Path path, String name, BiConsumer<String, IOException> stored) throws IOException {
-		if (Files.size(path) > MAX_SIZE) throw new IllegalArgumentException(path + " exceeds maximum size " + MAX_SIZE);
+		final long size = Files.size(path);
 
 		// first, check if file exists; if it does, just return existing file
 		exists(name, exists -> {
@@ -90,10 +123,18 @@ public class B2Store implements DataStore {
 				);
 			} else {
 				try {
-					final B2FileVersion upload = this.client.uploadSmallFile(
-							B2UploadFileRequest.builder(bucket, name, Util.mimeType(Util.extension(path)),
-														B2FileContentSource.build(path.toFile())).build()
-					);
+					final B2UploadFileRequest request = B2UploadFileRequest.builder(
+						bucket, name, Util.mimeType(Util.extension(path)), B2FileContentSource.build(path.toFile())
+					).build();
+
+					// large files must consist of at least two parts, the B2 client uses the account's recommended part size
+					final B2FileVersion upload;
+					if (size > MAX_SIZE || size > Math.max(multipart.threshold, account.getAbsoluteMinimumPartSize() * 2L)) {
+						upload = this.client.uploadLargeFile(request, partExecutor);
+					} else {
+						upload = this.client.uploadSmallFile(request);
+					}
+
 					stored.accept(
 							Util.toUriString(String.format(DOWNLOAD_URL,
 														   account.getDownloadUrl(), bucketInfo.getBucketName(), upload.getFileName())
@@ -107,8 +148,38 @@ public class B2Store implements DataStore {
 	}
 
 	@Override
-	public void store(InputStream stream, long dataSize, String name, BiConsumer<String, IOException> stored) {
-		throw new UnsupportedOperationException("Uploading streams not supported yet");
+	public void store(InputStream stream, long dataSize, String name, BiConsumer<String, IOException> stored) throws IOException {
+		// the B2 client may need to re-read content on retry, so small streams are buffered, and large ones spooled to disk
+		if (dataSize <= multipart.threshold) {
+			final byte[] data = stream.readAllBytes();
+			exists(name, exists -> {
+				if (exists instanceof B2FileVersion) {
+					stored.accept(downloadUrl(((B2FileVersion)exists).getFileName()), null);
+				} else {
+					try {
+						final B2FileVersion upload = this.client.uploadSmallFile(
+							B2UploadFileRequest.builder(bucket, name, Util.mimeType(Util.extension(name)),
+														B2ByteArrayContentSource.build(data)).build()
+						);
+						stored.accept(downloadUrl(upload.getFileName()), null);
+					} catch (B2Exception e) {
+						stored.accept(null, new IOException("Failed to process Backblaze upload", e));
+					}
+				}
+			});
+		} else {
+			final Path tmp = Files.createTempFile("b2-upload-", "." + Util.extension(name));
+			try {
+				Files.copy(stream, tmp, StandardCopyOption.REPLACE_EXISTING);
+				store(tmp, name, stored);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		}
+	}
+
+	private String downloadUrl(String fileName) {
+		return Util.toUriString(String.format(DOWNLOAD_URL, account.getDownloadUrl(), bucketInfo.getBucketName(), fileName));
 	}
 
 	@Override
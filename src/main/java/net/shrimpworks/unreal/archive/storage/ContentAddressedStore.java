@@ -0,0 +1,227 @@
+package net.shrimpworks.unreal.archive.storage;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import net.shrimpworks.unreal.archive.Util;
+
+/**
+ * A store which names files by the SHA-1 hash of their content, rather
+ * than by the name requested.
+ * <p>
+ * Identical files, such as the same screenshot belonging to several
+ * variations of a map, are therefore stored once. A local index of hashes
+ * already stored, and their URLs, is kept so that storing a known file
+ * returns its existing URL without any network transfer at all.
+ * <p>
+ * Files are stored in the underlying store as
+ * <code>&lt;prefix&gt;/&lt;aa&gt;/&lt;hash&gt;.&lt;ext&gt;</code>, where
+ * <code>aa</code> is the first two characters of the hash, and the
+ * extension is taken from the requested name.
+ * <p>
+ * The index is a plain text file with one <code>&lt;hash&gt; &lt;url&gt;</code>
+ * record per line, appended to as files are stored.
+ */
+public class ContentAddressedStore implements DataStore {
+
+	public static final String DEFAULT_PREFIX = "sha1";
+
+	// streams up to this size are hashed in memory, larger ones are spooled to disk
+	private static final int MAX_BUFFERED = 32 * 1024 * 1024;
+
+	private final DataStore store;
+	private final String prefix;
+	private final Path indexFile;
+	private final Map<String, String> index;
+	private final Set<String> urls;
+	private final BufferedWriter writer;
+
+	/**
+	 * Create a content-addressed store.
+	 *
+	 * @param store     underlying store which will hold files
+	 * @param prefix    path prefix of stored files
+	 * @param indexFile local index of stored files, created if it does not exist
+	 * @throws IOException failed to read or create the index
+	 */
+	public ContentAddressedStore(DataStore store, String prefix, Path indexFile) throws IOException {
+		this.store = store;
+		this.prefix = prefix;
+		this.indexFile = indexFile;
+		final String existing = Files.isRegularFile(indexFile) ? Files.readString(indexFile, StandardCharsets.UTF_8) : "";
+		this.index = readIndex(existing);
+		this.urls = new HashSet<>(index.values());
+
+		if (indexFile.getParent() != null) Files.createDirectories(indexFile.getParent());
+		this.writer = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8,
+											  StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+		// terminate any partially written record, so the next one starts on a new line
+		if (!existing.isEmpty() && !existing.endsWith("\n")) {
+			writer.write("\n");
+			writer.flush();
+		}
+	}
+
+	/**
+	 * Index file name for a given underlying store, allowing the indexes
+	 * of several stores to be kept in the same directory.
+	 * <p>
+	 * The kind of content is part of the name, since stores for different
+	 * kinds of content may be configured identically.
+	 *
+	 * @param content kind of content held by the store
+	 * @param store   the underlying store
+	 * @return file name
+	 */
+	public static String fileName(DataStore.StoreContent content, DataStore store) {
+		return "blobs-" + content.name().toLowerCase() + "-" + Util.hash(ByteBuffer.wrap(store.toString().getBytes(StandardCharsets.UTF_8))).substring(0, 12) + ".index";
+	}
+
+	@Override
+	public void store(Path path, String name, BiConsumer<String, IOException> stored) throws IOException {
+		final String hash = Util.hashFile(path);
+
+		final String known = known(hash);
+		if (known != null) {
+			stored.accept(known, null);
+			return;
+		}
+
+		store.store(path, blobName(hash, name), recording(hash, stored));
+	}
+
+	@Override
+	public void store(InputStream stream, long dataSize, String name, BiConsumer<String, IOException> stored)
+		throws IOException {
+		// the content must be hashed before it is stored, so it can't be sent to the store as it's read
+		if (dataSize > MAX_BUFFERED) {
+			Path tmp = Files.createTempFile("ua-blob", ".tmp");
+			try {
+				try (OutputStream out = Files.newOutputStream(tmp)) {
+					stream.transferTo(out);
+				}
+				store(tmp, name, stored);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+			return;
+		}
+
+		final byte[] data = stream.readAllBytes();
+		final String hash = Util.hash(ByteBuffer.wrap(data));
+
+		final String known = known(hash);
+		if (known != null) {
+			stored.accept(known, null);
+			return;
+		}
+
+		store.store(new ByteArrayInputStream(data), data.length, blobName(hash, name), recording(hash, stored));
+	}
+
+	/**
+	 * Stored files may be shared by several content items, and this store
+	 * has no knowledge of which other items refer to them, so files known
+	 * to the index are not deleted.
+	 */
+	@Override
+	public void delete(String url, Consumer<Boolean> deleted) throws IOException {
+		if (isIndexed(url)) {
+			deleted.accept(false);
+			return;
+		}
+
+		store.delete(url, deleted);
+	}
+
+	@Override
+	public void download(String url, Consumer<Path> downloaded) throws IOException {
+		store.download(url, downloaded);
+	}
+
+	@Override
+	public void exists(String name, Consumer<Object> result) throws IOException {
+		store.exists(name, result);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			synchronized (this) {
+				writer.close();
+			}
+		} finally {
+			store.close();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ContentAddressedStore [store=%s, indexFile=%s]", store, indexFile);
+	}
+
+	private String blobName(String hash, String name) {
+		final String ext = Util.extension(name);
+		return String.format("%s/%s/%s%s", prefix, hash.substring(0, 2), hash, ext.isEmpty() ? "" : "." + ext.toLowerCase());
+	}
+
+	private synchronized String known(String hash) {
+		return index.get(hash);
+	}
+
+	private synchronized boolean isIndexed(String url) {
+		return urls.contains(url);
+	}
+
+	private BiConsumer<String, IOException> recording(String hash, BiConsumer<String, IOException> stored) {
+		return (url, ex) -> {
+			if (ex == null && url != null) {
+				try {
+					record(hash, url);
+				} catch (IOException e) {
+					stored.accept(url, e);
+					return;
+				}
+			}
+			stored.accept(url, ex);
+		};
+	}
+
+	private synchronized void record(String hash, String url) throws IOException {
+		final String previous = index.put(hash, url);
+		if (url.equals(previous)) return;
+		if (previous != null) urls.remove(previous);
+		urls.add(url);
+
+		// flushed on every record, so the index survives the process being killed
+		writer.write(hash + " " + url + "\n");
+		writer.flush();
+	}
+
+	private static Map<String, String> readIndex(String content) {
+		final Map<String, String> index = new HashMap<>();
+		// a trailing partially written line is ignored
+		for (String line : content.substring(0, content.lastIndexOf('\n') + 1).split("\n")) {
+			int split = line.indexOf(' ');
+			if (split != 40 || line.length() <= split + 1) continue;
+			index.put(line.substring(0, split), line.substring(split + 1).trim());
+		}
+
+		return index;
+	}
+}
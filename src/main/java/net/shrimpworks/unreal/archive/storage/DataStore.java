@@ -4,6 +4,7 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -85,6 +86,98 @@ public interface DataStore extends Closeable {
 	 */
 	public void exists(String name, Consumer<Object> result) throws IOException;
 
+	/**
+	 * Asynchronously store the file at <code>path</code> under the provided
+	 * name in the store.
+	 * <p>
+	 * The operation is performed on the shared {@link IOExecutor}. As with
+	 * the other asynchronous operations, the returned future fails if the
+	 * store does not report a result, and it also fails if the store does not
+	 * provide a URL for the stored file.
+	 *
+	 * @param path local file to store
+	 * @param name name and path of the stored file
+	 * @return a future containing the full URL to the stored file
+	 */
+	public default CompletableFuture<String> storeAsync(Path path, String name) {
+		return async(future -> store(path, name, completing(future)));
+	}
+
+	/**
+	 * Asynchronously store the content of <code>stream</code> under the
+	 * provided name in the store.
+	 * <p>
+	 * The stream is not closed, and must remain open until the returned
+	 * future completes.
+	 *
+	 * @param stream   content to store
+	 * @param dataSize length of the content
+	 * @param name     name and path of the stored file
+	 * @return a future containing the full URL to the stored file
+	 */
+	public default CompletableFuture<String> storeAsync(InputStream stream, long dataSize, String name) {
+		return async(future -> store(stream, dataSize, name, completing(future)));
+	}
+
+	/**
+	 * Asynchronously remove the file at <code>url</code> from storage.
+	 *
+	 * @param url url of file to delete
+	 * @return a future containing true if successful
+	 */
+	public default CompletableFuture<Boolean> deleteAsync(String url) {
+		return async(future -> delete(url, future::complete));
+	}
+
+	/**
+	 * Asynchronously retrieve the file from the remote URL and write it to a
+	 * local temporary file.
+	 *
+	 * @param url file to download
+	 * @return a future containing the path to the downloaded file
+	 */
+	public default CompletableFuture<Path> downloadAsync(String url) {
+		return async(future -> download(url, future::complete));
+	}
+
+	/**
+	 * Asynchronously check if the given file exists in this store.
+	 *
+	 * @param name file to check
+	 * @return a future containing implementation-specific file information
+	 */
+	public default CompletableFuture<Object> existsAsync(String name) {
+		return async(future -> exists(name, future::complete));
+	}
+
+	private static <T> CompletableFuture<T> async(AsyncOperation<T> operation) {
+		final CompletableFuture<T> future = new CompletableFuture<>();
+		IOExecutor.executor().execute(() -> {
+			try {
+				operation.run(future);
+				// stores report results before returning, so one which has not done so has failed silently
+				if (!future.isDone()) future.completeExceptionally(new IOException("Storage operation did not report a result"));
+			} catch (Throwable e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	private static BiConsumer<String, IOException> completing(CompletableFuture<String> future) {
+		return (url, ex) -> {
+			if (ex != null) future.completeExceptionally(ex);
+			else if (url == null) future.completeExceptionally(new IOException("Store did not provide a URL for the stored file"));
+			else future.complete(url);
+		};
+	}
+
+	@FunctionalInterface
+	interface AsyncOperation<T> {
+
+		void run(CompletableFuture<T> future) throws IOException;
+	}
+
 	static class NopStore implements DataStore {
 
 		static class NopStoreFactory implements DataStoreFactory {
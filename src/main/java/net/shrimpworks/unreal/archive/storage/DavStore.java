@@ -49,14 +49,15 @@ public class DavStore implements DataStore {
 	@Override
 	public void store(Path path, String name, BiConsumer<String, IOException> stored) throws IOException {
 		String url = Util.toUriString(baseUrl + name);
-		Util.uploadTo(path, url);
-
-		stored.accept(url, null);
+		if (Util.uploadTo(path, url)) stored.accept(url, null);
+		else stored.accept(null, new IOException("Failed to store file " + name));
 	}
 
 	@Override
-	public void store(InputStream stream, long dataSize, String name, BiConsumer<String, IOException> stored) {
-		throw new UnsupportedOperationException("Uploading streams not supported yet");
+	public void store(InputStream stream, long dataSize, String name, BiConsumer<String, IOException> stored) throws IOException {
+		String url = Util.toUriString(baseUrl + name);
+		if (Util.uploadTo(stream, dataSize, url)) stored.accept(url, null);
+		else stored.accept(null, new IOException("Failed to store file " + name));
 	}
 
 	@Override
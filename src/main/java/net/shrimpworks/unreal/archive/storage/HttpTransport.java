@@ -0,0 +1,564 @@
+package net.shrimpworks.unreal.archive.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLSession;
+
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import net.shrimpworks.unreal.archive.CLI;
+
+/**
+ * Shared HTTP transport, used by storage implementations and general
+ * download and upload utilities.
+ * <p>
+ * Connections are pooled and kept alive between requests, and HTTP/2 is
+ * used where the remote host supports it, so repeated requests to the same
+ * host do not each pay the cost of a new connection and TLS handshake.
+ * <p>
+ * The number of concurrent requests to any single host is limited, and a
+ * connect timeout is applied to all requests. Short requests made via
+ * {@link #request(URI)} must complete within a request timeout, while
+ * uploads and downloads made via {@link #transfer(URI)} may take as long as
+ * they need, provided they don't stall for longer than an idle timeout.
+ */
+public class HttpTransport {
+
+	private static volatile HttpTransport shared = new HttpTransport(Options.DEFAULT);
+
+	public static class Options {
+
+		public static final Options DEFAULT = new Options(Duration.ofSeconds(30), Duration.ofMinutes(5), Duration.ofSeconds(60),
+														  8, 32);
+
+		public final Duration connectTimeout;
+		public final Duration requestTimeout;
+		// the longest a transfer may go without sending or receiving any data
+		public final Duration idleTimeout;
+		public final int hostConcurrency;
+		public final int idleConnections;
+
+		public Options(Duration connectTimeout, Duration requestTimeout, Duration idleTimeout, int hostConcurrency,
+					   int idleConnections) {
+			if (hostConcurrency < 1) throw new IllegalArgumentException("Host concurrency must be at least 1");
+			this.connectTimeout = connectTimeout;
+			this.requestTimeout = requestTimeout;
+			this.idleTimeout = idleTimeout;
+			this.hostConcurrency = hostConcurrency;
+			this.idleConnections = Math.max(1, idleConnections);
+		}
+
+		/**
+		 * Read transport options from the command line.
+		 * <p>
+		 * Supports <code>--http-connect-timeout</code>, <code>--http-timeout</code>
+		 * and <code>--http-idle-timeout</code> in seconds,
+		 * <code>--http-host-concurrency</code> and <code>--http-idle-connections</code>.
+		 *
+		 * @param cli command line
+		 * @return transport options
+		 */
+		public static Options fromCli(CLI cli) {
+			return new Options(
+				Duration.ofSeconds(Long.parseLong(cli.option("http-connect-timeout",
+															 Long.toString(DEFAULT.connectTimeout.toSeconds())))),
+				Duration.ofSeconds(Long.parseLong(cli.option("http-timeout",
+															 Long.toString(DEFAULT.requestTimeout.toSeconds())))),
+				Duration.ofSeconds(Long.parseLong(cli.option("http-idle-timeout",
+															 Long.toString(DEFAULT.idleTimeout.toSeconds())))),
+				Integer.parseInt(cli.option("http-host-concurrency", Integer.toString(DEFAULT.hostConcurrency))),
+				Integer.parseInt(cli.option("http-idle-connections", Integer.toString(DEFAULT.idleConnections)))
+			);
+		}
+	}
+
+	// checks transfers for progress; a single thread is plenty, since checks just compare timestamps
+	private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread t = new Thread(r, "http-watchdog");
+		t.setDaemon(true);
+		return t;
+	});
+
+	public final Options options;
+
+	private final HttpClient client;
+	private final Map<String, Semaphore> hosts;
+
+	private volatile OkHttpClient okHttpClient;
+
+	HttpTransport(Options options) {
+		this.options = options;
+		this.client = HttpClient.newBuilder()
+								.version(HttpClient.Version.HTTP_2)
+								.followRedirects(HttpClient.Redirect.NORMAL)
+								.connectTimeout(options.connectTimeout)
+								.build();
+		this.hosts = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * @return the shared transport instance
+	 */
+	public static HttpTransport shared() {
+		return shared;
+	}
+
+	/**
+	 * Replace the shared transport with one using the provided options.
+	 * <p>
+	 * This should be done before any stores are created, since existing
+	 * stores may hold references to the previous transport.
+	 *
+	 * @param options transport options
+	 * @return the new shared transport
+	 */
+	public static HttpTransport configure(Options options) {
+		shared = new HttpTransport(options);
+		return shared;
+	}
+
+	/**
+	 * Begin building a short request for the given URI, such as a
+	 * <code>HEAD</code> or <code>DELETE</code>, with the configured request
+	 * timeout applied.
+	 * <p>
+	 * The request timeout covers sending the request body, so requests with
+	 * large bodies should use {@link #transfer(URI)} instead.
+	 *
+	 * @param uri request URI
+	 * @return a request builder
+	 */
+	public HttpRequest.Builder request(URI uri) {
+		return HttpRequest.newBuilder(uri).timeout(options.requestTimeout);
+	}
+
+	/**
+	 * Begin building a request for the given URI which transfers a file,
+	 * either as an upload or a streamed download.
+	 * <p>
+	 * No request timeout is applied, so a transfer may take as long as it
+	 * needs. Instead, it will fail if no data is sent or received for the
+	 * configured idle timeout.
+	 *
+	 * @param uri request URI
+	 * @return a request builder
+	 */
+	public HttpRequest.Builder transfer(URI uri) {
+		return HttpRequest.newBuilder(uri);
+	}
+
+	/**
+	 * Send a request and wait for the response.
+	 * <p>
+	 * A permit for the request's host is held until the response body has
+	 * been processed by <code>bodyHandler</code>, so handlers which return
+	 * streams should use {@link #stream(HttpRequest, StreamHandler)}
+	 * instead.
+	 *
+	 * @param request     request to send
+	 * @param bodyHandler response body handler
+	 * @param <T>         response body type
+	 * @return the response
+	 * @throws IOException request failed, timed out or was interrupted
+	 */
+	public <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+		Semaphore permits = permits(request.uri());
+		acquire(permits);
+		try {
+			if (request.timeout().isPresent()) return client.send(request, bodyHandler);
+
+			try (Watchdog watchdog = new Watchdog(request.uri())) {
+				return watchdog.await(client.sendAsync(watchdog.watch(request), watchdog.watch(bodyHandler)));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while requesting " + request.uri());
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Send a request and process its response body as a stream.
+	 * <p>
+	 * The host permit is held, and the response stream remains open, until
+	 * <code>handler</code> returns.
+	 * <p>
+	 * For requests built with {@link #transfer(URI)}, the idle timeout only
+	 * applies while waiting for a response, and while reading from the
+	 * response stream, so handlers may take their time processing what they
+	 * read.
+	 *
+	 * @param request request to send
+	 * @param handler response handler
+	 * @param <T>     result type
+	 * @return the result of the handler
+	 * @throws IOException request failed, timed out or was interrupted, or
+	 *                     the handler failed
+	 */
+	public <T> T stream(HttpRequest request, StreamHandler<T> handler) throws IOException {
+		Semaphore permits = permits(request.uri());
+		acquire(permits);
+		try {
+			if (request.timeout().isPresent()) {
+				HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+				try (InputStream body = response.body()) {
+					return handler.handle(response);
+				}
+			}
+
+			try (Watchdog watchdog = new Watchdog(request.uri())) {
+				HttpResponse<InputStream> response = watchdog.await(
+					client.sendAsync(watchdog.watch(request), HttpResponse.BodyHandlers.ofInputStream())
+				);
+				try (InputStream body = watchdog.watch(response.body())) {
+					return handler.handle(new WatchedResponse(response, body));
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while requesting " + request.uri());
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * An OkHttp client for libraries which require one, sharing this
+	 * transport's timeouts and host concurrency limits.
+	 * <p>
+	 * A single client, and therefore a single connection pool, is shared
+	 * between all users of this transport.
+	 *
+	 * @return shared OkHttp client
+	 */
+	public OkHttpClient okHttpClient() {
+		if (okHttpClient == null) {
+			synchronized (this) {
+				if (okHttpClient == null) {
+					okHttpClient = new OkHttpClient.Builder()
+						.connectionPool(new ConnectionPool(options.idleConnections, 5, TimeUnit.MINUTES))
+						.connectTimeout(options.connectTimeout)
+						// OkHttp's read and write timeouts apply to individual reads and writes, not whole requests
+						.readTimeout(options.idleTimeout)
+						.writeTimeout(options.idleTimeout)
+						// S3-compatible services generally do not speak HTTP/2
+						.protocols(List.of(Protocol.HTTP_1_1))
+						.addInterceptor(chain -> {
+							Semaphore permits = permits(chain.request().url().uri());
+							acquire(permits);
+							try {
+								return chain.proceed(chain.request());
+							} finally {
+								permits.release();
+							}
+						})
+						.build();
+				}
+			}
+		}
+		return okHttpClient;
+	}
+
+	private Semaphore permits(URI uri) {
+		String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+		return hosts.computeIfAbsent(host + ":" + uri.getPort(), h -> new Semaphore(options.hostConcurrency, true));
+	}
+
+	private static void acquire(Semaphore permits) throws InterruptedIOException {
+		try {
+			permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a connection");
+		}
+	}
+
+	@FunctionalInterface
+	public interface StreamHandler<T> {
+
+		T handle(HttpResponse<InputStream> response) throws IOException;
+	}
+
+	/**
+	 * Watches a transfer for progress, aborting it if it's busy but no data
+	 * is sent or received for the idle timeout.
+	 * <p>
+	 * A transfer is busy while waiting for a response, and while its
+	 * response stream is being read.
+	 */
+	private class Watchdog implements AutoCloseable {
+
+		private final URI uri;
+		private final long idleNanos;
+		private final ScheduledFuture<?> check;
+
+		private volatile long lastProgress;
+		private volatile boolean busy;
+		private volatile boolean timedOut;
+		private volatile CompletableFuture<?> pending;
+		private volatile InputStream body;
+
+		private Watchdog(URI uri) {
+			this.uri = uri;
+			this.idleNanos = options.idleTimeout.toNanos();
+			this.lastProgress = System.nanoTime();
+			this.busy = true;
+			final long interval = Math.max(10, options.idleTimeout.toMillis() / 4);
+			this.check = WATCHDOG.scheduleWithFixedDelay(this::check, interval, interval, TimeUnit.MILLISECONDS);
+		}
+
+		private void progress() {
+			lastProgress = System.nanoTime();
+		}
+
+		private void busy(boolean busy) {
+			progress();
+			this.busy = busy;
+		}
+
+		private void check() {
+			if (!busy || System.nanoTime() - lastProgress < idleNanos) return;
+
+			timedOut = true;
+			check.cancel(false);
+			final CompletableFuture<?> p = pending;
+			if (p != null) p.cancel(true);
+			final InputStream b = body;
+			if (b != null) {
+				try {
+					// unblocks a reader waiting on the stream
+					b.close();
+				} catch (IOException e) {
+					// pass
+				}
+			}
+		}
+
+		private <T> HttpResponse<T> await(CompletableFuture<HttpResponse<T>> response) throws IOException, InterruptedException {
+			pending = response;
+			try {
+				return response.get();
+			} catch (CancellationException e) {
+				throw timeout();
+			} catch (ExecutionException e) {
+				if (timedOut) throw timeout();
+				if (e.getCause() instanceof IOException) throw (IOException)e.getCause();
+				throw new IOException("Failed to request " + uri, e.getCause());
+			} finally {
+				pending = null;
+				busy(false);
+			}
+		}
+
+		private HttpTimeoutException timeout() {
+			return new HttpTimeoutException(String.format("No data transferred for %ds, requesting %s",
+														  options.idleTimeout.toSeconds(), uri));
+		}
+
+		private HttpRequest watch(HttpRequest request) {
+			if (request.bodyPublisher().isEmpty()) return request;
+
+			final HttpRequest.Builder watched = HttpRequest.newBuilder(request.uri())
+														   .expectContinue(request.expectContinue())
+														   .method(request.method(), watch(request.bodyPublisher().get()));
+			request.version().ifPresent(watched::version);
+			request.headers().map().forEach((name, values) -> values.forEach(v -> watched.header(name, v)));
+			return watched.build();
+		}
+
+		private HttpRequest.BodyPublisher watch(HttpRequest.BodyPublisher publisher) {
+			return new HttpRequest.BodyPublisher() {
+				@Override
+				public long contentLength() {
+					return publisher.contentLength();
+				}
+
+				@Override
+				public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+					publisher.subscribe(new Flow.Subscriber<ByteBuffer>() {
+						@Override
+						public void onSubscribe(Flow.Subscription subscription) {
+							subscriber.onSubscribe(subscription);
+						}
+
+						@Override
+						public void onNext(ByteBuffer item) {
+							progress();
+							subscriber.onNext(item);
+						}
+
+						@Override
+						public void onError(Throwable throwable) {
+							subscriber.onError(throwable);
+						}
+
+						@Override
+						public void onComplete() {
+							subscriber.onComplete();
+						}
+					});
+				}
+			};
+		}
+
+		private <T> HttpResponse.BodyHandler<T> watch(HttpResponse.BodyHandler<T> handler) {
+			return info -> {
+				progress();
+				final HttpResponse.BodySubscriber<T> subscriber = handler.apply(info);
+				return new HttpResponse.BodySubscriber<>() {
+					@Override
+					public CompletionStage<T> getBody() {
+						return subscriber.getBody();
+					}
+
+					@Override
+					public void onSubscribe(Flow.Subscription subscription) {
+						subscriber.onSubscribe(subscription);
+					}
+
+					@Override
+					public void onNext(List<ByteBuffer> item) {
+						progress();
+						subscriber.onNext(item);
+					}
+
+					@Override
+					public void onError(Throwable throwable) {
+						subscriber.onError(throwable);
+					}
+
+					@Override
+					public void onComplete() {
+						subscriber.onComplete();
+					}
+				};
+			};
+		}
+
+		private InputStream watch(InputStream stream) {
+			body = stream;
+			return new InputStream() {
+				@Override
+				public int read() throws IOException {
+					busy(true);
+					try {
+						return stream.read();
+					} catch (IOException e) {
+						throw timedOut ? timeout() : e;
+					} finally {
+						busy(false);
+					}
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					busy(true);
+					try {
+						return stream.read(b, off, len);
+					} catch (IOException e) {
+						throw timedOut ? timeout() : e;
+					} finally {
+						busy(false);
+					}
+				}
+
+				@Override
+				public int available() throws IOException {
+					return stream.available();
+				}
+
+				@Override
+				public void close() throws IOException {
+					stream.close();
+				}
+			};
+		}
+
+		@Override
+		public void close() {
+			check.cancel(false);
+		}
+	}
+
+	/**
+	 * A response whose body is replaced by a watched stream.
+	 */
+	private static class WatchedResponse implements HttpResponse<InputStream> {
+
+		private final HttpResponse<InputStream> response;
+		private final InputStream body;
+
+		private WatchedResponse(HttpResponse<InputStream> response, InputStream body) {
+			this.response = response;
+			this.body = body;
+		}
+
+		@Override
+		public int statusCode() {
+			return response.statusCode();
+		}
+
+		@Override
+		public HttpRequest request() {
+			return response.request();
+		}
+
+		@Override
+		public Optional<HttpResponse<InputStream>> previousResponse() {
+			return response.previousResponse();
+		}
+
+		@Override
+		public HttpHeaders headers() {
+			return response.headers();
+		}
+
+		@Override
+		public InputStream body() {
+			return body;
+		}
+
+		@Override
+		public Optional<SSLSession> sslSession() {
+			return response.sslSession();
+		}
+
+		@Override
+		public URI uri() {
+			return response.uri();
+		}
+
+		@Override
+		public HttpClient.Version version() {
+			return response.version();
+		}
+	}
+}
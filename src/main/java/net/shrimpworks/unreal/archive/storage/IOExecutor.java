@@ -0,0 +1,68 @@
+package net.shrimpworks.unreal.archive.storage;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of threads used to perform blocking storage operations
+ * on behalf of the asynchronous {@link DataStore} methods.
+ * <p>
+ * Operations beyond the number of available threads are queued, so
+ * callers may start any number of transfers without each one occupying
+ * a thread of their own.
+ */
+public class IOExecutor {
+
+	public static final int DEFAULT_THREADS = 16;
+
+	private static final ThreadPoolExecutor executor = newExecutor(DEFAULT_THREADS);
+
+	private IOExecutor() {
+	}
+
+	/**
+	 * @return the shared storage I/O executor
+	 */
+	public static Executor executor() {
+		return executor;
+	}
+
+	/**
+	 * Set the maximum number of concurrent storage operations.
+	 *
+	 * @param threads maximum number of threads
+	 */
+	public static void threads(int threads) {
+		if (threads < 1) throw new IllegalArgumentException("At least one I/O thread is required");
+		// core size must be reduced before maximum size, and increased after
+		if (threads < executor.getMaximumPoolSize()) {
+			executor.setCorePoolSize(threads);
+			executor.setMaximumPoolSize(threads);
+		} else {
+			executor.setMaximumPoolSize(threads);
+			executor.setCorePoolSize(threads);
+		}
+	}
+
+	/**
+	 * @return the maximum number of concurrent storage operations
+	 */
+	public static int threads() {
+		return executor.getMaximumPoolSize();
+	}
+
+	private static ThreadPoolExecutor newExecutor(int threads) {
+		final AtomicInteger count = new AtomicInteger();
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+			Thread t = new Thread(r, "storage-io-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		// idle threads are released, since storage is often used only briefly
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+}
@@ -0,0 +1,185 @@
+package net.shrimpworks.unreal.archive.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.shrimpworks.unreal.archive.CLI;
+
+/**
+ * Uploads large streams as a series of parts, several of which are sent
+ * in parallel, and each of which may be retried individually on failure.
+ * <p>
+ * The stream is read sequentially, and at most <code>concurrency</code>
+ * parts are held in memory at once.
+ */
+class MultipartUpload {
+
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory());
+
+	public static class Options {
+
+		public static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+		public static final Options DEFAULT = new Options(64L * 1024 * 1024, 16L * 1024 * 1024, 4, 3);
+
+		// streams larger than this will be uploaded in parts
+		public final long threshold;
+		public final long partSize;
+		public final int concurrency;
+		public final int attempts;
+
+		public Options(long threshold, long partSize, int concurrency, int attempts) {
+			if (partSize < MIN_PART_SIZE) throw new IllegalArgumentException("Part size must be at least " + MIN_PART_SIZE);
+			if (partSize > Integer.MAX_VALUE - 8) throw new IllegalArgumentException("Part size too large");
+			this.threshold = threshold;
+			this.partSize = partSize;
+			this.concurrency = Math.max(1, concurrency);
+			this.attempts = Math.max(1, attempts);
+		}
+
+		/**
+		 * Read multipart upload options from the command line.
+		 * <p>
+		 * Supports <code>--multipart-threshold</code> and
+		 * <code>--multipart-part-size</code> in bytes,
+		 * <code>--multipart-concurrency</code> and
+		 * <code>--multipart-attempts</code>.
+		 *
+		 * @param cli command line
+		 * @return multipart options
+		 */
+		public static Options fromCli(CLI cli) {
+			return new Options(
+				Long.parseLong(cli.option("multipart-threshold", Long.toString(DEFAULT.threshold))),
+				Long.parseLong(cli.option("multipart-part-size", Long.toString(DEFAULT.partSize))),
+				Integer.parseInt(cli.option("multipart-concurrency", Integer.toString(DEFAULT.concurrency))),
+				Integer.parseInt(cli.option("multipart-attempts", Integer.toString(DEFAULT.attempts)))
+			);
+		}
+
+		/**
+		 * Part size to use for a stream of the given size, which is the
+		 * configured part size, unless the number of parts would exceed
+		 * <code>maxParts</code>.
+		 */
+		int partSize(long dataSize, int maxParts) {
+			return (int)Math.max(partSize, (dataSize + maxParts - 1) / maxParts);
+		}
+	}
+
+	@FunctionalInterface
+	interface PartSender<T> {
+
+		/**
+		 * Send a single part.
+		 *
+		 * @param partNumber part number, starting from 1
+		 * @param data       part data buffer
+		 * @param length     length of data within the buffer
+		 * @return result of the upload, generally an identifier of the part
+		 * @throws Exception upload of the part failed
+		 */
+		T send(int partNumber, byte[] data, int length) throws Exception;
+	}
+
+	/**
+	 * Read a stream in parts, and send them using <code>sender</code>.
+	 *
+	 * @param stream   stream to upload
+	 * @param partSize size of each part, except the last
+	 * @param options  concurrency and retry options
+	 * @param sender   sends individual parts
+	 * @param <T>      part upload result type
+	 * @return results of each part upload, in part order
+	 * @throws IOException reading the stream or uploading a part failed
+	 */
+	static <T> List<T> upload(InputStream stream, int partSize, Options options, PartSender<T> sender) throws IOException {
+		final Semaphore inFlight = new Semaphore(options.concurrency);
+		final AtomicReference<Exception> failure = new AtomicReference<>();
+		final List<Future<T>> parts = new ArrayList<>();
+
+		try {
+			for (int part = 1; failure.get() == null; part++) {
+				inFlight.acquire();
+
+				byte[] buffer = new byte[partSize];
+				int length = stream.readNBytes(buffer, 0, partSize);
+				if (length <= 0 && part > 1) {
+					inFlight.release();
+					break;
+				}
+
+				final int partNumber = part;
+				parts.add(EXECUTOR.submit(() -> {
+					try {
+						return sendPart(sender, partNumber, buffer, length, options.attempts);
+					} catch (Exception e) {
+						failure.compareAndSet(null, e);
+						throw e;
+					} finally {
+						inFlight.release();
+					}
+				}));
+
+				if (length < partSize) break;
+			}
+
+			final List<T> results = new ArrayList<>(parts.size());
+			for (Future<T> part : parts) results.add(part.get());
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while uploading parts");
+		} catch (ExecutionException e) {
+			throw new IOException("Failed to upload part: " + e.getCause().getMessage(), e.getCause());
+		} finally {
+			// stop any outstanding parts if anything went wrong
+			for (Future<T> part : parts) part.cancel(true);
+		}
+	}
+
+	/**
+	 * Create an executor for libraries which manage their own part uploads.
+	 *
+	 * @param options multipart options, specifying concurrency
+	 * @return a new fixed-size executor using daemon threads
+	 */
+	static ExecutorService executor(Options options) {
+		return Executors.newFixedThreadPool(options.concurrency, new ThreadFactory());
+	}
+
+	private static <T> T sendPart(PartSender<T> sender, int partNumber, byte[] data, int length, int attempts) throws Exception {
+		// If a failure occurs during a single part upload, we can retry it alone, saving bandwidth
+		// versus attempting the entire file again. If we reach all attempts, the whole upload fails.
+		for (int attempt = 1; ; attempt++) {
+			try {
+				return sender.send(partNumber, data, length);
+			} catch (Exception e) {
+				if (attempt >= attempts) throw e;
+				Thread.sleep(1000L * attempt);
+			}
+		}
+	}
+
+	private static class ThreadFactory implements java.util.concurrent.ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "multipart-upload-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
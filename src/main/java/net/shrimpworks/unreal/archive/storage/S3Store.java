@@ -7,16 +7,23 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
+import com.google.common.collect.HashMultimap;
+
 import io.minio.GetObjectArgs;
+import io.minio.MinioAsyncClient;
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
 import io.minio.RemoveObjectArgs;
 import io.minio.StatObjectArgs;
 import io.minio.StatObjectResponse;
 import io.minio.errors.ErrorResponseException;
+import io.minio.messages.Part;
 
 import net.shrimpworks.unreal.archive.CLI;
 import net.shrimpworks.unreal.archive.Util;
@@ -37,7 +44,7 @@ public class S3Store implements DataStore {
 			String publicUrl = optionOrEnvVar("s3-url", "S3_URL", type, cli);
 
 			try {
-				return new S3Store(endpoint, keyId, secret, bucket, publicUrl);
+				return new S3Store(endpoint, keyId, secret, bucket, publicUrl, MultipartUpload.Options.fromCli(cli));
 			} catch (IOException e) {
 				throw new IllegalArgumentException(e.getMessage(), e);
 			}
@@ -53,12 +60,32 @@ public class S3Store implements DataStore {
 		}
 	}
 
+	// S3 allows at most 10,000 parts per upload
+	private static final int MAX_PARTS = 10_000;
+
 	private final MinioClient client;
+	private final MultipartClient multipartClient;
+	private final MultipartUpload.Options multipart;
 	private final String bucket;
 	private final String publicUrl;
 
 	public S3Store(String endpointUrl, String accessKey, String secretKey, String bucket, String publicUrl) throws IOException {
-		this.client = MinioClient.builder().endpoint(endpointUrl).credentials(accessKey, secretKey).build();
+		this(endpointUrl, accessKey, secretKey, bucket, publicUrl, MultipartUpload.Options.DEFAULT);
+	}
+
+	public S3Store(String endpointUrl, String accessKey, String secretKey, String bucket, String publicUrl,
+				   MultipartUpload.Options multipart) throws IOException {
+		this.client = MinioClient.builder()
+								 .endpoint(endpointUrl)
+								 .credentials(accessKey, secretKey)
+								 .httpClient(HttpTransport.shared().okHttpClient())
+								 .build();
+		this.multipartClient = new MultipartClient(MinioAsyncClient.builder()
+																   .endpoint(endpointUrl)
+																   .credentials(accessKey, secretKey)
+																   .httpClient(HttpTransport.shared().okHttpClient())
+																   .build());
+		this.multipart = multipart;
 		this.bucket = bucket;
 		this.publicUrl = publicUrl;
 	}
@@ -80,7 +107,11 @@ public class S3Store implements DataStore {
 							  null);
 			} else {
 				try {
-					client.putObject(PutObjectArgs.builder().bucket(bucket).object(name).stream(stream, dataSize, -1).build());
+					if (dataSize > multipart.threshold) {
+						storeMultipart(stream, dataSize, name);
+					} else {
+						client.putObject(PutObjectArgs.builder().bucket(bucket).object(name).stream(stream, dataSize, -1).build());
+					}
 					stored.accept(Util.toUriString(makePublicUrl(bucket, name)), null);
 				} catch (Exception e) {
 					stored.accept(null, new IOException("Failed to store file " + name, e));
@@ -89,6 +120,24 @@ public class S3Store implements DataStore {
 		});
 	}
 
+	private void storeMultipart(InputStream stream, long dataSize, String name) throws Exception {
+		final String uploadId = multipartClient.create(bucket, name);
+		try {
+			List<Part> parts = MultipartUpload.upload(
+				stream, multipart.partSize(dataSize, MAX_PARTS), multipart,
+				(partNumber, data, length) -> multipartClient.part(bucket, name, uploadId, partNumber, data, length)
+			);
+			multipartClient.complete(bucket, name, uploadId, parts);
+		} catch (Exception e) {
+			try {
+				multipartClient.abort(bucket, name, uploadId);
+			} catch (Exception ex) {
+				e.addSuppressed(ex);
+			}
+			throw e;
+		}
+	}
+
 	@Override
 	public void delete(String url, Consumer<Boolean> deleted) throws IOException {
 		try {
@@ -142,4 +191,50 @@ public class S3Store implements DataStore {
 	public String toString() {
 		return String.format("S3Store [bucket=%s]", bucket);
 	}
+
+	/**
+	 * Exposes the lower-level multipart upload operations of the MinIO
+	 * client, which are not part of its public API.
+	 */
+	private static class MultipartClient extends MinioAsyncClient {
+
+		private MultipartClient(MinioAsyncClient client) {
+			super(client);
+		}
+
+		private String create(String bucket, String name) throws Exception {
+			return await(createMultipartUploadAsync(bucket, null, name, HashMultimap.create(), HashMultimap.create()))
+				.result().uploadId();
+		}
+
+		private Part part(String bucket, String name, String uploadId, int partNumber, byte[] data, int length) throws Exception {
+			return new Part(partNumber, await(uploadPartAsync(bucket, null, name, data, length, uploadId, partNumber,
+															  HashMultimap.create(), HashMultimap.create())).etag());
+		}
+
+		private void complete(String bucket, String name, String uploadId, List<Part> parts) throws Exception {
+			await(completeMultipartUploadAsync(bucket, null, name, uploadId, parts.toArray(new Part[0]), HashMultimap.create(),
+											   HashMultimap.create()));
+		}
+
+		private void abort(String bucket, String name, String uploadId) throws Exception {
+			await(abortMultipartUploadAsync(bucket, null, name, uploadId, HashMultimap.create(), HashMultimap.create()));
+		}
+
+		/**
+		 * Wait for an asynchronous request, rethrowing the original failure
+		 * rather than the {@link ExecutionException} wrapping it.
+		 */
+		private static <T> T await(CompletableFuture<T> future) throws Exception {
+			try {
+				return future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw e;
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Exception) throw (Exception)e.getCause();
+				throw e;
+			}
+		}
+	}
 }
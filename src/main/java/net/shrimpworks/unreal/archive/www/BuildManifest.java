@@ -0,0 +1,360 @@
+package net.shrimpworks.unreal.archive.www;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import net.shrimpworks.unreal.archive.ContentEntity;
+
+/**
+ * Records a fingerprint of the inputs used to render each page of website
+ * output, allowing pages whose inputs have not changed since the previous
+ * build to be skipped.
+ * <p>
+ * A page's fingerprint is derived from the template name and the variables
+ * passed to it, walking collections, maps and public fields. Content is
+ * included in full, while page model objects are only walked in full when
+ * passed directly to the page. Model objects referenced by those, such as
+ * the page or group an item belongs to, only contribute their simple
+ * values, so that a page does not depend on everything reachable through
+ * its parents. Objects which expose no public fields are represented by
+ * their <code>toString()</code> value, which for most such objects is
+ * identity-based, so pages using them are always re-rendered.
+ * <p>
+ * The manifest as a whole is tied to a version, made up of the generator
+ * itself along with any additional inputs, and is discarded entirely if
+ * that version changes.
+ */
+public class BuildManifest {
+
+	private static final int MAGIC = 0x55414246; // "UABF"
+	private static final int FORMAT = 1;
+
+	// variables which change on every build, but do not represent a change in inputs
+	private static final Set<String> IGNORED_VARS = Set.of("timestamp");
+
+	private static final Map<Class<?>, List<Field>> FIELDS = new ConcurrentHashMap<>();
+
+	// walk depth of content, which is always included in full
+	private static final int CONTENT = -1;
+
+	private final Path manifestFile;
+	private final Path root;
+	private final String version;
+	private final Map<String, String> pages;
+
+	private final AtomicInteger skipped;
+	private volatile boolean changed;
+
+	private BuildManifest(Path manifestFile, Path root, String version, Map<String, String> pages) {
+		this.manifestFile = manifestFile;
+		this.root = root;
+		this.version = version;
+		this.pages = pages;
+		this.skipped = new AtomicInteger();
+		this.changed = false;
+	}
+
+	/**
+	 * Load a build manifest for website output at <code>root</code>.
+	 * <p>
+	 * If the manifest does not exist, cannot be read, or was written by a
+	 * different version, an empty manifest is returned.
+	 *
+	 * @param manifestFile  manifest file location
+	 * @param root          root of the website output
+	 * @param versionInputs additional values which, if changed, should cause
+	 *                      all pages to be rebuilt
+	 * @return a build manifest
+	 */
+	public static BuildManifest load(Path manifestFile, Path root, String... versionInputs) {
+		String version = version(versionInputs);
+		return new BuildManifest(manifestFile, root, version, readPages(manifestFile, version));
+	}
+
+	/**
+	 * Default manifest location, which is a hidden file within the output
+	 * root.
+	 *
+	 * @param root website output root
+	 * @return manifest file path
+	 */
+	public static Path defaultPath(Path root) {
+		return root.resolve(".build-manifest");
+	}
+
+	/**
+	 * Summarise the state of a directory tree, for use as a version input.
+	 *
+	 * @param dir directory to summarise
+	 * @return a string which changes when files within the directory change
+	 * @throws IOException failed to read the directory
+	 */
+	public static String pathVersion(Path dir) throws IOException {
+		if (!Files.isDirectory(dir)) return "";
+		Fingerprint fp = new Fingerprint();
+		try (Stream<Path> files = Files.walk(dir)) {
+			files.filter(Files::isRegularFile).sorted().forEach(f -> {
+				try {
+					BasicFileAttributes attr = Files.readAttributes(f, BasicFileAttributes.class);
+					fp.add(dir.relativize(f).toString()).add(attr.size()).add(attr.lastModifiedTime().toMillis());
+				} catch (IOException e) {
+					throw new RuntimeException("Failed to read attributes of " + f, e);
+				}
+			});
+		}
+		return fp.digest();
+	}
+
+	/**
+	 * Compute the fingerprint of a page's inputs.
+	 *
+	 * @param template template name
+	 * @param vars     template variables
+	 * @return fingerprint
+	 */
+	public String fingerprint(String template, Map<String, Object> vars) {
+		Fingerprint fp = new Fingerprint().add(template);
+		vars.entrySet().stream()
+			.filter(e -> !IGNORED_VARS.contains(e.getKey()))
+			.sorted(Map.Entry.comparingByKey())
+			.forEach(e -> fp.add(e.getKey()).add(e.getValue()));
+		return fp.digest();
+	}
+
+	/**
+	 * Check whether the page at <code>output</code> was previously built with
+	 * the same inputs, and still exists.
+	 *
+	 * @param output      page output path
+	 * @param fingerprint current fingerprint of the page's inputs
+	 * @return true if the page does not need to be rebuilt
+	 */
+	public boolean unchanged(Path output, String fingerprint) {
+		if (fingerprint.equals(pages.get(key(output))) && Files.isRegularFile(output)) {
+			skipped.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Record that the page at <code>output</code> has been built.
+	 *
+	 * @param output      page output path
+	 * @param fingerprint fingerprint of the page's inputs
+	 */
+	public void built(Path output, String fingerprint) {
+		if (!fingerprint.equals(pages.put(key(output), fingerprint))) changed = true;
+	}
+
+	/**
+	 * @return number of pages skipped since the manifest was loaded
+	 */
+	public int skipped() {
+		return skipped.get();
+	}
+
+	/**
+	 * Write the manifest out to disk, if any pages were built.
+	 *
+	 * @return true if the manifest was written
+	 * @throws IOException failed to write the manifest
+	 */
+	public boolean save() throws IOException {
+		if (!changed) return false;
+
+		Path tmp = Files.createTempFile(manifestFile.toAbsolutePath().getParent(), manifestFile.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT);
+				out.writeUTF(version);
+				out.writeInt(pages.size());
+				for (Map.Entry<String, String> e : pages.entrySet()) {
+					out.writeUTF(e.getKey());
+					out.writeUTF(e.getValue());
+				}
+			}
+			Files.move(tmp, manifestFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			changed = false;
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+
+		return true;
+	}
+
+	private String key(Path output) {
+		return root.relativize(output.toAbsolutePath()).toString();
+	}
+
+	private static Map<String, String> readPages(Path manifestFile, String version) {
+		if (!Files.isRegularFile(manifestFile)) return new ConcurrentHashMap<>();
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifestFile)))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT || !in.readUTF().equals(version)) return new ConcurrentHashMap<>();
+
+			int count = in.readInt();
+			Map<String, String> pages = new ConcurrentHashMap<>(Math.max(16, count * 2));
+			for (int i = 0; i < count; i++) {
+				pages.put(in.readUTF(), in.readUTF());
+			}
+			return pages;
+		} catch (IOException e) {
+			// manifest is unreadable or truncated, everything will be rebuilt
+			return new ConcurrentHashMap<>();
+		}
+	}
+
+	private static String version(String... versionInputs) {
+		Fingerprint fp = new Fingerprint();
+
+		// the generator itself, covering both code and templates
+		try {
+			URI source = BuildManifest.class.getProtectionDomain().getCodeSource().getLocation().toURI();
+			Path sourcePath = Paths.get(source);
+			if (Files.isRegularFile(sourcePath)) {
+				fp.add(Files.size(sourcePath)).add(Files.getLastModifiedTime(sourcePath).toMillis());
+			} else {
+				fp.add(pathVersion(sourcePath));
+			}
+		} catch (IOException | URISyntaxException | RuntimeException e) {
+			// unknown generator version, so the manifest will never match
+			fp.add(System.nanoTime());
+		}
+
+		// environment used in templates
+		for (String env : List.of("SITE_NAME", "SITE_URL", "STATIC_ROOT", "DATA_PROJECT_URL")) {
+			fp.add(System.getenv().getOrDefault(env, ""));
+		}
+
+		for (String input : versionInputs) fp.add(input);
+
+		return fp.digest();
+	}
+
+	private static List<Field> fields(Class<?> type) {
+		return FIELDS.computeIfAbsent(type, t -> {
+			List<Field> fields = new ArrayList<>();
+			for (Field f : t.getFields()) {
+				if (Modifier.isStatic(f.getModifiers())) continue;
+				try {
+					// public fields of non-public classes are otherwise not readable
+					f.setAccessible(true);
+				} catch (RuntimeException e) {
+					// pass, will fall back to toString() if the field cannot be read
+				}
+				fields.add(f);
+			}
+			fields.sort((a, b) -> a.getName().compareTo(b.getName()));
+			return Collections.unmodifiableList(fields);
+		});
+	}
+
+	private static class Fingerprint {
+
+		private final MessageDigest md;
+		private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		private Fingerprint() {
+			try {
+				this.md = MessageDigest.getInstance("SHA-1");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		private Fingerprint add(Object value) {
+			return add(value, 0);
+		}
+
+		/**
+		 * @param depth number of page model objects walked through to reach
+		 *              this value, or {@link #CONTENT} within content
+		 */
+		private Fingerprint add(Object value, int depth) {
+			if (value == null) return update("\0");
+
+			if (simple(value)) return update(value.getClass().getName()).update(value.toString());
+			if (value instanceof Optional) return update("?").add(((Optional<?>)value).orElse(null), depth);
+
+			if (value instanceof ContentEntity) {
+				// already seen within this walk
+				if (!visited.add(value)) return update("\1");
+				depth = CONTENT;
+			}
+
+			update(value.getClass().getName());
+			if (value instanceof Map) {
+				for (Map.Entry<?, ?> e : ((Map<?, ?>)value).entrySet()) add(e.getKey(), depth).add(e.getValue(), depth);
+			} else if (value instanceof Iterable) {
+				for (Object o : (Iterable<?>)value) add(o, depth);
+			} else if (value.getClass().isArray()) {
+				for (int i = 0; i < Array.getLength(value); i++) add(Array.get(value, i), depth);
+			} else {
+				List<Field> fields = fields(value.getClass());
+				if (fields.isEmpty()) return update(value.toString());
+				for (Field f : fields) {
+					try {
+						final Object fieldValue = f.get(value);
+						update(f.getName());
+						if (depth == CONTENT) add(fieldValue, CONTENT);
+						else if (depth == 0) add(fieldValue, 1);
+						else if (fieldValue == null || simple(fieldValue) || fieldValue instanceof Optional
+								 || fieldValue instanceof ContentEntity) add(fieldValue, depth + 1);
+						// other model objects and collections are not walked from here, they're usually parents or siblings
+					} catch (IllegalAccessException e) {
+						update(value.toString());
+					}
+				}
+			}
+			return this;
+		}
+
+		private static boolean simple(Object value) {
+			return value instanceof CharSequence || value instanceof Number || value instanceof Boolean || value instanceof Character
+				   || value instanceof Enum || value instanceof Path || value instanceof TemporalAccessor || value instanceof Date
+				   || value instanceof URI || value instanceof Class;
+		}
+
+		private Fingerprint update(String value) {
+			md.update(value.getBytes(StandardCharsets.UTF_8));
+			md.update((byte)0);
+			return this;
+		}
+
+		private String digest() {
+			StringBuilder sb = new StringBuilder();
+			for (byte b : md.digest()) sb.append(String.format("%02x", b));
+			return sb.toString();
+		}
+	}
+}
@@ -1,16 +1,21 @@
 package net.shrimpworks.unreal.archive.www;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.Set;
 
+import net.shrimpworks.unreal.archive.content.ContentManager;
+
 public class Search implements PageGenerator {
 
+	private final ContentManager content;
 	private final Path root;
 	private final Path siteRoot;
 	private final Path staticRoot;
 	private final SiteFeatures features;
 
-	public Search(Path output, Path staticRoot, SiteFeatures features) {
+	public Search(ContentManager content, Path output, Path staticRoot, SiteFeatures features) {
+		this.content = content;
 		this.root = output.resolve("search");
 		this.siteRoot = output;
 		this.staticRoot = staticRoot;
@@ -23,6 +28,12 @@ public class Search implements PageGenerator {
 		pages.add("index.ftl", SiteMap.Page.of(0f, SiteMap.ChangeFrequency.never), "Search")
 			 .write(root.resolve("index.html"));
 
+		try {
+			new SearchIndex(content, root.resolve("index")).write();
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to write search index", e);
+		}
+
 		return pages.pages;
 	}
 }
@@ -0,0 +1,188 @@
+package net.shrimpworks.unreal.archive.www;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.shrimpworks.unreal.archive.ArchiveUtil;
+import net.shrimpworks.unreal.archive.content.Content;
+import net.shrimpworks.unreal.archive.content.ContentManager;
+
+/**
+ * Builds a static search index of content, which the website's search page
+ * queries directly, without the need for a search service.
+ * <p>
+ * Content names, authors, games, types and tags are split into normalised
+ * tokens, and each token is indexed by its one and two character prefixes,
+ * and by all of its trigrams. Index terms are sharded by their first two
+ * characters, so a query only needs to fetch the shards for its own terms.
+ * <p>
+ * Documents are numbered in name order, and written in fixed-size shards.
+ * Posting lists of document numbers are delta-encoded.
+ * <p>
+ * Output layout, relative to the index root:
+ * <ul>
+ *   <li><code>meta.json</code> - index version, document count, document shard
+ *   size, and the list of term shards</li>
+ *   <li><code>terms/&lt;shard&gt;.json</code> - term to posting list maps</li>
+ *   <li><code>docs/&lt;n&gt;.json</code> - arrays of documents</li>
+ * </ul>
+ */
+public class SearchIndex {
+
+	private static final int VERSION = 1;
+
+	private static final int DOC_SHARD_SIZE = 500;
+	private static final int PREFIX_LENGTH = 2;
+	private static final int GRAM_LENGTH = 3;
+
+	private static final Pattern DIACRITICS = Pattern.compile("\\p{M}");
+	private static final Pattern SEPARATORS = Pattern.compile("[^a-z0-9]+");
+
+	private static final ObjectMapper JSON_MAPPER = new ObjectMapper(new JsonFactory());
+
+	private final ContentManager contentManager;
+	private final Path root;
+
+	public SearchIndex(ContentManager contentManager, Path root) {
+		this.contentManager = contentManager;
+		this.root = root;
+	}
+
+	/**
+	 * Build and write out the search index, replacing any existing index.
+	 *
+	 * @return number of documents indexed
+	 * @throws IOException failed to write the index
+	 */
+	public int write() throws IOException {
+		final List<Content> contents = contentManager.all().stream()
+													 .filter(c -> !c.deleted && c.variationOf == null)
+													 .sorted(Comparator.comparing((Content c) -> c.name.toLowerCase(Locale.ROOT))
+																	   .thenComparing(c -> c.hash))
+													 .collect(Collectors.toList());
+
+		final Map<String, Postings> terms = new HashMap<>();
+		final List<Map<String, Object>> docs = new ArrayList<>(contents.size());
+
+		for (int i = 0; i < contents.size(); i++) {
+			Content content = contents.get(i);
+			docs.add(document(content));
+			for (String token : tokens(content)) {
+				for (String key : keys(token)) terms.computeIfAbsent(key, k -> new Postings()).add(i);
+			}
+		}
+
+		ArchiveUtil.cleanPath(root);
+		final Path termsPath = Files.createDirectories(root.resolve("terms"));
+		final Path docsPath = Files.createDirectories(root.resolve("docs"));
+
+		final Map<String, Map<String, int[]>> shards = new TreeMap<>();
+		terms.forEach((key, postings) -> shards.computeIfAbsent(shard(key), s -> new TreeMap<>()).put(key, postings.deltas()));
+		for (Map.Entry<String, Map<String, int[]>> shard : shards.entrySet()) {
+			JSON_MAPPER.writeValue(termsPath.resolve(shard.getKey() + ".json").toFile(), shard.getValue());
+		}
+
+		for (int i = 0; i * DOC_SHARD_SIZE < docs.size(); i++) {
+			JSON_MAPPER.writeValue(docsPath.resolve(i + ".json").toFile(),
+								   docs.subList(i * DOC_SHARD_SIZE, Math.min(docs.size(), (i + 1) * DOC_SHARD_SIZE)));
+		}
+
+		JSON_MAPPER.writeValue(root.resolve("meta.json").toFile(), Map.of(
+			"version", VERSION,
+			"docs", docs.size(),
+			"docShardSize", DOC_SHARD_SIZE,
+			"prefixLength", PREFIX_LENGTH,
+			"gramLength", GRAM_LENGTH,
+			"shards", shards.keySet()
+		));
+
+		return docs.size();
+	}
+
+	private static Map<String, Object> document(Content content) {
+		Map<String, Object> doc = new HashMap<>();
+		doc.put("name", content.name);
+		doc.put("game", content.game);
+		doc.put("type", content.friendlyType());
+		doc.put("author", content.authorName());
+		doc.put("url", content.pagePath(Paths.get("")).toString());
+		doc.put("date", content.releaseDate);
+		doc.put("description", content.autoDescription() == null ? "" : content.autoDescription());
+		doc.put("image", content.leadImage());
+		doc.put("keywords", String.join(" ", content.autoTags()));
+		return doc;
+	}
+
+	static Set<String> tokens(Content content) {
+		Set<String> tokens = new LinkedHashSet<>();
+		tokens.addAll(tokens(content.name));
+		tokens.addAll(tokens(content.authorName()));
+		tokens.addAll(tokens(content.game));
+		tokens.addAll(tokens(content.friendlyType()));
+		for (String tag : content.autoTags()) tokens.addAll(tokens(tag));
+		return tokens;
+	}
+
+	/**
+	 * Split text into normalised tokens; lower-case ASCII letters and digits,
+	 * with accents removed. This must be kept consistent with the search page.
+	 */
+	static List<String> tokens(String text) {
+		if (text == null || text.isBlank()) return List.of();
+		String normalised = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+									  .toLowerCase(Locale.ROOT);
+		return Arrays.stream(SEPARATORS.split(normalised)).filter(t -> !t.isEmpty()).collect(Collectors.toList());
+	}
+
+	static Set<String> keys(String token) {
+		Set<String> keys = new LinkedHashSet<>();
+		for (int i = 1; i <= Math.min(PREFIX_LENGTH, token.length()); i++) keys.add(token.substring(0, i));
+		for (int i = 0; i + GRAM_LENGTH <= token.length(); i++) keys.add(token.substring(i, i + GRAM_LENGTH));
+		return keys;
+	}
+
+	static String shard(String key) {
+		return key.substring(0, Math.min(PREFIX_LENGTH, key.length()));
+	}
+
+	private static class Postings {
+
+		private int[] ids = new int[4];
+		private int size = 0;
+
+		private void add(int id) {
+			// documents are added in order, so only the last id needs checking for duplicates
+			if (size > 0 && ids[size - 1] == id) return;
+			if (size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+			ids[size++] = id;
+		}
+
+		private int[] deltas() {
+			int[] deltas = new int[size];
+			int last = 0;
+			for (int i = 0; i < size; i++) {
+				deltas[i] = ids[i] - last;
+				last = ids[i];
+			}
+			return deltas;
+		}
+	}
+}
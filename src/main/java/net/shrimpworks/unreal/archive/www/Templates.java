@@ -72,6 +72,8 @@ public class Templates {
 
 	private static final Map<String, Object> TPL_VARS = new HashMap<>();
 
+	private static volatile BuildManifest buildManifest = null;
+
 	static {
 		TPL_VARS.put("relPath", new RelPageMethod());
 		TPL_VARS.put("relUrl", new RelUrlMethod());
@@ -164,6 +166,16 @@ public class Templates {
 		}
 	}
 
+	/**
+	 * Set the manifest used to skip rendering pages whose inputs have not
+	 * changed since they were last built.
+	 *
+	 * @param manifest build manifest, or null to always render pages
+	 */
+	public static void buildManifest(BuildManifest manifest) {
+		buildManifest = manifest;
+	}
+
 	public static Tpl template(String name) throws IOException {
 		return new Tpl(TPL_CONFIG.getTemplate(name), SiteMap.DEFAULT_PAGE);
 	}
@@ -270,13 +282,20 @@ public class Templates {
 		}
 
 		public SiteMap.Page write(Path output) {
+			vars.put("pagePath", output.getParent().toAbsolutePath());
+
+			final BuildManifest manifest = buildManifest;
+			final String fingerprint = manifest != null ? manifest.fingerprint(template.getName(), vars) : null;
+			if (manifest != null && manifest.unchanged(output, fingerprint)) return page.withPath(output);
+
 			try (Writer writer = templateOut(output)) {
-				vars.put("pagePath", output.getParent().toAbsolutePath());
 				template.process(vars, writer);
 			} catch (TemplateException | IOException e) {
 				throw new RuntimeException("Template output failed", e);
 			}
 
+			if (manifest != null) manifest.built(output, fingerprint);
+
 			return page.withPath(output);
 		}
 
@@ -286,6 +286,7 @@ public abstract class GenericContentPage<T extends Content> extends ContentPageG
 		public final Map<String, Integer> alsoIn;
 
 		public final Optional<LocalDate> releaseDate;
+		public final List<Content.Download> downloads;
 
 		@SuppressWarnings("unchecked")
 		public ContentInfo(Page page, Y item) {
@@ -313,7 +314,10 @@ public abstract class GenericContentPage<T extends Content> extends ContentPageG
 				releaseDate = Optional.empty();
 			}
 
-			Collections.sort(this.item.downloads);
+			// ranked copies of the original first, followed by any repacks
+			this.downloads = new ArrayList<>(item.rankedDownloads());
+			item.downloads.stream().filter(d -> d.repack).forEach(this.downloads::add);
+
 			Collections.sort(this.item.files);
 		}
 
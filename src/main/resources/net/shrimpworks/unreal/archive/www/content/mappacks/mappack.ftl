@@ -149,7 +149,7 @@
 
 			<@files files=pack.item.files alsoIn=pack.alsoIn otherFiles=pack.item.otherFiles/>
 
-			<@downloads downloads=pack.item.downloads/>
+			<@downloads downloads=pack.downloads/>
 
       <@dependencies deps=pack.item.dependencies game=pack.item.game/>
 
@@ -137,7 +137,7 @@
 
 			<@files files=map.item.files alsoIn=map.alsoIn otherFiles=map.item.otherFiles/>
 
-			<@downloads downloads=map.item.downloads/>
+			<@downloads downloads=map.downloads/>
 
 			<@dependencies deps=map.item.dependencies game=map.item.game/>
 
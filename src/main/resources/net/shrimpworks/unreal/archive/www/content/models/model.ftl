@@ -91,7 +91,7 @@
 
 			<@files files=model.item.files alsoIn=model.alsoIn otherFiles=model.item.otherFiles/>
 
-			<@downloads downloads=model.item.downloads/>
+			<@downloads downloads=model.downloads/>
 
       <@dependencies deps=model.item.dependencies game=model.item.game/>
 
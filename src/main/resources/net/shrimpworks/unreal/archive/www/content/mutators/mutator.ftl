@@ -119,7 +119,7 @@
 
 			<@files files=mutator.item.files alsoIn=mutator.alsoIn otherFiles=mutator.item.otherFiles/>
 
-			<@downloads downloads=mutator.item.downloads/>
+			<@downloads downloads=mutator.downloads/>
 
 			<@dependencies deps=mutator.item.dependencies game=mutator.item.game/>
 
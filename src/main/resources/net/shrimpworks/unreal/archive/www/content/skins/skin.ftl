@@ -94,7 +94,7 @@
 
 			<@files files=skin.item.files alsoIn=skin.alsoIn otherFiles=skin.item.otherFiles/>
 
-			<@downloads downloads=skin.item.downloads/>
+			<@downloads downloads=skin.downloads/>
 
 			<@dependencies deps=skin.item.dependencies game=skin.item.game/>
 
@@ -88,7 +88,7 @@
 
 			<@files files=voice.item.files alsoIn=voice.alsoIn otherFiles=voice.item.otherFiles/>
 
-			<@downloads downloads=voice.item.downloads/>
+			<@downloads downloads=voice.downloads/>
 
       <@dependencies deps=voice.item.dependencies game=voice.item.game/>
 
@@ -38,9 +38,80 @@
 </@content>
 
 <script type="application/javascript">
-	const searchRoot = "./api";
+	const indexRoot = "./index";
+	const siteRoot = "..";
 	let pageSize = 30;
 
+	/*
+	 * Static search index, as written by SearchIndex.
+	 * Terms are fetched by shard as needed, and documents are fetched in
+	 * blocks only for results being displayed.
+	 */
+	const index = {
+		meta: null,
+		terms: {},
+		docs: {},
+
+		load: function() {
+			if (!this.meta) this.meta = fetch(indexRoot + "/meta.json").then(r => r.json());
+			return this.meta;
+		},
+
+		postings: function(meta, key) {
+			const shard = key.substring(0, meta.prefixLength);
+			if (!(shard in this.terms)) {
+				this.terms[shard] = meta.shards.includes(shard)
+					? fetch(indexRoot + "/terms/" + shard + ".json").then(r => r.json())
+					: Promise.resolve({});
+			}
+			return this.terms[shard].then(terms => {
+				const deltas = terms[key] || [];
+				const ids = new Array(deltas.length);
+				let last = 0;
+				for (let i = 0; i < deltas.length; i++) ids[i] = last += deltas[i];
+				return ids;
+			});
+		},
+
+		doc: function(meta, id) {
+			const block = Math.floor(id / meta.docShardSize);
+			if (!(block in this.docs)) {
+				this.docs[block] = fetch(indexRoot + "/docs/" + block + ".json").then(r => r.json());
+			}
+			return this.docs[block].then(docs => docs[id % meta.docShardSize]);
+		}
+	};
+
+	function tokens(text) {
+		return (text || "").normalize("NFD").replace(/\p{M}/gu, "").toLowerCase()
+						   .split(/[^a-z0-9]+/).filter(t => t.length > 0);
+	}
+
+	function keys(meta, term) {
+		if (term.length < meta.gramLength) return [term];
+		const grams = [];
+		for (let i = 0; i + meta.gramLength <= term.length; i++) grams.push(term.substring(i, i + meta.gramLength));
+		return grams;
+	}
+
+	function intersect(lists) {
+		lists.sort((a, b) => a.length - b.length);
+		let result = lists[0];
+		for (let i = 1; i < lists.length && result.length > 0; i++) {
+			const other = new Set(lists[i]);
+			result = result.filter(id => other.has(id));
+		}
+		return result;
+	}
+
+	// trigram candidates may match across different tokens, so confirm each term appears within a single token
+	function matches(doc, terms) {
+		const docTokens = [doc.name, doc.author, doc.game, doc.type, doc.keywords].flatMap(tokens);
+		return terms.every(term => term.length < 3
+			? docTokens.some(t => t.startsWith(term))
+			: docTokens.some(t => t.includes(term)));
+	}
+
 	document.addEventListener("DOMContentLoaded", function() {
 		const searchForm = document.querySelector('#search-form');
 
@@ -62,14 +133,14 @@
 		});
 
 		const navClick = function(e) {
-			search(currentQuery, e.target.dataset.offset, pageSize);
+			search(currentQuery, parseInt(e.target.dataset.offset), pageSize);
 		};
 
 		navBack.addEventListener('click', navClick);
 		navNext.addEventListener('click', navClick);
 
 		pageSizeSelect.addEventListener('change', (e) => {
-			pageSize = e.target.value;
+			pageSize = parseInt(e.target.value);
 		});
 
 		compact.addEventListener('change', (e) => {
@@ -81,35 +152,49 @@
 		compact.dispatchEvent(new Event('change'));
 		pageSizeSelect.dispatchEvent(new Event('change'));
 
-		function search(query, offset = 0, limit = pageSize) {
+		async function search(query, offset = 0, limit = pageSize) {
 			currentQuery = query;
-			window.history.replaceState(null, null, "?q=" + query);
+			window.history.replaceState(null, null, "?q=" + encodeURIComponent(query));
 
 			while (results.childNodes.length > 0) results.removeChild(results.childNodes[0]);
 			const loading = document.createElement("h2");
 			loading.innerText = "... Searching ...";
 			results.append(loading);
 
-			// allows for searching by map literal names, such as "DM-MapName", without RediSearch excluding "-MapName" from the results
-			let q = query.replace(/([A-Za-z])-/g, "$1%5C-");
-
-			const url = searchRoot + "/search?q=" + q + "&offset=" + offset + "&limit=" + limit;
-			console.log("Query URL is ", url);
-
-			fetch(url)
-				.then((response) => {
-					results.removeChild(loading);
-					return response.json();
-				})
-				.then((data) => {
-					if (data.totalResults === 0) {
-						noResult();
-					} else {
-						data.docs.forEach(d => addResult(d));
-					}
-
-					navigation(data.totalResults, data.offset, data.limit);
-				});
+			const meta = await index.load();
+			const terms = [...new Set(tokens(query))];
+			if (terms.length === 0) {
+				noResult();
+				navigation();
+				return;
+			}
+
+			const candidates = intersect(await Promise.all(
+				terms.map(term => Promise.all(keys(meta, term).map(k => index.postings(meta, k))).then(intersect))
+			));
+
+			// documents are numbered in name order, so candidates are already sorted
+			const found = [];
+			let skipped = 0;
+			let pos = 0;
+			while (pos < candidates.length && found.length <= limit) {
+				const batch = candidates.slice(pos, pos + limit);
+				pos += batch.length;
+				for (const doc of await Promise.all(batch.map(id => index.doc(meta, id)))) {
+					if (!matches(doc, terms)) continue;
+					if (skipped < offset) skipped++;
+					else found.push(doc);
+				}
+			}
+
+			results.removeChild(loading);
+			if (found.length === 0) {
+				noResult();
+			} else {
+				found.slice(0, limit).forEach(d => addResult(d));
+			}
+
+			navigation(found.length > limit, candidates.length, offset, limit, Math.min(found.length, limit));
 		}
 
 		function noResult() {
@@ -121,34 +206,34 @@
 
 		function addResult(result) {
 			const image = document.createElement("img");
-			if (result.fields.image.length === 0) {
+			if (result.image.length === 0) {
 				image.setAttribute("src", "${staticPath()}/images/none.png");
 			} else {
-				image.setAttribute("src", result.fields.image);
+				image.setAttribute("src", result.image);
 			}
-			image.setAttribute("alt", result.fields.name.replace(/\\-/g, "-"));
+			image.setAttribute("alt", result.name);
 
 			const imageDiv = document.createElement("div");
 			imageDiv.classList.add('image');
 			imageDiv.append(image);
 
 			const game = document.createElement("img");
-			game.setAttribute("src", "${staticPath()}/images/games/icons/" + result.fields.game + ".png");
-			game.setAttribute("alt", result.fields.game);
-			game.setAttribute("title", result.fields.game);
+			game.setAttribute("src", "${staticPath()}/images/games/icons/" + result.game + ".png");
+			game.setAttribute("alt", result.game);
+			game.setAttribute("title", result.game);
 			const link = document.createElement("a");
-			link.setAttribute("href", result.fields.url);
-			link.innerText = result.fields.name.replace(/\\-/g, "-");
+			link.setAttribute("href", siteRoot + "/" + result.url);
+			link.innerText = result.name;
 			const title = document.createElement("h2");
 			title.append(game, link);
 
 			const author = document.createElement("div");
 			author.classList.add('author');
-			author.innerText = result.fields.type + " by " + result.fields.author.replace(/\\-/g, "-");
+			author.innerText = result.type + " by " + result.author;
 
 			const description = document.createElement("div");
 			description.classList.add('description');
-			description.innerText = result.fields.description;
+			description.innerText = result.description;
 
 			const info = document.createElement("div");
 			info.classList.add('info');
@@ -160,13 +245,13 @@
 			results.append(resultRow);
 		}
 
-		function navigation(totalResults = 0, offset = 0, limit = 0) {
+		function navigation(hasMore = false, candidates = 0, offset = 0, limit = 0, shown = 0) {
 			navBack.disabled = offset === 0;
-			navNext.disabled = (totalResults <= limit) || (offset + limit > totalResults);
-			navText.innerText = totalResults === 0
+			navNext.disabled = !hasMore;
+			navText.innerText = shown === 0
 				? "-"
-				: `Showing ${"$"}{offset + 1} to ${"$"}{Math.min(offset + limit, totalResults)} of ${"$"}{totalResults} results`;
-			if (!navBack.disabled) navBack.dataset.offset = offset - limit;
+				: `Showing ${"$"}{offset + 1} to ${"$"}{offset + shown} of up to ${"$"}{candidates} results`;
+			if (!navBack.disabled) navBack.dataset.offset = Math.max(0, offset - limit);
 			if (!navNext.disabled) navNext.dataset.offset = offset + limit;
 		}
 
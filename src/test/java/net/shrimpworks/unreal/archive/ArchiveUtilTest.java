@@ -0,0 +1,126 @@
+package net.shrimpworks.unreal.archive;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ArchiveUtilTest {
+
+	@Test
+	public void readZip() throws IOException {
+		final Path tmpRoot = Files.createTempDirectory("test-archive");
+		try {
+			final Path zip = tmpRoot.resolve("test.zip");
+			try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+				zipEntry(out, "Maps/DM-MyMap.unr", "map data");
+				zipEntry(out, "System\\MyMap.int", "int data");
+				zipEntry(out, "../../escape.txt", "nope");
+				out.putNextEntry(new ZipEntry("Textures/"));
+				out.closeEntry();
+			}
+
+			final Map<String, String> entries = readAll(zip);
+			assertEquals(2, entries.size());
+			assertEquals("map data", entries.get("Maps/DM-MyMap.unr"));
+			assertEquals("int data", entries.get("System/MyMap.int"));
+
+			final Path dest = tmpRoot.resolve("out");
+			ArchiveUtil.extract(zip, dest, Duration.ofSeconds(10));
+			assertEquals("map data", Files.readString(dest.resolve("Maps").resolve("DM-MyMap.unr")));
+			assertFalse(Files.exists(tmpRoot.resolve("escape.txt")));
+		} catch (InterruptedException e) {
+			fail(e);
+		} finally {
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+
+	@Test
+	public void extractTimeout() throws IOException {
+		final Path tmpRoot = Files.createTempDirectory("test-archive");
+		try {
+			final Path zip = tmpRoot.resolve("test.zip");
+			try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+				zipEntry(out, "Maps/DM-MyMap.unr", "map data");
+				zipEntry(out, "System/MyMap.int", "int data");
+			}
+
+			// timing out in-process falls back to external tools, which can't finish in no time either
+			final Path dest = tmpRoot.resolve("out");
+			assertThrows(IOException.class, () -> ArchiveUtil.extract(zip, dest, Duration.ZERO));
+			assertFalse(Files.exists(dest.resolve("Maps")));
+		} finally {
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+
+	@Test
+	public void readTarGz() throws IOException {
+		final Path tmpRoot = Files.createTempDirectory("test-archive");
+		try {
+			final String longName = "Maps/" + "A".repeat(120) + ".unr";
+
+			ByteArrayOutputStream tar = new ByteArrayOutputStream();
+			tarEntry(tar, "System/MyMod.u", '0', "code".getBytes(StandardCharsets.UTF_8));
+			tarEntry(tar, "././@LongLink", 'L', longName.getBytes(StandardCharsets.UTF_8));
+			tarEntry(tar, "Maps/truncated", '0', "long map".getBytes(StandardCharsets.UTF_8));
+			tarEntry(tar, "Maps/", '5', new byte[0]);
+			tar.write(new byte[1024]);
+
+			final Path tgz = tmpRoot.resolve("test.tgz");
+			try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tgz))) {
+				out.write(tar.toByteArray());
+			}
+
+			final Map<String, String> entries = readAll(tgz);
+			assertEquals(2, entries.size());
+			assertEquals("code", entries.get("System/MyMod.u"));
+			assertEquals("long map", entries.get(longName));
+
+			// a plain gz file contains a single entry named for the archive
+			final Path gz = Files.move(tgz, tmpRoot.resolve("test.tar.gz"));
+			final Map<String, String> gzEntries = readAll(gz);
+			assertEquals(1, gzEntries.size());
+			assertTrue(gzEntries.containsKey("test.tar"));
+		} finally {
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+
+	private static Map<String, String> readAll(Path archive) throws IOException {
+		final Map<String, String> entries = new HashMap<>();
+		ArchiveUtil.read(archive, (name, size, modified, data) -> entries.put(name, new String(data.readAllBytes(), StandardCharsets.UTF_8)));
+		return entries;
+	}
+
+	private static void zipEntry(ZipOutputStream out, String name, String content) throws IOException {
+		out.putNextEntry(new ZipEntry(name));
+		out.write(content.getBytes(StandardCharsets.UTF_8));
+		out.closeEntry();
+	}
+
+	private static void tarEntry(ByteArrayOutputStream out, String name, char type, byte[] content) throws IOException {
+		byte[] header = new byte[512];
+		byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		System.arraycopy(nameBytes, 0, header, 0, Math.min(100, nameBytes.length));
+		byte[] size = String.format("%011o", content.length).getBytes(StandardCharsets.US_ASCII);
+		System.arraycopy(size, 0, header, 124, size.length);
+		header[156] = (byte)type;
+		out.write(header);
+		out.write(content);
+		out.write(new byte[(512 - (content.length % 512)) % 512]);
+	}
+}
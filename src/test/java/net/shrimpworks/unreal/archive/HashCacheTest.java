@@ -0,0 +1,71 @@
+package net.shrimpworks.unreal.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashCacheTest {
+
+	@Test
+	public void cachedHashes() throws IOException {
+		final Path tmpRoot = Files.createTempDirectory("test-hashes");
+		try {
+			final Path cacheFile = tmpRoot.resolve("hashes");
+			final Path file = Files.write(tmpRoot.resolve("file.txt"), "hello".getBytes(StandardCharsets.UTF_8));
+			final FileTime modified = Files.getLastModifiedTime(file);
+			final String hash = "aaf4c61ddcc5e8a2dabede0f3b482cd9aea9434d";
+
+			HashCache cache = HashCache.load(cacheFile);
+			assertEquals(hash, cache.hash(file));
+			assertTrue(cache.save());
+			assertFalse(cache.save());
+
+			// content changed, but size and time preserved, cache should give the old hash
+			Files.write(file, "world".getBytes(StandardCharsets.UTF_8));
+			Files.setLastModifiedTime(file, modified);
+			cache = HashCache.load(cacheFile);
+			assertEquals(hash, cache.hash(file));
+
+			// once the time changes, the file should be re-hashed
+			Files.setLastModifiedTime(file, FileTime.fromMillis(modified.toMillis() + 5000));
+			assertEquals("7c211433f02071597741e6ff5a8ea34789abbf43", cache.hash(file));
+
+			// the hash cache is not used for files which have a sidecar hash
+			Files.writeString(tmpRoot.resolve("file.txt.sha1"), hash);
+			assertEquals(hash, Util.hash(file));
+
+			// entries for files which no longer exist are dropped when saved
+			assertTrue(cache.save());
+			final long size = Files.size(cacheFile);
+			final Path gone = Files.write(tmpRoot.resolve("gone.txt"), "gone".getBytes(StandardCharsets.UTF_8));
+			cache.hash(gone);
+			Files.delete(gone);
+			assertTrue(cache.save());
+			assertEquals(size, Files.size(cacheFile));
+		} finally {
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+
+	@Test
+	public void largeFile() throws IOException {
+		final Path tmpRoot = Files.createTempDirectory("test-hashes");
+		try {
+			final byte[] data = new byte[1024 * 1024 * 5];
+			new Random(42).nextBytes(data);
+			final Path file = Files.write(tmpRoot.resolve("large.bin"), data);
+
+			assertEquals(Util.hash(ByteBuffer.wrap(data)), HashCache.NONE.hash(file));
+		} finally {
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package net.shrimpworks.unreal.archive;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PackedMetadataStoreTest {
+
+	@Test
+	public void writeReadAndReopen() throws IOException {
+		Path tmp = Files.createTempDirectory("test-packed");
+		try {
+			Path root = tmp.resolve("content");
+			Path pack = tmp.resolve("content.db");
+
+			try (PackedMetadataStore store = new PackedMetadataStore(tmp, pack)) {
+				store.write(root.resolve("a/one.yml"), new Doc("one", 1));
+				store.write(root.resolve("a/b/two.yml"), new Doc("two", 2));
+				store.write(tmp.resolve("documents/three.yml"), new Doc("three", 3));
+
+				// replace and delete
+				store.write(root.resolve("a/one.yml"), new Doc("one", 11));
+				store.write(root.resolve("a/gone.yml"), new Doc("gone", 0));
+				store.delete(root.resolve("a/gone.yml"));
+
+				assertAll(store, root);
+			}
+			assertTrue(Files.exists(tmp.resolve("content.db.idx")));
+
+			// reopened from the index
+			try (PackedMetadataStore store = new PackedMetadataStore(tmp, pack)) {
+				assertAll(store, root);
+				store.write(root.resolve("a/four.yml"), new Doc("four", 4));
+			}
+
+			// reopened by scanning the whole file
+			Files.delete(tmp.resolve("content.db.idx"));
+			try (PackedMetadataStore store = new PackedMetadataStore(tmp, pack)) {
+				assertEquals(3, store.readAll(root, Doc.class).size());
+				assertEquals(2, store.readAll(root, 2, Doc.class).size());
+				assertEquals(3, store.readAll(tmp.resolve("documents"), Doc.class).get(tmp.resolve("documents/three.yml")).value);
+			}
+		} finally {
+			ArchiveUtil.cleanPath(tmp);
+		}
+	}
+
+	@Test
+	public void ignorePartialRecord() throws IOException {
+		Path tmp = Files.createTempDirectory("test-packed");
+		try {
+			Path pack = tmp.resolve("content.db");
+			try (PackedMetadataStore store = new PackedMetadataStore(tmp, pack)) {
+				store.write(tmp.resolve("one.yml"), new Doc("one", 1));
+				store.write(tmp.resolve("two.yml"), new Doc("two", 2));
+			}
+
+			// simulate a write interrupted before the index was written
+			Files.delete(tmp.resolve("content.db.idx"));
+			try (FileChannel channel = FileChannel.open(pack, StandardOpenOption.WRITE)) {
+				channel.truncate(channel.size() - 3);
+			}
+
+			try (PackedMetadataStore store = new PackedMetadataStore(tmp, pack)) {
+				assertEquals(1, store.size());
+				assertTrue(store.exists(tmp.resolve("one.yml")));
+				assertFalse(store.exists(tmp.resolve("two.yml")));
+
+				store.write(tmp.resolve("three.yml"), new Doc("three", 3));
+			}
+
+			try (PackedMetadataStore store = new PackedMetadataStore(tmp, pack)) {
+				Map<Path, Doc> all = store.readAll(tmp, Doc.class);
+				assertEquals(2, all.size());
+				assertEquals("three", all.get(tmp.resolve("three.yml")).name);
+			}
+		} finally {
+			ArchiveUtil.cleanPath(tmp);
+		}
+	}
+
+	@Test
+	public void exclusiveAccess() throws IOException {
+		Path tmp = Files.createTempDirectory("test-packed");
+		try {
+			Path pack = tmp.resolve("content.db");
+			try (PackedMetadataStore store = new PackedMetadataStore(tmp, pack)) {
+				store.write(tmp.resolve("one.yml"), new Doc("one", 1));
+				assertThrows(IOException.class, () -> new PackedMetadataStore(tmp, pack));
+			}
+
+			// available again once closed
+			try (PackedMetadataStore store = new PackedMetadataStore(tmp, pack)) {
+				assertTrue(store.exists(tmp.resolve("one.yml")));
+			}
+		} finally {
+			ArchiveUtil.cleanPath(tmp);
+		}
+	}
+
+	private void assertAll(PackedMetadataStore store, Path root) throws IOException {
+		Map<Path, Doc> all = store.readAll(root, Doc.class);
+		assertEquals(2, all.size());
+		assertEquals(11, all.get(root.resolve("a/one.yml")).value);
+		assertEquals("two", all.get(root.resolve("a/b/two.yml")).name);
+		assertFalse(store.exists(root.resolve("a/gone.yml")));
+		assertEquals(3, store.size());
+	}
+
+	public static class Doc {
+
+		public String name;
+		public int value;
+
+		public Doc() {
+		}
+
+		public Doc(String name, int value) {
+			this.name = name;
+			this.value = value;
+		}
+	}
+}
@@ -8,6 +8,7 @@ import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
+import java.util.stream.Stream;
 
 import net.shrimpworks.unreal.archive.content.Content;
 import net.shrimpworks.unreal.archive.content.ContentType;
@@ -61,6 +62,33 @@ public class YAMLTest {
 		assertEquals(m.attachments.get(1), another.attachments.get(1));
 	}
 
+	@Test
+	public void readAll() throws IOException {
+		Path tmp = Files.createTempDirectory("test-yaml");
+		try {
+			Map m = makeMap();
+			Path one = Files.writeString(tmp.resolve("one.yml"), YAML.toString(m));
+			m.name = "DM-Another";
+			Path two = Files.writeString(tmp.resolve("two.yml"), YAML.toString(m));
+
+			try (Stream<Path> files = Files.list(tmp)) {
+				java.util.Map<Path, Map> all = YAML.readAll(files, Map.class);
+				assertEquals(2, all.size());
+				assertEquals("DM-MyMap", all.get(one).name);
+				assertEquals("DM-Another", all.get(two).name);
+			}
+
+			// files are closed once read, so may be removed immediately
+			Files.delete(one);
+			Files.writeString(two, "name: [broken");
+			try (Stream<Path> files = Files.list(tmp)) {
+				assertThrows(IOException.class, () -> YAML.readAll(files, Map.class));
+			}
+		} finally {
+			ArchiveUtil.cleanPath(tmp);
+		}
+	}
+
 	private Map makeMap() {
 		Map m = ContentType.MAP.newContent(null);
 
@@ -0,0 +1,329 @@
+package net.shrimpworks.unreal.archive.content;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import net.shrimpworks.unreal.archive.ArchiveUtil;
+import net.shrimpworks.unreal.archive.MetadataStore;
+import net.shrimpworks.unreal.archive.YAML;
+import net.shrimpworks.unreal.archive.content.maps.Map;
+import net.shrimpworks.unreal.archive.storage.DataStore;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentManagerTest {
+
+	@Test
+	public void contentSnapshot() throws IOException {
+		final Path tmpRoot = Files.createTempDirectory("test-content");
+		try {
+			final Path contentPath = Files.createDirectories(tmpRoot.resolve("content"));
+			final Path snapshotPath = tmpRoot.resolve(".content.snapshot");
+
+			final Map one = makeMap("DM-MyMap", "Joe Soap", "1234567890");
+			final Map two = makeMap("CTF-Other", "Jane Soap", "abcdef1234");
+			final Path oneYml = writeContent(contentPath, one);
+			writeContent(contentPath, two);
+
+			// initial load, should produce a snapshot
+			ContentManager cm = new ContentManager(contentPath, snapshotPath, DataStore.NOP, DataStore.NOP, DataStore.NOP);
+			assertEquals(2, cm.size());
+			assertTrue(Files.exists(snapshotPath));
+
+			// content loaded from the snapshot should match content loaded from yml
+			cm = new ContentManager(contentPath, snapshotPath, DataStore.NOP, DataStore.NOP, DataStore.NOP);
+			assertEquals(2, cm.size());
+			assertEquals(one, cm.forHash(one.hash));
+			assertEquals(two, cm.forHash(two.hash));
+			assertTrue(cm.forHash(one.hash) instanceof Map);
+
+			// modified content should be re-read from yml rather than the stale snapshot
+			one.title = "My Updated Map";
+			Files.write(oneYml, YAML.toString(one).getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+			Files.setLastModifiedTime(oneYml, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+
+			cm = new ContentManager(contentPath, snapshotPath, DataStore.NOP, DataStore.NOP, DataStore.NOP);
+			assertEquals("My Updated Map", ((Map)cm.forHash(one.hash)).title);
+
+			// removed content should not be resurrected from the snapshot
+			Files.delete(oneYml);
+			cm = new ContentManager(contentPath, snapshotPath, DataStore.NOP, DataStore.NOP, DataStore.NOP);
+			assertEquals(1, cm.size());
+			assertNull(cm.forHash(one.hash));
+
+			// a corrupt snapshot is ignored
+			Files.write(snapshotPath, "not a snapshot".getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+			cm = new ContentManager(contentPath, snapshotPath, DataStore.NOP, DataStore.NOP, DataStore.NOP);
+			assertEquals(two, cm.forHash(two.hash));
+		} finally {
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+
+	@Test
+	public void contentIndexes() throws IOException {
+		final Path tmpRoot = Files.createTempDirectory("test-content");
+		try {
+			final Path contentPath = Files.createDirectories(tmpRoot.resolve("content"));
+
+			final Map one = makeMap("DM-MyMap", "Joe Soap", "1234567890");
+			final Map two = makeMap("CTF-Other", "Jane Soap", "abcdef1234");
+			final Map three = makeMap("DM-MyMapAgain", "Joe Soap", "0987654321");
+			three.game = "Unreal";
+			writeContent(contentPath, one);
+			writeContent(contentPath, two);
+			writeContent(contentPath, three);
+
+			final ContentManager cm = new ContentManager(contentPath, null, DataStore.NOP, DataStore.NOP, DataStore.NOP);
+
+			assertEquals(2, cm.search(null, null, "mymap", null).size());
+			assertEquals(1, cm.search("unreal tournament", "map", "MyMap", "joe").size());
+			assertEquals(2, cm.search(null, null, null, "joe").size());
+			assertEquals(3, cm.search(null, "MAP", null, null).size());
+			assertEquals(3, cm.search(null, null, "-", null).size());
+			assertTrue(cm.search(null, null, "nothing", null).isEmpty());
+			assertTrue(cm.search("Unreal", null, "CTF", null).isEmpty());
+
+			assertEquals(Set.of(one), Set.copyOf(cm.forName("dm-mymap")));
+			assertEquals(3, cm.get(Map.class).size());
+			assertEquals(3, cm.get(Content.class).size());
+			assertEquals(2L, cm.countByType("Unreal Tournament").get(Map.class));
+
+			// renaming content via checkin should update indexes
+			final Map renamed = (Map)cm.checkout(two.hash);
+			renamed.name = "CTF-Renamed";
+			renamed.author = "Someone Else";
+			assertTrue(cm.checkin(new IndexResult<>(renamed, Collections.emptySet()), null));
+
+			assertTrue(cm.forName("CTF-Other").isEmpty());
+			assertEquals(1, cm.forName("CTF-Renamed").size());
+			assertTrue(cm.search(null, null, "other", null).isEmpty());
+			assertEquals(1, cm.search(null, null, "renamed", "else").size());
+			assertTrue(cm.search(null, null, null, "jane").isEmpty());
+			assertEquals(3, cm.get(Map.class).size());
+		} finally {
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+
+	@Test
+	public void checkoutCopy() throws IOException {
+		final Path tmpRoot = Files.createTempDirectory("test-content");
+		try {
+			final Path contentPath = Files.createDirectories(tmpRoot.resolve("content"));
+			final Map one = makeMap("DM-MyMap", "Joe Soap", "1234567890");
+			one.themes.put("Industrial", 0.75);
+			writeContent(contentPath, one);
+
+			final ContentManager cm = new ContentManager(contentPath, null, DataStore.NOP, DataStore.NOP, DataStore.NOP);
+
+			final Map copy = (Map)cm.checkout(one.hash);
+			assertNotSame(cm.forHash(one.hash), copy);
+			assertEquals(cm.forHash(one.hash), copy);
+
+			// changes to the copy must not leak into the managed instance
+			copy.themes.put("Tech", 0.25);
+			copy.files.get(0).fileSize = 1;
+			copy.downloads.get(0).state = Content.DownloadState.MISSING;
+			copy.attachments.add(new Content.Attachment(Content.AttachmentType.IMAGE, "shot.png", "https://shots/shot.png"));
+
+			final Map original = (Map)cm.forHash(one.hash);
+			assertEquals(1, original.themes.size());
+			assertEquals(1234, original.files.get(0).fileSize);
+			assertEquals(Content.DownloadState.OK, original.downloads.get(0).state);
+			assertTrue(original.attachments.isEmpty());
+			assertNotEquals(original, copy);
+		} finally {
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+
+	@Test
+	public void inMemoryAttachments() throws IOException {
+		final Path tmpRoot = Files.createTempDirectory("test-content");
+		try {
+			final Path contentPath = Files.createDirectories(tmpRoot.resolve("content"));
+			final Map one = makeMap("DM-MyMap", "Joe Soap", "1234567890");
+			writeContent(contentPath, one);
+
+			final ContentManager cm = new ContentManager(contentPath, null, DataStore.NOP, DataStore.NOP, DataStore.NOP);
+
+			final Map updated = (Map)cm.checkout(one.hash);
+			final IndexResult.NewAttachment shot = new IndexResult.NewAttachment(
+				Content.AttachmentType.IMAGE, "dm-mymap_shot_12345678_1.png", new byte[] { 1, 2, 3 }
+			);
+			assertEquals(3, shot.size());
+			assertTrue(cm.checkin(new IndexResult<>(updated, Set.of(shot)), null));
+
+			final Content stored = cm.forHash(one.hash);
+			assertEquals(1, stored.attachments.size());
+			assertEquals(shot.name, stored.attachments.get(0).name);
+			assertTrue(stored.attachments.get(0).url.startsWith("nop://"));
+
+			// nothing should have been written outside the content directory
+			assertFalse(Files.exists(Path.of(shot.name)));
+		} finally {
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+
+	@Test
+	public void concurrentCheckin() throws Exception {
+		final Path tmpRoot = Files.createTempDirectory("test-content");
+		final ExecutorService executor = Executors.newFixedThreadPool(32);
+		try {
+			final Path contentPath = Files.createDirectories(tmpRoot.resolve("content"));
+			final ContentManager cm = new ContentManager(contentPath, null, DataStore.NOP, DataStore.NOP, DataStore.NOP);
+
+			// many threads checking in distinct content, some sharing names, authors and files
+			final List<Future<Boolean>> results = new ArrayList<>();
+			for (int i = 0; i < 500; i++) {
+				final Map m = makeMap(String.format("DM-Map%d", i % 50), String.format("Author %d", i % 7), String.format("%010d", i));
+				m.files.get(1).hash = "shared";
+				results.add(executor.submit(() -> cm.checkin(new IndexResult<>(m, Collections.emptySet()), null)));
+			}
+			for (Future<Boolean> r : results) assertTrue(r.get());
+
+			assertEquals(500, cm.size());
+			assertEquals(500, cm.containingFile("shared").size());
+			assertEquals(10, cm.forName("DM-Map7").size());
+			assertEquals(10, cm.search(null, null, "map7", null).size());
+
+			// concurrent changes to the same content, each renaming a copy
+			results.clear();
+			for (int i = 0; i < 100; i++) {
+				final String name = String.format("DM-Renamed%d", i);
+				results.add(executor.submit(() -> {
+					Map m = (Map)cm.checkout(String.format("%010d", 0));
+					m.name = name;
+					return cm.checkin(new IndexResult<>(m, Collections.emptySet()), null);
+				}));
+			}
+			for (Future<Boolean> r : results) r.get();
+
+			final Content renamed = cm.forHash(String.format("%010d", 0));
+			assertEquals(1, cm.forName(renamed.name).size());
+			assertEquals(1, cm.search(null, null, "renamed", null).size());
+			assertEquals(500, cm.containingFile("shared").size());
+			assertEquals(9, cm.forName("DM-Map0").size());
+		} finally {
+			executor.shutdownNow();
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+
+	@Test
+	public void concurrentUpdate() throws Exception {
+		final Path tmpRoot = Files.createTempDirectory("test-content");
+		final ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			final Path contentPath = Files.createDirectories(tmpRoot.resolve("content"));
+			final Map one = makeMap("DM-MyMap", "Joe Soap", "1234567890");
+			writeContent(contentPath, one);
+
+			final ContentManager cm = new ContentManager(contentPath, null, DataStore.NOP, DataStore.NOP, DataStore.NOP);
+
+			// each update adds a download, none of which should be lost to another concurrent update
+			final List<Future<Boolean>> results = new ArrayList<>();
+			for (int i = 0; i < 100; i++) {
+				final String url = String.format("https://example.com/%d/DM-MyMap.zip", i);
+				results.add(executor.submit(() -> cm.update(one.hash, c -> c.downloads.add(new Content.Download(url, false)))));
+			}
+			for (Future<Boolean> r : results) assertTrue(r.get());
+
+			assertEquals(one.downloads.size() + 100, cm.forHash(one.hash).downloads.size());
+
+			// no change, and unknown content
+			assertFalse(cm.update(one.hash, c -> {}));
+			assertFalse(cm.update("unknown", c -> fail("Unknown content should not be updated")));
+		} finally {
+			executor.shutdownNow();
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+
+	@Test
+	public void lazyContent() throws IOException {
+		final Path tmpRoot = Files.createTempDirectory("test-content");
+		try {
+			final Path contentPath = Files.createDirectories(tmpRoot.resolve("content"));
+
+			final Map one = makeMap("DM-MyMap", "Joe Soap", "1234567890");
+			final Map two = makeMap("CTF-Other", "Jane Soap", "abcdef1234");
+			two.variationOf = one.hash;
+			writeContent(contentPath, one);
+			writeContent(contentPath, two);
+
+			// a cache too small to hold more than one item at a time
+			final ContentManager cm = new ContentManager(MetadataStore.YAML_FILES, contentPath, null, new ContentManager.Options(true, 1),
+														 DataStore.NOP, DataStore.NOP, DataStore.NOP);
+			assertEquals(2, cm.size());
+			assertEquals(one.fileSize * 2L, cm.fileSize());
+			assertEquals(1L, cm.countByType().get(Map.class));
+
+			assertEquals(one, cm.forHash(one.hash));
+			assertEquals(two, cm.forHash(two.hash));
+			assertEquals(one, cm.forHash(one.hash));
+			assertTrue(cm.forHash(one.hash) instanceof Map);
+
+			assertEquals(Set.of(one, two), Set.copyOf(cm.containingFile("0f0f0f")));
+			assertEquals(Set.of(two), Set.copyOf(cm.variationsOf(one.hash)));
+			assertEquals(1, cm.search(null, null, "other", "jane").size());
+
+			final Map changed = (Map)cm.checkout(one.hash);
+			changed.title = "My Updated Map";
+			assertTrue(cm.checkin(new IndexResult<>(changed, Collections.emptySet()), null));
+			assertEquals("My Updated Map", ((Map)cm.forHash(one.hash)).title);
+			assertEquals(two, cm.forHash(two.hash));
+			assertEquals("My Updated Map", ((Map)cm.forHash(one.hash)).title);
+		} finally {
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+
+	public static Path writeContent(Path root, Content content) throws IOException {
+		Path yml = Files.createDirectories(content.contentPath(root)).resolve(content.name + ".yml");
+		return Files.write(yml, YAML.toString(content).getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE);
+	}
+
+	public static Map makeMap(String name, String author, String hash) {
+		Map m = ContentType.MAP.newContent(null);
+
+		m.firstIndex = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+
+		m.game = "Unreal Tournament";
+		m.name = name;
+		m.gametype = "Deathmatch";
+		m.title = "My Map";
+		m.author = author;
+		m.playerCount = "2 - 4 Players";
+		m.releaseDate = "2001-05";
+		m.attachments = new ArrayList<>();
+		m.hash = hash;
+		m.fileSize = 564231;
+		m.files = new ArrayList<>(Arrays.asList(new Content.ContentFile(name + ".unr", 1234, hash + "f1"),
+												new Content.ContentFile("MyTex.utx", 4567, "0f0f0f")));
+		m.downloads = new ArrayList<>(Arrays.asList(new Content.Download("https://mysite.com/" + name + ".zip", true, false,
+																		 Content.DownloadState.OK)));
+
+		m.deleted = false;
+
+		return m;
+	}
+}
@@ -0,0 +1,79 @@
+package net.shrimpworks.unreal.archive.content;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import com.sun.net.httpserver.HttpServer;
+
+import net.shrimpworks.unreal.archive.ArchiveUtil;
+import net.shrimpworks.unreal.archive.storage.DataStore;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DownloadCheckerTest {
+
+	@Test
+	public void checkDownloads() throws IOException {
+		final HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/ok", exchange -> {
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+		});
+		server.createContext("/slow", exchange -> {
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException e) {
+				//
+			}
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+		});
+		server.start();
+
+		final String base = "http://127.0.0.1:" + server.getAddress().getPort();
+		final Path tmpRoot = Files.createTempDirectory("test-downloads");
+		try {
+			final Content map = ContentManagerTest.makeMap("DM-Deck16", "Joe Soap", "1234567890");
+			map.downloads.clear();
+			map.downloads.add(new Content.Download(base + "/slow/DM-Deck16.zip", true, false, Content.DownloadState.OK));
+			map.downloads.add(new Content.Download(base + "/missing/DM-Deck16.zip", false, false, Content.DownloadState.OK));
+			map.downloads.add(new Content.Download(base + "/ok/DM-Deck16.zip", false, false, Content.DownloadState.OK));
+			ContentManagerTest.writeContent(tmpRoot.resolve("content"), map);
+
+			final ContentManager cm = new ContentManager(tmpRoot.resolve("content"), null, DataStore.NOP, DataStore.NOP, DataStore.NOP);
+			final Path healthFile = tmpRoot.resolve("health.tsv");
+			final DownloadHealth health = DownloadHealth.load(healthFile);
+
+			final DownloadChecker checker = new DownloadChecker(cm, health, new DownloadChecker.Options(2, 1, Duration.ofSeconds(5), 0));
+			assertEquals(1, checker.check((checked, total, url, result) -> assertEquals(3, total)));
+
+			assertEquals(404, health.get(base + "/missing/DM-Deck16.zip").status);
+			assertEquals(Content.DownloadState.MISSING, cm.forHash(map.hash).downloads.get(1).state);
+
+			// results survive a reload, and rank the fastest working download first
+			final DownloadHealth loaded = DownloadHealth.load(healthFile);
+			assertEquals(3, loaded.size());
+
+			final List<Content.Download> downloads = cm.checkout(map.hash).downloads;
+			assertEquals(base + "/ok/DM-Deck16.zip", loaded.best(downloads).url);
+			assertEquals(base + "/slow/DM-Deck16.zip", DownloadHealth.NONE.best(downloads).url);
+
+			downloads.sort(loaded.ranking());
+			assertEquals(base + "/missing/DM-Deck16.zip", downloads.get(2).url);
+
+			// repacks are never preferred over the original file
+			downloads.add(0, new Content.Download(base + "/repack/DM-Deck16.zip", false, true, Content.DownloadState.OK));
+			assertEquals(3, loaded.ranked(downloads).size());
+			assertEquals(base + "/ok/DM-Deck16.zip", loaded.best(downloads).url);
+		} finally {
+			server.stop(0);
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+}
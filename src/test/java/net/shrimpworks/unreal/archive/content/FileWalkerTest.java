@@ -0,0 +1,83 @@
+package net.shrimpworks.unreal.archive.content;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import net.shrimpworks.unreal.archive.ArchiveUtil;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileWalkerTest {
+
+	@Test
+	public void walkTree() throws IOException {
+		Path tmp = Files.createTempDirectory("test-walk");
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (int i = 0; i < 50; i++) {
+				Path dir = tmp.resolve(String.format("d%d/e%d", i % 5, i % 3));
+				Files.createDirectories(dir);
+				Files.write(dir.resolve(String.format("file%d.zip", i)), new byte[i]);
+			}
+			Files.createDirectories(tmp.resolve("empty"));
+
+			// each file should be visited once, by the visitor for its own directory
+			Map<Path, Path> visited = new ConcurrentHashMap<>();
+			Set<Path> entered = ConcurrentHashMap.newKeySet();
+			List<Path> received = new ArrayList<>();
+			FileWalker.walk(pool, tmp, dir -> {
+				assertTrue(entered.add(dir));
+				return (file, attrs) -> {
+					assertEquals(Files.size(file), attrs.size());
+					assertNull(visited.put(file, dir));
+					return file;
+				};
+			}, received::add);
+
+			assertEquals(50, visited.size());
+			visited.forEach((file, dir) -> assertEquals(file.getParent(), dir));
+			assertTrue(entered.contains(tmp));
+			assertTrue(entered.contains(tmp.resolve("empty")));
+			assertEquals(1 + 1 + 5 + 15, entered.size());
+
+			// results are received depth-first, in name order, regardless of the order files were visited in
+			List<Path> expected = new ArrayList<>();
+			try (Stream<Path> files = Files.walk(tmp)) {
+				files.filter(Files::isRegularFile).sorted().forEach(expected::add);
+			}
+			assertEquals(expected, received);
+
+			// results may be skipped
+			List<Path> large = new ArrayList<>();
+			FileWalker.walk(pool, tmp, dir -> (file, attrs) -> attrs.size() >= 40 ? file : null, large::add);
+			assertEquals(expected.stream().filter(f -> f.toFile().length() >= 40).collect(Collectors.toList()), large);
+
+			// failures are passed on to the caller
+			IOException failure = assertThrows(IOException.class, () -> FileWalker.walk(pool, tmp, dir -> (file, attrs) -> {
+				if (file.getFileName().toString().equals("file42.zip")) throw new IOException("Failed " + file.getFileName());
+				return file;
+			}, file -> {}));
+			assertEquals("Failed file42.zip", failure.getMessage());
+
+			// including failures to receive results
+			failure = assertThrows(IOException.class, () -> FileWalker.walk(pool, tmp, dir -> (file, attrs) -> file, file -> {
+				throw new IOException("Failed to receive");
+			}));
+			assertEquals("Failed to receive", failure.getMessage());
+		} finally {
+			pool.shutdown();
+			ArchiveUtil.cleanPath(tmp);
+		}
+	}
+}
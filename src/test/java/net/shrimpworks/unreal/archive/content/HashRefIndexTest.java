@@ -0,0 +1,90 @@
+package net.shrimpworks.unreal.archive.content;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashRefIndexTest {
+
+	@Test
+	public void addAndRemove() {
+		HashRefIndex index = new HashRefIndex(4);
+
+		String one = sha1("one");
+		index.add(one, 1);
+		index.add(one, 2);
+		index.add(one, 2);
+		index.add("not-a-hash", 3);
+
+		assertEquals(2, index.size());
+		assertEquals(Set.of(1, 2), set(index.get(one)));
+		assertEquals(Set.of(3), set(index.get("not-a-hash")));
+		assertEquals(0, index.get(sha1("two")).length);
+		assertEquals(0, index.get(one.toUpperCase()).length);
+
+		index.remove(one, 1);
+		assertEquals(Set.of(2), set(index.get(one)));
+		index.remove(one, 2);
+		assertEquals(0, index.get(one).length);
+		index.remove("not-a-hash", 3);
+		assertEquals(0, index.size());
+	}
+
+	@Test
+	public void matchesReferenceMap() {
+		// compare against a plain map through many random changes, exercising growth and deletion
+		final Random random = new Random(42);
+		final HashRefIndex index = new HashRefIndex(16);
+		final Map<String, Set<Integer>> expected = new HashMap<>();
+		final List<String> hashes = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) hashes.add(sha1("file" + i));
+
+		for (int i = 0; i < 20000; i++) {
+			String hash = hashes.get(random.nextInt(hashes.size()));
+			int ref = random.nextInt(4);
+			if (random.nextInt(3) == 0) {
+				index.remove(hash, ref);
+				expected.computeIfPresent(hash, (k, v) -> {
+					v.remove(ref);
+					return v.isEmpty() ? null : v;
+				});
+			} else {
+				index.add(hash, ref);
+				expected.computeIfAbsent(hash, k -> new HashSet<>()).add(ref);
+			}
+		}
+
+		assertEquals(expected.size(), index.size());
+		for (String hash : hashes) {
+			assertEquals(expected.getOrDefault(hash, Set.of()), set(index.get(hash)));
+		}
+	}
+
+	private static Set<Integer> set(int[] refs) {
+		Set<Integer> set = new HashSet<>();
+		Arrays.stream(refs).forEach(set::add);
+		assertEquals(refs.length, set.size());
+		return set;
+	}
+
+	private static String sha1(String value) {
+		try {
+			StringBuilder sb = new StringBuilder();
+			for (byte b : MessageDigest.getInstance("SHA-1").digest(value.getBytes())) sb.append(String.format("%02x", b));
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package net.shrimpworks.unreal.archive.content;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import net.shrimpworks.unreal.archive.ArchiveUtil;
+import net.shrimpworks.unreal.archive.CLI;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncomingTest {
+
+	@Test
+	public void memoryOptions() {
+		assertSame(Incoming.MemoryOptions.DISABLED, Incoming.MemoryOptions.fromCli(new CLI(new String[0], Map.of())));
+
+		Incoming.MemoryOptions opts = Incoming.MemoryOptions.fromCli(new CLI(new String[0], Map.of("memory-file-size", "1024",
+																								 "memory-direct", "true")));
+		assertEquals(1024, opts.maxFileSize);
+		assertTrue(opts.maxTotalSize > 1024);
+		assertTrue(opts.direct);
+
+		// individual files can't be larger than a buffer can hold
+		assertEquals(Integer.MAX_VALUE, new Incoming.MemoryOptions(Long.MAX_VALUE, Long.MAX_VALUE, false).maxFileSize);
+	}
+
+	@Test
+	public void inMemoryFiles() throws IOException {
+		final Path tmpRoot = Files.createTempDirectory("test-incoming");
+		try {
+			final byte[] readme = "Author: Joe Soap".getBytes(StandardCharsets.UTF_8);
+			final byte[] large = new byte[2048];
+			final Path archive = tmpRoot.resolve("test.zip");
+			try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+				write(zip, "Readme.txt", readme);
+				write(zip, "Textures/Large.txt", large);
+				write(zip, "Maps/DM-Test.unr", new byte[] { 1, 2, 3 });
+			}
+
+			try (Incoming incoming = new Incoming(new Submission(archive), IndexLog.NOP,
+												  new Incoming.MemoryOptions(1024, 1024 * 1024, false)).prepare()) {
+				final Path root = incoming.contentRoot(Incoming.FileType.IMAGE);
+				final Path readmePath = root.resolve("Readme.txt");
+
+				// small files are held in memory, larger files and packages are written to disk
+				assertFalse(incoming.files.get(readmePath.toString()) instanceof Path);
+				assertFalse(Files.exists(readmePath));
+				assertTrue(incoming.files.get(root.resolve("Textures/Large.txt").toString()) instanceof Path);
+				assertTrue(incoming.files.get(root.resolve("Maps/DM-Test.unr").toString()) instanceof Path);
+
+				// in-memory files are read through a read-only seekable channel
+				final Incoming.IncomingFile file = incoming.files(Incoming.FileType.TEXT).stream()
+														   .filter(f -> f.fileName().equals("Readme.txt"))
+														   .findFirst().orElseThrow();
+				assertEquals(readme.length, file.fileSize());
+				try (SeekableByteChannel channel = file.asChannel()) {
+					assertEquals(readme.length, channel.size());
+					channel.position(8);
+					ByteBuffer buf = ByteBuffer.allocate(3);
+					assertEquals(3, channel.read(buf));
+					assertEquals("Joe", new String(buf.array(), StandardCharsets.UTF_8));
+					assertEquals(11, channel.position());
+					assertThrows(NonWritableChannelException.class, () -> channel.write(ByteBuffer.allocate(1)));
+
+					channel.position(readme.length);
+					assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+
+					channel.close();
+					assertThrows(ClosedChannelException.class, () -> channel.read(ByteBuffer.allocate(1)));
+				}
+
+				// packages are already on disk, so asking for them doesn't write out other in-memory files
+				assertEquals(root, incoming.contentRoot(Incoming.FileType.PACKAGES));
+				assertFalse(Files.exists(readmePath));
+
+				// the full content is written out when needed
+				assertEquals(root, incoming.contentRoot());
+				assertArrayEquals(readme, Files.readAllBytes(readmePath));
+				assertEquals(readmePath, incoming.files.get(readmePath.toString()));
+				assertEquals(file.hash(), incoming.files(Incoming.FileType.TEXT).stream()
+													  .filter(f -> f.fileName().equals("Readme.txt"))
+													  .findFirst().orElseThrow().hash());
+			}
+		} finally {
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+
+	@Test
+	public void memoryLimit() throws IOException {
+		final Path tmpRoot = Files.createTempDirectory("test-incoming");
+		try {
+			final Path archive = tmpRoot.resolve("test.zip");
+			try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+				for (int i = 0; i < 4; i++) write(zip, String.format("File%d.txt", i), new byte[100]);
+			}
+
+			// only as many files as fit within the total are held in memory
+			try (Incoming incoming = new Incoming(new Submission(archive), IndexLog.NOP,
+												  new Incoming.MemoryOptions(100, 250, false)).prepare()) {
+				assertEquals(2, incoming.files.values().stream().filter(f -> f instanceof Path).count());
+				assertEquals(2, incoming.files.values().stream().filter(f -> !(f instanceof Path)).count());
+			}
+		} finally {
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+
+	private static void write(ZipOutputStream zip, String name, byte[] data) throws IOException {
+		zip.putNextEntry(new ZipEntry(name));
+		zip.write(data);
+		zip.closeEntry();
+	}
+}
@@ -505,7 +505,7 @@ public class IndexCleanupUtil {
 				// in this process, we don't want to change files
 				for (IndexResult.NewAttachment file : result.files) {
 					try {
-						Files.deleteIfExists(file.path);
+						file.discard();
 					} catch (IOException e) {
 						e.printStackTrace();
 					}
@@ -0,0 +1,126 @@
+package net.shrimpworks.unreal.archive.content;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import net.shrimpworks.unreal.archive.ArchiveUtil;
+import net.shrimpworks.unreal.archive.storage.DataStore;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IndexerTest {
+
+	@Test
+	public void pipelinedVariations() throws IOException {
+		final Path tmpRoot = Files.createTempDirectory("test-indexer");
+		try {
+			// two releases of the same map, differing only by an extra file
+			final Path incoming = Files.createDirectories(tmpRoot.resolve("incoming"));
+			final Path first = incoming.resolve("dm-longestyard.zip");
+			try (InputStream is = getClass().getResourceAsStream("maps/dm-longestyard.zip")) {
+				Files.copy(is, first);
+			}
+			final Path second = Files.copy(first, incoming.resolve("dm-longestyard-fixed.zip"));
+			try (FileSystem zip = FileSystems.newFileSystem(URI.create("jar:" + second.toUri()), Map.of())) {
+				Files.writeString(zip.getPath("fixed.txt"), "fixed");
+			}
+
+			final ContentManager cm = new ContentManager(Files.createDirectories(tmpRoot.resolve("content")), null,
+														 new SlowStore(), DataStore.NOP, DataStore.NOP);
+
+			// uploads are slow, so the second release is parsed while the first is still waiting to be stored
+			final List<IndexLog> logs = new ArrayList<>();
+			new Indexer(cm, new Indexer.IndexerEvents() {
+				@Override
+				public void starting(int foundFiles) {
+					assertEquals(2, foundFiles);
+				}
+
+				@Override
+				public void progress(int indexed, int total, Path currentFile) {
+					// pass
+				}
+
+				@Override
+				public synchronized void indexed(Submission submission, Optional<IndexResult<? extends Content>> indexed, IndexLog log) {
+					logs.add(log);
+				}
+
+				@Override
+				public void completed(int indexedFiles, int errorCount) {
+					assertEquals(2, indexedFiles);
+					assertEquals(0, errorCount);
+				}
+			}).index(false, false, 2, ContentType.MAP, incoming);
+
+			assertEquals(2, logs.size());
+			assertEquals(2, cm.size());
+
+			// one of the releases should be a variation of the other, regardless of which was stored first
+			final Collection<Content> all = cm.all();
+			final List<Content> variations = new ArrayList<>();
+			for (Content c : all) {
+				if (c.variationOf != null) variations.add(c);
+			}
+			assertEquals(1, variations.size());
+
+			final Content variation = variations.get(0);
+			assertNotNull(cm.forHash(variation.variationOf));
+			assertNull(cm.forHash(variation.variationOf).variationOf);
+			assertEquals(1, cm.variationsOf(variation.variationOf).size());
+		} finally {
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+
+	private static class SlowStore implements DataStore {
+
+		@Override
+		public void store(Path path, String name, BiConsumer<String, IOException> stored) throws IOException {
+			try {
+				Thread.sleep(250);
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			stored.accept("slow://" + name, null);
+		}
+
+		@Override
+		public void store(InputStream stream, long dataSize, String name, BiConsumer<String, IOException> stored) throws IOException {
+			store((Path)null, name, stored);
+		}
+
+		@Override
+		public void delete(String url, Consumer<Boolean> deleted) {
+			deleted.accept(false);
+		}
+
+		@Override
+		public void download(String url, Consumer<Path> downloaded) {
+			downloaded.accept(null);
+		}
+
+		@Override
+		public void exists(String name, Consumer<Object> result) {
+			result.accept(false);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
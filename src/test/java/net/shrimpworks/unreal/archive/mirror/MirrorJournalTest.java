@@ -0,0 +1,62 @@
+package net.shrimpworks.unreal.archive.mirror;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import net.shrimpworks.unreal.archive.ArchiveUtil;
+import net.shrimpworks.unreal.archive.content.Content;
+import net.shrimpworks.unreal.archive.content.ContentManagerTest;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MirrorJournalTest {
+
+	@Test
+	public void resumeJournal() throws IOException {
+		final Path tmpRoot = Files.createTempDirectory("test-mirror");
+		try {
+			final Path journalFile = tmpRoot.resolve("journal").resolve(MirrorJournal.fileName("S3Store [bucket=test]"));
+			final Content one = ContentManagerTest.makeMap("DM-One", "Joe Soap", "1234567890");
+			final Content two = ContentManagerTest.makeMap("DM-Two", "Joe Soap", "abcdef1234");
+			final Content three = ContentManagerTest.makeMap("DM-Three", "Joe Soap", "0987654321");
+
+			try (MirrorJournal journal = MirrorJournal.open(journalFile)) {
+				journal.complete(one);
+				journal.fail(two);
+				journal.fail(three);
+				journal.complete(three);
+			}
+
+			// simulate the process being killed part-way through writing a record
+			Files.write(journalFile, "C abc".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+			try (MirrorJournal journal = MirrorJournal.open(journalFile)) {
+				assertTrue(journal.completed(one));
+				assertFalse(journal.failed(one));
+				assertTrue(journal.failed(two));
+				assertFalse(journal.completed(two));
+				assertTrue(journal.completed(three));
+
+				journal.complete(two);
+			}
+
+			try (MirrorJournal journal = MirrorJournal.open(journalFile)) {
+				assertTrue(journal.completed(two));
+			}
+
+			// compacted on open, one line per item, with the partial record discarded
+			assertEquals(3, Files.readAllLines(journalFile).size());
+
+			// the no-op journal does not remember anything
+			MirrorJournal.NONE.complete(one);
+			assertFalse(MirrorJournal.NONE.completed(one));
+		} finally {
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+}
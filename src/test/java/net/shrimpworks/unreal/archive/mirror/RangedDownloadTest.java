@@ -0,0 +1,138 @@
+package net.shrimpworks.unreal.archive.mirror;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpServer;
+
+import net.shrimpworks.unreal.archive.ArchiveUtil;
+import net.shrimpworks.unreal.archive.Util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RangedDownloadTest {
+
+	private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+	private final byte[] data = new byte[300 * 1024];
+	private final AtomicLong served = new AtomicLong();
+
+	private HttpServer server;
+	private Path tmpRoot;
+	private String url;
+
+	@BeforeEach
+	public void setup() throws IOException {
+		new Random(1).nextBytes(data);
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/ranged", exchange -> {
+			Matcher m = RANGE.matcher(String.valueOf(exchange.getRequestHeaders().getFirst("Range")));
+			try (OutputStream out = exchange.getResponseBody()) {
+				if (m.matches()) {
+					int start = Integer.parseInt(m.group(1));
+					int end = Math.min(data.length - 1, Integer.parseInt(m.group(2)));
+					exchange.getResponseHeaders().add("Content-Range", String.format("bytes %d-%d/%d", start, end, data.length));
+					exchange.sendResponseHeaders(206, end - start + 1);
+					out.write(data, start, end - start + 1);
+					served.addAndGet(end - start + 1);
+				} else {
+					exchange.sendResponseHeaders(200, data.length);
+					out.write(data);
+					served.addAndGet(data.length);
+				}
+			}
+		});
+		server.createContext("/plain", exchange -> {
+			exchange.sendResponseHeaders(200, data.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(data);
+			}
+		});
+		server.start();
+
+		url = "http://127.0.0.1:" + server.getAddress().getPort();
+		tmpRoot = Files.createTempDirectory("test-ranged");
+	}
+
+	@AfterEach
+	public void teardown() throws IOException {
+		server.stop(0);
+		ArchiveUtil.cleanPath(tmpRoot);
+	}
+
+	@Test
+	public void segmentedDownload() throws IOException {
+		final String hash = Util.hash(ByteBuffer.wrap(data));
+		final RangedDownload.Options options = new RangedDownload.Options(64 * 1024, 4);
+
+		Path dest = new RangedDownload(url + "/ranged", tmpRoot.resolve("file.zip"), hash, 0, options, Throttle.unlimited())
+			.download();
+		assertArrayEquals(data, Files.readAllBytes(dest));
+		assertFalse(Files.exists(tmpRoot.resolve("file.zip.part")));
+		assertFalse(Files.exists(tmpRoot.resolve("file.zip.part.state")));
+
+		// servers without range support are downloaded in one piece
+		dest = new RangedDownload(url + "/plain", tmpRoot.resolve("plain.zip"), hash, 0, options, Throttle.unlimited())
+			.download();
+		assertArrayEquals(data, Files.readAllBytes(dest));
+	}
+
+	@Test
+	public void resume() throws IOException {
+		// a previous download which completed the first half
+		final int half = data.length / 2;
+		final Path part = tmpRoot.resolve("file.zip.part");
+		Files.write(part, new byte[data.length]);
+		try (FileChannel channel = FileChannel.open(part, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(data, 0, half), 0);
+		}
+		new RangedDownload.Segments(data.length, List.of(new RangedDownload.Segment(0, data.length, half)))
+			.write(tmpRoot.resolve("file.zip.part.state"));
+
+		final RangedDownload.Options options = new RangedDownload.Options(64 * 1024, 4);
+		Path dest = new RangedDownload(url + "/ranged", tmpRoot.resolve("file.zip"), Util.hash(ByteBuffer.wrap(data)), 0, options,
+									   Throttle.unlimited()).download();
+
+		assertArrayEquals(data, Files.readAllBytes(dest));
+		assertEquals(data.length - half, served.get());
+	}
+
+	@Test
+	public void hashMismatch() {
+		final RangedDownload.Options options = new RangedDownload.Options(64 * 1024, 4);
+		assertThrows(IOException.class, () -> new RangedDownload(url + "/ranged", tmpRoot.resolve("file.zip"), "0000", 0, options,
+																 Throttle.unlimited()).download());
+		assertFalse(Files.exists(tmpRoot.resolve("file.zip")));
+		assertFalse(Files.exists(tmpRoot.resolve("file.zip.part")));
+	}
+
+	@Test
+	public void restartMismatchedState() throws IOException {
+		// state recorded for a file of a different size is discarded
+		final Path state = tmpRoot.resolve("file.zip.part.state");
+		new RangedDownload.Segments(data.length / 2, List.of(new RangedDownload.Segment(0, data.length / 2, 0))).write(state);
+		assertNull(RangedDownload.Segments.read(state, data.length));
+		assertNotNull(RangedDownload.Segments.read(state, 0));
+
+		final RangedDownload.Options options = new RangedDownload.Options(64 * 1024, 4);
+		Path dest = new RangedDownload(url + "/ranged", tmpRoot.resolve("file.zip"), Util.hash(ByteBuffer.wrap(data)), data.length,
+									   options, Throttle.unlimited()).download();
+		assertArrayEquals(data, Files.readAllBytes(dest));
+	}
+}
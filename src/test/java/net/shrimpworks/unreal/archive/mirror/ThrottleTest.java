@@ -0,0 +1,180 @@
+package net.shrimpworks.unreal.archive.mirror;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import net.shrimpworks.unreal.archive.storage.DataStore;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThrottleTest {
+
+	@Test
+	public void bucket() {
+		FakeClock clock = new FakeClock();
+		Throttle.Bucket bucket = new Throttle.Bucket(100, clock);
+
+		// a full bucket allows an initial burst, after which callers must wait
+		assertEquals(0, bucket.reserve(100));
+		assertEquals(500_000_000L, bucket.reserve(50), 1_000);
+
+		// the bucket refills over time
+		clock.sleep(1_500_000_000L);
+		assertEquals(0, bucket.reserve(100));
+
+		// unlimited buckets never wait
+		bucket.rate(0);
+		assertEquals(0, bucket.reserve(1_000_000));
+	}
+
+	@Test
+	public void limitStream() throws IOException {
+		FakeClock clock = new FakeClock();
+		Throttle throttle = new Throttle(new Throttle.Options(0, 0, 64 * 1024, 0), null, clock);
+
+		try (InputStream in = throttle.stream("host", new ByteArrayInputStream(new byte[128 * 1024]))) {
+			assertEquals(128 * 1024, in.readAllBytes().length);
+		}
+
+		// first 64KB is the initial burst, the remainder must take a second
+		assertEquals(1_000_000_000L, clock.nanoTime(), 1_000);
+		assertEquals(128 * 1024, throttle.transferred());
+		assertTrue(throttle.limited("host"));
+
+		// other destinations are not affected by the limit on this one
+		throttle.limit("other", 0, 0);
+		final long otherStart = clock.nanoTime();
+		try (InputStream in = throttle.stream("other", new ByteArrayInputStream(new byte[512 * 1024]))) {
+			in.readAllBytes();
+		}
+		assertEquals(otherStart, clock.nanoTime());
+		assertFalse(throttle.limited("other"));
+	}
+
+	@Test
+	public void storeExistingFile() throws IOException {
+		final FakeClock clock = new FakeClock();
+		final Throttle throttle = new Throttle(new Throttle.Options(0, 0, 1024, 0), null, clock);
+		final Path file = Files.createTempFile("throttle", ".zip");
+		try {
+			Files.write(file, new byte[64 * 1024]);
+
+			final Set<String> existing = new HashSet<>();
+			final List<String> stored = new ArrayList<>();
+			final DataStore store = throttle.store(new DataStore() {
+				@Override
+				public void store(Path path, String name, BiConsumer<String, IOException> done) {
+					stored.add("path:" + name);
+					done.accept(name, null);
+				}
+
+				@Override
+				public void store(InputStream stream, long dataSize, String name, BiConsumer<String, IOException> done)
+					throws IOException {
+					stream.readAllBytes();
+					stored.add("stream:" + name);
+					done.accept(name, null);
+				}
+
+				@Override
+				public void delete(String url, Consumer<Boolean> deleted) {
+					deleted.accept(false);
+				}
+
+				@Override
+				public void download(String url, Consumer<Path> downloaded) {
+					downloaded.accept(null);
+				}
+
+				@Override
+				public void exists(String name, Consumer<Object> result) {
+					result.accept(existing.contains(name) ? name : null);
+				}
+
+				@Override
+				public void close() {
+				}
+			});
+
+			// an existing file is handed straight to the store, without reading it or waiting for bandwidth
+			existing.add("existing.zip");
+			store.store(file, "existing.zip", (url, ex) -> assertEquals("existing.zip", url));
+			assertEquals(0, clock.nanoTime());
+			assertEquals(List.of("path:existing.zip"), stored);
+			assertEquals(0, throttle.transferred());
+			assertEquals(2, throttle.requested());
+
+			// new files are streamed through the throttle
+			store.store(file, "new.zip", (url, ex) -> assertEquals("new.zip", url));
+			assertTrue(clock.nanoTime() > 0);
+			assertEquals(List.of("path:existing.zip", "stream:new.zip"), stored);
+			assertEquals(64 * 1024, throttle.transferred());
+
+			// without a bandwidth limit, new files are handed straight to the store too
+			throttle.limit(store.toString(), 0, 0);
+			final long start = clock.nanoTime();
+			store.store(file, "unlimited.zip", (url, ex) -> assertEquals("unlimited.zip", url));
+			assertEquals(start, clock.nanoTime());
+			assertEquals(List.of("path:existing.zip", "stream:new.zip", "path:unlimited.zip"), stored);
+			assertEquals(128 * 1024, throttle.transferred());
+			assertEquals(7, throttle.requested());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void reloadOptions() throws IOException {
+		Path file = Files.createTempFile("throttle", ".properties");
+		try {
+			Files.writeString(file, "max-bandwidth=1000\nmax-requests=5\n");
+			Throttle throttle = new Throttle(Throttle.Options.UNLIMITED, file);
+			assertEquals(1000, throttle.options().bytesPerSecond);
+			assertEquals(5, throttle.options().requestsPerSecond);
+
+			Files.writeString(file, "dest-max-requests=2.5\n");
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+			throttle.reload();
+			assertEquals(0, throttle.options().bytesPerSecond);
+			assertEquals(2.5, throttle.options().destinationRequestsPerSecond);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	public void destination() {
+		assertEquals("files.example.com", Throttle.destination("https://Files.Example.com/some file.zip"));
+		assertEquals("", Throttle.destination("not a url"));
+	}
+
+	/**
+	 * A clock which only advances when waited on.
+	 */
+	private static class FakeClock implements Throttle.Clock {
+
+		private long now;
+
+		@Override
+		public synchronized long nanoTime() {
+			return now;
+		}
+
+		@Override
+		public synchronized void sleep(long nanos) {
+			now += nanos;
+		}
+	}
+}
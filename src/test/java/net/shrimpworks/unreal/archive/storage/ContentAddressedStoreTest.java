@@ -0,0 +1,97 @@
+package net.shrimpworks.unreal.archive.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import net.shrimpworks.unreal.archive.ArchiveUtil;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContentAddressedStoreTest {
+
+	@Test
+	public void deduplicate() throws IOException {
+		final Path tmpRoot = Files.createTempDirectory("test-blobs");
+		try {
+			final Path indexFile = tmpRoot.resolve("index").resolve("blobs.index");
+			final Path image = Files.writeString(tmpRoot.resolve("shot.png"), "image data");
+			final byte[] same = "image data".getBytes(StandardCharsets.UTF_8);
+			final byte[] other = "other data".getBytes(StandardCharsets.UTF_8);
+
+			final CountingStore counting = new CountingStore();
+			final List<String> urls = new ArrayList<>();
+			try (ContentAddressedStore store = new ContentAddressedStore(counting, "sha1", indexFile)) {
+				store.store(image, "Maps/DM/A/shot.PNG", (url, ex) -> urls.add(url));
+				store.store(new ByteArrayInputStream(same), same.length, "Maps/DM/B/other.png", (url, ex) -> urls.add(url));
+				store.store(new ByteArrayInputStream(other), other.length, "Maps/DM/B/other.png", (url, ex) -> urls.add(url));
+
+				// shared files are not deleted
+				store.delete(urls.get(0), deleted -> assertFalse(deleted));
+			}
+
+			assertEquals(2, counting.stored.size());
+			assertEquals("sha1/d6/d68146c2e5fe437a9f2c7a8affb88271cff46182.png", counting.stored.get(0));
+			assertEquals(urls.get(0), urls.get(1));
+			assertNotEquals(urls.get(0), urls.get(2));
+
+			// a partially written record is ignored, and known files are not stored again
+			Files.writeString(indexFile, Files.readString(indexFile) + "0123456789abcdef", StandardCharsets.UTF_8);
+			try (ContentAddressedStore store = new ContentAddressedStore(counting, "sha1", indexFile)) {
+				store.store(image, "Maps/DM/C/shot.png", (url, ex) -> assertEquals(urls.get(0), url));
+			}
+			assertEquals(2, counting.stored.size());
+			assertEquals(3, Files.readAllLines(indexFile).size());
+
+			// stores for different kinds of content keep separate indexes
+			assertNotEquals(ContentAddressedStore.fileName(DataStore.StoreContent.IMAGES, counting),
+							ContentAddressedStore.fileName(DataStore.StoreContent.ATTACHMENTS, counting));
+		} finally {
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+
+	private static class CountingStore implements DataStore {
+
+		private final List<String> stored = new ArrayList<>();
+
+		@Override
+		public void store(Path path, String name, BiConsumer<String, IOException> stored) {
+			this.stored.add(name);
+			stored.accept("test://" + name, null);
+		}
+
+		@Override
+		public void store(InputStream stream, long dataSize, String name, BiConsumer<String, IOException> stored) {
+			this.stored.add(name);
+			stored.accept("test://" + name, null);
+		}
+
+		@Override
+		public void delete(String url, Consumer<Boolean> deleted) {
+			deleted.accept(true);
+		}
+
+		@Override
+		public void download(String url, Consumer<Path> downloaded) {
+		}
+
+		@Override
+		public void exists(String name, Consumer<Object> result) {
+			result.accept(false);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
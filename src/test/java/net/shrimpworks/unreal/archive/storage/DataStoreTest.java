@@ -0,0 +1,71 @@
+package net.shrimpworks.unreal.archive.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DataStoreTest {
+
+	@Test
+	public void asyncOperations() {
+		assertEquals("nop://file.png", DataStore.NOP.storeAsync(Path.of("file.png"), "file.png").join());
+		assertEquals("nop://file.png", DataStore.NOP.storeAsync(new ByteArrayInputStream(new byte[1]), 1, "file.png").join());
+		assertTrue(DataStore.NOP.deleteAsync("nop://file.png").join());
+		assertEquals(false, DataStore.NOP.existsAsync("file.png").join());
+	}
+
+	@Test
+	public void asyncFailures() {
+		final DataStore failing = new DataStore() {
+			@Override
+			public void store(Path path, String name, BiConsumer<String, IOException> stored) {
+				if (name.equals("no-url")) stored.accept(null, null);
+				else stored.accept(null, new IOException("Upload failed"));
+			}
+
+			@Override
+			public void store(InputStream stream, long dataSize, String name, BiConsumer<String, IOException> stored)
+				throws IOException {
+				throw new IOException("Connection refused");
+			}
+
+			@Override
+			public void delete(String url, Consumer<Boolean> deleted) {
+				deleted.accept(false);
+			}
+
+			@Override
+			public void download(String url, Consumer<Path> downloaded) {
+				// never calls back
+			}
+
+			@Override
+			public void exists(String name, Consumer<Object> result) {
+				result.accept(false);
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+
+		CompletionException e = assertThrows(CompletionException.class, () -> failing.storeAsync(Path.of("a"), "a").join());
+		assertEquals("Upload failed", e.getCause().getMessage());
+
+		e = assertThrows(CompletionException.class, () -> failing.storeAsync(InputStream.nullInputStream(), 0, "a").join());
+		assertEquals("Connection refused", e.getCause().getMessage());
+
+		// neither missing results nor missing URLs are mistaken for success
+		assertThrows(CompletionException.class, () -> failing.storeAsync(Path.of("a"), "no-url").join());
+		e = assertThrows(CompletionException.class, () -> failing.downloadAsync("http://a").join());
+		assertInstanceOf(IOException.class, e.getCause());
+	}
+}
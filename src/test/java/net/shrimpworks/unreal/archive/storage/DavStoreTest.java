@@ -0,0 +1,69 @@
+package net.shrimpworks.unreal.archive.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+import com.sun.net.httpserver.HttpServer;
+
+import net.shrimpworks.unreal.archive.CLI;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DavStoreTest {
+
+	private HttpServer server;
+	private DataStore store;
+
+	@BeforeEach
+	public void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", exchange -> {
+			try (InputStream in = exchange.getRequestBody()) {
+				in.readAllBytes();
+			}
+			exchange.sendResponseHeaders(exchange.getRequestURI().getPath().startsWith("/denied") ? 403 : 201, -1);
+			exchange.close();
+		});
+		server.start();
+
+		store = new DavStore.Factory().newStore(
+			DataStore.StoreContent.CONTENT,
+			new CLI(new String[0], Map.of("dav-url", "http://127.0.0.1:" + server.getAddress().getPort() + "/"))
+		);
+	}
+
+	@AfterEach
+	public void teardown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void storeFailures() throws IOException {
+		final Path file = Files.createTempFile("test-dav", ".zip");
+		try {
+			assertTrue(store.storeAsync(file, "stored/file.zip").join().endsWith("/stored/file.zip"));
+			assertTrue(store.storeAsync(new ByteArrayInputStream(new byte[10]), 10, "stored/file.zip").join()
+							.endsWith("/stored/file.zip"));
+
+			// rejected uploads are reported as failures, rather than as stored
+			CompletionException e = assertThrows(CompletionException.class,
+												 () -> store.storeAsync(file, "denied/file.zip").join());
+			assertInstanceOf(IOException.class, e.getCause());
+			e = assertThrows(CompletionException.class,
+							 () -> store.storeAsync(new ByteArrayInputStream(new byte[10]), 10, "denied/file.zip").join());
+			assertInstanceOf(IOException.class, e.getCause());
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+}
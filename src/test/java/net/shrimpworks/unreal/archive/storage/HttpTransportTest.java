@@ -0,0 +1,169 @@
+package net.shrimpworks.unreal.archive.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpServer;
+
+import net.shrimpworks.unreal.archive.CLI;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpTransportTest {
+
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicInteger maxActive = new AtomicInteger();
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	private HttpServer server;
+	private ExecutorService serverExecutor;
+	private String url;
+
+	@BeforeEach
+	public void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		serverExecutor = Executors.newCachedThreadPool();
+		server.setExecutor(serverExecutor);
+		server.createContext("/slow", exchange -> {
+			maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException e) {
+				// pass
+			}
+			active.decrementAndGet();
+			exchange.sendResponseHeaders(204, -1);
+			exchange.close();
+		});
+		server.createContext("/upload", exchange -> {
+			try (InputStream in = exchange.getRequestBody()) {
+				in.readAllBytes();
+			}
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+		});
+		server.createContext("/stall", exchange -> {
+			exchange.sendResponseHeaders(200, 1024);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(new byte[10]);
+				out.flush();
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				// pass
+			}
+		});
+		server.start();
+
+		url = "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	@AfterEach
+	public void teardown() {
+		release.countDown();
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+
+	@Test
+	public void options() {
+		HttpTransport.Options opts = HttpTransport.Options.fromCli(new CLI(new String[0], Map.of()));
+		assertEquals(HttpTransport.Options.DEFAULT.requestTimeout, opts.requestTimeout);
+		assertEquals(HttpTransport.Options.DEFAULT.idleTimeout, opts.idleTimeout);
+		assertEquals(HttpTransport.Options.DEFAULT.hostConcurrency, opts.hostConcurrency);
+
+		opts = HttpTransport.Options.fromCli(new CLI(new String[0], Map.of("http-connect-timeout", "5",
+																		   "http-timeout", "10",
+																		   "http-idle-timeout", "15",
+																		   "http-host-concurrency", "2",
+																		   "http-idle-connections", "0")));
+		assertEquals(Duration.ofSeconds(5), opts.connectTimeout);
+		assertEquals(Duration.ofSeconds(10), opts.requestTimeout);
+		assertEquals(Duration.ofSeconds(15), opts.idleTimeout);
+		assertEquals(2, opts.hostConcurrency);
+		assertEquals(1, opts.idleConnections);
+
+		assertThrows(IllegalArgumentException.class,
+					 () -> HttpTransport.Options.fromCli(new CLI(new String[0], Map.of("http-host-concurrency", "0"))));
+	}
+
+	@Test
+	public void hostConcurrency() throws Exception {
+		final HttpTransport transport = new HttpTransport(new HttpTransport.Options(Duration.ofSeconds(5), Duration.ofSeconds(5),
+																				   Duration.ofSeconds(5), 2, 8));
+
+		final ExecutorService executor = Executors.newFixedThreadPool(6);
+		try {
+			final List<Future<Integer>> requests = new ArrayList<>();
+			for (int i = 0; i < 6; i++) {
+				requests.add(executor.submit(() -> transport.send(transport.request(URI.create(url + "/slow")).GET().build(),
+																  HttpResponse.BodyHandlers.discarding()).statusCode()));
+			}
+			for (Future<Integer> f : requests) assertEquals(204, f.get());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertEquals(2, maxActive.get());
+	}
+
+	@Test
+	public void slowUpload() throws IOException {
+		// the upload takes longer than the request timeout, but keeps making progress
+		final HttpTransport transport = new HttpTransport(new HttpTransport.Options(Duration.ofSeconds(5), Duration.ofMillis(500),
+																				   Duration.ofSeconds(5), 2, 8));
+		final byte[] data = new byte[8];
+		final InputStream slow = new ByteArrayInputStream(data) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				try {
+					Thread.sleep(150);
+				} catch (InterruptedException e) {
+					// pass
+				}
+				return super.read(b, off, Math.min(len, 1));
+			}
+		};
+
+		HttpResponse<Void> response = transport.send(
+			transport.transfer(URI.create(url + "/upload"))
+					 .PUT(HttpRequest.BodyPublishers.fromPublisher(HttpRequest.BodyPublishers.ofInputStream(() -> slow), data.length))
+					 .build(),
+			HttpResponse.BodyHandlers.discarding()
+		);
+		assertEquals(200, response.statusCode());
+	}
+
+	@Test
+	public void stalledDownload() {
+		final HttpTransport transport = new HttpTransport(new HttpTransport.Options(Duration.ofSeconds(5), Duration.ofSeconds(5),
+																				   Duration.ofMillis(500), 2, 8));
+
+		final long start = System.nanoTime();
+		assertThrows(HttpTimeoutException.class, () -> transport.stream(
+			transport.transfer(URI.create(url + "/stall")).GET().build(),
+			response -> response.body().readAllBytes()
+		));
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+	}
+}
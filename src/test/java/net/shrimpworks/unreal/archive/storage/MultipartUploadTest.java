@@ -0,0 +1,69 @@
+package net.shrimpworks.unreal.archive.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MultipartUploadTest {
+
+	private static final int PART_SIZE = (int)MultipartUpload.Options.MIN_PART_SIZE;
+
+	@Test
+	public void uploadParts() throws IOException {
+		final byte[] data = new byte[PART_SIZE * 3 + 1234];
+		new Random(42).nextBytes(data);
+
+		final MultipartUpload.Options options = new MultipartUpload.Options(PART_SIZE, PART_SIZE, 2, 3);
+		final Map<Integer, byte[]> received = new ConcurrentHashMap<>();
+		final AtomicInteger secondAttempts = new AtomicInteger();
+
+		final List<Integer> parts = MultipartUpload.upload(new ByteArrayInputStream(data), PART_SIZE, options, (part, buf, len) -> {
+			// the second part fails once, and should be retried on its own
+			if (part == 2 && secondAttempts.getAndIncrement() == 0) throw new IOException("Connection reset");
+			byte[] copy = new byte[len];
+			System.arraycopy(buf, 0, copy, 0, len);
+			received.put(part, copy);
+			return part;
+		});
+
+		assertEquals(List.of(1, 2, 3, 4), parts);
+		assertEquals(2, secondAttempts.get());
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int part : parts) out.write(received.get(part));
+		assertArrayEquals(data, out.toByteArray());
+	}
+
+	@Test
+	public void failedPart() {
+		final MultipartUpload.Options options = new MultipartUpload.Options(PART_SIZE, PART_SIZE, 2, 2);
+		final AtomicInteger attempts = new AtomicInteger();
+
+		assertThrows(IOException.class, () -> MultipartUpload.upload(
+			new ByteArrayInputStream(new byte[PART_SIZE * 2]), PART_SIZE, options, (part, buf, len) -> {
+				if (part == 1) {
+					attempts.incrementAndGet();
+					throw new IOException("Nope");
+				}
+				return part;
+			})
+		);
+		assertEquals(2, attempts.get());
+	}
+
+	@Test
+	public void partSize() {
+		final MultipartUpload.Options options = MultipartUpload.Options.DEFAULT;
+		assertEquals(options.partSize, options.partSize(100, 10_000));
+		assertEquals(1_000_000_000, options.partSize(10_000_000_000_000L, 10_000));
+	}
+}
@@ -0,0 +1,143 @@
+package net.shrimpworks.unreal.archive.www;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.shrimpworks.unreal.archive.ArchiveUtil;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BuildManifestTest {
+
+	@Test
+	public void skipUnchangedPages() throws IOException {
+		final Path root = Files.createTempDirectory("test-www");
+		try {
+			final Path manifestFile = BuildManifest.defaultPath(root);
+			final Path page = Files.writeString(root.resolve("page.html"), "<html/>");
+
+			final Item item = new Item("DM-MyMap", List.of("a", "b"));
+
+			BuildManifest manifest = BuildManifest.load(manifestFile, root, "v1");
+			final String fingerprint = manifest.fingerprint("page.ftl", vars(item));
+			assertFalse(manifest.unchanged(page, fingerprint));
+			manifest.built(page, fingerprint);
+			assertTrue(manifest.save());
+
+			// the timestamp does not affect the fingerprint, but content and templates do
+			manifest = BuildManifest.load(manifestFile, root, "v1");
+			assertEquals(fingerprint, manifest.fingerprint("page.ftl", vars(item)));
+			assertTrue(manifest.unchanged(page, manifest.fingerprint("page.ftl", vars(item))));
+			assertNotEquals(fingerprint, manifest.fingerprint("other.ftl", vars(item)));
+			assertNotEquals(fingerprint, manifest.fingerprint("page.ftl", vars(new Item("DM-MyMap", List.of("a", "c")))));
+			assertEquals(1, manifest.skipped());
+
+			// objects without public fields are identified by toString(), so equivalent instances do not match
+			final Map<String, Object> opaque = vars(item);
+			opaque.put("opaque", new Object());
+			final String opaqueFingerprint = manifest.fingerprint("page.ftl", opaque);
+			opaque.put("opaque", new Object());
+			assertNotEquals(opaqueFingerprint, manifest.fingerprint("page.ftl", opaque));
+
+			// a page which has been removed must be rebuilt
+			Files.delete(page);
+			assertFalse(manifest.unchanged(page, fingerprint));
+
+			// a different version discards everything
+			Files.writeString(page, "<html/>");
+			manifest = BuildManifest.load(manifestFile, root, "v2");
+			assertFalse(manifest.unchanged(page, fingerprint));
+		} finally {
+			ArchiveUtil.cleanPath(root);
+		}
+	}
+
+	@Test
+	public void ignoreParents() throws IOException {
+		final Path root = Files.createTempDirectory("test-www");
+		try {
+			final BuildManifest manifest = BuildManifest.load(BuildManifest.defaultPath(root), root, "v1");
+
+			final Group group = new Group("Maps");
+			final Member one = group.add("DM-One");
+			group.add("DM-Two");
+
+			final String fingerprint = manifest.fingerprint("page.ftl", Map.of("member", one));
+
+			// changes to siblings reachable through the parent do not affect the page
+			group.members.get(1).name = "DM-Three";
+			group.add("DM-Four");
+			assertEquals(fingerprint, manifest.fingerprint("page.ftl", Map.of("member", one)));
+
+			// but the parent's own values do, as do the page's own values
+			group.name = "Other Maps";
+			final String renamed = manifest.fingerprint("page.ftl", Map.of("member", one));
+			assertNotEquals(fingerprint, renamed);
+			one.name = "DM-Renamed";
+			assertNotEquals(renamed, manifest.fingerprint("page.ftl", Map.of("member", one)));
+
+			// the parent page includes all its members
+			final String groupFingerprint = manifest.fingerprint("group.ftl", Map.of("group", group));
+			group.members.get(2).name = "DM-Five";
+			assertNotEquals(groupFingerprint, manifest.fingerprint("group.ftl", Map.of("group", group)));
+		} finally {
+			ArchiveUtil.cleanPath(root);
+		}
+	}
+
+	private static Map<String, Object> vars(Item item) {
+		Map<String, Object> vars = new HashMap<>();
+		vars.put("timestamp", new Date(System.nanoTime()));
+		vars.put("title", "My Page");
+		vars.put("item", item);
+		return vars;
+	}
+
+	public static class Item {
+
+		public final String name;
+		public final List<String> things;
+		public final Item self;
+
+		public Item(String name, List<String> things) {
+			this.name = name;
+			this.things = things;
+			this.self = this;
+		}
+	}
+
+	public static class Group {
+
+		public String name;
+		public final List<Member> members = new ArrayList<>();
+
+		public Group(String name) {
+			this.name = name;
+		}
+
+		public Member add(String name) {
+			Member member = new Member(this, name);
+			members.add(member);
+			return member;
+		}
+	}
+
+	public static class Member {
+
+		public final Group group;
+		public String name;
+
+		public Member(Group group, String name) {
+			this.group = group;
+			this.name = name;
+		}
+	}
+}
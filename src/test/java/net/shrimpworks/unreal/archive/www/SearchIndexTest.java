@@ -0,0 +1,82 @@
+package net.shrimpworks.unreal.archive.www;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import net.shrimpworks.unreal.archive.ArchiveUtil;
+import net.shrimpworks.unreal.archive.content.Content;
+import net.shrimpworks.unreal.archive.content.ContentManager;
+import net.shrimpworks.unreal.archive.content.ContentManagerTest;
+import net.shrimpworks.unreal.archive.storage.DataStore;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SearchIndexTest {
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	@Test
+	public void tokens() {
+		assertEquals(List.of("dm", "deck16"), SearchIndex.tokens("DM-Deck16]["));
+		assertEquals(List.of("cafe", "creme"), SearchIndex.tokens("  Café  Crème "));
+		assertTrue(SearchIndex.keys("deck").containsAll(List.of("d", "de", "dec", "eck")));
+		assertEquals("de", SearchIndex.shard("dec"));
+	}
+
+	@Test
+	public void writeIndex() throws IOException {
+		final Path tmpRoot = Files.createTempDirectory("test-search");
+		try {
+			final Path contentPath = Files.createDirectories(tmpRoot.resolve("content"));
+			final Content one = ContentManagerTest.makeMap("DM-Deck16", "Joe Soap", "1234567890");
+			final Content two = ContentManagerTest.makeMap("CTF-Face", "Jane Soap", "abcdef1234");
+			final Content variation = ContentManagerTest.makeMap("DM-Deck16", "Joe Soap", "0987654321");
+			variation.variationOf = one.hash;
+			ContentManagerTest.writeContent(contentPath, one);
+			ContentManagerTest.writeContent(contentPath, two);
+			ContentManagerTest.writeContent(contentPath, variation);
+
+			final ContentManager cm = new ContentManager(contentPath, null, DataStore.NOP, DataStore.NOP, DataStore.NOP);
+
+			final Path indexPath = tmpRoot.resolve("index");
+			Files.createDirectories(indexPath.resolve("terms"));
+			Files.writeString(indexPath.resolve("terms").resolve("zz.json"), "{}");
+
+			assertEquals(2, new SearchIndex(cm, indexPath).write());
+
+			// stale output is removed
+			assertFalse(Files.exists(indexPath.resolve("terms").resolve("zz.json")));
+
+			final Map<String, Object> meta = MAPPER.readValue(indexPath.resolve("meta.json").toFile(), new TypeReference<>() {});
+			assertEquals(2, meta.get("docs"));
+			assertTrue(((List<?>)meta.get("shards")).contains("de"));
+
+			// documents are numbered in name order, so CTF-Face is 0 and DM-Deck16 is 1
+			final List<Map<String, Object>> docs = MAPPER.readValue(indexPath.resolve("docs").resolve("0.json").toFile(),
+																			 new TypeReference<>() {});
+			assertEquals(2, docs.size());
+			assertEquals("CTF-Face", docs.get(0).get("name"));
+			assertEquals("DM-Deck16", docs.get(1).get("name"));
+
+			final Map<String, int[]> de = MAPPER.readValue(indexPath.resolve("terms").resolve("de.json").toFile(),
+																	 new TypeReference<>() {});
+			assertArrayEquals(new int[] { 1 }, de.get("dec"));
+
+			// "soap" matches both documents, delta-encoded
+			final Map<String, int[]> so = MAPPER.readValue(indexPath.resolve("terms").resolve("so.json").toFile(),
+																	 new TypeReference<>() {});
+			assertArrayEquals(new int[] { 0, 1 }, so.get("so"));
+			assertArrayEquals(new int[] { 0, 1 }, so.get("soa"));
+		} finally {
+			ArchiveUtil.cleanPath(tmpRoot);
+		}
+	}
+}